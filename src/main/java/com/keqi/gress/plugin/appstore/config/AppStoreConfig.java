@@ -76,6 +76,11 @@ public class AppStoreConfig implements Input {
      */
     private CacheConfig cache;
     
+    /**
+     * 监控配置
+     */
+    private MonitorConfig monitor;
+    
     /**
      * 安全配置
      */
@@ -163,6 +168,42 @@ public class AppStoreConfig implements Input {
             order = 5
         )
         private Boolean enabled;
+        
+        /**
+         * 连接超时时间（毫秒）
+         */
+        @FormField(
+            label = "连接超时",
+            description = "建立连接的超时时间（毫秒）",
+            type = FormField.FieldType.INTEGER,
+            defaultValue = "5000",
+            order = 6
+        )
+        private Integer connectTimeout;
+        
+        /**
+         * 响应超时时间（毫秒）
+         */
+        @FormField(
+            label = "响应超时",
+            description = "发出请求后等待响应的超时时间（毫秒），未配置时使用超时时间",
+            type = FormField.FieldType.INTEGER,
+            defaultValue = "10000",
+            order = 7
+        )
+        private Integer readTimeout;
+        
+        /**
+         * 每个路由的最大并发连接数
+         */
+        @FormField(
+            label = "单路由最大连接数",
+            description = "到同一个服务地址的最大并发请求数",
+            type = FormField.FieldType.INTEGER,
+            defaultValue = "10",
+            order = 8
+        )
+        private Integer maxConnectionsPerRoute;
     }
     
     /**
@@ -232,6 +273,31 @@ public class AppStoreConfig implements Input {
             order = 5
         )
         private Boolean autoRetry;
+        
+        /**
+         * 本地安装包缓存大小上限（MB）
+         */
+        @FormField(
+            label = "安装包缓存上限",
+            description = "本地安装包缓存的大小上限（MB），超出时淘汰最久未使用的安装包",
+            type = FormField.FieldType.INTEGER,
+            defaultValue = "2048",
+            order = 6
+        )
+        private Integer cacheMaxSizeMb;
+        
+        /**
+         * 是否允许安装商店未发布摘要的安装包
+         */
+        @FormField(
+            label = "允许未校验安装包",
+            description = "商店未发布 SHA-256 摘要时是否仍然安装（无法校验安装包完整性）",
+            type = FormField.FieldType.BOOLEAN,
+            defaultValue = "false",
+            component = FormField.ComponentType.SWITCH,
+            order = 7
+        )
+        private Boolean allowUnverifiedPackages;
     }
     
     /**
@@ -279,6 +345,200 @@ public class AppStoreConfig implements Input {
          * 最大缓存条目数
          */
         private Integer maxSize;
+        
+        /**
+         * 商店元数据 404 响应的缓存过期时间（秒）
+         */
+        private Integer negativeExpireSeconds;
+        
+        /**
+         * 监控数据缓存过期时间（秒），超过后条目从内存中淘汰
+         *
+         * 不复用 expireSeconds：expireSeconds 是应用商店元数据的缓存时间（默认 1 小时），
+         * 监控状态需要秒级过期，两者数量级不同。maxSize 由两类缓存共用。
+         */
+        private Integer monitorExpireSeconds;
+        
+        /**
+         * 监控数据缓存刷新时间（秒），写入超过该时间后视为需要刷新
+         */
+        private Integer monitorRefreshSeconds;
+        
+        /**
+         * 是否将监控缓存异步回写数据库（多节点共享时启用）
+         */
+        private Boolean monitorSharedEnabled;
+    }
+    
+    /**
+     * 监控配置
+     */
+    @Data
+    public static class MonitorConfig {
+        /**
+         * 内存统计模式：estimate（按加载类数量估算）、jfr（按类加载器采样统计）
+         */
+        private String memoryMode;
+        
+        /**
+         * 内存采样间隔（秒）
+         */
+        private Integer memorySampleIntervalSeconds;
+        
+        /**
+         * 默认内存告警阈值（MB），用于 estimate 模式的估算值
+         */
+        private Long memoryWarningThresholdMb;
+        
+        /**
+         * 单个插件的内存告警阈值（MB），key 为插件ID，用于 estimate 模式
+         */
+        private Map<String, Long> pluginMemoryThresholdsMb;
+        
+        /**
+         * 元空间告警阈值（MB），jfr 模式下已用内存只含元空间，与该阈值比较
+         */
+        private Long metaspaceWarningThresholdMb;
+        
+        /**
+         * 监控快照批量写入的分块大小（行）
+         */
+        private Integer snapshotBatchSize;
+        
+        /**
+         * 原始快照（按采样层级 5 秒 ~ 5 分钟粒度）保留天数
+         */
+        private Integer rawRetentionDays;
+        
+        /**
+         * 5 分钟汇总保留天数
+         */
+        private Integer rollup5mRetentionDays;
+        
+        /**
+         * 1 小时汇总保留天数
+         */
+        private Integer rollup1hRetentionDays;
+        
+        /**
+         * 1 天汇总保留天数
+         */
+        private Integer rollup1dRetentionDays;
+        
+        /**
+         * 内存中保留近期样本的时间窗口（小时）
+         */
+        private Integer recentWindowHours;
+        
+        /**
+         * 近期样本缓冲区的内存预算（MB）
+         */
+        private Integer recentBufferBudgetMb;
+        
+        /**
+         * 过期数据清理时每个分块删除的行数
+         */
+        private Integer cleanupBatchSize;
+        
+        /**
+         * 过期数据清理时分块之间的暂停时间（毫秒）
+         */
+        private Long cleanupPauseMillis;
+        
+        /**
+         * 快照表是否已转换为按天分区（启用后过期数据通过删除分区清理）
+         */
+        private Boolean snapshotPartitioned;
+        
+        /**
+         * 提前创建的按天分区天数
+         */
+        private Integer partitionPrecreateDays;
+        
+        /**
+         * 监控推送中内存变化超过该值（MB）才推送
+         */
+        private Long streamMemoryDeltaMb;
+        
+        /**
+         * 监控推送订阅租约（秒），客户端需在到期前重新订阅
+         */
+        private Integer streamLeaseSeconds;
+        
+        /**
+         * 告警触发前需要连续越过阈值的采集周期数
+         */
+        private Integer alertDebounceTicks;
+        
+        /**
+         * 告警恢复前需要连续回到恢复线以下的采集周期数
+         */
+        private Integer alertResolveTicks;
+        
+        /**
+         * 告警恢复线低于触发阈值的百分比（滞回区间）
+         */
+        private Integer alertHysteresisPercent;
+        
+        /**
+         * 默认内存增长速率告警阈值（MB/分钟）
+         */
+        private Long memoryGrowthAlertMbPerMinute;
+        
+        /**
+         * 单个插件的内存增长速率告警阈值（MB/分钟），key 为插件ID
+         */
+        private Map<String, Long> pluginMemoryGrowthAlertMbPerMinute;
+        
+        /**
+         * 时间窗口内重启次数达到该值时触发重启循环告警
+         */
+        private Integer restartLoopThreshold;
+        
+        /**
+         * 重启循环检测的时间窗口（分钟）
+         */
+        private Integer restartLoopWindowMinutes;
+        
+        /**
+         * 是否在快照采集时按线程 CPU 时间统计各插件的 CPU 占用率
+         */
+        private Boolean cpuSamplingEnabled;
+        
+        /**
+         * 插件卸载或升级后，旧类加载器经历该次数的老年代/并发 GC 仍未回收时判定为泄漏
+         */
+        private Integer classLoaderLeakGcCycles;
+        
+        /**
+         * 快速采样层级的快照间隔（秒，最小 5 秒）
+         */
+        private Integer snapshotFastIntervalSeconds;
+        
+        /**
+         * 常规采样层级的快照间隔（秒）
+         */
+        private Integer snapshotNormalIntervalSeconds;
+        
+        /**
+         * 慢速采样层级的快照间隔（秒）
+         */
+        private Integer snapshotSlowIntervalSeconds;
+        
+        /**
+         * 状态变更后保持快速采样的时间（分钟）
+         */
+        private Integer snapshotHotWindowMinutes;
+        
+        /**
+         * 超过该时间没有状态变更的插件进入慢速采样（分钟）
+         */
+        private Integer snapshotStableAfterMinutes;
+        
+        /**
+         * 每分钟最多写入的快照行数
+         */
+        private Integer snapshotWriteBudgetPerMinute;
     }
     
     /**
@@ -3,14 +3,28 @@ package com.keqi.gress.plugin.appstore.contoller;
 import com.keqi.gress.common.model.Result;
 import com.keqi.gress.common.plugin.annotion.Inject;
 import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.dto.monitor.ClassLoaderLeak;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAggregation;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAlert;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorCacheStats;
 import com.keqi.gress.plugin.appstore.dto.monitor.MonitorOverview;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorDetail;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import com.keqi.gress.plugin.appstore.dto.monitor.RecentSampleStats;
+import com.keqi.gress.plugin.appstore.dto.monitor.SnapshotSamplingStats;
+import com.keqi.gress.plugin.appstore.service.monitor.ClassLoaderLeakDetector;
+import com.keqi.gress.plugin.appstore.service.monitor.MonitorAlertEngine;
+import com.keqi.gress.plugin.appstore.service.monitor.MonitorMetricsExporter;
+import com.keqi.gress.plugin.appstore.service.monitor.MonitorStreamPublisher;
 import com.keqi.gress.plugin.appstore.service.monitor.PluginMonitorService;
+import com.keqi.gress.plugin.appstore.service.monitor.SnapshotSamplingPolicy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -36,6 +50,21 @@ public class PluginMonitorController {
     @Inject
     private PluginMonitorService monitorService;
     
+    @Inject
+    private MonitorStreamPublisher streamPublisher;
+    
+    @Inject
+    private MonitorMetricsExporter metricsExporter;
+    
+    @Inject
+    private MonitorAlertEngine alertEngine;
+    
+    @Inject
+    private ClassLoaderLeakDetector leakDetector;
+    
+    @Inject
+    private SnapshotSamplingPolicy samplingPolicy;
+    
     /**
      * 获取所有插件的监控状态
      * 
@@ -158,18 +187,26 @@ public class PluginMonitorController {
      * - "24h" = 最近24小时
      * - "7d" = 最近7天
      * 
+     * 指定 maxPoints 时按 LTTB 算法降采样，返回点数不超过 maxPoints；
+     * includeMetadata=false 时不返回每行的元数据
+     * 
      * @param pluginId 插件ID
      * @param timeRange 时间范围（默认 "1h"）
+     * @param maxPoints 最多返回的点数（可选）
+     * @param includeMetadata 是否返回元数据（默认 true）
      * @return 插件历史监控数据列表
      */
     @GetMapping("/history/{pluginId}")
     public Result<List<PluginMonitorHistory>> getPluginHistory(
             @PathVariable String pluginId,
-            @RequestParam(defaultValue = "1h") String timeRange) {
-        log.info("获取插件历史监控数据: pluginId={}, timeRange={}", pluginId, timeRange);
+            @RequestParam(defaultValue = "1h") String timeRange,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(defaultValue = "true") boolean includeMetadata) {
+        log.info("获取插件历史监控数据: pluginId={}, timeRange={}, maxPoints={}", pluginId, timeRange, maxPoints);
         
         try {
-            Result<List<PluginMonitorHistory>> result = monitorService.getPluginHistory(pluginId, timeRange);
+            Result<List<PluginMonitorHistory>> result = 
+                    monitorService.getPluginHistory(pluginId, timeRange, maxPoints, includeMetadata);
             
             if (result.isSuccess()) {
                 log.info("成功获取插件历史数据: pluginId={}, 记录数={}", 
@@ -185,4 +222,203 @@ public class PluginMonitorController {
             return Result.error("获取历史数据失败: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * 按时间桶聚合多个插件的历史监控数据
+     * 
+     * 每个时间桶返回内存 min / max / avg / P95 和各状态时间占比，
+     * 时间范围早于原始快照保留期时基于汇总数据计算
+     * 
+     * @param pluginIds 插件ID列表（逗号分隔）
+     * @param timeRange 时间范围（默认 "1h"）
+     * @param bucket 时间桶大小（默认 "5m"）
+     * @return 聚合结果
+     */
+    @GetMapping("/aggregate")
+    public Result<MonitorAggregation> aggregateHistory(
+            @RequestParam List<String> pluginIds,
+            @RequestParam(defaultValue = "1h") String timeRange,
+            @RequestParam(defaultValue = "5m") String bucket) {
+        log.info("聚合插件历史监控数据: pluginIds={}, timeRange={}, bucket={}", pluginIds, timeRange, bucket);
+        
+        try {
+            Result<MonitorAggregation> result = monitorService.aggregateHistory(pluginIds, timeRange, bucket);
+            
+            if (!result.isSuccess()) {
+                log.warn("聚合插件历史数据失败: pluginIds={}, error={}", pluginIds, result.getErrorMessage());
+            }
+            
+            return result;
+        } catch (Exception e) {
+            log.error("聚合插件历史监控数据时发生异常: pluginIds={}", pluginIds, e);
+            return Result.error("聚合历史数据失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 获取监控缓存统计
+     * 
+     * 返回监控数据缓存的运行情况，包括：
+     * - 进程内缓存与数据库共享层的启用状态
+     * - 当前条目数与容量上限
+     * - 命中、未命中、淘汰次数及命中率
+     * 
+     * @return 监控缓存统计
+     */
+    @GetMapping("/cache/stats")
+    public Result<MonitorCacheStats> getCacheStats() {
+        log.debug("获取监控缓存统计");
+        return monitorService.getCacheStats();
+    }
+    
+    /**
+     * 获取近期样本缓冲区统计
+     * 
+     * 返回内存中近期监控样本的保留窗口、已分配内存与预算，
+     * 以及由缓冲区直接返回和回退到数据库的查询次数
+     * 
+     * @return 近期样本缓冲区统计
+     */
+    @GetMapping("/recent/stats")
+    public Result<RecentSampleStats> getRecentSampleStats() {
+        log.debug("获取近期样本缓冲区统计");
+        return monitorService.getRecentSampleStats();
+    }
+    
+    /**
+     * 获取当前处于告警状态的插件告警
+     * 
+     * 告警由每个采集周期的告警评估产生，包括内存超阈值、内存增长过快、插件错误和重启循环
+     * 
+     * @return 当前告警列表
+     */
+    @GetMapping("/alerts")
+    public Result<List<MonitorAlert>> getActiveAlerts() {
+        log.debug("获取当前插件告警");
+        return Result.success(alertEngine.getActiveAlerts());
+    }
+    
+    /**
+     * 获取最近的告警触发和恢复事件
+     * 
+     * 同样的事件也会以 ALERT 消息推送给监控推送的订阅者
+     * 
+     * @return 最近的告警事件（按时间升序）
+     */
+    @GetMapping("/alerts/events")
+    public Result<List<MonitorAlert>> getAlertEvents() {
+        log.debug("获取最近的告警事件");
+        return Result.success(alertEngine.getRecentEvents());
+    }
+    
+    /**
+     * 获取插件卸载或升级后未被回收的类加载器
+     * 
+     * 旧类加载器经过配置次数的 GC 仍然存活即判定为泄漏，判定结果同时写入状态变更日志
+     * 
+     * @param includeWatching 是否包含尚在观察中（未判定为泄漏）的类加载器，默认 false
+     * @return 类加载器列表（按开始跟踪时间升序）
+     */
+    @GetMapping("/classloader-leaks")
+    public Result<List<ClassLoaderLeak>> getClassLoaderLeaks(
+            @RequestParam(defaultValue = "false") boolean includeWatching) {
+        log.debug("获取类加载器泄漏: includeWatching={}", includeWatching);
+        return Result.success(leakDetector.getLeaks(includeWatching));
+    }
+    
+    /**
+     * 获取快照自适应采样统计
+     * 
+     * 包括各采样层级的间隔和插件数、各插件所在层级、运维关注的插件以及写入预算使用情况
+     * 
+     * @return 采样统计
+     */
+    @GetMapping("/sampling")
+    public Result<SnapshotSamplingStats> getSamplingStats() {
+        log.debug("获取快照采样统计");
+        return Result.success(samplingPolicy.getStats());
+    }
+    
+    /**
+     * 关注插件，关注期间按快速层级写入快照
+     * 
+     * @param pluginId 插件ID
+     * @param minutes 关注时长（分钟），默认 15 分钟
+     * @return 关注到期时间戳（毫秒）
+     */
+    @PostMapping("/sampling/focus/{pluginId}")
+    public Result<Long> focusPlugin(@PathVariable String pluginId,
+                                    @RequestParam(required = false) Integer minutes) {
+        log.debug("关注插件快照采样: pluginId={}, minutes={}", pluginId, minutes);
+        int focusMinutes = minutes != null && minutes > 0 ? minutes : SnapshotSamplingPolicy.DEFAULT_FOCUS_MINUTES;
+        return Result.success(samplingPolicy.focus(pluginId, focusMinutes));
+    }
+    
+    /**
+     * 取消关注插件
+     * 
+     * @param pluginId 插件ID
+     * @return 操作结果
+     */
+    @DeleteMapping("/sampling/focus/{pluginId}")
+    public Result<Void> unfocusPlugin(@PathVariable String pluginId) {
+        log.debug("取消关注插件快照采样: pluginId={}", pluginId);
+        samplingPolicy.unfocus(pluginId);
+        return Result.success();
+    }
+    
+    /**
+     * 订阅监控状态推送
+     * 
+     * 订阅后通过 SSE 立即收到一次全量快照（SNAPSHOT），之后每 5 秒推送一次有变化的插件（DELTA）。
+     * 订阅以租约方式维护，客户端需要在租约到期前重新调用本接口续约（续约也会收到一次全量快照）
+     * 
+     * @param clientId SSE 客户端ID
+     * @return 操作结果
+     */
+    @PostMapping("/stream/subscribe")
+    public Result<Void> subscribe(@RequestHeader(value = "X-Client-Id", required = false) String clientId) {
+        log.debug("订阅监控状态推送: clientId={}", clientId);
+        
+        if (clientId == null || clientId.isEmpty()) {
+            return Result.error("缺少 X-Client-Id 请求头");
+        }
+        
+        try {
+            streamPublisher.subscribe(clientId);
+            return Result.success();
+        } catch (Exception e) {
+            log.error("订阅监控状态推送失败: clientId={}", clientId, e);
+            return Result.error("订阅监控状态推送失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 取消订阅监控状态推送
+     * 
+     * @param clientId SSE 客户端ID
+     * @return 操作结果
+     */
+    @PostMapping("/stream/unsubscribe")
+    public Result<Void> unsubscribe(@RequestHeader(value = "X-Client-Id", required = false) String clientId) {
+        log.debug("取消订阅监控状态推送: clientId={}", clientId);
+        streamPublisher.unsubscribe(clientId);
+        return Result.success();
+    }
+    
+    /**
+     * Prometheus 指标
+     * 
+     * 以 Prometheus 文本格式输出插件状态、运行时长、内存、内存告警，
+     * 以及收集耗时直方图和缓存命中率。数据全部来自内存，不读取数据库
+     * 
+     * 与其他接口不同，这里直接返回文本而不是 Result：Prometheus 抓取端只接受
+     * text/plain 的 exposition 格式，包装成 JSON 后无法解析
+     * 
+     * @return Prometheus 文本格式的指标
+     */
+    @GetMapping(value = "/metrics", produces = MonitorMetricsExporter.CONTENT_TYPE)
+    public String getMetrics() {
+        return metricsExporter.render();
+    }
 }
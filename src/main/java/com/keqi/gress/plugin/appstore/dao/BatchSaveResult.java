@@ -0,0 +1,55 @@
+package com.keqi.gress.plugin.appstore.dao;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量写入结果
+ * 记录批量写入的总数、成功数以及每个失败分块的信息
+ */
+@Data
+public class BatchSaveResult {
+    
+    /** 待写入总数 */
+    private int total;
+    
+    /** 成功写入数 */
+    private int savedCount;
+    
+    /** 分块数量 */
+    private int chunkCount;
+    
+    /** 失败的分块 */
+    private List<ChunkFailure> failures = new ArrayList<>();
+    
+    /** 逐条重试后仍写入失败的记录在输入列表中的下标 */
+    private List<Integer> failedIndexes = new ArrayList<>();
+    
+    /**
+     * 是否全部写入成功
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty() && savedCount == total;
+    }
+    
+    /**
+     * 分块写入失败信息
+     */
+    @Data
+    public static class ChunkFailure {
+        
+        /** 分块序号（从0开始） */
+        private int chunkIndex;
+        
+        /** 分块大小 */
+        private int chunkSize;
+        
+        /** 该分块中逐条重试后仍失败的记录数 */
+        private int failedCount;
+        
+        /** 失败原因 */
+        private String errorMessage;
+    }
+}
@@ -2,12 +2,11 @@ package com.keqi.gress.plugin.appstore.dao;
 
 import com.keqi.gress.common.plugin.annotion.Inject;
 import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.api.database.annotation.TableName;
 import com.keqi.gress.plugin.api.service.PluginLambdaDataSource;
 import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorCache;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-
 /**
  * 监控缓存数据访问层
  */
@@ -18,6 +17,17 @@ public class MonitorCacheDao {
     @Inject(source = Inject.BeanSource.SPRING)
     private PluginLambdaDataSource dataSource;
     
+    /** 缓存表名 */
+    private static final String CACHE_TABLE = 
+            PluginMonitorCache.class.getAnnotation(TableName.class).value();
+    
+    /** 按 (cache_type, plugin_id) 唯一键插入或覆盖缓存 */
+    private static final String UPSERT_SQL = "INSERT INTO " + CACHE_TABLE
+            + " (plugin_id, cache_data, cache_type, create_time, expire_time)"
+            + " VALUES (#{pluginId}, #{cacheData}, #{cacheType}, #{createTime}, #{expireTime})"
+            + " ON DUPLICATE KEY UPDATE cache_data = VALUES(cache_data),"
+            + " create_time = VALUES(create_time), expire_time = VALUES(expire_time)";
+    
     /**
      * 根据缓存类型查询缓存
      * 
@@ -46,30 +56,20 @@ public class MonitorCacheDao {
     /**
      * 插入或更新缓存
      * 
+     * 以 (cache_type, plugin_id) 唯一键执行一条 INSERT ... ON DUPLICATE KEY UPDATE，
+     * 并发写入同一缓存时不会产生重复行；所有插件缓存的 plugin_id 存为空字符串
+     * 
      * @param cache 缓存对象
      * @return 影响行数
      */
     public int saveOrUpdate(PluginMonitorCache cache) {
-        PluginMonitorCache existing;
-        
-        if ("all".equals(cache.getCacheType())) {
-            existing = getCacheByType("all");
-        } else {
-            existing = getCacheByPluginId(cache.getPluginId());
-        }
-        
-        if (existing != null) {
-            // 更新现有记录
-            return dataSource.lambdaUpdate(PluginMonitorCache.class)
-                    .set(PluginMonitorCache::getCacheData, cache.getCacheData())
-                    .set(PluginMonitorCache::getCreateTime, cache.getCreateTime())
-                    .set(PluginMonitorCache::getExpireTime, cache.getExpireTime())
-                    .eq(PluginMonitorCache::getId, existing.getId())
-                    .update();
-        } else {
-            // 插入新记录
-            return dataSource.insert(cache);
-        }
+        return dataSource.dynamicSql(UPSERT_SQL)
+                .param("pluginId", cache.getPluginId() != null ? cache.getPluginId() : "")
+                .param("cacheData", cache.getCacheData())
+                .param("cacheType", cache.getCacheType())
+                .param("createTime", cache.getCreateTime())
+                .param("expireTime", cache.getExpireTime())
+                .execute();
     }
     
     /**
@@ -2,12 +2,17 @@ package com.keqi.gress.plugin.appstore.dao;
 
 import com.keqi.gress.common.plugin.annotion.Inject;
 import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.api.database.annotation.TableName;
 import com.keqi.gress.plugin.api.service.PluginLambdaDataSource;
 import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
 import com.keqi.gress.plugin.appstore.domain.entity.PluginStateChangeLog;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 监控历史数据访问层
@@ -20,6 +25,17 @@ public class MonitorHistoryDao {
     @Inject(source = Inject.BeanSource.SPRING)
     private PluginLambdaDataSource dataSource;
     
+    /** 默认批量写入分块大小 */
+    private static final int DEFAULT_BATCH_CHUNK_SIZE = 200;
+    
+    /** 监控快照表名 */
+    private static final String SNAPSHOT_TABLE = 
+            PluginMonitorSnapshot.class.getAnnotation(TableName.class).value();
+    
+    /** 状态变更日志表名 */
+    private static final String STATE_LOG_TABLE = 
+            PluginStateChangeLog.class.getAnnotation(TableName.class).value();
+    
     /**
      * 保存监控快照
      * 
@@ -35,24 +51,100 @@ public class MonitorHistoryDao {
         }
     }
     
+    /**
+     * 批量保存监控快照（使用默认分块大小）
+     * 
+     * @param snapshots 监控快照列表
+     * @return 批量写入结果
+     */
+    public BatchSaveResult batchSaveSnapshots(List<PluginMonitorSnapshot> snapshots) {
+        return batchSaveSnapshots(snapshots, DEFAULT_BATCH_CHUNK_SIZE);
+    }
+    
     /**
      * 批量保存监控快照
      * 
+     * 按分块拼接多行 INSERT，每个分块一条语句、一次提交；
+     * 分块写入失败时对该分块逐条重试，并在结果中记录失败的分块
+     * 
      * @param snapshots 监控快照列表
-     * @return 成功保存的数量
+     * @param chunkSize 每个分块的行数
+     * @return 批量写入结果
      */
-    public int batchSaveSnapshots(List<PluginMonitorSnapshot> snapshots) {
+    public BatchSaveResult batchSaveSnapshots(List<PluginMonitorSnapshot> snapshots, int chunkSize) {
+        BatchSaveResult result = new BatchSaveResult();
         if (snapshots == null || snapshots.isEmpty()) {
-            return 0;
+            return result;
         }
         
-        int successCount = 0;
-        for (PluginMonitorSnapshot snapshot : snapshots) {
-            if (saveSnapshot(snapshot) > 0) {
-                successCount++;
+        int size = chunkSize > 0 ? chunkSize : DEFAULT_BATCH_CHUNK_SIZE;
+        result.setTotal(snapshots.size());
+        
+        for (int from = 0, chunkIndex = 0; from < snapshots.size(); from += size, chunkIndex++) {
+            List<PluginMonitorSnapshot> chunk = snapshots.subList(from, Math.min(from + size, snapshots.size()));
+            result.setChunkCount(chunkIndex + 1);
+            
+            try {
+                int rows = insertSnapshotChunk(chunk);
+                result.setSavedCount(result.getSavedCount() + rows);
+            } catch (Exception e) {
+                log.warn("批量保存监控快照分块失败，逐条重试: chunkIndex={}, chunkSize={}", 
+                        chunkIndex, chunk.size(), e);
+                
+                int saved = 0;
+                for (PluginMonitorSnapshot snapshot : chunk) {
+                    saved += saveSnapshot(snapshot);
+                }
+                result.setSavedCount(result.getSavedCount() + saved);
+                
+                BatchSaveResult.ChunkFailure failure = new BatchSaveResult.ChunkFailure();
+                failure.setChunkIndex(chunkIndex);
+                failure.setChunkSize(chunk.size());
+                failure.setFailedCount(chunk.size() - saved);
+                failure.setErrorMessage(e.getMessage());
+                result.getFailures().add(failure);
             }
         }
-        return successCount;
+        
+        return result;
+    }
+    
+    /**
+     * 以一条多行 INSERT 语句写入一个分块
+     * 
+     * @param chunk 快照分块
+     * @return 影响行数
+     */
+    private int insertSnapshotChunk(List<PluginMonitorSnapshot> chunk) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(SNAPSHOT_TABLE)
+                .append(" (plugin_id, state, memory_usage, cpu_usage, timestamp, metadata_id, metadata) VALUES ");
+        
+        for (int i = 0; i < chunk.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(#{pluginId").append(i)
+                    .append("}, #{state").append(i)
+                    .append("}, #{memoryUsage").append(i)
+                    .append("}, #{cpuUsage").append(i)
+                    .append("}, #{timestamp").append(i)
+                    .append("}, #{metadataId").append(i)
+                    .append("}, #{metadata").append(i).append("})");
+        }
+        
+        var statement = dataSource.dynamicSql(sql.toString());
+        for (int i = 0; i < chunk.size(); i++) {
+            PluginMonitorSnapshot snapshot = chunk.get(i);
+            statement.param("pluginId" + i, snapshot.getPluginId())
+                    .param("state" + i, snapshot.getState())
+                    .param("memoryUsage" + i, snapshot.getMemoryUsage())
+                    .param("cpuUsage" + i, snapshot.getCpuUsage())
+                    .param("timestamp" + i, snapshot.getTimestamp())
+                    .param("metadataId" + i, snapshot.getMetadataId())
+                    .param("metadata" + i, snapshot.getMetadata());
+        }
+        return statement.execute();
     }
     
     /**
@@ -87,6 +179,95 @@ public class MonitorHistoryDao {
                 .list();
     }
     
+    /**
+     * 按时间顺序分页遍历多个插件在时间范围内的快照
+     * 
+     * 每次只在内存中保留一页数据，按 (timestamp, id) 做键集分页：
+     * 每页都是时间戳索引上的一段范围扫描，不会从 id 起点开始扫描整张表；
+     * 同一时间戳的多行以 id 区分，跨页时不会重复或遗漏
+     * 
+     * @param pluginIds 插件ID集合
+     * @param startTime 起始时间戳（毫秒，包含）
+     * @param endTime 结束时间戳（毫秒，不包含）
+     * @param pageSize 每页行数
+     * @param includeMetadata 是否读取元数据列
+     * @param consumer 逐行回调
+     * @return 遍历的总行数
+     */
+    public long streamSnapshots(Collection<String> pluginIds, long startTime, long endTime, 
+                                int pageSize, boolean includeMetadata, Consumer<PluginMonitorSnapshot> consumer) {
+        if (pluginIds == null || pluginIds.isEmpty()) {
+            return 0;
+        }
+        
+        StringBuilder sql = new StringBuilder("SELECT id, plugin_id AS pluginId, state, memory_usage AS memoryUsage, ")
+                .append("cpu_usage AS cpuUsage, ")
+                .append(includeMetadata ? "timestamp, metadata_id AS metadataId, metadata FROM " : "timestamp FROM ")
+                .append(SNAPSHOT_TABLE)
+                .append(" WHERE plugin_id IN (");
+        for (int i = 0; i < pluginIds.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("#{pluginId").append(i).append("}");
+        }
+        sql.append(") AND timestamp >= #{startTime} AND timestamp < #{endTime}")
+                .append(" AND (timestamp > #{afterTimestamp} OR (timestamp = #{afterTimestamp} AND id > #{afterId}))")
+                .append(" ORDER BY timestamp, id LIMIT ").append(pageSize);
+        String pageSql = sql.toString();
+        
+        long total = 0;
+        // 首页从 (startTime, 0) 之后开始，id 从 1 开始，不会遗漏起始时间戳上的行
+        long afterTimestamp = startTime;
+        long afterId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = queryPage(pageSql, pluginIds, startTime, endTime, 
+                    afterTimestamp, afterId);
+            if (rows == null || rows.isEmpty()) {
+                break;
+            }
+            for (Map<String, Object> row : rows) {
+                afterId = ((Number) row.get("id")).longValue();
+                afterTimestamp = ((Number) row.get("timestamp")).longValue();
+                Object memoryUsage = row.get("memoryUsage");
+                Object cpuUsage = row.get("cpuUsage");
+                Object metadataId = includeMetadata ? row.get("metadataId") : null;
+                consumer.accept(PluginMonitorSnapshot.builder()
+                        .id(afterId)
+                        .pluginId((String) row.get("pluginId"))
+                        .state((String) row.get("state"))
+                        .memoryUsage(memoryUsage != null ? ((Number) memoryUsage).longValue() : null)
+                        .cpuUsage(cpuUsage != null ? ((Number) cpuUsage).doubleValue() : null)
+                        .timestamp(afterTimestamp)
+                        .metadataId(metadataId != null ? ((Number) metadataId).longValue() : null)
+                        .metadata(includeMetadata ? (String) row.get("metadata") : null)
+                        .build());
+            }
+            total += rows.size();
+            if (rows.size() < pageSize) {
+                break;
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * 查询 {@link #streamSnapshots} 的一页数据
+     */
+    List<Map<String, Object>> queryPage(String pageSql, Collection<String> pluginIds, long startTime, long endTime,
+                                        long afterTimestamp, long afterId) {
+        var statement = dataSource.dynamicSql(pageSql)
+                .param("startTime", startTime)
+                .param("endTime", endTime)
+                .param("afterTimestamp", afterTimestamp)
+                .param("afterId", afterId);
+        int index = 0;
+        for (String pluginId : pluginIds) {
+            statement.param("pluginId" + index++, pluginId);
+        }
+        return statement.query();
+    }
+    
     /**
      * 删除过期的监控数据
      * 
@@ -119,6 +300,143 @@ public class MonitorHistoryDao {
         }
     }
     
+    /**
+     * 批量保存状态变更日志
+     * 
+     * 与快照相同，按分块拼接多行 INSERT；分块写入失败时对该分块逐条重试
+     * 
+     * @param changeLogs 状态变更日志列表
+     * @return 批量写入结果
+     */
+    public BatchSaveResult batchSaveStateChangeLogs(List<PluginStateChangeLog> changeLogs) {
+        BatchSaveResult result = new BatchSaveResult();
+        if (changeLogs == null || changeLogs.isEmpty()) {
+            return result;
+        }
+        
+        result.setTotal(changeLogs.size());
+        for (int from = 0, chunkIndex = 0; from < changeLogs.size(); from += DEFAULT_BATCH_CHUNK_SIZE, chunkIndex++) {
+            List<PluginStateChangeLog> chunk = changeLogs.subList(from, 
+                    Math.min(from + DEFAULT_BATCH_CHUNK_SIZE, changeLogs.size()));
+            result.setChunkCount(chunkIndex + 1);
+            
+            try {
+                int rows = insertStateChangeLogChunk(chunk);
+                result.setSavedCount(result.getSavedCount() + rows);
+            } catch (Exception e) {
+                log.warn("批量保存状态变更日志分块失败，逐条重试: chunkIndex={}, chunkSize={}", 
+                        chunkIndex, chunk.size(), e);
+                
+                int saved = 0;
+                for (int i = 0; i < chunk.size(); i++) {
+                    int rows = saveStateChangeLog(chunk.get(i));
+                    if (rows > 0) {
+                        saved += rows;
+                    } else {
+                        result.getFailedIndexes().add(from + i);
+                    }
+                }
+                result.setSavedCount(result.getSavedCount() + saved);
+                
+                BatchSaveResult.ChunkFailure failure = new BatchSaveResult.ChunkFailure();
+                failure.setChunkIndex(chunkIndex);
+                failure.setChunkSize(chunk.size());
+                failure.setFailedCount(chunk.size() - saved);
+                failure.setErrorMessage(e.getMessage());
+                result.getFailures().add(failure);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 以一条多行 INSERT 语句写入一个状态变更日志分块
+     * 
+     * @param chunk 状态变更日志分块
+     * @return 影响行数
+     */
+    private int insertStateChangeLogChunk(List<PluginStateChangeLog> chunk) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(STATE_LOG_TABLE)
+                .append(" (plugin_id, old_state, new_state, change_time, operator, reason) VALUES ");
+        
+        for (int i = 0; i < chunk.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(#{pluginId").append(i)
+                    .append("}, #{oldState").append(i)
+                    .append("}, #{newState").append(i)
+                    .append("}, #{changeTime").append(i)
+                    .append("}, #{operator").append(i)
+                    .append("}, #{reason").append(i).append("})");
+        }
+        
+        var statement = dataSource.dynamicSql(sql.toString());
+        for (int i = 0; i < chunk.size(); i++) {
+            PluginStateChangeLog changeLog = chunk.get(i);
+            statement.param("pluginId" + i, changeLog.getPluginId())
+                    .param("oldState" + i, changeLog.getOldState())
+                    .param("newState" + i, changeLog.getNewState())
+                    .param("changeTime" + i, changeLog.getChangeTime())
+                    .param("operator" + i, changeLog.getOperator())
+                    .param("reason" + i, changeLog.getReason());
+        }
+        return statement.execute();
+    }
+    
+    /**
+     * 查询每个插件最近一次变更后的状态
+     * 
+     * 一条语句取每个插件变更时间最晚的一行（同一时间取 id 最大的一行），用于进程重启后恢复状态缓存。
+     * 按变更时间而不是 id 取最新，写入失败后重试的旧记录 id 更大，不会覆盖更晚的状态。
+     * 事件记录（如类加载器泄漏）不代表插件运行状态，在子查询和结果中都被排除
+     * 
+     * @param eventStates 需要排除的事件状态，可为空
+     * @return 插件ID -> 最新状态
+     */
+    public Map<String, String> queryLatestStates(Collection<String> eventStates) {
+        StringBuilder excluded = new StringBuilder();
+        if (eventStates != null && !eventStates.isEmpty()) {
+            excluded.append("new_state NOT IN (");
+            for (int i = 0; i < eventStates.size(); i++) {
+                if (i > 0) {
+                    excluded.append(", ");
+                }
+                excluded.append("#{eventState").append(i).append("}");
+            }
+            excluded.append(")");
+        }
+        String sql = "SELECT l.plugin_id AS pluginId, l.new_state AS newState FROM " + STATE_LOG_TABLE + " l"
+                + " JOIN (SELECT plugin_id, MAX(change_time) AS change_time FROM " + STATE_LOG_TABLE
+                + (excluded.length() > 0 ? " WHERE " + excluded : "")
+                + " GROUP BY plugin_id) m ON l.plugin_id = m.plugin_id AND l.change_time = m.change_time"
+                + (excluded.length() > 0 ? " WHERE l." + excluded : "")
+                + " ORDER BY l.id";
+        
+        var statement = dataSource.dynamicSql(sql);
+        if (eventStates != null) {
+            int index = 0;
+            for (String eventState : eventStates) {
+                statement.param("eventState" + index++, eventState);
+            }
+        }
+        
+        Map<String, String> latestStates = new HashMap<>();
+        List<Map<String, Object>> rows = statement.query();
+        if (rows != null) {
+            for (Map<String, Object> row : rows) {
+                Object pluginId = row.get("pluginId");
+                Object newState = row.get("newState");
+                if (pluginId != null && newState != null) {
+                    latestStates.put(pluginId.toString(), newState.toString());
+                }
+            }
+        }
+        return latestStates;
+    }
+    
     /**
      * 查询插件的状态变更历史
      * 
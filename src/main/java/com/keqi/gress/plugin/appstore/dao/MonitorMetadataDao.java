@@ -0,0 +1,102 @@
+package com.keqi.gress.plugin.appstore.dao;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.api.database.annotation.TableName;
+import com.keqi.gress.plugin.api.service.PluginLambdaDataSource;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorMetadata;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监控快照元数据访问层
+ * 负责快照元数据版本的持久化操作
+ */
+@Slf4j
+@Service
+public class MonitorMetadataDao {
+    
+    @Inject(source = Inject.BeanSource.SPRING)
+    private PluginLambdaDataSource dataSource;
+    
+    /** 元数据表名 */
+    private static final String METADATA_TABLE = 
+            PluginMonitorMetadata.class.getAnnotation(TableName.class).value();
+    
+    /**
+     * 保存元数据，同一插件相同内容已存在时忽略
+     * 
+     * @param metadata 元数据
+     * @return 影响行数（已存在时为 0）
+     */
+    public int insertIfAbsent(PluginMonitorMetadata metadata) {
+        return dataSource.dynamicSql("INSERT IGNORE INTO " + METADATA_TABLE
+                        + " (plugin_id, content_hash, content, create_time)"
+                        + " VALUES (#{pluginId}, #{contentHash}, #{content}, #{createTime})")
+                .param("pluginId", metadata.getPluginId())
+                .param("contentHash", metadata.getContentHash())
+                .param("content", metadata.getContent())
+                .param("createTime", metadata.getCreateTime())
+                .execute();
+    }
+    
+    /**
+     * 根据插件ID和内容摘要查询元数据
+     * 
+     * @param pluginId 插件ID
+     * @param contentHash 内容的 SHA-256
+     * @return 元数据，不存在时返回 null
+     */
+    public PluginMonitorMetadata findByHash(String pluginId, String contentHash) {
+        return dataSource.lambdaQuery(PluginMonitorMetadata.class)
+                .eq(PluginMonitorMetadata::getPluginId, pluginId)
+                .eq(PluginMonitorMetadata::getContentHash, contentHash)
+                .one();
+    }
+    
+    /**
+     * 根据ID批量查询元数据内容
+     * 
+     * @param ids 元数据ID集合
+     * @return 元数据列表（只包含 id 和 content）
+     */
+    public List<PluginMonitorMetadata> queryByIds(Collection<Long> ids) {
+        List<PluginMonitorMetadata> result = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        
+        StringBuilder sql = new StringBuilder("SELECT id, content FROM ")
+                .append(METADATA_TABLE)
+                .append(" WHERE id IN (");
+        int index = 0;
+        for (Long ignored : ids) {
+            if (index > 0) {
+                sql.append(", ");
+            }
+            sql.append("#{id").append(index++).append("}");
+        }
+        sql.append(")");
+        
+        var statement = dataSource.dynamicSql(sql.toString());
+        index = 0;
+        for (Long id : ids) {
+            statement.param("id" + index++, id);
+        }
+        
+        List<Map<String, Object>> rows = statement.query();
+        if (rows != null) {
+            for (Map<String, Object> row : rows) {
+                result.add(PluginMonitorMetadata.builder()
+                        .id(((Number) row.get("id")).longValue())
+                        .content((String) row.get("content"))
+                        .build());
+            }
+        }
+        return result;
+    }
+}
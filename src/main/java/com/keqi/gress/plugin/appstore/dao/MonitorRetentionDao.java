@@ -0,0 +1,160 @@
+package com.keqi.gress.plugin.appstore.dao;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.api.service.PluginLambdaDataSource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监控数据保留清理访问层
+ *
+ * 提供按行数限制的分块删除，以及按天分区表的分区查询、创建和删除。
+ * 表名、条件均由调用方以常量给出，不接受外部输入。
+ */
+@Slf4j
+@Service
+public class MonitorRetentionDao {
+
+    @Inject(source = Inject.BeanSource.SPRING)
+    private PluginLambdaDataSource dataSource;
+
+    /** 兜底分区名（VALUES LESS THAN MAXVALUE） */
+    public static final String FUTURE_PARTITION = "p_future";
+
+    /**
+     * 删除一个分块的过期数据
+     *
+     * @param table 表名
+     * @param timeColumn 时间列
+     * @param expireTime 过期时间戳（毫秒），时间列早于此值的行将被删除
+     * @param extraCondition 额外条件（可为 null），如 "tier = #{tier}"
+     * @param extraParams 额外条件的参数（可为 null）
+     * @param limit 本次最多删除的行数
+     * @return 删除的行数
+     */
+    public int deleteExpiredChunk(String table, String timeColumn, long expireTime,
+                                  String extraCondition, Map<String, Object> extraParams, int limit) {
+        StringBuilder sql = new StringBuilder("DELETE FROM ")
+                .append(table)
+                .append(" WHERE ")
+                .append(timeColumn)
+                .append(" < #{expireTime}");
+        if (extraCondition != null) {
+            sql.append(" AND ").append(extraCondition);
+        }
+        sql.append(" LIMIT ").append(limit);
+
+        var statement = dataSource.dynamicSql(sql.toString()).param("expireTime", expireTime);
+        if (extraParams != null) {
+            for (Map.Entry<String, Object> entry : extraParams.entrySet()) {
+                statement.param(entry.getKey(), entry.getValue());
+            }
+        }
+        return statement.execute();
+    }
+
+    /**
+     * 查询表的分区
+     *
+     * @param table 表名
+     * @return 分区列表（按分区顺序），未分区的表返回空列表
+     */
+    public List<PartitionInfo> listPartitions(String table) {
+        String sql = """
+            SELECT PARTITION_NAME AS partitionName, PARTITION_DESCRIPTION AS description
+            FROM information_schema.PARTITIONS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{tableName} AND PARTITION_NAME IS NOT NULL
+            ORDER BY PARTITION_ORDINAL_POSITION
+            """;
+        List<Map<String, Object>> rows = dataSource.dynamicSql(sql)
+                .param("tableName", table)
+                .query();
+
+        List<PartitionInfo> partitions = new ArrayList<>();
+        if (rows == null) {
+            return partitions;
+        }
+        for (Map<String, Object> row : rows) {
+            Object name = row.get("partitionName");
+            Object description = row.get("description");
+            if (name == null) {
+                continue;
+            }
+            Long lessThan = null;
+            if (description != null && !"MAXVALUE".equalsIgnoreCase(description.toString())) {
+                try {
+                    lessThan = Long.parseLong(description.toString().trim());
+                } catch (NumberFormatException e) {
+                    log.warn("无法解析分区上界: table={}, partition={}, description={}", table, name, description);
+                    continue;
+                }
+            }
+            partitions.add(new PartitionInfo(name.toString(), lessThan));
+        }
+        return partitions;
+    }
+
+    /**
+     * 删除分区（DDL，瞬间完成，不产生逐行的 undo 日志）
+     *
+     * @param table 表名
+     * @param partitionNames 分区名列表
+     */
+    public void dropPartitions(String table, List<String> partitionNames) {
+        if (partitionNames == null || partitionNames.isEmpty()) {
+            return;
+        }
+        dataSource.dynamicSql("ALTER TABLE " + table + " DROP PARTITION " + String.join(", ", partitionNames))
+                .execute();
+    }
+
+    /**
+     * 在兜底分区之前创建新的按天分区
+     *
+     * @param table 表名
+     * @param partitions 新分区（分区名 -> 上界），按上界升序
+     * @param hasFuturePartition 表是否已有兜底分区
+     */
+    public void addPartitions(String table, List<PartitionInfo> partitions, boolean hasFuturePartition) {
+        if (partitions == null || partitions.isEmpty()) {
+            return;
+        }
+        StringBuilder definitions = new StringBuilder();
+        for (PartitionInfo partition : partitions) {
+            if (definitions.length() > 0) {
+                definitions.append(", ");
+            }
+            definitions.append("PARTITION ").append(partition.getName())
+                    .append(" VALUES LESS THAN (").append(partition.getLessThan()).append(")");
+        }
+
+        String sql;
+        if (hasFuturePartition) {
+            sql = "ALTER TABLE " + table + " REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                    + definitions + ", PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)";
+        } else {
+            sql = "ALTER TABLE " + table + " ADD PARTITION (" + definitions + ")";
+        }
+        dataSource.dynamicSql(sql).execute();
+    }
+
+    /**
+     * 分区信息
+     */
+    @Data
+    @AllArgsConstructor
+    public static class PartitionInfo {
+
+        /** 分区名 */
+        private String name;
+
+        /** 分区上界（不包含），兜底分区为 null */
+        private Long lessThan;
+    }
+}
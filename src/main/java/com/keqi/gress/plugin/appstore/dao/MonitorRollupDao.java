@@ -0,0 +1,127 @@
+package com.keqi.gress.plugin.appstore.dao;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.api.database.annotation.TableName;
+import com.keqi.gress.plugin.api.service.PluginLambdaDataSource;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorRollup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 监控汇总数据访问层
+ * 负责 5m / 1h / 1d 汇总数据的持久化操作
+ */
+@Slf4j
+@Service
+public class MonitorRollupDao {
+    
+    @Inject(source = Inject.BeanSource.SPRING)
+    private PluginLambdaDataSource dataSource;
+    
+    /** 每条 INSERT 语句的最大行数 */
+    private static final int CHUNK_SIZE = 200;
+    
+    /** 汇总表名 */
+    private static final String ROLLUP_TABLE = 
+            PluginMonitorRollup.class.getAnnotation(TableName.class).value();
+    
+    /**
+     * 批量写入汇总数据
+     * 
+     * 同一插件、层级、时间桶已存在时覆盖（进程重启后重新汇总同一时间桶的情况）
+     * 
+     * @param rollups 汇总数据列表
+     * @return 成功写入的数量
+     */
+    public int batchUpsert(List<PluginMonitorRollup> rollups) {
+        if (rollups == null || rollups.isEmpty()) {
+            return 0;
+        }
+        
+        int savedCount = 0;
+        for (int from = 0; from < rollups.size(); from += CHUNK_SIZE) {
+            List<PluginMonitorRollup> chunk = rollups.subList(from, Math.min(from + CHUNK_SIZE, rollups.size()));
+            try {
+                upsertChunk(chunk);
+                savedCount += chunk.size();
+            } catch (Exception e) {
+                log.error("批量写入监控汇总数据失败: chunkSize={}", chunk.size(), e);
+            }
+        }
+        return savedCount;
+    }
+    
+    /**
+     * 查询插件某一层级在时间范围内的汇总数据
+     * 
+     * @param pluginId 插件ID
+     * @param tier 汇总层级
+     * @param startTime 起始时间戳（毫秒，包含）
+     * @param endTime 结束时间戳（毫秒，不包含）
+     * @return 汇总数据列表（按时间升序）
+     */
+    public List<PluginMonitorRollup> queryRollups(String pluginId, String tier, long startTime, long endTime) {
+        return dataSource.lambdaQuery(PluginMonitorRollup.class)
+                .eq(PluginMonitorRollup::getPluginId, pluginId)
+                .eq(PluginMonitorRollup::getTier, tier)
+                .ge(PluginMonitorRollup::getBucketStart, startTime)
+                .lt(PluginMonitorRollup::getBucketStart, endTime)
+                .orderByAsc(PluginMonitorRollup::getBucketStart)
+                .list();
+    }
+    
+    /**
+     * 以一条多行 INSERT ... ON DUPLICATE KEY UPDATE 语句写入一个分块
+     */
+    private int upsertChunk(List<PluginMonitorRollup> chunk) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(ROLLUP_TABLE)
+                .append(" (plugin_id, tier, bucket_start, sample_count, memory_min, memory_max, memory_sum, ")
+                .append("memory_count, cpu_max, cpu_sum, cpu_count, last_state, state_durations) VALUES ");
+        
+        for (int i = 0; i < chunk.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(#{pluginId").append(i)
+                    .append("}, #{tier").append(i)
+                    .append("}, #{bucketStart").append(i)
+                    .append("}, #{sampleCount").append(i)
+                    .append("}, #{memoryMin").append(i)
+                    .append("}, #{memoryMax").append(i)
+                    .append("}, #{memorySum").append(i)
+                    .append("}, #{memoryCount").append(i)
+                    .append("}, #{cpuMax").append(i)
+                    .append("}, #{cpuSum").append(i)
+                    .append("}, #{cpuCount").append(i)
+                    .append("}, #{lastState").append(i)
+                    .append("}, #{stateDurations").append(i).append("})");
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE sample_count = VALUES(sample_count), ")
+                .append("memory_min = VALUES(memory_min), memory_max = VALUES(memory_max), ")
+                .append("memory_sum = VALUES(memory_sum), memory_count = VALUES(memory_count), ")
+                .append("cpu_max = VALUES(cpu_max), cpu_sum = VALUES(cpu_sum), cpu_count = VALUES(cpu_count), ")
+                .append("last_state = VALUES(last_state), state_durations = VALUES(state_durations)");
+        
+        var statement = dataSource.dynamicSql(sql.toString());
+        for (int i = 0; i < chunk.size(); i++) {
+            PluginMonitorRollup rollup = chunk.get(i);
+            statement.param("pluginId" + i, rollup.getPluginId())
+                    .param("tier" + i, rollup.getTier())
+                    .param("bucketStart" + i, rollup.getBucketStart())
+                    .param("sampleCount" + i, rollup.getSampleCount())
+                    .param("memoryMin" + i, rollup.getMemoryMin())
+                    .param("memoryMax" + i, rollup.getMemoryMax())
+                    .param("memorySum" + i, rollup.getMemorySum())
+                    .param("memoryCount" + i, rollup.getMemoryCount())
+                    .param("cpuMax" + i, rollup.getCpuMax())
+                    .param("cpuSum" + i, rollup.getCpuSum())
+                    .param("cpuCount" + i, rollup.getCpuCount())
+                    .param("lastState" + i, rollup.getLastState())
+                    .param("stateDurations" + i, rollup.getStateDurations());
+        }
+        return statement.execute();
+    }
+}
@@ -0,0 +1,42 @@
+package com.keqi.gress.plugin.appstore.domain.entity;
+
+import com.keqi.gress.plugin.api.database.annotation.IdType;
+import com.keqi.gress.plugin.api.database.annotation.TableField;
+import com.keqi.gress.plugin.api.database.annotation.TableId;
+import com.keqi.gress.plugin.api.database.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 插件监控快照元数据实体
+ * 同一插件相同内容的元数据只保存一行，快照通过 metadataId 引用
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("appstore_plugin_monitor_metadata")
+public class PluginMonitorMetadata {
+    
+    /** 主键ID */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    /** 插件ID */
+    @TableField("plugin_id")
+    private String pluginId;
+    
+    /** 元数据内容的 SHA-256 */
+    @TableField("content_hash")
+    private String contentHash;
+    
+    /** 元数据（JSON格式，不含运行时长） */
+    @TableField("content")
+    private String content;
+    
+    /** 首次出现时间戳（毫秒） */
+    @TableField("create_time")
+    private Long createTime;
+}
@@ -0,0 +1,78 @@
+package com.keqi.gress.plugin.appstore.domain.entity;
+
+import com.keqi.gress.plugin.api.database.annotation.IdType;
+import com.keqi.gress.plugin.api.database.annotation.TableField;
+import com.keqi.gress.plugin.api.database.annotation.TableId;
+import com.keqi.gress.plugin.api.database.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 插件监控汇总实体
+ * 按 5m / 1h / 1d 时间桶汇总的监控数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("appstore_plugin_monitor_rollup")
+public class PluginMonitorRollup {
+    
+    /** 主键ID */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    /** 插件ID */
+    @TableField("plugin_id")
+    private String pluginId;
+    
+    /** 汇总层级：5m, 1h, 1d */
+    @TableField("tier")
+    private String tier;
+    
+    /** 时间桶起始时间戳（毫秒） */
+    @TableField("bucket_start")
+    private Long bucketStart;
+    
+    /** 原始样本数 */
+    @TableField("sample_count")
+    private Integer sampleCount;
+    
+    /** 最小内存使用量（字节） */
+    @TableField("memory_min")
+    private Long memoryMin;
+    
+    /** 最大内存使用量（字节） */
+    @TableField("memory_max")
+    private Long memoryMax;
+    
+    /** 内存使用量累计值（字节） */
+    @TableField("memory_sum")
+    private Long memorySum;
+    
+    /** 有内存数据的样本数 */
+    @TableField("memory_count")
+    private Integer memoryCount;
+    
+    /** 最大 CPU 占用率（百分比） */
+    @TableField("cpu_max")
+    private Double cpuMax;
+    
+    /** CPU 占用率累计值（百分比，用于计算平均值） */
+    @TableField("cpu_sum")
+    private Double cpuSum;
+    
+    /** 有 CPU 数据的样本数 */
+    @TableField("cpu_count")
+    private Integer cpuCount;
+    
+    /** 时间桶内最后一次观测到的状态 */
+    @TableField("last_state")
+    private String lastState;
+    
+    /** 各状态持续时长（JSON格式，状态 -> 毫秒） */
+    @TableField("state_durations")
+    private String stateDurations;
+}
@@ -40,7 +40,15 @@ public class PluginMonitorSnapshot {
     @TableField("timestamp")
     private Long timestamp;
     
-    /** 额外元数据（JSON格式） */
+    /** CPU 占用率（占全部处理器的百分比） */
+    @TableField("cpu_usage")
+    private Double cpuUsage;
+    
+    /** 元数据ID（引用 PluginMonitorMetadata，元数据变化时才产生新ID） */
+    @TableField("metadata_id")
+    private Long metadataId;
+    
+    /** 额外元数据（JSON格式，仅早期快照写入；新快照通过 metadataId 引用） */
     @TableField("metadata")
     private String metadata;
 }
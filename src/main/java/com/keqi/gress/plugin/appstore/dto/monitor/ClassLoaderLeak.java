@@ -0,0 +1,47 @@
+package com.keqi.gress.plugin.appstore.dto.monitor;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 类加载器泄漏 DTO
+ * 表示插件卸载或升级后仍被跟踪的旧类加载器
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClassLoaderLeak {
+    
+    /** 插件ID */
+    private String pluginId;
+    
+    /** 类加载器所属的插件版本 */
+    private String pluginVersion;
+    
+    /** 类加载器下线原因：UNINSTALL, UPGRADE */
+    private String reason;
+    
+    /** 类加载器名称 */
+    private String loaderName;
+    
+    /** 类加载器类名 */
+    private String loaderClass;
+    
+    /** 存活判断依据：REFERENCE（弱引用）, JFR（类加载器统计事件） */
+    private String detection;
+    
+    /** 状态：WATCHING（观察中）, LEAKED（判定为泄漏） */
+    private String status;
+    
+    /** 下线后经历的 GC 周期数 */
+    private Long gcCycles;
+    
+    /** 开始跟踪时间戳（毫秒） */
+    private Long watchedAt;
+    
+    /** 判定为泄漏的时间戳（毫秒） */
+    private Long detectedAt;
+}
@@ -0,0 +1,82 @@
+package com.keqi.gress.plugin.appstore.dto.monitor;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监控历史聚合结果 DTO
+ * 按时间桶返回多个插件的内存统计和各状态时间占比
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonitorAggregation {
+
+    /** 起始时间戳（毫秒，已对齐到时间桶） */
+    private Long startTime;
+
+    /** 结束时间戳（毫秒） */
+    private Long endTime;
+
+    /** 时间桶大小（毫秒） */
+    private Long bucketMillis;
+
+    /** 数据来源：raw（原始快照）, 5m, 1h, 1d（汇总数据） */
+    private String source;
+
+    /** 各插件的聚合序列 */
+    private List<PluginSeries> series;
+
+    /**
+     * 单个插件的聚合序列
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PluginSeries {
+
+        /** 插件ID */
+        private String pluginId;
+
+        /** 时间桶列表（按时间升序，只包含有数据的时间桶） */
+        private List<Bucket> buckets;
+    }
+
+    /**
+     * 时间桶聚合值
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+
+        /** 时间桶起始时间戳（毫秒） */
+        private Long bucketStart;
+
+        /** 样本数 */
+        private Integer sampleCount;
+
+        /** 最小内存使用量（字节） */
+        private Long memoryMin;
+
+        /** 最大内存使用量（字节） */
+        private Long memoryMax;
+
+        /** 平均内存使用量（字节） */
+        private Long memoryAvg;
+
+        /** 内存使用量 P95（字节，近似值） */
+        private Long memoryP95;
+
+        /** 各状态时间占比（百分比，0 ~ 100） */
+        private Map<String, Double> statePercentages;
+    }
+}
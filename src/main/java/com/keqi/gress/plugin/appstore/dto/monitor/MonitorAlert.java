@@ -0,0 +1,41 @@
+package com.keqi.gress.plugin.appstore.dto.monitor;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 插件监控告警 DTO
+ * 表示一次告警的触发或恢复
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonitorAlert {
+
+    /** 插件ID */
+    private String pluginId;
+
+    /** 告警规则：MEMORY_THRESHOLD, MEMORY_GROWTH, PLUGIN_ERROR, RESTART_LOOP */
+    private String rule;
+
+    /** 告警状态：OPEN（触发）, RESOLVED（恢复） */
+    private String status;
+
+    /** 触发或恢复时的观测值（内存为字节，增长速率为字节/分钟，重启为次数） */
+    private Double value;
+
+    /** 触发阈值（与观测值单位相同） */
+    private Double threshold;
+
+    /** 告警描述 */
+    private String message;
+
+    /** 告警触发时间戳（毫秒） */
+    private Long openedAt;
+
+    /** 事件时间戳（毫秒） */
+    private Long timestamp;
+}
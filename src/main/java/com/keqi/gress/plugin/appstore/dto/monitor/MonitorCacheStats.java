@@ -0,0 +1,56 @@
+package com.keqi.gress.plugin.appstore.dto.monitor;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 监控缓存统计 DTO
+ * 用于展示监控数据缓存的命中、未命中和淘汰情况
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonitorCacheStats {
+    
+    /** 是否启用进程内缓存 */
+    private Boolean localEnabled;
+    
+    /** 是否启用数据库共享层 */
+    private Boolean sharedEnabled;
+    
+    /** 当前缓存条目数 */
+    private Integer size;
+    
+    /** 最大缓存条目数 */
+    private Integer maxSize;
+    
+    /** 进程内缓存命中次数 */
+    private Long hitCount;
+    
+    /** 未命中次数 */
+    private Long missCount;
+    
+    /** 数据库共享层命中次数 */
+    private Long sharedHitCount;
+    
+    /** 淘汰次数（容量淘汰 + 过期淘汰） */
+    private Long evictionCount;
+    
+    /** 命中率（0 ~ 1） */
+    private Double hitRate;
+    
+    /** 数据库过期缓存清理执行次数 */
+    private Long sweepCount;
+    
+    /** 因没有到期缓存而跳过清理的次数 */
+    private Long sweepSkippedCount;
+    
+    /** 累计清理的过期缓存行数 */
+    private Long sweptRows;
+    
+    /** 当前清理间隔（毫秒） */
+    private Long sweepIntervalMillis;
+}
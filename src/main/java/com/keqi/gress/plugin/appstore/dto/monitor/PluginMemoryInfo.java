@@ -15,7 +15,12 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class PluginMemoryInfo {
     
-    /** 插件使用的内存（字节） */
+    /**
+     * 插件使用的内存（字节）
+     * 
+     * ESTIMATE 来源为按加载类数量的估算值；JFR 来源只含类加载器占用的元空间，
+     * 插件对象持有的堆内存（retained heap）不在统计范围内
+     */
     private Long usedMemory;
     
     /** 格式化的内存大小（如 "10.5 MB"） */
@@ -29,4 +34,16 @@ public class PluginMemoryInfo {
     
     /** JVM 最大内存（字节） */
     private Long maxJvmMemory;
+    
+    /** 插件类加载器占用的元空间（字节），仅采样统计模式可用 */
+    private Long metaspaceMemory;
+    
+    /** 分配速率（字节/秒），不计入已用内存，仅采样统计模式可用 */
+    private Long allocationRate;
+    
+    /** 内存数据来源：ESTIMATE（估算）、JFR（采样统计） */
+    private String source;
+    
+    /** 该插件的内存告警阈值（字节），ESTIMATE 来源为内存告警阈值，JFR 来源为元空间告警阈值 */
+    private Long warningThreshold;
 }
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * 插件监控历史数据 DTO
  * 用于返回插件的历史监控数据
@@ -21,15 +23,33 @@ public class PluginMonitorHistory {
     /** 插件状态 */
     private String state;
     
-    /** 内存使用量（字节） */
+    /** 内存使用量（字节，汇总数据为时间桶内平均值） */
     private Long memoryUsage;
     
     /** 格式化的内存大小 */
     private String formattedMemory;
     
-    /** 快照时间戳（毫秒） */
+    /** CPU 占用率（百分比，汇总数据为时间桶内平均值） */
+    private Double cpuUsage;
+    
+    /** 时间桶内最大 CPU 占用率（百分比，仅汇总数据） */
+    private Double cpuMax;
+    
+    /** 快照时间戳（毫秒，汇总数据为时间桶起始时间） */
     private Long timestamp;
     
     /** 额外元数据 */
     private String metadata;
+    
+    /** 数据粒度：raw（原始快照）, 5m, 1h, 1d */
+    private String resolution;
+    
+    /** 时间桶内最小内存使用量（字节，仅汇总数据） */
+    private Long memoryMin;
+    
+    /** 时间桶内最大内存使用量（字节，仅汇总数据） */
+    private Long memoryMax;
+    
+    /** 时间桶内各状态持续时长（毫秒，仅汇总数据） */
+    private Map<String, Long> stateDurations;
 }
@@ -39,6 +39,12 @@ public class PluginMonitorStatus {
     /** 内存信息 */
     private PluginMemoryInfo memoryInfo;
     
+    /** CPU 占用率（占全部处理器的百分比，最近一次采样间隔内） */
+    private Double cpuUsage;
+    
+    /** 归属到插件的线程数 */
+    private Integer threadCount;
+    
     /** 是否有错误 */
     private Boolean hasError;
     
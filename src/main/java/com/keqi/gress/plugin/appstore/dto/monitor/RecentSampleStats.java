@@ -0,0 +1,44 @@
+package com.keqi.gress.plugin.appstore.dto.monitor;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 近期监控样本缓冲区统计 DTO
+ * 用于展示内存中近期样本的容量、占用和命中情况
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecentSampleStats {
+
+    /** 保留时间窗口（小时） */
+    private Integer windowHours;
+
+    /** 已分配缓冲区的插件数 */
+    private Integer pluginCount;
+
+    /** 每个插件的最大样本容量（缓冲区按需扩容到该值） */
+    private Integer capacityPerPlugin;
+
+    /** 当前保存的样本总数 */
+    private Long sampleCount;
+
+    /** 已分配的内存（字节） */
+    private Long usedBytes;
+
+    /** 内存预算（字节） */
+    private Long budgetBytes;
+
+    /** 因超出内存预算未分配缓冲区的插件数 */
+    private Integer rejectedPluginCount;
+
+    /** 由缓冲区直接返回的查询次数 */
+    private Long hitCount;
+
+    /** 回退到数据库的查询次数 */
+    private Long fallbackCount;
+}
@@ -0,0 +1,66 @@
+package com.keqi.gress.plugin.appstore.dto.monitor;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监控快照自适应采样统计 DTO
+ * 用于展示采样层级、各插件所在层级和写入预算使用情况
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotSamplingStats {
+    
+    /** 采样层级 */
+    private List<Tier> tiers;
+    
+    /** 各插件当前所在层级（Key: pluginId） */
+    private Map<String, String> pluginTiers;
+    
+    /** 运维关注中的插件及关注到期时间戳（毫秒） */
+    private Map<String, Long> focusedPlugins;
+    
+    /** 每分钟最多写入的快照行数 */
+    private Integer writeBudgetPerMinute;
+    
+    /** 当前剩余的写入预算（行） */
+    private Long availableBudget;
+    
+    /** 最近一次采集周期到期的插件数 */
+    private Integer lastTickDueCount;
+    
+    /** 最近一次采集周期写入的快照数 */
+    private Integer lastTickWrittenCount;
+    
+    /** 累计写入的快照数 */
+    private Long writtenCount;
+    
+    /** 累计因写入预算不足推迟的快照数 */
+    private Long deferredCount;
+    
+    /**
+     * 采样层级
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Tier {
+        
+        /** 层级名称：FAST, NORMAL, SLOW */
+        private String name;
+        
+        /** 采样间隔（秒） */
+        private Integer intervalSeconds;
+        
+        /** 当前处于该层级的插件数 */
+        private Integer pluginCount;
+    }
+}
@@ -0,0 +1,57 @@
+package com.keqi.gress.plugin.appstore.listener;
+
+import  com.keqi.gress.common.event.Event;
+import  com.keqi.gress.common.plugin.annotion.Inject;
+import  com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.service.monitor.PluginStatusRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+
+import java.util.Map;
+
+/**
+ * 插件监控状态监听器
+ * 
+ * 监听插件包生命周期事件（plugin.package.*），增量更新插件状态实时表
+ */
+@Slf4j
+@Service
+public class PluginMonitorStatusListener {
+    
+    @Inject
+    private PluginStatusRegistry statusRegistry;
+    
+    /**
+     * 处理插件包生命周期事件
+     */
+    @EventListener(condition = "#event.type != null && #event.type.startsWith('plugin.package.')")
+    public void handlePluginPackageEvent(Event<?> event) {
+        try {
+            Object data = event.getData();
+            if (!(data instanceof Map)) {
+                log.debug("插件包事件数据格式不正确: type={}", event.getType());
+                return;
+            }
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> eventData = (Map<String, Object>) data;
+            
+            Object packageId = eventData.get("packageId");
+            if (packageId == null) {
+                log.debug("插件包事件缺少 packageId: type={}", event.getType());
+                return;
+            }
+            
+            log.debug("收到插件包事件，更新状态表: type={}, packageId={}", event.getType(), packageId);
+            
+            if ("plugin.package.uninstalled".equals(event.getType())) {
+                statusRegistry.remove(packageId.toString());
+            } else {
+                statusRegistry.refresh(packageId.toString());
+            }
+            
+        } catch (Exception e) {
+            log.error("处理插件包事件异常: type={}", event.getType(), e);
+        }
+    }
+}
@@ -5,23 +5,36 @@ import cn.hutool.log.LogFactory;
 import com.alibaba.fastjson2.JSON;
 import  com.keqi.gress.common.plugin.annotion.Inject;
 import  com.keqi.gress.common.plugin.annotion.PostConstruct;
+import  com.keqi.gress.common.plugin.annotion.PreDestroy;
 import  com.keqi.gress.common.plugin.annotion.Service;
 import  com.keqi.gress.common.storage.FileStorageService;
 import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
 import com.keqi.gress.plugin.appstore.dto.ApplicationDTO;
 import com.keqi.gress.plugin.appstore.dto.PageResult;
+import com.keqi.gress.plugin.appstore.service.http.ConditionalResponseCache;
+import com.keqi.gress.plugin.appstore.service.http.ResumableDownloader;
+import com.keqi.gress.plugin.appstore.service.http.StoreHttpClient;
+import com.keqi.gress.plugin.appstore.service.install.LocalPackageCache;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.*;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -40,8 +53,50 @@ public class AppStoreApiService {
     @Inject(source = Inject.BeanSource.SPRING)
     private FileStorageService fileStorageService;
     
+    /** 默认 API 超时时间（毫秒） */
+    private static final int DEFAULT_TIMEOUT = 30000;
+    
+    /** 默认连接超时时间（毫秒） */
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    
+    /** 默认重试次数 */
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    
+    /** 默认单路由最大并发请求数 */
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    
+    /** 默认下载超时时间（毫秒） */
+    private static final int DEFAULT_DOWNLOAD_TIMEOUT = 300000;
+    
+    /** 默认最大并发下载分段数 */
+    private static final int DEFAULT_DOWNLOAD_MAX_CONCURRENT = 3;
+    
+    /** 默认本地安装包缓存大小上限（MB） */
+    private static final int DEFAULT_PACKAGE_CACHE_MAX_SIZE_MB = 2048;
+    
+    /** 默认商店元数据缓存过期时间（秒） */
+    private static final int DEFAULT_CACHE_EXPIRE_SECONDS = 3600;
+    
+    /** 默认 404 响应缓存过期时间（秒） */
+    private static final int DEFAULT_CACHE_NEGATIVE_EXPIRE_SECONDS = 60;
+    
+    /** 默认最大缓存条目数 */
+    private static final int DEFAULT_CACHE_MAX_SIZE = 1000;
+    
+    private StoreHttpClient httpClient;
+    
+    /** API 调用使用的 RestTemplate，总超时为 api.timeout */
     private RestTemplate restTemplate;
     
+    /** 安装包下载器，支持断点续传和并行分段下载 */
+    private ResumableDownloader downloader;
+    
+    /** 本地安装包缓存，按插件ID、版本和摘要保存已校验的安装包 */
+    private LocalPackageCache packageCache;
+    
+    /** 商店元数据缓存，未启用缓存时为 null */
+    private ConditionalResponseCache catalogCache;
+    
     @PostConstruct
     public void init() {
         log.info("初始化应用商店 API 服务");
@@ -67,13 +122,84 @@ public class AppStoreApiService {
         log.info("  - API 超时时间: {}ms", config.getApi().getTimeout());
         log.info("  - API 重试次数: {}", config.getApi().getMaxRetries());
         
-        // 创建 RestTemplate
-        this.restTemplate = new RestTemplate();
+        // 创建共享连接池的 HTTP 客户端和 RestTemplate
+        AppStoreConfig.ApiConfig apiConfig = config.getApi();
+        int timeout = apiConfig.getTimeout() != null ? apiConfig.getTimeout() : DEFAULT_TIMEOUT;
+        int connectTimeout = apiConfig.getConnectTimeout() != null
+                ? apiConfig.getConnectTimeout() : Math.min(DEFAULT_CONNECT_TIMEOUT, timeout);
+        int readTimeout = apiConfig.getReadTimeout() != null ? apiConfig.getReadTimeout() : timeout;
+        int maxRetries = apiConfig.getMaxRetries() != null ? apiConfig.getMaxRetries() : DEFAULT_MAX_RETRIES;
+        int maxConnectionsPerRoute = apiConfig.getMaxConnectionsPerRoute() != null
+                ? apiConfig.getMaxConnectionsPerRoute() : DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+        int downloadTimeout = config.getDownload() != null && config.getDownload().getTimeout() != null
+                ? config.getDownload().getTimeout() : DEFAULT_DOWNLOAD_TIMEOUT;
+        
+        this.httpClient = new StoreHttpClient(connectTimeout, readTimeout, timeout, maxRetries, maxConnectionsPerRoute);
+        this.restTemplate = new RestTemplate(httpClient.requestFactory(timeout));
+        this.downloader = createDownloader(Math.max(downloadTimeout, timeout));
+        this.packageCache = createPackageCache();
+        log.info("  - HTTP 客户端: 连接超时={}ms, 响应超时={}ms, 单路由最大并发={}",
+                connectTimeout, readTimeout, maxConnectionsPerRoute);
+        
+        // 创建商店元数据缓存
+        AppStoreConfig.CacheConfig cacheConfig = config.getCache();
+        if (cacheConfig != null && Boolean.TRUE.equals(cacheConfig.getEnabled())) {
+            int expireSeconds = cacheConfig.getExpireSeconds() != null
+                    ? cacheConfig.getExpireSeconds() : DEFAULT_CACHE_EXPIRE_SECONDS;
+            int negativeExpireSeconds = cacheConfig.getNegativeExpireSeconds() != null
+                    ? cacheConfig.getNegativeExpireSeconds() : DEFAULT_CACHE_NEGATIVE_EXPIRE_SECONDS;
+            int maxSize = cacheConfig.getMaxSize() != null ? cacheConfig.getMaxSize() : DEFAULT_CACHE_MAX_SIZE;
+            this.catalogCache = new ConditionalResponseCache(expireSeconds, negativeExpireSeconds, maxSize);
+            log.info("  - 商店元数据缓存: 过期时间={}s, 404 过期时间={}s, 最大条目数={}",
+                    expireSeconds, negativeExpireSeconds, maxSize);
+        }
         
         // 验证配置
         validateConfig();
     }
     
+    /**
+     * 创建安装包下载器，分段文件保存在下载目录的 .partial 子目录
+     */
+    private ResumableDownloader createDownloader(long downloadTimeout) {
+        AppStoreConfig.DownloadConfig downloadConfig = config.getDownload();
+        int maxConcurrent = downloadConfig != null && downloadConfig.getMaxConcurrent() != null
+                ? downloadConfig.getMaxConcurrent() : DEFAULT_DOWNLOAD_MAX_CONCURRENT;
+        boolean autoRetry = downloadConfig == null || !Boolean.FALSE.equals(downloadConfig.getAutoRetry());
+        Path partialDirectory = Paths.get(downloadDirectory(), ".partial");
+        log.info("  - 下载: 超时={}ms, 最大并发分段={}, 自动续传={}, 分段目录={}",
+                downloadTimeout, maxConcurrent, autoRetry, partialDirectory);
+        return new ResumableDownloader(httpClient, partialDirectory, downloadTimeout, maxConcurrent, autoRetry);
+    }
+    
+    /**
+     * 创建本地安装包缓存，缓存文件保存在下载目录的 .cache 子目录
+     */
+    private LocalPackageCache createPackageCache() {
+        AppStoreConfig.DownloadConfig downloadConfig = config.getDownload();
+        int maxSizeMb = downloadConfig != null && downloadConfig.getCacheMaxSizeMb() != null
+                ? downloadConfig.getCacheMaxSizeMb() : DEFAULT_PACKAGE_CACHE_MAX_SIZE_MB;
+        Path cacheDirectory = Paths.get(downloadDirectory(), ".cache");
+        log.info("  - 本地安装包缓存: 目录={}, 大小上限={}MB", cacheDirectory, maxSizeMb);
+        return new LocalPackageCache(cacheDirectory, maxSizeMb * 1024L * 1024L);
+    }
+    
+    private String downloadDirectory() {
+        AppStoreConfig.DownloadConfig downloadConfig = config.getDownload();
+        return downloadConfig != null && StringUtils.isNotBlank(downloadConfig.getDirectory())
+                ? downloadConfig.getDirectory() : System.getProperty("java.io.tmpdir");
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        if (downloader != null) {
+            downloader.close();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+    
     /**
      * 验证配置
      */
@@ -149,19 +275,9 @@ public class AppStoreApiService {
             
             log.debug("请求应用列表: {}", url);
             
-            HttpHeaders headers = createHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<ApplicationListResponse> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                ApplicationListResponse.class
-            );
-            
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                ApplicationListResponse body = response.getBody();
-                if (body != null && body.data != null && body.data.items != null) {
+            ApplicationListResponse body = fetchCatalog(url, ApplicationListResponse.class);
+            if (body != null) {
+                if (body.data != null && body.data.items != null) {
                     log.info("获取应用列表成功，共 {} 个应用，总数 {}", body.data.items.size(), body.data.total);
                     
                     // 转换 PluginPackageInfo 到 ApplicationDTO
@@ -181,7 +297,7 @@ public class AppStoreApiService {
                 }
             }
             
-            log.warn("获取应用列表失败: {}", response.getStatusCode());
+            log.warn("获取应用列表失败: {}", url);
             return createEmptyPageResult(page, size);
             
         } catch (Exception e) {
@@ -241,25 +357,15 @@ public class AppStoreApiService {
             
             log.debug("请求应用详情: {}", url);
             
-            HttpHeaders headers = createHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<ApplicationDetailResponse> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                ApplicationDetailResponse.class
-            );
-            
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                ApplicationDetailResponse body = response.getBody();
-                if (body != null && body.data != null) {
+            ApplicationDetailResponse body = fetchCatalog(url, ApplicationDetailResponse.class);
+            if (body != null) {
+                if (body.data != null) {
                     log.info("获取应用详情成功: {}", pluginId);
                     return convertToApplicationDTO(body.data);
                 }
             }
             
-            log.warn("获取应用详情失败: {}", response.getStatusCode());
+            log.warn("获取应用详情失败: pluginId={}", pluginId);
             return null;
             
         } catch (Exception e) {
@@ -299,25 +405,15 @@ public class AppStoreApiService {
 
             log.debug("请求应用版本详情: {}", url);
 
-            HttpHeaders headers = createHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<ApplicationDetailResponse> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                ApplicationDetailResponse.class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                ApplicationDetailResponse body = response.getBody();
-                if (body != null && body.data != null) {
+            ApplicationDetailResponse body = fetchCatalog(url, ApplicationDetailResponse.class);
+            if (body != null) {
+                if (body.data != null) {
                     log.info("获取应用版本详情成功: pluginId={}, version={}", pluginId, version);
                     return convertToApplicationDTO(body.data);
                 }
             }
 
-            log.warn("获取应用版本详情失败: HTTP {}", response.getStatusCode());
+            log.warn("获取应用版本详情失败: pluginId={}, version={}", pluginId, version);
             return null;
 
         } catch (Exception e) {
@@ -354,37 +450,30 @@ public class AppStoreApiService {
             
             log.info("下载应用: pluginId={}, url={}", pluginId, url);
             
-            HttpHeaders headers = createHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<byte[]> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                byte[].class
-            );
-            
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            DownloadedPackage downloaded = downloadPackage(url, pluginId, null);
+            try {
                 // 使用 FileStorageService 保存文件
-                String fileName = extractFileName(response.getHeaders());
+                String fileName = downloaded.getFileName();
                 if (fileName == null) {
                     fileName = pluginId + ".jar";
                 }
                 
-                byte[] fileData = response.getBody();
+                log.info("开始保存应用文件: {}, 大小: {} bytes", fileName, downloaded.getSize());
                 
-                log.info("开始保存应用文件: {}, 大小: {} bytes", fileName, fileData.length);
-                
-                String fileUrl = fileStorageService
-                    .upload(new ByteArrayInputStream(fileData), fileName)
-                    .withMetadata("pluginId", pluginId)
-                    .withMetadata("category", "plugin")
-                    .onSuccess(savedUrl -> log.info("应用文件保存成功: {}", savedUrl))
-                    .onError(e -> {
-                        log.error("应用文件保存失败", e);
-                        throw new RuntimeException("应用文件保存失败: " + e.getMessage(), e);
-                    })
-                    .get();
+                String fileUrl;
+                try (InputStream in = Files.newInputStream(downloaded.getPath())) {
+                    fileUrl = fileStorageService
+                        .upload(in, fileName)
+                        .withMetadata("pluginId", pluginId)
+                        .withMetadata("sha256", downloaded.getSha256())
+                        .withMetadata("category", "plugin")
+                        .onSuccess(savedUrl -> log.info("应用文件保存成功: {}", savedUrl))
+                        .onError(e -> {
+                            log.error("应用文件保存失败", e);
+                            throw new RuntimeException("应用文件保存失败: " + e.getMessage(), e);
+                        })
+                        .get();
+                }
                 
                 if (fileUrl == null || fileUrl.isEmpty()) {
                     throw new RuntimeException("文件保存失败，返回的 URL 为空");
@@ -392,12 +481,10 @@ public class AppStoreApiService {
                 
                 log.info("应用下载成功: {}", fileUrl);
                 return fileUrl;
+            } finally {
+                downloaded.close();
             }
             
-            String errorMsg = String.format("应用下载失败: HTTP %d", response.getStatusCode().value());
-            log.error(errorMsg);
-            throw new RuntimeException(errorMsg);
-            
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -436,37 +523,30 @@ public class AppStoreApiService {
 
             log.info("按版本下载应用: pluginId={}, version={}, url={}", pluginId, version, url);
 
-            HttpHeaders headers = createHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<byte[]> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                byte[].class
-            );
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                String fileName = extractFileName(response.getHeaders());
+            DownloadedPackage downloaded = downloadPackage(url, pluginId, version);
+            try {
+                String fileName = downloaded.getFileName();
                 if (fileName == null) {
                     fileName = pluginId + "-" + version + ".jar";
                 }
 
-                byte[] fileData = response.getBody();
-
-                log.info("开始保存按版本下载的应用文件: {}, 大小: {} bytes", fileName, fileData.length);
+                log.info("开始保存按版本下载的应用文件: {}, 大小: {} bytes", fileName, downloaded.getSize());
 
-                String fileUrl = fileStorageService
-                    .upload(new ByteArrayInputStream(fileData), fileName)
-                    .withMetadata("pluginId", pluginId)
-                    .withMetadata("version", version)
-                    .withMetadata("category", "plugin")
-                    .onSuccess(savedUrl -> log.info("按版本下载的应用文件保存成功: {}", savedUrl))
-                    .onError(e -> {
-                        log.error("按版本下载的应用文件保存失败", e);
-                        throw new RuntimeException("应用文件保存失败: " + e.getMessage(), e);
-                    })
-                    .get();
+                String fileUrl;
+                try (InputStream in = Files.newInputStream(downloaded.getPath())) {
+                    fileUrl = fileStorageService
+                        .upload(in, fileName)
+                        .withMetadata("pluginId", pluginId)
+                        .withMetadata("version", version)
+                        .withMetadata("sha256", downloaded.getSha256())
+                        .withMetadata("category", "plugin")
+                        .onSuccess(savedUrl -> log.info("按版本下载的应用文件保存成功: {}", savedUrl))
+                        .onError(e -> {
+                            log.error("按版本下载的应用文件保存失败", e);
+                            throw new RuntimeException("应用文件保存失败: " + e.getMessage(), e);
+                        })
+                        .get();
+                }
 
                 if (fileUrl == null || fileUrl.isEmpty()) {
                     throw new RuntimeException("文件保存失败，返回的 URL 为空");
@@ -474,12 +554,10 @@ public class AppStoreApiService {
 
                 log.info("按版本应用下载成功: {}", fileUrl);
                 return fileUrl;
+            } finally {
+                downloaded.close();
             }
 
-            String errorMsg = String.format("按版本应用下载失败: HTTP %d", response.getStatusCode().value());
-            log.error(errorMsg);
-            throw new RuntimeException(errorMsg);
-
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -515,25 +593,16 @@ public class AppStoreApiService {
             
             log.debug("请求插件表权限信息: {}", url);
             
-            HttpHeaders headers = createHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<TablePermissionsResponse> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                TablePermissionsResponse.class
-            );
-            
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                TablePermissionsResponse body = response.getBody();
-                if (body != null && body.success && body.data != null) {
+            TablePermissionsResponse body = fetchCatalog(url, TablePermissionsResponse.class);
+            if (body != null) {
+                if (body.success && body.data != null) {
                     log.info("获取插件表权限信息成功: pluginId={}, count={}", pluginId, body.data.size());
-                    return body.data;
+                    // 响应对象可能被缓存复用，返回副本
+                    return new ArrayList<>(body.data);
                 }
             }
             
-            log.warn("获取插件表权限信息失败: HTTP {}", response.getStatusCode());
+            log.warn("获取插件表权限信息失败: pluginId={}", pluginId);
             return Collections.emptyList();
             
         } catch (Exception e) {
@@ -603,6 +672,198 @@ public class AppStoreApiService {
         return null;
     }
     
+    /**
+     * 请求商店元数据
+     * 
+     * 启用缓存时，有效期内直接返回缓存的响应对象；过期后携带 ETag / Last-Modified 重新验证，
+     * 304 时沿用缓存对象。404 作为否定结果缓存。
+     * 
+     * @param url 请求 URL
+     * @param responseType 响应类型
+     * @return 响应对象，404 或其他非 200 响应时返回 null
+     */
+    private <T> T fetchCatalog(String url, Class<T> responseType) {
+        return fetchCatalog(url, responseType, false);
+    }
+    
+    /**
+     * 请求商店元数据
+     * 
+     * @param url 请求 URL
+     * @param responseType 响应类型
+     * @param revalidate 是否忽略有效期，总是向服务端确认（仍可得到 304）
+     * @return 响应对象，404 或其他非 200 响应时返回 null
+     */
+    private <T> T fetchCatalog(String url, Class<T> responseType, boolean revalidate) {
+        ConditionalResponseCache.Entry cached = catalogCache != null ? catalogCache.get(url) : null;
+        if (cached != null && cached.isFresh() && !revalidate) {
+            return cached.getValue();
+        }
+        
+        HttpHeaders headers = createHeaders();
+        if (cached != null && cached.isRevalidatable()) {
+            if (cached.getEtag() != null) {
+                headers.setIfNoneMatch(cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+        
+        ResponseEntity<T> response;
+        try {
+            response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), responseType);
+        } catch (HttpClientErrorException.NotFound e) {
+            log.debug("商店元数据不存在: {}", url);
+            if (catalogCache != null) {
+                catalogCache.putNotFound(url);
+            }
+            return null;
+        }
+        
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && cached != null && catalogCache != null) {
+            catalogCache.revalidated(cached);
+            return cached.getValue();
+        }
+        
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            T body = response.getBody();
+            if (catalogCache != null) {
+                catalogCache.put(url, body, response.getHeaders().getETag(),
+                        response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+            }
+            return body;
+        }
+        
+        log.warn("请求商店元数据失败: HTTP {}, url={}", response.getStatusCode(), url);
+        return null;
+    }
+    
+    /**
+     * 获取安装包
+     * 
+     * 指定版本且本地缓存命中时直接使用缓存文件（按发布时记录的摘要校验），不访问应用商店，
+     * 商店不可用时也能重新安装或回滚。未指定版本时先向商店查询最新版本和发布的摘要，
+     * 本地缓存中有摘要一致的安装包时直接使用，不再下载。未命中时下载：服务端支持 Range 请求时断点续传、大文件并行分段下载，否则流式写入临时文件；
+     * 下载的同时计算 SHA-256，与商店发布的摘要比对通过后发布到本地缓存。
+     * 无法从商店获取安装包信息时不下载；商店未发布摘要时只有开启 allow-unverified-packages 才继续，
+     * 此时安装包不加入本地缓存，使用后删除。
+     * 校验失败时删除临时文件并抛出异常；下载失败时已下载的分段保留，下次下载同一安装包时续传。
+     * 调用方使用完毕后需调用 {@link DownloadedPackage#close()}。
+     * 
+     * @param url 下载地址
+     * @param pluginId 插件ID
+     * @param version 版本号，为空表示最新版本
+     * @return 已校验的安装包
+     */
+    private DownloadedPackage downloadPackage(String url, String pluginId, String version) throws IOException {
+        if (StringUtils.isNotBlank(version)) {
+            LocalPackageCache.Lease cached = packageCache.acquire(pluginId, version);
+            if (cached != null) {
+                log.info("使用本地缓存安装包: pluginId={}, version={}", pluginId, version);
+                return DownloadedPackage.cached(cached);
+            }
+        }
+        
+        PluginPackageInfo published = resolvePublishedPackage(pluginId, version);
+        String expectedSha256 = StringUtils.isNotBlank(published.getSha256()) ? published.getSha256().trim() : null;
+        String effectiveVersion = StringUtils.isNotBlank(version) ? version : published.getVersion();
+        if (StringUtils.isBlank(version) && expectedSha256 != null && StringUtils.isNotBlank(effectiveVersion)) {
+            LocalPackageCache.Lease cached = packageCache.acquire(pluginId, effectiveVersion, expectedSha256);
+            if (cached != null) {
+                log.info("使用本地缓存安装包: pluginId={}, version={}（最新版本）", pluginId, effectiveVersion);
+                return DownloadedPackage.cached(cached);
+            }
+        }
+        
+        Path tmpPath = packageCache.createTempFile();
+        try {
+            String secretKey = config.getApi().getSecretKey();
+            Map<String, String> requestHeaders = secretKey != null && !secretKey.isEmpty()
+                    ? Map.of("X-API-Key", secretKey) : Map.of();
+            
+            ResumableDownloader.Result result = downloader.download(url, requestHeaders, tmpPath);
+            boolean verified = verifyDigest(pluginId, version, expectedSha256, result.getSha256());
+            
+            HttpHeaders headers = new HttpHeaders();
+            result.getHeaders().map().forEach(headers::addAll);
+            String fileName = extractFileName(headers);
+            
+            if (!verified || StringUtils.isBlank(effectiveVersion)) {
+                // 未经摘要校验或无法确定版本号，不加入本地缓存
+                return new DownloadedPackage(tmpPath, result.getSize(), result.getSha256(), fileName, null);
+            }
+            LocalPackageCache.Lease lease = packageCache.publish(pluginId, effectiveVersion, result.getSha256(), tmpPath);
+            return new DownloadedPackage(lease.getPath(), lease.getSize(), lease.getSha256(), fileName, lease);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tmpPath);
+            throw e;
+        }
+    }
+    
+    /**
+     * 校验安装包摘要
+     * 
+     * 商店未发布摘要时，开启 allow-unverified-packages 才记录警告并继续，否则拒绝安装
+     * 
+     * @return 是否与商店发布的摘要比对通过，未发布摘要但允许继续时返回 false
+     */
+    private boolean verifyDigest(String pluginId, String version, String expectedSha256, String actualSha256) {
+        if (StringUtils.isBlank(expectedSha256)) {
+            if (!isUnverifiedPackageAllowed()) {
+                String errorMsg = String.format("商店未发布安装包摘要，拒绝安装未校验的安装包: pluginId=%s, version=%s",
+                        pluginId, version);
+                log.error(errorMsg);
+                throw new RuntimeException(errorMsg);
+            }
+            log.warn("商店未发布安装包摘要，跳过校验: pluginId={}, version={}", pluginId, version);
+            return false;
+        }
+        if (!expectedSha256.trim().equalsIgnoreCase(actualSha256)) {
+            String errorMsg = String.format("安装包摘要校验失败: pluginId=%s, version=%s, expected=%s, actual=%s",
+                    pluginId, version, expectedSha256, actualSha256);
+            log.error(errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+        log.info("安装包摘要校验通过: pluginId={}, version={}, sha256={}", pluginId, version, actualSha256);
+        return true;
+    }
+    
+    /**
+     * 获取商店发布的安装包信息（版本号和 SHA-256）
+     * 
+     * 总是向服务端确认元数据，避免缓存的旧版本摘要与新发布的安装包不一致。
+     * 获取失败时抛出异常，不能当作商店未发布摘要处理。
+     */
+    private PluginPackageInfo resolvePublishedPackage(String pluginId, String version) throws IOException {
+        String url = StringUtils.isBlank(version)
+                ? String.format("%s/packages/%s", config.getApi().getBaseUrl(), pluginId)
+                : String.format("%s/packages/%s/versions/%s", config.getApi().getBaseUrl(), pluginId, version);
+        ApplicationDetailResponse body;
+        try {
+            body = fetchCatalog(url, ApplicationDetailResponse.class, true);
+        } catch (Exception e) {
+            throw new IOException(String.format("获取安装包信息失败: pluginId=%s, version=%s", pluginId, version), e);
+        }
+        if (body == null || body.data == null) {
+            throw new IOException(String.format("商店未返回安装包信息: pluginId=%s, version=%s", pluginId, version));
+        }
+        return body.data;
+    }
+    
+    private boolean isUnverifiedPackageAllowed() {
+        AppStoreConfig.DownloadConfig downloadConfig = config.getDownload();
+        return downloadConfig != null && Boolean.TRUE.equals(downloadConfig.getAllowUnverifiedPackages());
+    }
+    
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("清理临时文件失败: {}", path, e);
+        }
+    }
+    
     /**
      * 创建请求头
      */
@@ -620,6 +881,36 @@ public class AppStoreApiService {
         return headers;
     }
     
+    /**
+     * 已下载并校验的安装包
+     */
+    @Data
+    @AllArgsConstructor
+    private static class DownloadedPackage implements AutoCloseable {
+        private Path path;
+        private long size;
+        private String sha256;
+        private String fileName;
+        /** 本地缓存文件的租约，未加入缓存的临时文件为 null */
+        private LocalPackageCache.Lease lease;
+        
+        private static DownloadedPackage cached(LocalPackageCache.Lease lease) {
+            return new DownloadedPackage(lease.getPath(), lease.getSize(), lease.getSha256(), null, lease);
+        }
+        
+        /**
+         * 释放缓存文件，或删除未加入缓存的临时文件
+         */
+        @Override
+        public void close() {
+            if (lease != null) {
+                lease.close();
+            } else {
+                deleteQuietly(path);
+            }
+        }
+    }
+    
     /**
      * 应用列表响应（匹配 Result<PageResult<PluginPackageDTO>> 结构）
      */
@@ -738,50 +1029,29 @@ public class AppStoreApiService {
             return java.util.Collections.emptyList();
         }
         
-        java.nio.file.Path tmpJarPath = null;
+        DownloadedPackage downloaded = null;
         try {
-            // 1. 下载 jar 包到临时文件
+            // 1. 下载 jar 包（本地缓存中已有最新版本时直接使用）
             String url = String.format("%s/packages/%s/download", 
                 config.getApi().getBaseUrl(), pluginId);
             
             log.info("下载插件包以解析配置元数据: pluginId={}, url={}", pluginId, url);
             
-            HttpHeaders headers = createHeaders();
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            
-            ResponseEntity<byte[]> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                byte[].class
-            );
+            // 2. 流式保存到本地缓存并校验摘要
+            downloaded = downloadPackage(url, pluginId, null);
             
-            if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
-                log.warn("下载插件包失败: HTTP {}", response.getStatusCode());
-                return java.util.Collections.emptyList();
-            }
-            
-            // 2. 保存到临时文件
-            byte[] jarBytes = response.getBody();
-            tmpJarPath = java.nio.file.Files.createTempFile("plugin-config-", ".jar");
-            java.nio.file.Files.write(tmpJarPath, jarBytes);
-            
-            log.debug("插件包已保存到临时文件: {}", tmpJarPath);
+            log.debug("插件包已保存到本地: {}", downloaded.getPath());
             
             // 3. 从 jar 文件中解析配置元数据
-            return parseConfigMetadataFromJar(tmpJarPath);
+            return parseConfigMetadataFromJar(downloaded.getPath());
             
         } catch (Exception e) {
             log.error("从 jar 包解析配置元数据失败: pluginId={}", pluginId, e);
             return java.util.Collections.emptyList();
         } finally {
-            // 4. 清理临时文件
-            if (tmpJarPath != null) {
-                try {
-                    java.nio.file.Files.deleteIfExists(tmpJarPath);
-                } catch (Exception e) {
-                    log.warn("清理临时文件失败: {}", tmpJarPath, e);
-                }
+            // 4. 释放本地缓存文件
+            if (downloaded != null) {
+                downloaded.close();
             }
         }
     }
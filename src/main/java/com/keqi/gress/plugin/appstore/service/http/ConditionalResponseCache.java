@@ -0,0 +1,139 @@
+package com.keqi.gress.plugin.appstore.service.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 条件请求响应缓存
+ *
+ * 按请求 URL（含查询参数）缓存已反序列化的响应对象及其 ETag / Last-Modified：
+ * - 未过期的条目直接返回，不访问远程服务
+ * - 过期的条目保留验证器，下次请求携带 If-None-Match / If-Modified-Since 重新验证，
+ *   服务端返回 304 时沿用已缓存的对象并延长有效期，不再反序列化响应体
+ * - 404 响应作为否定结果缓存，有效期单独配置
+ * - 条目数超过上限时淘汰最久未访问的条目
+ */
+public class ConditionalResponseCache {
+
+    private final long expireMillis;
+    private final long negativeExpireMillis;
+    private final int maxSize;
+
+    /**
+     * 缓存条目（access-order）
+     * Key: 请求 URL
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * @param expireSeconds 响应的有效期（秒）
+     * @param negativeExpireSeconds 404 响应的有效期（秒）
+     * @param maxSize 最大缓存条目数
+     */
+    public ConditionalResponseCache(int expireSeconds, int negativeExpireSeconds, int maxSize) {
+        this.expireMillis = expireSeconds * 1000L;
+        this.negativeExpireMillis = negativeExpireSeconds * 1000L;
+        this.maxSize = Math.max(maxSize, 1);
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ConditionalResponseCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存条目（包括已过期、需要重新验证的条目）
+     *
+     * @param url 请求 URL
+     * @return 缓存条目，不存在时返回 null
+     */
+    public Entry get(String url) {
+        synchronized (entries) {
+            return entries.get(url);
+        }
+    }
+
+    /**
+     * 保存 200 响应
+     *
+     * @param url 请求 URL
+     * @param value 反序列化后的响应对象
+     * @param etag 响应的 ETag，可为 null
+     * @param lastModified 响应的 Last-Modified，可为 null
+     */
+    public void put(String url, Object value, String etag, String lastModified) {
+        Entry entry = new Entry(value, etag, lastModified, false, System.currentTimeMillis() + expireMillis);
+        synchronized (entries) {
+            entries.put(url, entry);
+        }
+    }
+
+    /**
+     * 保存 404 响应
+     *
+     * @param url 请求 URL
+     */
+    public void putNotFound(String url) {
+        Entry entry = new Entry(null, null, null, true, System.currentTimeMillis() + negativeExpireMillis);
+        synchronized (entries) {
+            entries.put(url, entry);
+        }
+    }
+
+    /**
+     * 服务端返回 304，延长条目的有效期
+     *
+     * @param entry 重新验证的条目
+     */
+    public void revalidated(Entry entry) {
+        entry.expireTime = System.currentTimeMillis() + expireMillis;
+    }
+
+    /**
+     * 缓存条目
+     */
+    public static final class Entry {
+        private final Object value;
+        private final String etag;
+        private final String lastModified;
+        private final boolean notFound;
+        private volatile long expireTime;
+
+        private Entry(Object value, String etag, String lastModified, boolean notFound, long expireTime) {
+            this.value = value;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.notFound = notFound;
+            this.expireTime = expireTime;
+        }
+
+        /** 是否仍在有效期内 */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expireTime;
+        }
+
+        /** 是否可以用条件请求重新验证 */
+        public boolean isRevalidatable() {
+            return !notFound && (etag != null || lastModified != null);
+        }
+
+        /** 是否为 404 否定结果 */
+        public boolean isNotFound() {
+            return notFound;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T getValue() {
+            return (T) value;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.keqi.gress.plugin.appstore.service.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * 响应体写入文件并同时计算 SHA-256 的处理器
+ *
+ * 响应体按 HttpClient 推送的缓冲区逐块写入目标文件，同一遍计算摘要，内存占用与文件大小无关。
+ * 只处理 200 响应，其他状态码的响应体被丢弃，结果为 null。
+ * 每次收到响应都会截断目标文件，重试时不会残留上一次尝试的数据。
+ */
+public class DigestFileBodyHandler implements HttpResponse.BodyHandler<DigestFileBodyHandler.Result> {
+
+    private final Path target;
+
+    /**
+     * @param target 目标文件
+     */
+    public DigestFileBodyHandler(Path target) {
+        this.target = target;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<Result> apply(HttpResponse.ResponseInfo responseInfo) {
+        if (responseInfo.statusCode() != 200) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        return new DigestFileSubscriber(target);
+    }
+
+    /**
+     * 下载结果
+     */
+    public static final class Result {
+        private final Path path;
+        private final long size;
+        private final String sha256;
+
+        private Result(Path path, long size, String sha256) {
+            this.path = path;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        /** 文件路径 */
+        public Path getPath() {
+            return path;
+        }
+
+        /** 文件大小（字节） */
+        public long getSize() {
+            return size;
+        }
+
+        /** SHA-256 摘要（小写十六进制） */
+        public String getSha256() {
+            return sha256;
+        }
+    }
+
+    private static final class DigestFileSubscriber implements HttpResponse.BodySubscriber<Result> {
+
+        private final Path target;
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+        private final MessageDigest digest;
+        private FileChannel channel;
+        private Flow.Subscription subscription;
+        private long size;
+
+        private DigestFileSubscriber(Path target) {
+            this.target = target;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            try {
+                this.channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        size += channel.write(buffer);
+                    }
+                }
+            } catch (IOException e) {
+                subscription.cancel();
+                closeChannel();
+                result.completeExceptionally(new IOException("写入下载文件失败: " + target, e));
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            closeChannel();
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            result.complete(new Result(target, size, HexFormat.of().formatHex(digest.digest())));
+        }
+
+        @Override
+        public CompletionStage<Result> getBody() {
+            return result;
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // 已在处理失败，忽略关闭异常
+                }
+            }
+        }
+    }
+}
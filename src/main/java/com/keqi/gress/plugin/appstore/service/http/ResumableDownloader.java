@@ -0,0 +1,470 @@
+package com.keqi.gress.plugin.appstore.service.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 断点续传下载器
+ *
+ * 服务端支持 Range 请求且提供验证器时（HEAD 响应包含 Accept-Ranges: bytes、Content-Length，以及强 ETag 或 Last-Modified）：
+ * - 文件按分段下载，大文件的多个分段并行下载，所有下载共享 maxConcurrent 个分段线程
+ * - 各分段写入下载目录下的临时分段文件，失败后按已下载的长度续传，分段文件在多次下载调用之间保留
+ * - 续传请求携带 If-Range，服务端文件变化时丢弃已下载的分段重新下载
+ * - 全部分段完成后按顺序合并到目标文件，合并的同时计算 SHA-256
+ *
+ * 服务端不支持 Range 请求或没有验证器时退化为单连接流式下载：没有验证器就无法确认续传的分段来自同一文件。
+ * 超过 24 小时未更新的分段文件在创建下载器时删除，避免放弃的下载长期占用磁盘。
+ */
+@Slf4j
+public class ResumableDownloader implements AutoCloseable {
+
+    /** 超过该大小的文件并行分段下载 */
+    private static final long PARALLEL_THRESHOLD = 8L * 1024 * 1024;
+
+    /** 并行下载时每个分段的最小大小 */
+    private static final long MIN_SEGMENT_SIZE = 4L * 1024 * 1024;
+
+    /** 启用自动重试时每个分段的最大尝试次数 */
+    private static final int MAX_SEGMENT_ATTEMPTS = 5;
+
+    /** 首次重试的退避时间（毫秒） */
+    private static final long RETRY_BACKOFF_MS = 500;
+
+    /** 最大退避时间（毫秒） */
+    private static final long MAX_RETRY_BACKOFF_MS = 10_000;
+
+    /** 分段文件的最长保留时间（毫秒） */
+    private static final long PARTIAL_MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+
+    private final StoreHttpClient httpClient;
+    private final Path partialDirectory;
+    private final long timeoutMs;
+    private final int maxConcurrent;
+    private final boolean autoRetry;
+    private final ExecutorService segmentExecutor;
+
+    /**
+     * 同一地址的下载串行执行，避免并发写入同一组分段文件
+     * Key: 下载地址
+     */
+    private final Map<String, Object> urlLocks = new ConcurrentHashMap<>();
+
+    /**
+     * @param httpClient HTTP 客户端
+     * @param partialDirectory 分段文件目录
+     * @param timeoutMs 单次请求的总超时时间（毫秒）
+     * @param maxConcurrent 最大并发分段数
+     * @param autoRetry 分段失败后是否自动续传
+     */
+    public ResumableDownloader(StoreHttpClient httpClient, Path partialDirectory, long timeoutMs,
+                               int maxConcurrent, boolean autoRetry) {
+        this.httpClient = httpClient;
+        this.partialDirectory = partialDirectory;
+        this.timeoutMs = timeoutMs;
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        this.autoRetry = autoRetry;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.segmentExecutor = Executors.newFixedThreadPool(this.maxConcurrent, r -> {
+            Thread thread = new Thread(r, "appstore-download-segment-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        purgeExpiredPartials();
+    }
+
+    /**
+     * 下载文件
+     *
+     * @param url 下载地址
+     * @param headers 附加请求头
+     * @param target 目标文件
+     * @return 下载结果
+     * @throws IOException 下载失败，已下载的分段保留用于下次续传
+     */
+    public Result download(String url, Map<String, String> headers, Path target) throws IOException {
+        synchronized (urlLocks.computeIfAbsent(url, key -> new Object())) {
+            return doDownload(url, headers, target);
+        }
+    }
+
+    private Result doDownload(String url, Map<String, String> headers, Path target) throws IOException {
+        HttpResponse<Void> probe = probe(url, headers);
+        long length = probe != null ? probe.headers().firstValueAsLong("Content-Length").orElse(-1) : -1;
+        boolean rangeSupported = probe != null && length > 0
+                && probe.headers().firstValue("Accept-Ranges").map("bytes"::equalsIgnoreCase).orElse(false);
+        if (!rangeSupported) {
+            log.debug("服务端不支持 Range 请求，使用单连接下载: {}", url);
+            return downloadStream(url, headers, target);
+        }
+        String validator = validatorOf(probe.headers());
+        if (validator == null) {
+            log.debug("服务端未提供强 ETag 或 Last-Modified，无法安全续传，使用单连接下载: {}", url);
+            discard(url);
+            return downloadStream(url, headers, target);
+        }
+
+        try {
+            return downloadSegments(url, headers, target, length, validator, probe.headers());
+        } catch (ValidatorChangedException e) {
+            log.info("服务端文件已变化，重新下载: {}", url);
+            discard(url);
+            return downloadStream(url, headers, target);
+        }
+    }
+
+    /**
+     * 删除指定地址已下载的分段
+     *
+     * @param url 下载地址
+     */
+    public void discard(String url) {
+        String key = keyOf(url);
+        try (var files = Files.list(partialDirectory)) {
+            files.filter(path -> path.getFileName().toString().startsWith(key))
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                            log.warn("删除分段文件失败: {}", path, e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.debug("分段目录不可读: {}", partialDirectory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        segmentExecutor.shutdownNow();
+        try {
+            segmentExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Result downloadSegments(String url, Map<String, String> headers, Path target, long length,
+                                    String validator, HttpHeaders responseHeaders) throws IOException {
+        Files.createDirectories(partialDirectory);
+        String key = keyOf(url);
+        int segmentCount = length >= PARALLEL_THRESHOLD
+                ? (int) Math.min(maxConcurrent, Math.max(1, length / MIN_SEGMENT_SIZE))
+                : 1;
+
+        // 长度、验证器或分段数与上次不一致时，已下载的分段不可复用
+        Path metaFile = partialDirectory.resolve(key + ".meta");
+        String meta = length + "\n" + validator + "\n" + segmentCount;
+        if (!Files.exists(metaFile) || !meta.equals(Files.readString(metaFile, StandardCharsets.UTF_8))) {
+            discard(url);
+            Files.writeString(metaFile, meta, StandardCharsets.UTF_8);
+        }
+
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        long segmentSize = length / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            long start = i * segmentSize;
+            long end = i == segmentCount - 1 ? length - 1 : start + segmentSize - 1;
+            segments.add(new Segment(partialDirectory.resolve(key + ".part" + i), start, end));
+        }
+        long resumed = 0;
+        for (Segment segment : segments) {
+            resumed += segment.downloaded();
+        }
+        log.info("分段下载: url={}, 大小={} bytes, 分段数={}, 已下载={} bytes", url, length, segmentCount, resumed);
+
+        if (segmentCount == 1) {
+            downloadSegment(url, headers, validator, segments.get(0));
+        } else {
+            List<Future<?>> futures = new ArrayList<>(segmentCount);
+            for (Segment segment : segments) {
+                futures.add(segmentExecutor.submit(() -> {
+                    downloadSegment(url, headers, validator, segment);
+                    return null;
+                }));
+            }
+            awaitAll(futures);
+        }
+
+        // 按顺序合并分段，同时计算摘要
+        MessageDigest digest = sha256();
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), digest)) {
+            for (Segment segment : segments) {
+                Files.copy(segment.file, out);
+            }
+        }
+        discard(url);
+        return new Result(target, length, HexFormat.of().formatHex(digest.digest()), responseHeaders);
+    }
+
+    /**
+     * 下载一个分段，失败后按已下载的长度续传
+     */
+    private void downloadSegment(String url, Map<String, String> headers, String validator,
+                                 Segment segment) throws IOException {
+        int attempts = autoRetry ? MAX_SEGMENT_ATTEMPTS : 1;
+        IOException lastError = null;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            long offset = segment.start + segment.downloaded();
+            if (offset > segment.end) {
+                if (offset > segment.end + 1) {
+                    throw new ValidatorChangedException("分段文件超出预期长度: " + segment.file);
+                }
+                return;
+            }
+            if (attempt > 0) {
+                long backoff = Math.min(RETRY_BACKOFF_MS << (attempt - 1), MAX_RETRY_BACKOFF_MS);
+                log.warn("分段下载失败，{}ms 后从 {} 续传({}/{}): {}, 原因: {}",
+                        backoff, offset, attempt, attempts - 1, url, lastError.getMessage());
+                sleep(backoff);
+            }
+
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .GET()
+                    .header("Range", "bytes=" + offset + "-" + segment.end);
+            headers.forEach(builder::header);
+            builder.header("If-Range", validator);
+            try {
+                HttpResponse<Path> response = httpClient.sendOnce(builder.build(), info -> {
+                    if (info.statusCode() == 206 && contentRangeStart(info.headers()) == offset) {
+                        return HttpResponse.BodySubscribers.ofFile(segment.file,
+                                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    }
+                    return HttpResponse.BodySubscribers.replacing(null);
+                }, timeoutMs);
+                if (response.statusCode() == 200) {
+                    // If-Range 不匹配时服务端返回完整文件
+                    throw new ValidatorChangedException("服务端忽略 Range 请求: " + url);
+                }
+                if (response.body() == null) {
+                    throw new IOException("分段下载失败: HTTP " + response.statusCode());
+                }
+                if (segment.start + segment.downloaded() > segment.end) {
+                    return;
+                }
+                lastError = new IOException("分段响应不完整: " + segment.file);
+            } catch (ValidatorChangedException | InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * 单连接流式下载，不支持续传
+     */
+    private Result downloadStream(String url, Map<String, String> headers, Path target) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).GET();
+        headers.forEach(builder::header);
+        DigestFileBodyHandler bodyHandler = new DigestFileBodyHandler(target);
+        HttpResponse<DigestFileBodyHandler.Result> response = autoRetry
+                ? httpClient.send(builder.build(), bodyHandler, timeoutMs)
+                : httpClient.sendOnce(builder.build(), bodyHandler, timeoutMs);
+        if (response.statusCode() != 200 || response.body() == null) {
+            throw new IOException("下载失败: HTTP " + response.statusCode());
+        }
+        DigestFileBodyHandler.Result body = response.body();
+        return new Result(target, body.getSize(), body.getSha256(), response.headers());
+    }
+
+    /**
+     * 删除超过保留时间未更新的分段文件
+     */
+    private void purgeExpiredPartials() {
+        if (!Files.isDirectory(partialDirectory)) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - PARTIAL_MAX_AGE_MS;
+        try (var files = Files.list(partialDirectory)) {
+            files.forEach(path -> {
+                try {
+                    if (Files.getLastModifiedTime(path).toMillis() < expireBefore) {
+                        Files.deleteIfExists(path);
+                        log.debug("删除过期分段文件: {}", path);
+                    }
+                } catch (IOException e) {
+                    log.warn("删除过期分段文件失败: {}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理过期分段文件失败: {}", partialDirectory, e);
+        }
+    }
+
+    /**
+     * 获取文件长度、Range 支持和验证器，失败时返回 null
+     */
+    private HttpResponse<Void> probe(String url, Map<String, String> headers) throws InterruptedIOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody());
+        headers.forEach(builder::header);
+        try {
+            HttpResponse<Void> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200 ? response : null;
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            log.debug("HEAD 请求失败: {}", url, e);
+            return null;
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("分段下载被中断");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("分段下载失败", cause);
+        }
+    }
+
+    /**
+     * If-Range 只能使用强 ETag，否则使用 Last-Modified，都没有时返回 null
+     */
+    private static String validatorOf(HttpHeaders headers) {
+        String etag = headers.firstValue("ETag").orElse(null);
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    private static long contentRangeStart(HttpHeaders headers) {
+        // Content-Range: bytes 100-199/1000
+        String contentRange = headers.firstValue("Content-Range").orElse("");
+        int space = contentRange.indexOf(' ');
+        int dash = contentRange.indexOf('-');
+        if (space < 0 || dash <= space) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(space + 1, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String keyOf(String url) {
+        return HexFormat.of().formatHex(sha256().digest(url.getBytes(StandardCharsets.UTF_8))).substring(0, 32);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("重试等待时被中断");
+        }
+    }
+
+    /**
+     * 下载结果
+     */
+    public static final class Result {
+        private final Path path;
+        private final long size;
+        private final String sha256;
+        private final HttpHeaders headers;
+
+        private Result(Path path, long size, String sha256, HttpHeaders headers) {
+            this.path = path;
+            this.size = size;
+            this.sha256 = sha256;
+            this.headers = headers;
+        }
+
+        /** 文件路径 */
+        public Path getPath() {
+            return path;
+        }
+
+        /** 文件大小（字节） */
+        public long getSize() {
+            return size;
+        }
+
+        /** SHA-256 摘要（小写十六进制） */
+        public String getSha256() {
+            return sha256;
+        }
+
+        /** 响应头 */
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    /**
+     * 文件分段 [start, end]
+     */
+    private static final class Segment {
+        private final Path file;
+        private final long start;
+        private final long end;
+
+        private Segment(Path file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        /** 已下载的长度 */
+        private long downloaded() throws IOException {
+            return Files.exists(file) ? Files.size(file) : 0;
+        }
+    }
+
+    /**
+     * 服务端文件已变化，已下载的分段不可复用
+     */
+    private static final class ValidatorChangedException extends IOException {
+        private ValidatorChangedException(String message) {
+            super(message);
+        }
+    }
+}
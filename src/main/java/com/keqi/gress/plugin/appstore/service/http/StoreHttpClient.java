@@ -0,0 +1,341 @@
+package com.keqi.gress.plugin.appstore.service.http;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 应用商店 HTTP 客户端
+ *
+ * 基于 JDK HttpClient，所有请求共享同一个客户端实例：
+ * - 连接保持 keep-alive 并在请求间复用，HTTPS 通过 ALPN 协商 HTTP/2，协商失败时回退到 HTTP/1.1
+ * - 明文 HTTP 直接使用 HTTP/1.1，避免 h2c 升级握手
+ * - 每个路由（scheme://host:port）的并发请求数受限，超出时等待，等待超过连接超时时间则失败
+ * - 连接超时、响应超时（等待响应头）和总超时（含读取响应体）三重限制，挂起的服务端不会无限占用调用线程
+ * - GET/HEAD 请求在网络异常或超时时按指数退避重试
+ *
+ * 通过 {@link #requestFactory(long)} 为 RestTemplate 提供请求工厂，API 调用和安装包下载共享连接池，总超时分别设置。
+ */
+@Slf4j
+public class StoreHttpClient implements AutoCloseable {
+
+    /** 首次重试的退避时间（毫秒） */
+    private static final long RETRY_BACKOFF_MS = 200;
+
+    /** 最大退避时间（毫秒） */
+    private static final long MAX_RETRY_BACKOFF_MS = 2_000;
+
+    /** JDK HttpClient 不允许手动设置的请求头 */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of(
+            "connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient client;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final long totalTimeoutMs;
+    private final int maxRetries;
+    private final int maxConnectionsPerRoute;
+
+    /**
+     * 各路由的并发许可
+     * Key: scheme://host:port
+     */
+    private final Map<String, Semaphore> routePermits = new ConcurrentHashMap<>();
+
+    /**
+     * @param connectTimeoutMs 建立连接的超时时间（毫秒）
+     * @param readTimeoutMs 发出请求后等待响应头的超时时间（毫秒）
+     * @param totalTimeoutMs 默认的单次请求总超时时间，含读取响应体（毫秒）
+     * @param maxRetries GET/HEAD 请求失败后的重试次数
+     * @param maxConnectionsPerRoute 每个路由的最大并发请求数
+     */
+    public StoreHttpClient(long connectTimeoutMs, long readTimeoutMs, long totalTimeoutMs,
+                           int maxRetries, int maxConnectionsPerRoute) {
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMs);
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.totalTimeoutMs = totalTimeoutMs;
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.maxConnectionsPerRoute = Math.max(maxConnectionsPerRoute, 1);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * 发送请求，应用路由并发限制、超时和重试
+     *
+     * 总超时覆盖整个交换过程，响应体处理器在超时前完成时才返回；超时后取消交换并释放连接。
+     *
+     * @param request 请求（未设置超时时使用响应超时）
+     * @param bodyHandler 响应体处理器
+     * @return 响应
+     * @throws IOException 网络异常、超时或重试耗尽
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        return send(request, bodyHandler, totalTimeoutMs);
+    }
+
+    /**
+     * 按指定的总超时发送请求
+     *
+     * @param request 请求
+     * @param bodyHandler 响应体处理器
+     * @param totalTimeoutMs 单次尝试的总超时时间（毫秒）
+     * @return 响应
+     * @throws IOException 网络异常、超时或重试耗尽
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                    long totalTimeoutMs) throws IOException {
+        HttpRequest prepared = prepare(request);
+        boolean idempotent = "GET".equals(prepared.method()) || "HEAD".equals(prepared.method());
+        int attempts = idempotent ? maxRetries + 1 : 1;
+
+        IOException lastError = null;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            if (attempt > 0) {
+                long backoff = Math.min(RETRY_BACKOFF_MS << (attempt - 1), MAX_RETRY_BACKOFF_MS);
+                log.warn("请求失败，{}ms 后重试({}/{}): {} {}, 原因: {}",
+                        backoff, attempt, maxRetries, prepared.method(), prepared.uri(), lastError.getMessage());
+                sleep(backoff);
+            }
+            try {
+                return sendOnce(prepared, bodyHandler, totalTimeoutMs);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * 当前共享的 JDK HttpClient
+     */
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * 创建 RestTemplate 请求工厂
+     *
+     * @param totalTimeoutMs 单次请求的总超时时间（毫秒）
+     */
+    public ClientHttpRequestFactory requestFactory(long totalTimeoutMs) {
+        return (uri, httpMethod) -> new StoreClientHttpRequest(uri, httpMethod, totalTimeoutMs);
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+    }
+
+    /**
+     * 发送请求，不重试，由调用方决定失败后的处理（例如断点续传时按已下载的长度重新发起请求）
+     *
+     * @param request 请求
+     * @param bodyHandler 响应体处理器
+     * @param totalTimeoutMs 总超时时间（毫秒）
+     * @return 响应
+     * @throws IOException 网络异常或超时
+     */
+    public <T> HttpResponse<T> sendOnce(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                        long totalTimeoutMs) throws IOException {
+        request = prepare(request);
+        String route = routeOf(request.uri());
+        Semaphore permits = routePermits.computeIfAbsent(route, key -> new Semaphore(maxConnectionsPerRoute));
+        try {
+            if (!permits.tryAcquire(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("到 " + route + " 的并发请求数已达上限(" + maxConnectionsPerRoute + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待连接时被中断: " + route);
+        }
+
+        CompletableFuture<HttpResponse<T>> future = null;
+        try {
+            future = client.sendAsync(request, bodyHandler);
+            return future.get(totalTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HttpTimeoutException("请求总耗时超过 " + totalTimeoutMs + "ms: " + request.uri());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("请求被中断: " + request.uri());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("请求失败: " + request.uri(), cause);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 补充默认超时，明文 HTTP 固定使用 HTTP/1.1
+     */
+    private HttpRequest prepare(HttpRequest request) {
+        boolean plainHttp = "http".equalsIgnoreCase(request.uri().getScheme());
+        if (request.timeout().isPresent() && !(plainHttp && request.version().isEmpty())) {
+            return request;
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+        if (request.timeout().isEmpty()) {
+            builder.timeout(readTimeout);
+        }
+        if (plainHttp && request.version().isEmpty()) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        return builder.build();
+    }
+
+    private static String routeOf(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("重试等待时被中断");
+        }
+    }
+
+    /**
+     * RestTemplate 请求，请求体缓冲在内存中，响应体完整读取后返回
+     */
+    private class StoreClientHttpRequest extends AbstractClientHttpRequest {
+
+        private final URI uri;
+        private final HttpMethod method;
+        private final long totalTimeoutMs;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        private StoreClientHttpRequest(URI uri, HttpMethod method, long totalTimeoutMs) {
+            this.uri = uri;
+            this.method = method;
+            this.totalTimeoutMs = totalTimeoutMs;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return body;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            byte[] bytes = body.toByteArray();
+            HttpRequest.BodyPublisher publisher = bytes.length > 0
+                    ? HttpRequest.BodyPublishers.ofByteArray(bytes)
+                    : HttpRequest.BodyPublishers.noBody();
+
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method.name(), publisher);
+            headers.forEach((name, values) -> {
+                if (!RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                    values.forEach(value -> builder.header(name, value));
+                }
+            });
+
+            HttpResponse<byte[]> response = send(builder.build(), HttpResponse.BodyHandlers.ofByteArray(), totalTimeoutMs);
+            return new StoreClientHttpResponse(response);
+        }
+    }
+
+    /**
+     * RestTemplate 响应
+     */
+    private static class StoreClientHttpResponse implements ClientHttpResponse {
+
+        private final HttpResponse<byte[]> response;
+        private HttpHeaders headers;
+
+        private StoreClientHttpResponse(HttpResponse<byte[]> response) {
+            this.response = response;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(response.statusCode());
+        }
+
+        @Override
+        public String getStatusText() {
+            HttpStatus status = HttpStatus.resolve(response.statusCode());
+            return status != null ? status.getReasonPhrase() : "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                HttpHeaders result = new HttpHeaders();
+                for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+                    // HTTP/2 伪头（如 :status）不属于响应头
+                    if (!entry.getKey().startsWith(":")) {
+                        result.addAll(entry.getKey(), entry.getValue());
+                    }
+                }
+                headers = result;
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            byte[] body = response.body();
+            return new ByteArrayInputStream(body != null ? body : new byte[0]);
+        }
+
+        @Override
+        public void close() {
+            // 响应体已完整读取，连接已归还连接池
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.keqi.gress.plugin.appstore.service.install;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 本地安装包缓存
+ *
+ * 与商店发布的摘要比对通过的安装包按 {@code <pluginId>/<version>/<sha256>.jar} 保存在缓存目录：
+ * - 指定版本重新安装或回滚时直接使用发布时记录的摘要对应的本地文件，不访问应用商店；
+ *   重启后首次使用从磁盘加载的文件时重新计算摘要，与记录的摘要不一致的文件被删除
+ * - 未指定版本时，摘要与商店当前发布的一致则直接使用本地文件，不再下载
+ * - 新文件先写入缓存目录下的临时文件，再通过 rename 原子发布，读取方不会看到写了一半的文件
+ * - 读取方通过 {@link Lease} 持有文件，持有期间文件不会被淘汰
+ * - 总大小超过上限时按最近访问时间淘汰，访问时间记录在文件修改时间上，重启后仍然有效
+ */
+@Slf4j
+public class LocalPackageCache {
+
+    private static final String TEMP_DIRECTORY = ".tmp";
+    private static final String PACKAGE_SUFFIX = ".jar";
+
+    private final Path directory;
+    private final Path tempDirectory;
+    private final long maxSizeBytes;
+
+    /**
+     * 缓存条目（access-order）
+     * Key: pluginId/version
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long totalSize;
+
+    /**
+     * @param directory 缓存目录
+     * @param maxSizeBytes 缓存总大小上限（字节）
+     */
+    public LocalPackageCache(Path directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.tempDirectory = directory.resolve(TEMP_DIRECTORY);
+        this.maxSizeBytes = maxSizeBytes;
+        load();
+    }
+
+    /**
+     * 查找插件版本的缓存安装包，不访问应用商店
+     *
+     * 缓存中只有与商店发布的摘要比对通过的安装包，按发布时记录的摘要校验文件内容：
+     * 本进程发布的文件已在下载时校验，从磁盘加载的文件首次使用时重新计算摘要。
+     *
+     * @param pluginId 插件ID
+     * @param version 版本号
+     * @return 缓存文件的租约，未命中或文件内容与记录的摘要不一致时返回 null
+     */
+    public Lease acquire(String pluginId, String version) {
+        Lease lease;
+        synchronized (this) {
+            Entry entry = entries.get(keyOf(pluginId, version));
+            if (entry == null) {
+                return null;
+            }
+            lease = lease(entry);
+            if (lease == null) {
+                return null;
+            }
+        }
+
+        Entry entry = lease.entry;
+        if (!entry.contentVerified) {
+            String actual;
+            try {
+                actual = sha256Of(entry.path);
+            } catch (IOException e) {
+                log.warn("读取本地缓存安装包失败: {}", entry.path, e);
+                actual = null;
+            }
+            if (!entry.sha256.equalsIgnoreCase(actual)) {
+                log.warn("本地缓存安装包与记录的摘要不一致，已删除: {}, expected={}, actual={}",
+                        entry.key, entry.sha256, actual);
+                synchronized (this) {
+                    remove(entry);
+                }
+                lease.close();
+                return null;
+            }
+            entry.contentVerified = true;
+        }
+        return lease;
+    }
+
+    /**
+     * 查找插件版本的缓存安装包
+     *
+     * @param pluginId 插件ID
+     * @param version 版本号
+     * @param sha256 商店发布的摘要，缓存文件的摘要不一致时视为未命中
+     * @return 缓存文件的租约，未命中时返回 null
+     */
+    public synchronized Lease acquire(String pluginId, String version, String sha256) {
+        Entry entry = entries.get(keyOf(pluginId, version));
+        if (entry == null || !entry.sha256.equalsIgnoreCase(sha256)) {
+            return null;
+        }
+        return lease(entry);
+    }
+
+    /**
+     * 在缓存目录下创建临时文件，与缓存文件位于同一文件系统，发布时可以原子重命名
+     *
+     * @return 临时文件
+     */
+    public Path createTempFile() throws IOException {
+        Files.createDirectories(tempDirectory);
+        return Files.createTempFile(tempDirectory, "package-", ".tmp");
+    }
+
+    /**
+     * 发布已校验的安装包
+     *
+     * 临时文件被移动到缓存目录。同一插件版本已缓存其他摘要的文件时替换旧文件。
+     * 只能发布与商店发布的摘要比对通过的安装包，未校验的安装包不能加入缓存。
+     *
+     * @param pluginId 插件ID
+     * @param version 版本号
+     * @param sha256 安装包摘要（已与商店发布的摘要一致）
+     * @param tempFile 由 {@link #createTempFile()} 创建的临时文件
+     * @return 缓存文件的租约
+     */
+    public synchronized Lease publish(String pluginId, String version, String sha256, Path tempFile) throws IOException {
+        String key = keyOf(pluginId, version);
+        Path target = directory.resolve(sanitize(pluginId)).resolve(sanitize(version))
+                .resolve(sha256.toLowerCase() + PACKAGE_SUFFIX);
+        Entry previous = entries.get(key);
+        if (previous != null && previous.path.equals(target) && Files.exists(target)) {
+            // 相同摘要的文件已由其他下载发布，内容一致，丢弃临时文件
+            deleteQuietly(tempFile);
+            touch(target);
+            previous.leases++;
+            return new Lease(previous);
+        }
+
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (previous != null) {
+            remove(previous);
+            if (previous.leases == 0 && !previous.path.equals(target)) {
+                deleteQuietly(previous.path);
+            }
+        }
+
+        Entry entry = new Entry(key, sha256.toLowerCase(), target, Files.size(target));
+        // 摘要在下载时已计算并与商店发布的摘要比对
+        entry.contentVerified = true;
+        entries.put(key, entry);
+        totalSize += entry.size;
+        entry.leases++;
+        log.info("安装包已加入本地缓存: pluginId={}, version={}, size={} bytes", pluginId, version, entry.size);
+
+        evict();
+        return new Lease(entry);
+    }
+
+    /**
+     * 缓存的总大小（字节）
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * 持有条目，文件已被删除时移除条目并返回 null
+     */
+    private Lease lease(Entry entry) {
+        if (!Files.exists(entry.path)) {
+            remove(entry);
+            return null;
+        }
+        touch(entry.path);
+        entry.leases++;
+        return new Lease(entry);
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.leases--;
+        // 持有期间被替换或淘汰的文件在最后一个读取方释放后删除
+        Entry current = entries.get(entry.key);
+        if (entry.leases == 0 && current != entry && (current == null || !current.path.equals(entry.path))) {
+            deleteQuietly(entry.path);
+        }
+    }
+
+    /**
+     * 淘汰最久未访问且未被持有的条目，直到总大小不超过上限
+     */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalSize > maxSizeBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.leases > 0) {
+                continue;
+            }
+            iterator.remove();
+            totalSize -= entry.size;
+            deleteQuietly(entry.path);
+            log.info("淘汰本地缓存安装包: {}, size={} bytes", entry.key, entry.size);
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            totalSize -= entry.size;
+        }
+    }
+
+    /**
+     * 扫描缓存目录重建索引，按文件修改时间恢复访问顺序，清理上次遗留的临时文件
+     */
+    private void load() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            log.warn("创建本地安装包缓存目录失败: {}", directory, e);
+            return;
+        }
+
+        if (Files.isDirectory(tempDirectory)) {
+            try (Stream<Path> files = Files.list(tempDirectory)) {
+                files.forEach(LocalPackageCache::deleteQuietly);
+            } catch (IOException e) {
+                log.warn("清理本地缓存临时文件失败: {}", tempDirectory, e);
+            }
+        }
+
+        List<Entry> loaded = new ArrayList<>();
+        List<FileTime> accessTimes = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory, 3)) {
+            files.filter(path -> !path.startsWith(tempDirectory))
+                    .filter(path -> path.getFileName().toString().endsWith(PACKAGE_SUFFIX))
+                    .filter(path -> directory.relativize(path).getNameCount() == 3)
+                    .forEach(path -> {
+                        try {
+                            Path relative = directory.relativize(path);
+                            String fileName = relative.getName(2).toString();
+                            String key = relative.getName(0) + "/" + relative.getName(1);
+                            String sha256 = fileName.substring(0, fileName.length() - PACKAGE_SUFFIX.length());
+                            FileTime accessTime = Files.getLastModifiedTime(path);
+                            loaded.add(new Entry(key, sha256, path, Files.size(path)));
+                            accessTimes.add(accessTime);
+                        } catch (IOException e) {
+                            log.warn("读取本地缓存安装包失败: {}", path, e);
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("扫描本地安装包缓存失败: {}", directory, e);
+            return;
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < loaded.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(accessTimes::get));
+        synchronized (this) {
+            for (int i : order) {
+                Entry entry = loaded.get(i);
+                Entry previous = entries.put(entry.key, entry);
+                if (previous != null) {
+                    // 同一版本存在多个摘要时保留最近访问的文件
+                    totalSize -= previous.size;
+                    deleteQuietly(previous.path);
+                }
+                totalSize += entry.size;
+            }
+            evict();
+        }
+        log.info("本地安装包缓存已加载: 目录={}, 安装包数={}, 总大小={} bytes", directory, entries.size(), totalSize);
+    }
+
+    private static String keyOf(String pluginId, String version) {
+        return sanitize(pluginId) + "/" + sanitize(version);
+    }
+
+    /**
+     * 替换不适合作为目录名的字符
+     */
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static String sha256Of(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            log.debug("更新缓存文件访问时间失败: {}", path, e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除本地缓存文件失败: {}", path, e);
+        }
+    }
+
+    /**
+     * 缓存文件的租约，关闭前文件不会被删除
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        /** 缓存文件路径 */
+        public Path getPath() {
+            return entry.path;
+        }
+
+        /** 文件大小（字节） */
+        public long getSize() {
+            return entry.size;
+        }
+
+        /** SHA-256 摘要 */
+        public String getSha256() {
+            return entry.sha256;
+        }
+
+        @Override
+        public void close() {
+            synchronized (LocalPackageCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String sha256;
+        private final Path path;
+        private final long size;
+        private int leases;
+        /** 文件内容是否已按摘要校验 */
+        private volatile boolean contentVerified;
+
+        private Entry(String key, String sha256, Path path, long size) {
+            this.key = key;
+            this.sha256 = sha256;
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
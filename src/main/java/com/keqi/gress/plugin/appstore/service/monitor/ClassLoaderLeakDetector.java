@@ -0,0 +1,425 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.model.Result;
+import com.keqi.gress.common.plugin.PluginPackageLifecycle;
+import com.keqi.gress.common.plugin.PluginPackageRuntimeInfo;
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Scheduled;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.dto.monitor.ClassLoaderLeak;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件类加载器泄漏检测器
+ *
+ * 卸载和升级编排器在插件下线前调用 {@link #capture}，记录旧类加载器的弱引用
+ * （通过线程上下文类加载器和线程类的加载器定位名称与插件ID一致的加载器），jfr 模式下同时记录 JFR 类加载器ID；
+ * 下线成功后调用 {@link #watch} 开始跟踪，失败时调用 {@link #discard} 放弃。
+ *
+ * 定时检查跟踪中的类加载器：下线后经历 class-loader-leak-gc-cycles 次老年代/并发 GC 仍然存活
+ * （弱引用未被清除，或仍出现在 JFR 类加载器统计中）即判定为泄漏，写入状态变更日志并通过接口报告；
+ * 判定泄漏后被回收的类加载器同样记录一条释放日志。
+ *
+ * 只持有弱引用，检测本身不会阻止类加载器回收。
+ */
+@Slf4j
+@Service
+public class ClassLoaderLeakDetector {
+
+    @Inject(source = Inject.BeanSource.SPRING)
+    private PluginPackageLifecycle pluginLifecycle;
+
+    @Inject
+    private PluginMemorySampler memorySampler;
+
+    @Inject
+    private PluginStateChangeListener stateChangeListener;
+
+    @Inject
+    private AppStoreConfig config;
+
+    /** 下线原因：卸载 */
+    public static final String REASON_UNINSTALL = "UNINSTALL";
+
+    /** 下线原因：升级 */
+    public static final String REASON_UPGRADE = "UPGRADE";
+
+    /** 状态：观察中 */
+    public static final String STATUS_WATCHING = "WATCHING";
+
+    /** 状态：判定为泄漏 */
+    public static final String STATUS_LEAKED = "LEAKED";
+
+    /** 状态变更日志中的泄漏状态 */
+    public static final String STATE_CLASSLOADER_LEAK = "CLASSLOADER_LEAK";
+
+    /** 状态变更日志中的释放状态 */
+    public static final String STATE_CLASSLOADER_RELEASED = "CLASSLOADER_RELEASED";
+
+    /** 写入状态变更日志的事件状态，不代表插件运行状态，恢复状态缓存时需要排除 */
+    public static final List<String> EVENT_STATES = List.of(STATE_CLASSLOADER_LEAK, STATE_CLASSLOADER_RELEASED);
+
+    /** 默认判定泄漏前需要经历的 GC 周期数 */
+    private static final int DEFAULT_GC_CYCLES = 3;
+
+    /** 最多同时跟踪的类加载器数 */
+    private static final int MAX_TRACKED = 256;
+
+    /** 年轻代收集器名称关键字（年轻代 GC 不卸载类） */
+    private static final String[] YOUNG_COLLECTOR_KEYWORDS = {"Young", "Scavenge", "ParNew", "Copy", "Minor"};
+
+    /**
+     * 已定位但尚未确认下线的类加载器
+     * Key: pluginId
+     */
+    private final Map<String, Tracked> captured = new ConcurrentHashMap<>();
+
+    /**
+     * 跟踪中的类加载器（按开始跟踪的先后顺序）
+     */
+    private final Map<Long, Tracked> tracked = new LinkedHashMap<>();
+
+    private long nextTrackId = 1;
+
+    private final List<GarbageCollectorMXBean> collectors = selectCollectors();
+
+    /**
+     * 在插件下线前定位并记录其类加载器
+     *
+     * @param pluginId 插件ID
+     * @param pluginVersion 当前版本
+     */
+    public void capture(String pluginId, String pluginVersion) {
+        if (pluginId == null) {
+            return;
+        }
+        try {
+            List<WeakReference<ClassLoader>> loaders = findLoaders(pluginId);
+            String loaderClass = null;
+            Long jfrLoaderId = null;
+            Result<PluginPackageRuntimeInfo> result = pluginLifecycle.getPluginPackageRuntimeInfo(pluginId);
+            if (result.isSuccess() && result.getData() != null) {
+                PluginPackageRuntimeInfo runtimeInfo = result.getData();
+                if (runtimeInfo.getClassLoader() != null) {
+                    loaderClass = runtimeInfo.getClassLoader().getClassName();
+                }
+                jfrLoaderId = memorySampler.findLoaderId(runtimeInfo);
+            }
+            if (loaders.isEmpty() && jfrLoaderId == null) {
+                log.debug("未能定位插件类加载器，跳过泄漏检测: pluginId={}", pluginId);
+                captured.remove(pluginId);
+                return;
+            }
+            if (loaderClass == null && !loaders.isEmpty()) {
+                ClassLoader loader = loaders.get(0).get();
+                loaderClass = loader != null ? loader.getClass().getName() : null;
+            }
+
+            captured.put(pluginId, new Tracked(pluginId, pluginVersion, loaders, loaderClass, jfrLoaderId));
+            log.debug("已记录插件类加载器: pluginId={}, version={}, 弱引用={}, jfrLoaderId={}",
+                    pluginId, pluginVersion, loaders.size(), jfrLoaderId);
+        } catch (Exception e) {
+            log.warn("记录插件类加载器失败: pluginId={}", pluginId, e);
+        }
+    }
+
+    /**
+     * 插件下线成功，开始跟踪之前记录的类加载器
+     *
+     * @param pluginId 插件ID
+     * @param reason 下线原因（REASON_* 常量）
+     */
+    public void watch(String pluginId, String reason) {
+        Tracked entry = pluginId != null ? captured.remove(pluginId) : null;
+        if (entry == null) {
+            return;
+        }
+        entry.reason = reason;
+        entry.watchedAt = System.currentTimeMillis();
+        entry.gcCountAtWatch = gcCount();
+        synchronized (tracked) {
+            tracked.put(nextTrackId++, entry);
+            evictOverflow();
+        }
+        log.info("开始跟踪插件类加载器回收: pluginId={}, version={}, reason={}",
+                pluginId, entry.pluginVersion, reason);
+    }
+
+    /**
+     * 插件下线失败，放弃之前记录的类加载器
+     *
+     * @param pluginId 插件ID
+     */
+    public void discard(String pluginId) {
+        if (pluginId != null) {
+            captured.remove(pluginId);
+        }
+    }
+
+    /**
+     * 获取跟踪中的类加载器
+     *
+     * @param includeWatching 是否包含尚未判定为泄漏的类加载器
+     * @return 类加载器列表（按开始跟踪时间升序）
+     */
+    public List<ClassLoaderLeak> getLeaks(boolean includeWatching) {
+        long gcCount = gcCount();
+        List<ClassLoaderLeak> result = new ArrayList<>();
+        synchronized (tracked) {
+            for (Tracked entry : tracked.values()) {
+                if (includeWatching || entry.detectedAt > 0) {
+                    result.add(entry.toLeak(gcCount));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 定时检查跟踪中的类加载器
+     * 每 30 秒执行一次
+     */
+    @Scheduled(cron = "*/30 * * * * ?")
+    public void check() {
+        List<Tracked> leaked = new ArrayList<>();
+        List<Tracked> released = new ArrayList<>();
+        try {
+            long gcCount = gcCount();
+            long currentTime = System.currentTimeMillis();
+            int threshold = getGcCycles();
+
+            synchronized (tracked) {
+                Iterator<Tracked> iterator = tracked.values().iterator();
+                while (iterator.hasNext()) {
+                    Tracked entry = iterator.next();
+                    boolean thresholdReached = gcCount - entry.gcCountAtWatch >= threshold;
+                    if (thresholdReached && entry.thresholdReachedAt == 0) {
+                        entry.thresholdReachedAt = currentTime;
+                    }
+
+                    if (entry.isReleased(memorySampler)) {
+                        iterator.remove();
+                        if (entry.detectedAt > 0) {
+                            released.add(entry);
+                        }
+                        continue;
+                    }
+                    if (entry.detectedAt == 0 && thresholdReached && entry.isAliveAfterThreshold(memorySampler)) {
+                        entry.detectedAt = currentTime;
+                        leaked.add(entry);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("检查插件类加载器回收失败", e);
+        }
+
+        for (Tracked entry : leaked) {
+            log.warn("检测到插件类加载器泄漏: pluginId={}, version={}, reason={}, loader={}, detection={}",
+                    entry.pluginId, entry.pluginVersion, entry.reason, entry.loaderClass, entry.detection());
+            stateChangeListener.recordEvent(entry.pluginId, entry.reason, STATE_CLASSLOADER_LEAK, "system",
+                    String.format("版本 %s 的类加载器在 %d 次 GC 后仍未回收（%s）",
+                            entry.pluginVersion, getGcCycles(), entry.loaderClass));
+        }
+        for (Tracked entry : released) {
+            log.info("泄漏的插件类加载器已回收: pluginId={}, version={}", entry.pluginId, entry.pluginVersion);
+            stateChangeListener.recordEvent(entry.pluginId, STATE_CLASSLOADER_LEAK, STATE_CLASSLOADER_RELEASED,
+                    "system", String.format("版本 %s 的类加载器已回收", entry.pluginVersion));
+        }
+    }
+
+    /**
+     * 通过线程查找名称与插件ID一致的类加载器
+     *
+     * 检查每个线程的上下文类加载器和线程类的定义加载器（及它们的父加载器）。
+     * 插件框架没有公开类加载器实例，插件在下线前没有任何存活线程时无法取得弱引用：
+     * jfr 模式下仍可通过 JFR 类加载器ID跟踪，其他模式下跳过该插件的泄漏检测。
+     */
+    private List<WeakReference<ClassLoader>> findLoaders(String pluginId) {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() * 2 + 16];
+        int count = root.enumerate(threads, true);
+
+        List<WeakReference<ClassLoader>> loaders = new ArrayList<>(1);
+        for (int i = 0; i < count; i++) {
+            collectLoaders(pluginId, threads[i].getContextClassLoader(), loaders);
+            collectLoaders(pluginId, threads[i].getClass().getClassLoader(), loaders);
+        }
+        return loaders;
+    }
+
+    private static void collectLoaders(String pluginId, ClassLoader start, List<WeakReference<ClassLoader>> loaders) {
+        for (ClassLoader loader = start; loader != null; loader = loader.getParent()) {
+            if (pluginId.equals(loader.getName()) && !contains(loaders, loader)) {
+                loaders.add(new WeakReference<>(loader));
+            }
+        }
+    }
+
+    private static boolean contains(List<WeakReference<ClassLoader>> loaders, ClassLoader loader) {
+        for (WeakReference<ClassLoader> reference : loaders) {
+            if (reference.refersTo(loader)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 超过上限时丢弃最早的仍在观察中的条目，没有则丢弃最早的条目
+     */
+    private void evictOverflow() {
+        while (tracked.size() > MAX_TRACKED) {
+            Iterator<Tracked> iterator = tracked.values().iterator();
+            Tracked victim = null;
+            while (iterator.hasNext()) {
+                Tracked entry = iterator.next();
+                if (entry.detectedAt == 0) {
+                    victim = entry;
+                    iterator.remove();
+                    break;
+                }
+            }
+            if (victim == null) {
+                iterator = tracked.values().iterator();
+                victim = iterator.next();
+                iterator.remove();
+            }
+            log.warn("跟踪的插件类加载器过多，丢弃最早的条目: pluginId={}, version={}",
+                    victim.pluginId, victim.pluginVersion);
+        }
+    }
+
+    /**
+     * 可能卸载类的 GC 累计次数（老年代、混合和并发收集器）
+     */
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            long collections = collector.getCollectionCount();
+            if (collections > 0) {
+                count += collections;
+            }
+        }
+        return count;
+    }
+
+    private static List<GarbageCollectorMXBean> selectCollectors() {
+        List<GarbageCollectorMXBean> all = ManagementFactory.getGarbageCollectorMXBeans();
+        List<GarbageCollectorMXBean> selected = new ArrayList<>();
+        for (GarbageCollectorMXBean collector : all) {
+            boolean young = false;
+            for (String keyword : YOUNG_COLLECTOR_KEYWORDS) {
+                if (collector.getName().contains(keyword)) {
+                    young = true;
+                    break;
+                }
+            }
+            if (!young) {
+                selected.add(collector);
+            }
+        }
+        // 无法区分时使用全部收集器
+        return selected.isEmpty() ? all : selected;
+    }
+
+    private int getGcCycles() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        if (monitorConfig != null && monitorConfig.getClassLoaderLeakGcCycles() != null
+                && monitorConfig.getClassLoaderLeakGcCycles() > 0) {
+            return monitorConfig.getClassLoaderLeakGcCycles();
+        }
+        return DEFAULT_GC_CYCLES;
+    }
+
+    /**
+     * 跟踪中的类加载器
+     */
+    private static final class Tracked {
+        private final String pluginId;
+        private final String pluginVersion;
+        private final List<WeakReference<ClassLoader>> loaders;
+        private final String loaderClass;
+        private final Long jfrLoaderId;
+        private String reason;
+        private long watchedAt;
+        private long gcCountAtWatch;
+        private long thresholdReachedAt;
+        private long detectedAt;
+
+        private Tracked(String pluginId, String pluginVersion, List<WeakReference<ClassLoader>> loaders,
+                        String loaderClass, Long jfrLoaderId) {
+            this.pluginId = pluginId;
+            this.pluginVersion = pluginVersion;
+            this.loaders = loaders;
+            this.loaderClass = loaderClass;
+            this.jfrLoaderId = jfrLoaderId;
+        }
+
+        private boolean isReferenceAlive() {
+            for (WeakReference<ClassLoader> reference : loaders) {
+                if (!reference.refersTo(null)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 弱引用已全部清除，且 JFR 统计中不再出现（类加载器统计按采样间隔上报，需等到跟踪开始之后没有再上报）
+         */
+        private boolean isReleased(PluginMemorySampler memorySampler) {
+            return !isReferenceAlive()
+                    && (jfrLoaderId == null || !memorySampler.isLoaderReportedSince(jfrLoaderId, watchedAt));
+        }
+
+        /**
+         * 达到 GC 周期数之后仍然存活
+         */
+        private boolean isAliveAfterThreshold(PluginMemorySampler memorySampler) {
+            return isReferenceAlive()
+                    || (jfrLoaderId != null && memorySampler.isLoaderReportedSince(jfrLoaderId, thresholdReachedAt));
+        }
+
+        private String detection() {
+            return !loaders.isEmpty() ? "REFERENCE" : "JFR";
+        }
+
+        private ClassLoaderLeak toLeak(long gcCount) {
+            String loaderName = null;
+            for (WeakReference<ClassLoader> reference : loaders) {
+                ClassLoader loader = reference.get();
+                if (loader != null) {
+                    loaderName = loader.getName();
+                    break;
+                }
+            }
+            return ClassLoaderLeak.builder()
+                    .pluginId(pluginId)
+                    .pluginVersion(pluginVersion)
+                    .reason(reason)
+                    .loaderName(loaderName != null ? loaderName : pluginId)
+                    .loaderClass(loaderClass)
+                    .detection(detection())
+                    .status(detectedAt > 0 ? STATUS_LEAKED : STATUS_WATCHING)
+                    .gcCycles(gcCount - gcCountAtWatch)
+                    .watchedAt(watchedAt)
+                    .detectedAt(detectedAt > 0 ? detectedAt : null)
+                    .build();
+        }
+    }
+}
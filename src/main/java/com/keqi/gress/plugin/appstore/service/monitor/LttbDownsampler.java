@@ -0,0 +1,183 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 监控历史降采样器（Largest-Triangle-Three-Buckets）
+ *
+ * 将时间范围等分为 maxPoints - 2 个时间桶，首尾两点固定保留，每个时间桶中选出与
+ * 上一个选中点、下一个时间桶平均点构成三角形面积最大的点，从而保留内存曲线的峰谷形状。
+ *
+ * 数据按时间顺序逐行传入，只缓存待选的时间桶和正在累加的下一个时间桶，
+ * 输出点数不超过 maxPoints。输入点数不超过 maxPoints 时原样返回（最多缓存 maxPoints 个点）。
+ * 非线程安全，每次查询创建一个实例。
+ */
+public class LttbDownsampler {
+
+    /** 最少输出点数（首、尾和至少一个中间点） */
+    public static final int MIN_POINTS = 3;
+
+    private final long startTime;
+    private final long span;
+    private final int maxPoints;
+    private final int bucketCount;
+
+    /** 点数尚未超过 maxPoints 时缓存的原始点，超过后置为 null 并转入降采样 */
+    private List<PluginMonitorHistory> buffered = new ArrayList<>();
+
+    private final List<PluginMonitorHistory> selected = new ArrayList<>();
+
+    /** 上一个选中点 */
+    private PluginMonitorHistory anchor;
+
+    /** 等待下一个时间桶结束后再选点的时间桶 */
+    private List<PluginMonitorHistory> pending = new ArrayList<>();
+
+    /** 正在累加的时间桶 */
+    private List<PluginMonitorHistory> current = new ArrayList<>();
+    private int currentIndex = -1;
+
+    /** 最后一个点（固定保留） */
+    private PluginMonitorHistory last;
+
+    /**
+     * @param startTime 时间范围起点（毫秒）
+     * @param endTime 时间范围终点（毫秒）
+     * @param maxPoints 最多输出点数，小于 MIN_POINTS 时按 MIN_POINTS 处理
+     */
+    public LttbDownsampler(long startTime, long endTime, int maxPoints) {
+        this.startTime = startTime;
+        this.span = Math.max(endTime - startTime, 1);
+        this.maxPoints = Math.max(maxPoints, MIN_POINTS);
+        this.bucketCount = this.maxPoints - 2;
+    }
+
+    /**
+     * 最多输出点数
+     */
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * 按时间顺序加入一个点
+     */
+    public void add(PluginMonitorHistory point) {
+        if (buffered != null) {
+            buffered.add(point);
+            if (buffered.size() <= maxPoints) {
+                return;
+            }
+            List<PluginMonitorHistory> points = buffered;
+            buffered = null;
+            for (PluginMonitorHistory buffer : points) {
+                accept(buffer);
+            }
+            return;
+        }
+        accept(point);
+    }
+
+    /**
+     * 结束输入并返回降采样结果
+     */
+    public List<PluginMonitorHistory> finish() {
+        if (buffered != null) {
+            List<PluginMonitorHistory> points = buffered;
+            buffered = new ArrayList<>();
+            return points;
+        }
+        if (!pending.isEmpty()) {
+            select(pending, average(current, last));
+        }
+        if (!current.isEmpty()) {
+            select(current, last);
+        }
+        pending = new ArrayList<>();
+        current = new ArrayList<>();
+        if (last != null) {
+            selected.add(last);
+            last = null;
+        }
+        return selected;
+    }
+
+    private void accept(PluginMonitorHistory point) {
+        if (anchor == null) {
+            anchor = point;
+            selected.add(point);
+            return;
+        }
+        if (last != null) {
+            addToBucket(last);
+        }
+        last = point;
+    }
+
+    private void addToBucket(PluginMonitorHistory point) {
+        long offset = Math.max(x(point) - startTime, 0);
+        int index = (int) Math.min(offset * bucketCount / span, bucketCount - 1);
+        if (index != currentIndex && !current.isEmpty()) {
+            if (!pending.isEmpty()) {
+                select(pending, average(current, null));
+            }
+            List<PluginMonitorHistory> recycled = pending;
+            recycled.clear();
+            pending = current;
+            current = recycled;
+        }
+        currentIndex = index;
+        current.add(point);
+    }
+
+    /**
+     * 在时间桶中选出与上一个选中点、下一个参考点构成三角形面积最大的点
+     */
+    private void select(List<PluginMonitorHistory> bucket, double[] next) {
+        double ax = x(anchor);
+        double ay = y(anchor);
+        PluginMonitorHistory best = bucket.get(0);
+        double bestArea = -1;
+        for (PluginMonitorHistory point : bucket) {
+            double area = Math.abs((ax - next[0]) * (y(point) - ay) - (ax - x(point)) * (next[1] - ay));
+            if (area > bestArea) {
+                bestArea = area;
+                best = point;
+            }
+        }
+        selected.add(best);
+        anchor = best;
+        bucket.clear();
+    }
+
+    private void select(List<PluginMonitorHistory> bucket, PluginMonitorHistory next) {
+        select(bucket, new double[]{x(next), y(next)});
+    }
+
+    /**
+     * 时间桶的平均点；时间桶为空时使用备用点
+     */
+    private double[] average(List<PluginMonitorHistory> bucket, PluginMonitorHistory fallback) {
+        if (bucket.isEmpty()) {
+            return new double[]{x(fallback), y(fallback)};
+        }
+        double sumX = 0;
+        double sumY = 0;
+        for (PluginMonitorHistory point : bucket) {
+            sumX += x(point);
+            sumY += y(point);
+        }
+        return new double[]{sumX / bucket.size(), sumY / bucket.size()};
+    }
+
+    private static long x(PluginMonitorHistory point) {
+        return point.getTimestamp() != null ? point.getTimestamp() : 0;
+    }
+
+    private static double y(PluginMonitorHistory point) {
+        return point.getMemoryUsage() != null ? point.getMemoryUsage() : 0;
+    }
+}
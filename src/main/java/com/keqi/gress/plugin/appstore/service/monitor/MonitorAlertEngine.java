@@ -0,0 +1,472 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAlert;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 插件监控告警引擎
+ *
+ * 由快照定时任务在每个采集周期调用，按插件评估以下规则：
+ * - MEMORY_THRESHOLD：内存超过插件的告警阈值
+ * - MEMORY_GROWTH：内存增长速率（指数平滑）超过阈值
+ * - PLUGIN_ERROR：状态收集报告错误
+ * - RESTART_LOOP：时间窗口内的重启次数达到阈值，重启由状态变更记录器写日志时通知
+ *
+ * 触发需连续 alert-debounce-ticks 个周期越过阈值，恢复需连续 alert-resolve-ticks 个周期
+ * 回到恢复线（阈值下方 alert-hysteresis-percent）以下，避免在阈值附近反复触发。
+ * 每条规则只保存固定大小的状态，评估时不查询历史数据。
+ *
+ * 告警的触发和恢复通过监控推送发送给订阅者，并保留最近的事件供接口查询。
+ */
+@Slf4j
+@Service
+public class MonitorAlertEngine {
+
+    @Inject
+    private PluginMemoryCollector memoryCollector;
+
+    @Inject
+    private MonitorStreamPublisher streamPublisher;
+
+    @Inject
+    private AppStoreConfig config;
+
+    /** 内存超过阈值 */
+    public static final String RULE_MEMORY_THRESHOLD = "MEMORY_THRESHOLD";
+
+    /** 内存增长过快 */
+    public static final String RULE_MEMORY_GROWTH = "MEMORY_GROWTH";
+
+    /** 插件错误 */
+    public static final String RULE_PLUGIN_ERROR = "PLUGIN_ERROR";
+
+    /** 重启循环 */
+    public static final String RULE_RESTART_LOOP = "RESTART_LOOP";
+
+    /** 告警触发 */
+    public static final String STATUS_OPEN = "OPEN";
+
+    /** 告警恢复 */
+    public static final String STATUS_RESOLVED = "RESOLVED";
+
+    private static final int DEFAULT_DEBOUNCE_TICKS = 2;
+
+    private static final int DEFAULT_RESOLVE_TICKS = 3;
+
+    private static final int DEFAULT_HYSTERESIS_PERCENT = 10;
+
+    private static final long DEFAULT_GROWTH_MB_PER_MINUTE = 50;
+
+    private static final int DEFAULT_RESTART_THRESHOLD = 3;
+
+    private static final int DEFAULT_RESTART_WINDOW_MINUTES = 10;
+
+    /** 内存增长速率的指数平滑系数 */
+    private static final double GROWTH_SMOOTHING = 0.5;
+
+    /** 保留的最近告警事件数 */
+    private static final int RECENT_EVENT_LIMIT = 200;
+
+    /**
+     * 各插件的规则状态
+     * Key: pluginId
+     */
+    private final Map<String, PluginAlertState> states = new HashMap<>();
+
+    /** 最近的告警事件（按时间升序） */
+    private final Deque<MonitorAlert> recentEvents = new ArrayDeque<>();
+
+    /**
+     * 评估一个采集周期的插件状态
+     *
+     * @param statuses 本周期所有插件的状态
+     * @param timestamp 采集时间戳（毫秒）
+     * @return 本周期产生的告警事件
+     */
+    public List<MonitorAlert> evaluate(List<PluginMonitorStatus> statuses, long timestamp) {
+        List<MonitorAlert> events = new ArrayList<>();
+        synchronized (this) {
+            int debounceTicks = getDebounceTicks();
+            int resolveTicks = getResolveTicks();
+            double resolveRatio = 1 - getHysteresisPercent() / 100.0;
+            long restartWindow = getRestartWindowMinutes() * 60 * 1000L;
+            int restartThreshold = getRestartThreshold();
+
+            Set<String> seen = new HashSet<>();
+            for (PluginMonitorStatus status : statuses) {
+                String pluginId = status.getPluginId();
+                if (pluginId == null) {
+                    continue;
+                }
+                seen.add(pluginId);
+                PluginAlertState state = states.computeIfAbsent(pluginId, id -> new PluginAlertState());
+
+                Long memory = status.getMemoryInfo() != null ? status.getMemoryInfo().getUsedMemory() : null;
+                if (memory != null) {
+                    // 阈值随内存数据来源而定，jfr 模式下已用内存只含元空间
+                    Long infoThreshold = status.getMemoryInfo().getWarningThreshold();
+                    double threshold = infoThreshold != null
+                            ? infoThreshold : memoryCollector.getMemoryWarningThreshold(pluginId);
+                    update(events, pluginId, RULE_MEMORY_THRESHOLD, state.memoryThreshold,
+                            memory > threshold, memory <= threshold * resolveRatio,
+                            memory, threshold, debounceTicks, resolveTicks, timestamp);
+
+                    if (state.lastMemoryTime > 0 && timestamp > state.lastMemoryTime) {
+                        double rate = (memory - state.lastMemory) * 60_000.0 / (timestamp - state.lastMemoryTime);
+                        state.growthRate = state.hasGrowthRate
+                                ? GROWTH_SMOOTHING * rate + (1 - GROWTH_SMOOTHING) * state.growthRate
+                                : rate;
+                        state.hasGrowthRate = true;
+
+                        double growthThreshold = getGrowthThresholdBytes(pluginId);
+                        update(events, pluginId, RULE_MEMORY_GROWTH, state.memoryGrowth,
+                                state.growthRate > growthThreshold, state.growthRate <= growthThreshold * resolveRatio,
+                                state.growthRate, growthThreshold, debounceTicks, resolveTicks, timestamp);
+                    }
+                    state.lastMemory = memory;
+                    state.lastMemoryTime = timestamp;
+                }
+
+                boolean hasError = Boolean.TRUE.equals(status.getHasError());
+                update(events, pluginId, RULE_PLUGIN_ERROR, state.pluginError, hasError, !hasError,
+                        hasError ? 1 : 0, 1, debounceTicks, resolveTicks, timestamp);
+
+                double restarts = state.restarts.estimate(timestamp, restartWindow);
+                update(events, pluginId, RULE_RESTART_LOOP, state.restartLoop,
+                        restarts >= restartThreshold, restarts < restartThreshold * resolveRatio,
+                        restarts, restartThreshold, debounceTicks, resolveTicks, timestamp);
+            }
+
+            // 已移除的插件直接恢复其所有告警；重启计数保留到时间窗口过期，
+            // 插件在重新加载期间短暂从状态列表中消失不会清空计数
+            Iterator<Map.Entry<String, PluginAlertState>> iterator = states.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, PluginAlertState> entry = iterator.next();
+                if (seen.contains(entry.getKey())) {
+                    continue;
+                }
+                PluginAlertState state = entry.getValue();
+                state.forEachRule((rule, ruleState) -> {
+                    if (ruleState.active) {
+                        events.add(event(entry.getKey(), rule, STATUS_RESOLVED, ruleState, 0, 0,
+                                "插件已移除", timestamp));
+                    }
+                });
+                if (state.restarts.estimate(timestamp, restartWindow) > 0) {
+                    entry.setValue(new PluginAlertState(state.restarts));
+                } else {
+                    iterator.remove();
+                }
+            }
+
+            for (MonitorAlert event : events) {
+                if (recentEvents.size() >= RECENT_EVENT_LIMIT) {
+                    recentEvents.pollFirst();
+                }
+                recentEvents.addLast(event);
+            }
+        }
+
+        if (!events.isEmpty()) {
+            for (MonitorAlert event : events) {
+                if (STATUS_OPEN.equals(event.getStatus())) {
+                    log.warn("插件告警触发: pluginId={}, rule={}, {}", event.getPluginId(), event.getRule(),
+                            event.getMessage());
+                } else {
+                    log.info("插件告警恢复: pluginId={}, rule={}, {}", event.getPluginId(), event.getRule(),
+                            event.getMessage());
+                }
+            }
+            streamPublisher.publishAlerts(events);
+        }
+        return events;
+    }
+
+    /**
+     * 记录插件状态变更，用于重启循环检测
+     *
+     * 由状态变更记录器在写入状态变更日志时调用；从非运行状态进入 STARTED 计为一次重启
+     *
+     * @param pluginId 插件ID
+     * @param oldState 旧状态
+     * @param newState 新状态
+     * @param changeTime 变更时间戳（毫秒）
+     */
+    public synchronized void onStateChange(String pluginId, String oldState, String newState, long changeTime) {
+        if (pluginId == null || oldState == null || !"STARTED".equals(newState) || "STARTED".equals(oldState)) {
+            return;
+        }
+        states.computeIfAbsent(pluginId, id -> new PluginAlertState())
+                .restarts.add(changeTime, getRestartWindowMinutes() * 60 * 1000L);
+    }
+
+    /**
+     * 指定插件的某条规则当前是否处于告警状态
+     *
+     * @param pluginId 插件ID
+     * @param rule 规则名
+     * @return 是否告警；该插件尚未评估过时返回 null
+     */
+    public synchronized Boolean isActive(String pluginId, String rule) {
+        PluginAlertState state = states.get(pluginId);
+        if (state == null) {
+            return null;
+        }
+        RuleState ruleState = state.rule(rule);
+        return ruleState != null && ruleState.active;
+    }
+
+    /**
+     * 插件是否有处于告警状态或正在累计触发周期的规则
+     *
+     * @param pluginId 插件ID
+     */
+    public synchronized boolean hasActiveOrPendingAlert(String pluginId) {
+        PluginAlertState state = states.get(pluginId);
+        return state != null && (state.memoryThreshold.isActiveOrPending()
+                || state.memoryGrowth.isActiveOrPending()
+                || state.pluginError.isActiveOrPending()
+                || state.restartLoop.isActiveOrPending());
+    }
+
+    /**
+     * 当前处于告警状态的所有告警
+     */
+    public synchronized List<MonitorAlert> getActiveAlerts() {
+        List<MonitorAlert> alerts = new ArrayList<>();
+        states.forEach((pluginId, state) -> state.forEachRule((rule, ruleState) -> {
+            if (ruleState.active) {
+                alerts.add(event(pluginId, rule, STATUS_OPEN, ruleState, ruleState.value, ruleState.threshold,
+                        ruleState.message, ruleState.openedAt));
+            }
+        }));
+        return alerts;
+    }
+
+    /**
+     * 最近的告警事件（按时间升序）
+     */
+    public synchronized List<MonitorAlert> getRecentEvents() {
+        return new ArrayList<>(recentEvents);
+    }
+
+    /**
+     * 更新一条规则的状态，状态翻转时产生事件
+     */
+    private void update(List<MonitorAlert> events, String pluginId, String rule, RuleState ruleState,
+                        boolean breach, boolean clear, double value, double threshold,
+                        int debounceTicks, int resolveTicks, long timestamp) {
+        if (breach) {
+            ruleState.breachTicks++;
+            ruleState.clearTicks = 0;
+        } else if (clear) {
+            ruleState.clearTicks++;
+            ruleState.breachTicks = 0;
+        } else {
+            // 位于滞回区间内，保持当前状态
+            ruleState.breachTicks = 0;
+            ruleState.clearTicks = 0;
+        }
+
+        if (!ruleState.active && ruleState.breachTicks >= debounceTicks) {
+            ruleState.active = true;
+            ruleState.openedAt = timestamp;
+            ruleState.value = value;
+            ruleState.threshold = threshold;
+            ruleState.message = describe(rule, value, threshold);
+            events.add(event(pluginId, rule, STATUS_OPEN, ruleState, value, threshold, ruleState.message, timestamp));
+        } else if (ruleState.active && ruleState.clearTicks >= resolveTicks) {
+            ruleState.active = false;
+            events.add(event(pluginId, rule, STATUS_RESOLVED, ruleState, value, threshold,
+                    describe(rule, value, threshold), timestamp));
+        } else if (ruleState.active) {
+            ruleState.value = value;
+        }
+    }
+
+    private MonitorAlert event(String pluginId, String rule, String status, RuleState ruleState,
+                               double value, double threshold, String message, long timestamp) {
+        return MonitorAlert.builder()
+                .pluginId(pluginId)
+                .rule(rule)
+                .status(status)
+                .value(value)
+                .threshold(threshold)
+                .message(message)
+                .openedAt(ruleState.openedAt)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private String describe(String rule, double value, double threshold) {
+        switch (rule) {
+            case RULE_MEMORY_THRESHOLD:
+                return "内存使用 " + memoryCollector.formatMemorySize((long) value)
+                        + "，阈值 " + memoryCollector.formatMemorySize((long) threshold);
+            case RULE_MEMORY_GROWTH:
+                return "内存增长 " + memoryCollector.formatMemorySize((long) value)
+                        + "/分钟，阈值 " + memoryCollector.formatMemorySize((long) threshold) + "/分钟";
+            case RULE_PLUGIN_ERROR:
+                return value > 0 ? "插件状态异常" : "插件状态已恢复正常";
+            case RULE_RESTART_LOOP:
+                return String.format("%d 分钟内重启约 %.1f 次，阈值 %d 次",
+                        getRestartWindowMinutes(), value, (long) threshold);
+            default:
+                return rule;
+        }
+    }
+
+    private int getDebounceTicks() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer ticks = monitorConfig != null ? monitorConfig.getAlertDebounceTicks() : null;
+        return ticks != null && ticks > 0 ? ticks : DEFAULT_DEBOUNCE_TICKS;
+    }
+
+    private int getResolveTicks() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer ticks = monitorConfig != null ? monitorConfig.getAlertResolveTicks() : null;
+        return ticks != null && ticks > 0 ? ticks : DEFAULT_RESOLVE_TICKS;
+    }
+
+    private int getHysteresisPercent() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer percent = monitorConfig != null ? monitorConfig.getAlertHysteresisPercent() : null;
+        return percent != null && percent >= 0 && percent < 100 ? percent : DEFAULT_HYSTERESIS_PERCENT;
+    }
+
+    private double getGrowthThresholdBytes(String pluginId) {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Long mbPerMinute = null;
+        if (monitorConfig != null && monitorConfig.getPluginMemoryGrowthAlertMbPerMinute() != null) {
+            mbPerMinute = monitorConfig.getPluginMemoryGrowthAlertMbPerMinute().get(pluginId);
+        }
+        if ((mbPerMinute == null || mbPerMinute <= 0) && monitorConfig != null) {
+            mbPerMinute = monitorConfig.getMemoryGrowthAlertMbPerMinute();
+        }
+        return (mbPerMinute != null && mbPerMinute > 0 ? mbPerMinute : DEFAULT_GROWTH_MB_PER_MINUTE) * 1024.0 * 1024;
+    }
+
+    private int getRestartThreshold() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer threshold = monitorConfig != null ? monitorConfig.getRestartLoopThreshold() : null;
+        return threshold != null && threshold > 0 ? threshold : DEFAULT_RESTART_THRESHOLD;
+    }
+
+    private int getRestartWindowMinutes() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer minutes = monitorConfig != null ? monitorConfig.getRestartLoopWindowMinutes() : null;
+        return minutes != null && minutes > 0 ? minutes : DEFAULT_RESTART_WINDOW_MINUTES;
+    }
+
+    /**
+     * 单个插件的告警状态
+     */
+    private static final class PluginAlertState {
+        private final RuleState memoryThreshold = new RuleState();
+        private final RuleState memoryGrowth = new RuleState();
+        private final RuleState pluginError = new RuleState();
+        private final RuleState restartLoop = new RuleState();
+        private final WindowCounter restarts;
+        private long lastMemory;
+        private long lastMemoryTime;
+        private double growthRate;
+        private boolean hasGrowthRate;
+
+        private PluginAlertState() {
+            this(new WindowCounter());
+        }
+
+        private PluginAlertState(WindowCounter restarts) {
+            this.restarts = restarts;
+        }
+
+        private RuleState rule(String rule) {
+            switch (rule) {
+                case RULE_MEMORY_THRESHOLD:
+                    return memoryThreshold;
+                case RULE_MEMORY_GROWTH:
+                    return memoryGrowth;
+                case RULE_PLUGIN_ERROR:
+                    return pluginError;
+                case RULE_RESTART_LOOP:
+                    return restartLoop;
+                default:
+                    return null;
+            }
+        }
+
+        private void forEachRule(BiConsumer<String, RuleState> action) {
+            action.accept(RULE_MEMORY_THRESHOLD, memoryThreshold);
+            action.accept(RULE_MEMORY_GROWTH, memoryGrowth);
+            action.accept(RULE_PLUGIN_ERROR, pluginError);
+            action.accept(RULE_RESTART_LOOP, restartLoop);
+        }
+    }
+
+    /**
+     * 单条规则的状态
+     */
+    private static final class RuleState {
+        private boolean active;
+        private int breachTicks;
+        private int clearTicks;
+        private long openedAt;
+        private double value;
+        private double threshold;
+        private String message;
+
+        private boolean isActiveOrPending() {
+            return active || breachTicks > 0;
+        }
+    }
+
+    /**
+     * 滑动窗口计数器
+     *
+     * 只保存当前窗口和上一个窗口的计数，按上一个窗口在滑动窗口中的剩余比例加权估算
+     */
+    private static final class WindowCounter {
+        private long windowStart;
+        private int current;
+        private int previous;
+
+        private void add(long timestamp, long windowMillis) {
+            roll(timestamp, windowMillis);
+            current++;
+        }
+
+        private double estimate(long timestamp, long windowMillis) {
+            roll(timestamp, windowMillis);
+            double previousWeight = 1 - (double) (timestamp - windowStart) / windowMillis;
+            return previous * Math.max(previousWeight, 0) + current;
+        }
+
+        private void roll(long timestamp, long windowMillis) {
+            long alignedStart = timestamp - Math.floorMod(timestamp, windowMillis);
+            if (windowStart == 0 || alignedStart - windowStart >= 2 * windowMillis) {
+                previous = 0;
+                current = 0;
+                windowStart = alignedStart;
+            } else if (alignedStart - windowStart >= windowMillis) {
+                previous = current;
+                current = 0;
+                windowStart = alignedStart;
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.PostConstruct;
+import com.keqi.gress.common.plugin.annotion.PreDestroy;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.dao.MonitorCacheDao;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库监控缓存过期清理器
+ *
+ * 单个后台线程按自适应间隔清理数据库中的过期缓存：
+ * - 记录写入数据库的缓存中最早的过期时间，尚未到期时跳过 DELETE
+ * - 清理到数据时间隔减半，未清理到数据时间隔加倍，范围 [MIN_INTERVAL, MAX_INTERVAL]
+ * - 已知下一次到期时间时，按到期时间提前调度
+ *
+ * 启动时先执行一次清理，删除进程重启前遗留的过期缓存。
+ */
+@Slf4j
+@Service
+public class MonitorCacheSweeper {
+
+    @Inject
+    private MonitorCacheDao cacheDao;
+
+    /** 最小清理间隔（毫秒） */
+    private static final long MIN_INTERVAL = 5_000;
+
+    /** 最大清理间隔（毫秒） */
+    private static final long MAX_INTERVAL = 5 * 60_000;
+
+    /** 初始清理间隔（毫秒） */
+    private static final long INITIAL_INTERVAL = 30_000;
+
+    /** 数据库中可能存在的缓存的最早过期时间，Long.MAX_VALUE 表示没有待清理的缓存 */
+    private final AtomicLong nextExpireTime = new AtomicLong(0);
+
+    /** 上次清理后写入的缓存的最晚过期时间 */
+    private final AtomicLong latestExpireTime = new AtomicLong(0);
+
+    private final LongAdder sweepCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder deletedRows = new LongAdder();
+
+    private volatile long interval = INITIAL_INTERVAL;
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "monitor-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.schedule(this::sweep, MIN_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 记录一次数据库缓存写入
+     *
+     * @param expireTime 写入的缓存的过期时间（毫秒）
+     */
+    public void onWrite(long expireTime) {
+        nextExpireTime.accumulateAndGet(expireTime, Math::min);
+        latestExpireTime.accumulateAndGet(expireTime, Math::max);
+    }
+
+    /** 执行 DELETE 的次数 */
+    public long getSweepCount() {
+        return sweepCount.sum();
+    }
+
+    /** 因没有到期缓存而跳过的次数 */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    /** 累计删除的过期缓存行数 */
+    public long getDeletedRows() {
+        return deletedRows.sum();
+    }
+
+    /** 当前清理间隔（毫秒） */
+    public long getInterval() {
+        return interval;
+    }
+
+    private void sweep() {
+        long currentTime = System.currentTimeMillis();
+        try {
+            if (nextExpireTime.get() >= currentTime) {
+                skippedCount.increment();
+                interval = Math.min(interval * 2, MAX_INTERVAL);
+                return;
+            }
+
+            // 删除后剩余的缓存都未过期，其中最早的过期时间未知，保守地按已写入的最晚过期时间再清理
+            long latest = latestExpireTime.getAndSet(0);
+            nextExpireTime.set(latest >= currentTime ? latest : Long.MAX_VALUE);
+            // 两步之间并发写入的过期时间可能被上一行覆盖，从 latestExpireTime 补回
+            long concurrent = latestExpireTime.get();
+            if (concurrent > 0) {
+                nextExpireTime.accumulateAndGet(concurrent, Math::min);
+            }
+
+            int rows = cacheDao.deleteExpiredCache(currentTime);
+            sweepCount.increment();
+            deletedRows.add(rows);
+            interval = rows > 0 ? Math.max(interval / 2, MIN_INTERVAL) : Math.min(interval * 2, MAX_INTERVAL);
+            if (rows > 0) {
+                log.debug("清理过期缓存完成: rows={}, 下次间隔={}ms", rows, interval);
+            }
+        } catch (Exception e) {
+            log.warn("清理过期缓存失败", e);
+        } finally {
+            scheduleNext(currentTime);
+        }
+    }
+
+    private void scheduleNext(long currentTime) {
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        long delay = interval;
+        long expireTime = nextExpireTime.get();
+        if (expireTime != Long.MAX_VALUE && expireTime > currentTime) {
+            delay = Math.max(Math.min(delay, expireTime - currentTime + 1), MIN_INTERVAL);
+        }
+        try {
+            executor.schedule(this::sweep, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.debug("调度过期缓存清理失败（可能正在关闭）", e);
+        }
+    }
+}
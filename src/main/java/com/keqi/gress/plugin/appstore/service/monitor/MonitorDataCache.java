@@ -3,184 +3,181 @@ package com.keqi.gress.plugin.appstore.service.monitor;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.TypeReference;
 import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.PostConstruct;
+import com.keqi.gress.common.plugin.annotion.PreDestroy;
 import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
 import com.keqi.gress.plugin.appstore.dao.MonitorCacheDao;
 import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorCache;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorCacheStats;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 监控数据缓存服务
- * 使用数据库存储缓存数据，减少重复计算
+ *
+ * 分层缓存：
+ * 1. 进程内缓存（主层）：容量有界的 LRU，按写入时间判断刷新（refresh-after-write）与过期（expire-after-write）
+ * 2. 数据库缓存（可选共享层）：仅在多节点共享时启用，异步回写，本地未命中时才读取，
+ *    过期行由 {@link MonitorCacheSweeper} 定时清理
+ *
+ * 配置来自 {@link AppStoreConfig.CacheConfig}，未启用进程内缓存时退化为直接读写数据库。
  */
 @Slf4j
 @Service
 public class MonitorDataCache {
-    
+
     @Inject
     private MonitorCacheDao cacheDao;
-    
-    /** 缓存过期时间（毫秒）- 5秒 */
-    private static final long CACHE_TTL = 5000;
-    
+
+    @Inject
+    private MonitorCacheSweeper cacheSweeper;
+
+    @Inject
+    private AppStoreConfig config;
+
+    /** 默认刷新时间（毫秒）- 5秒 */
+    private static final long DEFAULT_REFRESH_TTL = 5000;
+
+    /** 默认过期时间（毫秒）- 30秒 */
+    private static final long DEFAULT_EXPIRE_TTL = 30000;
+
+    /** 默认最大缓存条目数 */
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
     /** 所有插件状态的缓存类型 */
     private static final String CACHE_TYPE_ALL = "all";
-    
+
     /** 单个插件状态的缓存类型 */
     private static final String CACHE_TYPE_SINGLE = "single";
-    
+
+    /** 进程内缓存（access-order，超出容量时淘汰最久未访问的条目） */
+    private final LinkedHashMap<String, CacheEntry> localCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > getMaxSize()) {
+                evictionCount.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /** 待回写数据库的缓存（同一个 key 只保留最新值） */
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+
+    /** 是否已提交回写任务 */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder sharedHitCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private ExecutorService writeBehindExecutor;
+
+    @PostConstruct
+    public void init() {
+        this.writeBehindExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "monitor-cache-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("监控缓存初始化完成: localEnabled={}, sharedEnabled={}, refresh={}ms, expire={}ms, maxSize={}",
+                isLocalEnabled(), isSharedEnabled(), getRefreshTtl(), getExpireTtl(), getMaxSize());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (writeBehindExecutor != null) {
+            // 尽量把最后一批数据写出去
+            writeBehindExecutor.submit(this::flushPendingWrites);
+            writeBehindExecutor.shutdown();
+            try {
+                if (!writeBehindExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    writeBehindExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writeBehindExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * 获取所有插件状态（从缓存）
-     * 
-     * @return 所有插件状态列表，如果缓存不存在或已过期则返回 null
+     *
+     * @return 所有插件状态列表，如果缓存不存在或需要刷新则返回 null
      */
     public List<PluginMonitorStatus> getAllStatus() {
         log.debug("从缓存获取所有插件状态");
-        
-        try {
-            PluginMonitorCache cache = cacheDao.getCacheByType(CACHE_TYPE_ALL);
-            
-            if (cache == null) {
-                log.debug("缓存不存在");
-                return null;
-            }
-            
-            // 检查缓存是否过期
-            long currentTime = System.currentTimeMillis();
-            if (cache.getExpireTime() < currentTime) {
-                log.debug("缓存已过期: expireTime={}, currentTime={}", 
-                        cache.getExpireTime(), currentTime);
-                return null;
-            }
-            
-            // 反序列化缓存数据
-            List<PluginMonitorStatus> statusList = JSON.parseObject(
-                    cache.getCacheData(), 
-                    new TypeReference<List<PluginMonitorStatus>>() {}
-            );
-            
-            log.debug("从缓存获取到 {} 个插件状态", statusList != null ? statusList.size() : 0);
-            return statusList;
-        } catch (Exception e) {
-            log.error("从缓存获取所有插件状态失败", e);
-            return null;
-        }
+        return get(CACHE_TYPE_ALL, null);
     }
-    
+
+    /**
+     * 获取所有插件状态（允许返回需要刷新但尚未过期的数据）
+     *
+     * 用于 stale-while-revalidate：调用方先返回旧数据，再根据 {@link Lookup#isStale()} 触发后台刷新
+     *
+     * @return 缓存结果，如果缓存不存在或已过期则返回 null
+     */
+    public Lookup<List<PluginMonitorStatus>> lookupAllStatus() {
+        return lookup(CACHE_TYPE_ALL, null);
+    }
+
     /**
      * 更新所有插件状态缓存
-     * 
+     *
      * @param statusList 插件状态列表
      */
     public void updateAllStatus(List<PluginMonitorStatus> statusList) {
         log.debug("更新所有插件状态缓存: {} 个插件", statusList != null ? statusList.size() : 0);
-        
-        try {
-            long currentTime = System.currentTimeMillis();
-            long expireTime = currentTime + CACHE_TTL;
-            
-            // 序列化为 JSON
-            String cacheData = JSON.toJSONString(statusList);
-            
-            // 构建缓存对象
-            PluginMonitorCache cache = PluginMonitorCache.builder()
-                    .cacheType(CACHE_TYPE_ALL)
-                    .cacheData(cacheData)
-                    .createTime(currentTime)
-                    .expireTime(expireTime)
-                    .build();
-            
-            // 保存或更新缓存
-            int rows = cacheDao.saveOrUpdate(cache);
-            log.debug("缓存更新完成: rows={}", rows);
-            
-            // 异步清理过期缓存
-            cleanExpiredCacheAsync();
-        } catch (Exception e) {
-            log.error("更新所有插件状态缓存失败", e);
-        }
+        put(CACHE_TYPE_ALL, null, statusList);
     }
-    
+
     /**
      * 获取单个插件状态（从缓存）
-     * 
+     *
      * @param pluginId 插件ID
-     * @return 插件状态，如果缓存不存在或已过期则返回 null
+     * @return 插件状态，如果缓存不存在或需要刷新则返回 null
      */
     public PluginMonitorStatus getStatus(String pluginId) {
         log.debug("从缓存获取插件状态: pluginId={}", pluginId);
-        
-        try {
-            PluginMonitorCache cache = cacheDao.getCacheByPluginId(pluginId);
-            
-            if (cache == null) {
-                log.debug("缓存不存在: pluginId={}", pluginId);
-                return null;
-            }
-            
-            // 检查缓存是否过期
-            long currentTime = System.currentTimeMillis();
-            if (cache.getExpireTime() < currentTime) {
-                log.debug("缓存已过期: pluginId={}, expireTime={}, currentTime={}", 
-                        pluginId, cache.getExpireTime(), currentTime);
-                return null;
-            }
-            
-            // 反序列化缓存数据
-            PluginMonitorStatus status = JSON.parseObject(
-                    cache.getCacheData(), 
-                    PluginMonitorStatus.class
-            );
-            
-            log.debug("从缓存获取到插件状态: pluginId={}", pluginId);
-            return status;
-        } catch (Exception e) {
-            log.error("从缓存获取插件状态失败: pluginId={}", pluginId, e);
-            return null;
-        }
+        return get(CACHE_TYPE_SINGLE, pluginId);
     }
-    
+
     /**
      * 更新单个插件状态缓存
-     * 
+     *
      * @param pluginId 插件ID
      * @param status 插件状态
      */
     public void updateStatus(String pluginId, PluginMonitorStatus status) {
         log.debug("更新插件状态缓存: pluginId={}", pluginId);
-        
-        try {
-            long currentTime = System.currentTimeMillis();
-            long expireTime = currentTime + CACHE_TTL;
-            
-            // 序列化为 JSON
-            String cacheData = JSON.toJSONString(status);
-            
-            // 构建缓存对象
-            PluginMonitorCache cache = PluginMonitorCache.builder()
-                    .pluginId(pluginId)
-                    .cacheType(CACHE_TYPE_SINGLE)
-                    .cacheData(cacheData)
-                    .createTime(currentTime)
-                    .expireTime(expireTime)
-                    .build();
-            
-            // 保存或更新缓存
-            int rows = cacheDao.saveOrUpdate(cache);
-            log.debug("缓存更新完成: pluginId={}, rows={}", pluginId, rows);
-        } catch (Exception e) {
-            log.error("更新插件状态缓存失败: pluginId={}", pluginId, e);
-        }
+        put(CACHE_TYPE_SINGLE, pluginId, status);
     }
-    
+
     /**
      * 清除所有缓存
      */
     public void clearCache() {
         log.debug("清除所有缓存");
-        
+
+        synchronized (localCache) {
+            localCache.clear();
+        }
+        pendingWrites.clear();
+
         try {
             int rows = cacheDao.clearAllCache();
             log.debug("缓存清除完成: rows={}", rows);
@@ -188,22 +185,336 @@ public class MonitorDataCache {
             log.error("清除缓存失败", e);
         }
     }
-    
+
     /**
-     * 异步清理过期缓存
+     * 获取缓存统计信息
+     *
+     * @return 缓存统计
      */
-    private void cleanExpiredCacheAsync() {
-        // 使用新线程异步清理，避免阻塞主流程
-        new Thread(() -> {
-            try {
-                long currentTime = System.currentTimeMillis();
-                int rows = cacheDao.deleteExpiredCache(currentTime);
-                if (rows > 0) {
-                    log.debug("清理过期缓存完成: rows={}", rows);
+    public MonitorCacheStats getStats() {
+        int size;
+        synchronized (localCache) {
+            size = localCache.size();
+        }
+        long hits = hitCount.sum();
+        long sharedHits = sharedHitCount.sum();
+        long misses = missCount.sum();
+        long total = hits + sharedHits + misses;
+
+        return MonitorCacheStats.builder()
+                .localEnabled(isLocalEnabled())
+                .sharedEnabled(isSharedEnabled())
+                .size(size)
+                .maxSize(getMaxSize())
+                .hitCount(hits)
+                .missCount(misses)
+                .sharedHitCount(sharedHits)
+                .evictionCount(evictionCount.sum())
+                .hitRate(total > 0 ? (double) (hits + sharedHits) / total : 0.0)
+                .sweepCount(cacheSweeper.getSweepCount())
+                .sweepSkippedCount(cacheSweeper.getSkippedCount())
+                .sweptRows(cacheSweeper.getDeletedRows())
+                .sweepIntervalMillis(cacheSweeper.getInterval())
+                .build();
+    }
+
+    /**
+     * 读取缓存：先查进程内缓存，未命中再查数据库共享层
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T get(String cacheType, String pluginId) {
+        String key = cacheKey(cacheType, pluginId);
+        long currentTime = System.currentTimeMillis();
+
+        if (isLocalEnabled()) {
+            CacheEntry entry;
+            synchronized (localCache) {
+                entry = localCache.get(key);
+                if (entry != null && entry.isExpired(currentTime)) {
+                    localCache.remove(key);
+                    evictionCount.increment();
+                    entry = null;
+                }
+            }
+            if (entry != null && !entry.needsRefresh(currentTime, getRefreshTtl())) {
+                hitCount.increment();
+                return (T) entry.value;
+            }
+            if (!isSharedEnabled()) {
+                missCount.increment();
+                log.debug("缓存未命中: key={}", key);
+                return null;
+            }
+        }
+
+        // 数据库层（共享层，或未启用进程内缓存时的兼容路径）
+        T value = loadFromDatabase(cacheType, pluginId, currentTime);
+        if (value == null) {
+            missCount.increment();
+            return null;
+        }
+        sharedHitCount.increment();
+        return value;
+    }
+
+    /**
+     * 读取缓存，需要刷新但尚未过期的进程内缓存也返回（标记为 stale）
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Lookup<T> lookup(String cacheType, String pluginId) {
+        if (isLocalEnabled()) {
+            String key = cacheKey(cacheType, pluginId);
+            long currentTime = System.currentTimeMillis();
+            CacheEntry entry;
+            synchronized (localCache) {
+                entry = localCache.get(key);
+            }
+            if (entry != null && !entry.isExpired(currentTime)) {
+                hitCount.increment();
+                return new Lookup<>((T) entry.value, entry.needsRefresh(currentTime, getRefreshTtl()));
+            }
+        }
+
+        T value = get(cacheType, pluginId);
+        return value != null ? new Lookup<>(value, false) : null;
+    }
+
+    /**
+     * 写入缓存：写进程内缓存，并在需要时异步回写数据库
+     */
+    private void put(String cacheType, String pluginId, Object value) {
+        String key = cacheKey(cacheType, pluginId);
+        long currentTime = System.currentTimeMillis();
+
+        if (isLocalEnabled()) {
+            synchronized (localCache) {
+                localCache.put(key, new CacheEntry(value, currentTime, currentTime + getExpireTtl()));
+            }
+            if (isSharedEnabled()) {
+                scheduleWriteBehind(key, cacheType, pluginId, value, currentTime);
+            }
+            return;
+        }
+
+        // 未启用进程内缓存：同步写数据库，保持原有行为
+        try {
+            int rows = saveToDatabase(cacheType, pluginId, value, currentTime);
+            log.debug("缓存更新完成: key={}, rows={}", key, rows);
+        } catch (Exception e) {
+            log.error("更新监控缓存失败: key={}", key, e);
+        }
+    }
+
+    /**
+     * 从数据库读取未过期的缓存，并回填到进程内缓存
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T loadFromDatabase(String cacheType, String pluginId, long currentTime) {
+        try {
+            PluginMonitorCache cache = CACHE_TYPE_ALL.equals(cacheType)
+                    ? cacheDao.getCacheByType(CACHE_TYPE_ALL)
+                    : cacheDao.getCacheByPluginId(pluginId);
+
+            if (cache == null) {
+                log.debug("数据库缓存不存在: type={}, pluginId={}", cacheType, pluginId);
+                return null;
+            }
+
+            if (cache.getExpireTime() < currentTime) {
+                log.debug("数据库缓存已过期: type={}, pluginId={}, expireTime={}, currentTime={}",
+                        cacheType, pluginId, cache.getExpireTime(), currentTime);
+                return null;
+            }
+
+            // 反序列化缓存数据
+            Object value;
+            if (CACHE_TYPE_ALL.equals(cacheType)) {
+                value = JSON.parseObject(cache.getCacheData(), new TypeReference<List<PluginMonitorStatus>>() {});
+            } else {
+                value = JSON.parseObject(cache.getCacheData(), PluginMonitorStatus.class);
+            }
+
+            if (value != null && isLocalEnabled()) {
+                long createTime = cache.getCreateTime() != null ? cache.getCreateTime() : currentTime;
+                synchronized (localCache) {
+                    localCache.put(cacheKey(cacheType, pluginId),
+                            new CacheEntry(value, createTime, createTime + getExpireTtl()));
                 }
+            }
+            return (T) value;
+        } catch (Exception e) {
+            log.error("从数据库缓存读取失败: type={}, pluginId={}", cacheType, pluginId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 提交异步回写任务，同一个 key 在回写前被多次更新时只写最新一次
+     */
+    private void scheduleWriteBehind(String key, String cacheType, String pluginId, Object value, long currentTime) {
+        pendingWrites.put(key, new PendingWrite(cacheType, pluginId, value, currentTime));
+
+        if (writeBehindExecutor != null && flushScheduled.compareAndSet(false, true)) {
+            try {
+                writeBehindExecutor.execute(this::flushPendingWrites);
             } catch (Exception e) {
-                log.warn("清理过期缓存失败", e);
+                flushScheduled.set(false);
+                log.warn("提交监控缓存回写任务失败", e);
             }
-        }, "monitor-cache-cleaner").start();
+        }
+    }
+
+    /**
+     * 将待回写的缓存写入数据库（序列化在回写线程执行，不占用请求线程）
+     */
+    private void flushPendingWrites() {
+        flushScheduled.set(false);
+
+        for (Map.Entry<String, PendingWrite> entry : pendingWrites.entrySet()) {
+            PendingWrite pending = entry.getValue();
+            // 只移除本次读到的值；期间被更新的 key 保留新值，由更新时提交的下一次回写处理
+            if (!pendingWrites.remove(entry.getKey(), pending)) {
+                continue;
+            }
+
+            try {
+                int rows = saveToDatabase(pending.cacheType, pending.pluginId, pending.value, pending.writeTime);
+                log.debug("监控缓存回写完成: key={}, rows={}", entry.getKey(), rows);
+            } catch (Exception e) {
+                log.warn("监控缓存回写失败: key={}", entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * 写入数据库缓存，并通知过期清理器
+     */
+    private int saveToDatabase(String cacheType, String pluginId, Object value, long currentTime) {
+        PluginMonitorCache record = buildCacheRecord(cacheType, pluginId, value, currentTime);
+        int rows = cacheDao.saveOrUpdate(record);
+        cacheSweeper.onWrite(record.getExpireTime());
+        return rows;
+    }
+
+    /**
+     * 构建数据库缓存记录
+     */
+    private PluginMonitorCache buildCacheRecord(String cacheType, String pluginId, Object value, long currentTime) {
+        return PluginMonitorCache.builder()
+                .pluginId(pluginId)
+                .cacheType(cacheType)
+                .cacheData(JSON.toJSONString(value))
+                .createTime(currentTime)
+                .expireTime(currentTime + getRefreshTtl())
+                .build();
+    }
+
+    private String cacheKey(String cacheType, String pluginId) {
+        return pluginId == null ? cacheType : cacheType + ":" + pluginId;
+    }
+
+    private AppStoreConfig.CacheConfig cacheConfig() {
+        return config != null ? config.getCache() : null;
+    }
+
+    private boolean isLocalEnabled() {
+        AppStoreConfig.CacheConfig cacheConfig = cacheConfig();
+        return cacheConfig == null || !Boolean.FALSE.equals(cacheConfig.getEnabled());
+    }
+
+    private boolean isSharedEnabled() {
+        AppStoreConfig.CacheConfig cacheConfig = cacheConfig();
+        return cacheConfig != null && Boolean.TRUE.equals(cacheConfig.getMonitorSharedEnabled());
+    }
+
+    private long getRefreshTtl() {
+        AppStoreConfig.CacheConfig cacheConfig = cacheConfig();
+        if (cacheConfig != null && cacheConfig.getMonitorRefreshSeconds() != null
+                && cacheConfig.getMonitorRefreshSeconds() > 0) {
+            return cacheConfig.getMonitorRefreshSeconds() * 1000L;
+        }
+        return DEFAULT_REFRESH_TTL;
+    }
+
+    private long getExpireTtl() {
+        AppStoreConfig.CacheConfig cacheConfig = cacheConfig();
+        if (cacheConfig != null && cacheConfig.getMonitorExpireSeconds() != null
+                && cacheConfig.getMonitorExpireSeconds() > 0) {
+            return Math.max(cacheConfig.getMonitorExpireSeconds() * 1000L, getRefreshTtl());
+        }
+        return Math.max(DEFAULT_EXPIRE_TTL, getRefreshTtl());
+    }
+
+    private int getMaxSize() {
+        AppStoreConfig.CacheConfig cacheConfig = cacheConfig();
+        if (cacheConfig != null && cacheConfig.getMaxSize() != null && cacheConfig.getMaxSize() > 0) {
+            return cacheConfig.getMaxSize();
+        }
+        return DEFAULT_MAX_SIZE;
+    }
+
+    /**
+     * 进程内缓存条目
+     */
+    private static final class CacheEntry {
+        private final Object value;
+        private final long writeTime;
+        private final long expireTime;
+
+        private CacheEntry(Object value, long writeTime, long expireTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+            this.expireTime = expireTime;
+        }
+
+        private boolean isExpired(long currentTime) {
+            return expireTime < currentTime;
+        }
+
+        private boolean needsRefresh(long currentTime, long refreshTtl) {
+            return currentTime - writeTime >= refreshTtl;
+        }
+    }
+
+    /**
+     * 缓存读取结果
+     *
+     * @param <T> 缓存值类型
+     */
+    public static final class Lookup<T> {
+        private final T value;
+        private final boolean stale;
+
+        private Lookup(T value, boolean stale) {
+            this.value = value;
+            this.stale = stale;
+        }
+
+        /** 缓存值 */
+        public T getValue() {
+            return value;
+        }
+
+        /** 是否已超过刷新时间（仍在过期时间内） */
+        public boolean isStale() {
+            return stale;
+        }
+    }
+
+    /**
+     * 待回写数据库的缓存
+     */
+    private static final class PendingWrite {
+        private final String cacheType;
+        private final String pluginId;
+        private final Object value;
+        private final long writeTime;
+
+        private PendingWrite(String cacheType, String pluginId, Object value, long writeTime) {
+            this.cacheType = cacheType;
+            this.pluginId = pluginId;
+            this.value = value;
+            this.writeTime = writeTime;
+        }
     }
 }
@@ -3,25 +3,46 @@ package com.keqi.gress.plugin.appstore.service.monitor;
 import com.keqi.gress.common.plugin.annotion.Inject;
 import com.keqi.gress.common.plugin.annotion.Scheduled;
 import com.keqi.gress.common.plugin.annotion.Service;
-import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * 监控数据清理定时任务
  * 负责定期清理过期的监控历史数据
+ * 
+ * 原始快照和各层级汇总数据分别按各自的保留天数清理，
+ * 删除由 MonitorRetentionEngine 分块执行（快照表已分区时直接删除过期分区）
  */
 @Slf4j
 @Service
 public class MonitorDataCleanupScheduler {
     
     @Inject
-    private MonitorHistoryDao historyDao;
+    private MonitorRetentionEngine retentionEngine;
+    
+    @Inject
+    private SnapshotMetadataStore metadataStore;
+
+    @Inject
+    private AppStoreConfig config;
     
     /**
      * 数据保留天数（默认 7 天）
      */
     private static final int RETENTION_DAYS = 7;
     
+    /** 原始快照默认保留天数，与 plugin.yml 中 raw-retention-days 的默认值一致 */
+    public static final int DEFAULT_RAW_RETENTION_DAYS = 1;
+    
+    /** 5 分钟汇总默认保留天数 */
+    private static final int DEFAULT_ROLLUP_5M_RETENTION_DAYS = 7;
+    
+    /** 1 小时汇总默认保留天数 */
+    private static final int DEFAULT_ROLLUP_1H_RETENTION_DAYS = 90;
+    
+    /** 1 天汇总默认保留天数 */
+    private static final int DEFAULT_ROLLUP_1D_RETENTION_DAYS = 730;
+    
     /**
      * 定时清理过期数据
      * 每天凌晨 3 点执行
@@ -31,18 +52,30 @@ public class MonitorDataCleanupScheduler {
         try {
             log.info("开始清理过期监控数据");
             
-            // 计算过期时间戳（7 天前）
-            long expireTime = System.currentTimeMillis() - (RETENTION_DAYS * 24L * 60 * 60 * 1000);
+            long currentTime = System.currentTimeMillis();
             
-            // 清理过期的监控快照
-            int deletedSnapshots = historyDao.deleteExpiredData(expireTime);
+            // 清理过期的监控快照（按原始快照保留天数）
+            int deletedSnapshots = retentionEngine.purgeSnapshots(currentTime - toMillis(getRawRetentionDays()));
             log.info("清理过期监控快照: 删除数量={}", deletedSnapshots);
             
-            // 清理过期的状态变更日志
-            int deletedLogs = historyDao.deleteExpiredStateLogs(expireTime);
+            // 清理不再被快照引用的元数据
+            int deletedMetadata = purgeMetadata(currentTime - toMillis(getRawRetentionDays()));
+            log.info("清理过期快照元数据: 删除数量={}", deletedMetadata);
+            
+            // 清理过期的状态变更日志（7 天前）
+            int deletedLogs = retentionEngine.purgeStateLogs(currentTime - toMillis(RETENTION_DAYS));
             log.info("清理过期状态变更日志: 删除数量={}", deletedLogs);
             
-            log.info("清理过期监控数据完成: 快照={}, 日志={}", deletedSnapshots, deletedLogs);
+            // 按层级清理过期的汇总数据
+            int deletedRollups = 0;
+            for (RollupTier tier : RollupTier.values()) {
+                int deleted = retentionEngine.purgeRollups(tier, currentTime - toMillis(getRetentionDays(tier)));
+                log.info("清理过期监控汇总: tier={}, 删除数量={}", tier.getCode(), deleted);
+                deletedRollups += deleted;
+            }
+            
+            log.info("清理过期监控数据完成: 快照={}, 元数据={}, 日志={}, 汇总={}",
+                    deletedSnapshots, deletedMetadata, deletedLogs, deletedRollups);
             
         } catch (Exception e) {
             log.error("清理过期监控数据失败", e);
@@ -61,11 +94,13 @@ public class MonitorDataCleanupScheduler {
             
             long expireTime = System.currentTimeMillis() - (retentionDays * 24L * 60 * 60 * 1000);
             
-            int deletedSnapshots = historyDao.deleteExpiredData(expireTime);
-            int deletedLogs = historyDao.deleteExpiredStateLogs(expireTime);
+            int deletedSnapshots = retentionEngine.purgeSnapshots(expireTime);
+            int deletedMetadata = purgeMetadata(expireTime);
+            int deletedLogs = retentionEngine.purgeStateLogs(expireTime);
             
-            int total = deletedSnapshots + deletedLogs;
-            log.info("手动清理完成: 快照={}, 日志={}, 总计={}", deletedSnapshots, deletedLogs, total);
+            int total = deletedSnapshots + deletedMetadata + deletedLogs;
+            log.info("手动清理完成: 快照={}, 元数据={}, 日志={}, 总计={}",
+                    deletedSnapshots, deletedMetadata, deletedLogs, total);
             
             return total;
             
@@ -74,4 +109,52 @@ public class MonitorDataCleanupScheduler {
             return 0;
         }
     }
+    
+    /**
+     * 清理元数据，有删除时清空元数据缓存，避免继续引用已删除的元数据
+     */
+    private int purgeMetadata(long expireTime) {
+        int deleted = retentionEngine.purgeMetadata(expireTime);
+        if (deleted > 0) {
+            metadataStore.invalidate();
+        }
+        return deleted;
+    }
+    
+    /**
+     * 获取原始快照保留天数
+     */
+    private int getRawRetentionDays() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer days = monitorConfig != null ? monitorConfig.getRawRetentionDays() : null;
+        return days != null && days > 0 ? days : DEFAULT_RAW_RETENTION_DAYS;
+    }
+    
+    /**
+     * 获取汇总层级的保留天数
+     */
+    private int getRetentionDays(RollupTier tier) {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer days;
+        int defaultDays;
+        switch (tier) {
+            case FIVE_MINUTES:
+                days = monitorConfig != null ? monitorConfig.getRollup5mRetentionDays() : null;
+                defaultDays = DEFAULT_ROLLUP_5M_RETENTION_DAYS;
+                break;
+            case ONE_HOUR:
+                days = monitorConfig != null ? monitorConfig.getRollup1hRetentionDays() : null;
+                defaultDays = DEFAULT_ROLLUP_1H_RETENTION_DAYS;
+                break;
+            default:
+                days = monitorConfig != null ? monitorConfig.getRollup1dRetentionDays() : null;
+                defaultDays = DEFAULT_ROLLUP_1D_RETENTION_DAYS;
+                break;
+        }
+        return days != null && days > 0 ? days : defaultDays;
+    }
+    
+    private long toMillis(int days) {
+        return days * 24L * 60 * 60 * 1000;
+    }
 }
@@ -0,0 +1,332 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
+import com.keqi.gress.plugin.appstore.dao.MonitorRollupDao;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorRollup;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAggregation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 监控历史聚合器
+ *
+ * 按时间桶计算多个插件的内存 min / max / avg / P95 和各状态时间占比：
+ * - 时间范围在原始快照保留期内时，按 (timestamp, id) 键集分页遍历快照，每个插件只保留一个未结束的时间桶，
+ *   结束的时间桶立即转换为聚合值，内存中不保留原始行
+ * - 时间范围早于原始快照保留期时，改用不超过请求时间桶大小的最粗汇总层级
+ *
+ * P95 使用固定的对数直方图（每个 2 的幂区间分 4 档）近似计算，相对误差约 12%；
+ * 基于汇总数据时以各汇总时间桶的平均值按样本数加权计算。
+ */
+@Slf4j
+@Service
+public class MonitorHistoryAggregator {
+
+    @Inject
+    private MonitorHistoryDao historyDao;
+
+    @Inject
+    private MonitorRollupDao rollupDao;
+
+    @Inject
+    private SnapshotSamplingPolicy samplingPolicy;
+
+    @Inject
+    private AppStoreConfig config;
+
+    /** 数据来源：原始快照 */
+    public static final String SOURCE_RAW = "raw";
+
+    /** 单次聚合最多的插件数 */
+    private static final int MAX_PLUGINS = 200;
+
+    /** 单个插件最多的时间桶数 */
+    private static final int MAX_BUCKETS = 2000;
+
+    /** 单次聚合最多的时间桶总数（插件数 × 时间桶数） */
+    private static final int MAX_TOTAL_BUCKETS = 100_000;
+
+    /** 分页遍历快照时每页的行数 */
+    private static final int PAGE_SIZE = 2000;
+
+    /** 首个样本默认代表的状态持续时长（毫秒），与快照调度周期一致 */
+    private static final long DEFAULT_SAMPLE_INTERVAL = SnapshotSamplingPolicy.TICK_MILLIS;
+
+    /** 对数直方图的档位数：0 档存放 0，其余每个 2 的幂区间 4 档 */
+    private static final int HISTOGRAM_SIZE = 1 + 63 * 4;
+
+    /**
+     * 聚合监控历史
+     *
+     * @param pluginIds 插件ID列表
+     * @param startTime 起始时间戳（毫秒）
+     * @param endTime 结束时间戳（毫秒，不包含）
+     * @param bucketMillis 时间桶大小（毫秒）
+     * @return 聚合结果
+     * @throws IllegalArgumentException 参数超出限制时
+     */
+    public MonitorAggregation aggregate(List<String> pluginIds, long startTime, long endTime, long bucketMillis) {
+        if (pluginIds == null || pluginIds.isEmpty()) {
+            throw new IllegalArgumentException("插件ID列表不能为空");
+        }
+        if (pluginIds.size() > MAX_PLUGINS) {
+            throw new IllegalArgumentException("插件数量超过限制: " + pluginIds.size() + " > " + MAX_PLUGINS);
+        }
+        if (bucketMillis <= 0) {
+            throw new IllegalArgumentException("时间桶大小必须大于 0");
+        }
+
+        long alignedStart = startTime - Math.floorMod(startTime, bucketMillis);
+        long bucketCount = (endTime - alignedStart + bucketMillis - 1) / bucketMillis;
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException("时间桶数量超过限制: " + bucketCount + " > " + MAX_BUCKETS);
+        }
+        if (bucketCount * pluginIds.size() > MAX_TOTAL_BUCKETS) {
+            throw new IllegalArgumentException("聚合结果过大，请减少插件数量或增大时间桶");
+        }
+
+        long maxSampleGap = samplingPolicy.getMaxSampleGapMillis();
+        Map<String, Series> series = new LinkedHashMap<>();
+        for (String pluginId : pluginIds) {
+            series.putIfAbsent(pluginId, new Series(pluginId, maxSampleGap));
+        }
+
+        String source;
+        long rawStart = System.currentTimeMillis() - getRawRetentionDays() * 24L * 60 * 60 * 1000;
+        if (alignedStart >= rawStart) {
+            source = SOURCE_RAW;
+            long rows = historyDao.streamSnapshots(series.keySet(), alignedStart, endTime, PAGE_SIZE, false,
+                    snapshot -> {
+                        Series target = series.get(snapshot.getPluginId());
+                        if (target != null) {
+                            target.addSample(snapshot, bucketMillis);
+                        }
+                    });
+            log.debug("聚合原始快照: 插件数={}, 行数={}, 时间桶={}ms", series.size(), rows, bucketMillis);
+        } else {
+            RollupTier tier = selectTier(bucketMillis);
+            source = tier.getCode();
+            for (Series target : series.values()) {
+                List<PluginMonitorRollup> rollups = rollupDao.queryRollups(target.pluginId, tier.getCode(),
+                        alignedStart, endTime);
+                for (PluginMonitorRollup rollup : rollups) {
+                    target.addRollup(rollup, bucketMillis);
+                }
+            }
+            log.debug("聚合汇总数据: 插件数={}, 层级={}, 时间桶={}ms", series.size(), source, bucketMillis);
+        }
+
+        List<MonitorAggregation.PluginSeries> result = new ArrayList<>(series.size());
+        for (Series target : series.values()) {
+            result.add(target.finish());
+        }
+        return MonitorAggregation.builder()
+                .startTime(alignedStart)
+                .endTime(endTime)
+                .bucketMillis(bucketMillis)
+                .source(source)
+                .series(result)
+                .build();
+    }
+
+    /**
+     * 选择不超过请求时间桶大小的最粗汇总层级，请求时间桶小于 5 分钟时使用 5 分钟汇总
+     */
+    private RollupTier selectTier(long bucketMillis) {
+        RollupTier selected = RollupTier.FIVE_MINUTES;
+        for (RollupTier tier : RollupTier.values()) {
+            if (tier.getBucketMillis() <= bucketMillis && tier.getBucketMillis() > selected.getBucketMillis()) {
+                selected = tier;
+            }
+        }
+        return selected;
+    }
+
+    private int getRawRetentionDays() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer days = monitorConfig != null ? monitorConfig.getRawRetentionDays() : null;
+        return days != null && days > 0 ? days : MonitorDataCleanupScheduler.DEFAULT_RAW_RETENTION_DAYS;
+    }
+
+    /**
+     * 单个插件的聚合序列
+     *
+     * 数据按时间顺序到达，只保留一个未结束的时间桶
+     */
+    private static final class Series {
+        private final String pluginId;
+        private final List<MonitorAggregation.Bucket> buckets = new ArrayList<>();
+        private OpenBucket open;
+        private final long maxSampleGap;
+        private long lastSampleTime;
+
+        private Series(String pluginId, long maxSampleGap) {
+            this.pluginId = pluginId;
+            this.maxSampleGap = maxSampleGap;
+        }
+
+        private void addSample(PluginMonitorSnapshot snapshot, long bucketMillis) {
+            long timestamp = snapshot.getTimestamp();
+            long duration = lastSampleTime > 0
+                    ? Math.min(timestamp - lastSampleTime, maxSampleGap)
+                    : DEFAULT_SAMPLE_INTERVAL;
+            lastSampleTime = timestamp;
+
+            OpenBucket bucket = bucketFor(timestamp, bucketMillis);
+            bucket.sampleCount++;
+            if (snapshot.getMemoryUsage() != null) {
+                bucket.addMemory(snapshot.getMemoryUsage(), snapshot.getMemoryUsage(), snapshot.getMemoryUsage(), 1);
+            }
+            if (snapshot.getState() != null) {
+                bucket.stateDurations.merge(snapshot.getState(), Math.max(duration, 0), Long::sum);
+            }
+        }
+
+        private void addRollup(PluginMonitorRollup rollup, long bucketMillis) {
+            OpenBucket bucket = bucketFor(rollup.getBucketStart(), bucketMillis);
+            bucket.sampleCount += rollup.getSampleCount() != null ? rollup.getSampleCount() : 0;
+            int memoryCount = rollup.getMemoryCount() != null ? rollup.getMemoryCount() : 0;
+            if (memoryCount > 0 && rollup.getMemorySum() != null) {
+                bucket.addMemory(rollup.getMemorySum() / memoryCount, rollup.getMemoryMin(), rollup.getMemoryMax(),
+                        memoryCount);
+            }
+            if (rollup.getStateDurations() != null && !rollup.getStateDurations().isEmpty()) {
+                Map<String, Long> durations = JSON.parseObject(rollup.getStateDurations(),
+                        new TypeReference<Map<String, Long>>() {});
+                if (durations != null) {
+                    durations.forEach((state, duration) -> bucket.stateDurations.merge(state, duration, Long::sum));
+                }
+            }
+        }
+
+        private OpenBucket bucketFor(long timestamp, long bucketMillis) {
+            long bucketStart = timestamp - Math.floorMod(timestamp, bucketMillis);
+            if (open != null && open.bucketStart != bucketStart) {
+                buckets.add(open.toBucket());
+                open = null;
+            }
+            if (open == null) {
+                open = new OpenBucket(bucketStart);
+            }
+            return open;
+        }
+
+        private MonitorAggregation.PluginSeries finish() {
+            if (open != null) {
+                buckets.add(open.toBucket());
+                open = null;
+            }
+            return MonitorAggregation.PluginSeries.builder()
+                    .pluginId(pluginId)
+                    .buckets(buckets)
+                    .build();
+        }
+    }
+
+    /**
+     * 未结束的时间桶
+     */
+    private static final class OpenBucket {
+        private final long bucketStart;
+        private int sampleCount;
+        private long memoryMin = Long.MAX_VALUE;
+        private long memoryMax = Long.MIN_VALUE;
+        private long memorySum;
+        private long memoryCount;
+        private final long[] histogram = new long[HISTOGRAM_SIZE];
+        private final Map<String, Long> stateDurations = new HashMap<>();
+
+        private OpenBucket(long bucketStart) {
+            this.bucketStart = bucketStart;
+        }
+
+        /**
+         * 累加内存值
+         *
+         * @param value 代表值（原始样本值或汇总平均值）
+         * @param min 最小值
+         * @param max 最大值
+         * @param weight 样本数
+         */
+        private void addMemory(long value, Long min, Long max, long weight) {
+            memoryMin = Math.min(memoryMin, min != null ? min : value);
+            memoryMax = Math.max(memoryMax, max != null ? max : value);
+            memorySum += value * weight;
+            memoryCount += weight;
+            histogram[binOf(value)] += weight;
+        }
+
+        private MonitorAggregation.Bucket toBucket() {
+            long totalDuration = 0;
+            for (long duration : stateDurations.values()) {
+                totalDuration += duration;
+            }
+            Map<String, Double> percentages = new HashMap<>();
+            if (totalDuration > 0) {
+                for (Map.Entry<String, Long> entry : stateDurations.entrySet()) {
+                    percentages.put(entry.getKey(), Math.round(entry.getValue() * 10000.0 / totalDuration) / 100.0);
+                }
+            }
+
+            boolean hasMemory = memoryCount > 0;
+            return MonitorAggregation.Bucket.builder()
+                    .bucketStart(bucketStart)
+                    .sampleCount(sampleCount)
+                    .memoryMin(hasMemory ? memoryMin : null)
+                    .memoryMax(hasMemory ? memoryMax : null)
+                    .memoryAvg(hasMemory ? memorySum / memoryCount : null)
+                    .memoryP95(hasMemory ? percentile(0.95) : null)
+                    .statePercentages(percentages)
+                    .build();
+        }
+
+        private long percentile(double quantile) {
+            long rank = (long) Math.ceil(memoryCount * quantile);
+            long cumulative = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                cumulative += histogram[i];
+                if (cumulative >= rank) {
+                    return Math.max(memoryMin, Math.min(memoryMax, binValue(i)));
+                }
+            }
+            return memoryMax;
+        }
+
+        private static int binOf(long value) {
+            if (value <= 0) {
+                return 0;
+            }
+            int highBit = 63 - Long.numberOfLeadingZeros(value);
+            int quarter = highBit >= 2 ? (int) ((value >>> (highBit - 2)) & 3) : 0;
+            return 1 + highBit * 4 + quarter;
+        }
+
+        /**
+         * 档位的代表值（档位区间的中点）
+         */
+        private static long binValue(int bin) {
+            if (bin == 0) {
+                return 0;
+            }
+            int highBit = (bin - 1) / 4;
+            int quarter = (bin - 1) % 4;
+            if (highBit < 2) {
+                return 1L << highBit;
+            }
+            long lower = (4L + quarter) << (highBit - 2);
+            long width = 1L << (highBit - 2);
+            return lower + width / 2;
+        }
+    }
+}
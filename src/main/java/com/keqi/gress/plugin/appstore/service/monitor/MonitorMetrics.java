@@ -0,0 +1,120 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 监控自身的运行指标
+ *
+ * 记录状态收集、内存和 CPU 采样等操作的耗时分布，供 Prometheus 指标接口输出。
+ * 直方图使用固定的桶边界和 LongAdder 计数，记录时不分配对象。
+ */
+@Service
+public class MonitorMetrics {
+
+    /** 全量状态收集 */
+    public static final String OP_COLLECT_ALL = "collect_all";
+
+    /** 单个插件状态收集 */
+    public static final String OP_COLLECT_SINGLE = "collect_single";
+
+    /** 内存采样 */
+    public static final String OP_MEMORY_SAMPLE = "memory_sample";
+
+    /** CPU 采样 */
+    public static final String OP_CPU_SAMPLE = "cpu_sample";
+
+    /** 直方图桶上界（秒） */
+    static final double[] BUCKET_BOUNDS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final Histogram collectAll = new Histogram(OP_COLLECT_ALL);
+    private final Histogram collectSingle = new Histogram(OP_COLLECT_SINGLE);
+    private final Histogram memorySample = new Histogram(OP_MEMORY_SAMPLE);
+    private final Histogram cpuSample = new Histogram(OP_CPU_SAMPLE);
+
+    /**
+     * 记录一次操作耗时
+     *
+     * @param operation 操作名（OP_* 常量）
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(String operation, long nanos) {
+        Histogram histogram = histogram(operation);
+        if (histogram != null) {
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * 所有直方图（输出顺序固定）
+     */
+    Histogram[] histograms() {
+        return new Histogram[]{collectAll, collectSingle, memorySample, cpuSample};
+    }
+
+    private Histogram histogram(String operation) {
+        switch (operation) {
+            case OP_COLLECT_ALL:
+                return collectAll;
+            case OP_COLLECT_SINGLE:
+                return collectSingle;
+            case OP_MEMORY_SAMPLE:
+                return memorySample;
+            case OP_CPU_SAMPLE:
+                return cpuSample;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 耗时直方图
+     */
+    static final class Histogram {
+        private final String operation;
+        private final long[] boundNanos = new long[BUCKET_BOUNDS.length];
+        /** 各桶计数（非累计），最后一个为 +Inf 桶 */
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram(String operation) {
+            this.operation = operation;
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                boundNanos[i] = (long) (BUCKET_BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+            }
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            int index = 0;
+            while (index < boundNanos.length && nanos > boundNanos[index]) {
+                index++;
+            }
+            buckets[index].increment();
+            sumNanos.add(nanos);
+        }
+
+        String getOperation() {
+            return operation;
+        }
+
+        /**
+         * 第 index 个桶的计数（非累计）
+         */
+        long bucketCount(int index) {
+            return buckets[index].sum();
+        }
+
+        int bucketSize() {
+            return buckets.length;
+        }
+
+        double sumSeconds() {
+            return sumNanos.sum() / 1_000_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorCacheStats;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import com.keqi.gress.plugin.appstore.dto.monitor.RecentSampleStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Prometheus 文本格式指标输出
+ *
+ * 直接从内存中的插件状态实时表、监控缓存和近期样本缓冲区生成，不读取数据库，也不经过 JSON 序列化。
+ * 输出时直接遍历已发布的状态快照，只分配一个按上次输出大小预留容量的 StringBuilder。
+ */
+@Slf4j
+@Service
+public class MonitorMetricsExporter {
+
+    @Inject
+    private PluginStatusRegistry statusRegistry;
+
+    @Inject
+    private MonitorDataCache monitorCache;
+
+    @Inject
+    private RecentSampleBuffer recentSampleBuffer;
+
+    @Inject
+    private MonitorMetrics metrics;
+
+    /** Prometheus 文本格式的 Content-Type */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "gress_appstore_";
+
+    /** 上一次输出的长度，用于预留 StringBuilder 容量 */
+    private volatile int lastLength = 4096;
+
+    /**
+     * 生成 Prometheus 文本格式的指标
+     *
+     * @return 指标文本
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(lastLength + 256);
+        long currentTime = System.currentTimeMillis();
+
+        renderPlugins(out, statusRegistry.getPublishedStatuses(), currentTime);
+        renderOverview(out);
+        renderHistograms(out);
+        renderCache(out);
+
+        lastLength = out.length();
+        return out.toString();
+    }
+
+    private void renderPlugins(StringBuilder out, List<PluginMonitorStatus> statuses, long currentTime) {
+        header(out, "plugin_state", "gauge", "Plugin state, value is always 1 for the current state");
+        for (PluginMonitorStatus status : statuses) {
+            name(out, "plugin_state");
+            out.append("{plugin_id=\"");
+            escape(out, status.getPluginId());
+            out.append("\",state=\"");
+            escape(out, status.getState());
+            out.append("\"} 1\n");
+        }
+
+        header(out, "plugin_uptime_seconds", "gauge", "Plugin uptime in seconds, 0 when not started");
+        for (PluginMonitorStatus status : statuses) {
+            // 未运行的插件保留上次的启动时间，运行时长记为 0
+            long uptime = "STARTED".equals(status.getState()) && status.getStartTime() != null
+                    ? (currentTime - status.getStartTime()) / 1000
+                    : 0;
+            pluginSample(out, "plugin_uptime_seconds", status.getPluginId());
+            out.append(uptime).append('\n');
+        }
+
+        header(out, "plugin_memory_bytes", "gauge", "Plugin memory usage in bytes (estimated or sampled)");
+        for (PluginMonitorStatus status : statuses) {
+            if (status.getMemoryInfo() == null || status.getMemoryInfo().getUsedMemory() == null) {
+                continue;
+            }
+            pluginSample(out, "plugin_memory_bytes", status.getPluginId());
+            out.append(status.getMemoryInfo().getUsedMemory()).append('\n');
+        }
+
+        header(out, "plugin_memory_warning", "gauge", "Whether plugin memory usage exceeds its warning threshold");
+        for (PluginMonitorStatus status : statuses) {
+            pluginSample(out, "plugin_memory_warning", status.getPluginId());
+            out.append(Boolean.TRUE.equals(status.getIsMemoryWarning()) ? '1' : '0').append('\n');
+        }
+
+        header(out, "plugin_error", "gauge", "Whether plugin status collection reported an error");
+        for (PluginMonitorStatus status : statuses) {
+            pluginSample(out, "plugin_error", status.getPluginId());
+            out.append(Boolean.TRUE.equals(status.getHasError()) ? '1' : '0').append('\n');
+        }
+    }
+
+    private void renderOverview(StringBuilder out) {
+        gauge(out, "plugins", "Number of installed plugins", statusRegistry.getTotalCount());
+        gauge(out, "plugins_running", "Number of running plugins", statusRegistry.getRunningCount());
+        gauge(out, "plugins_error", "Number of plugins with errors or memory warnings", statusRegistry.getErrorCount());
+        gauge(out, "plugins_memory_bytes", "Total plugin memory usage in bytes", statusRegistry.getTotalMemoryUsage());
+    }
+
+    private void renderHistograms(StringBuilder out) {
+        header(out, "monitor_operation_duration_seconds", "histogram", "Monitor collection and sampling duration");
+        for (MonitorMetrics.Histogram histogram : metrics.histograms()) {
+            long cumulative = 0;
+            for (int i = 0; i < histogram.bucketSize(); i++) {
+                cumulative += histogram.bucketCount(i);
+                name(out, "monitor_operation_duration_seconds_bucket");
+                out.append("{operation=\"").append(histogram.getOperation()).append("\",le=\"");
+                if (i < MonitorMetrics.BUCKET_BOUNDS.length) {
+                    out.append(MonitorMetrics.BUCKET_BOUNDS[i]);
+                } else {
+                    out.append("+Inf");
+                }
+                out.append("\"} ").append(cumulative).append('\n');
+            }
+            name(out, "monitor_operation_duration_seconds_sum");
+            out.append("{operation=\"").append(histogram.getOperation()).append("\"} ")
+                    .append(histogram.sumSeconds()).append('\n');
+            name(out, "monitor_operation_duration_seconds_count");
+            out.append("{operation=\"").append(histogram.getOperation()).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+    }
+
+    private void renderCache(StringBuilder out) {
+        MonitorCacheStats cacheStats = monitorCache.getStats();
+        header(out, "monitor_cache_requests_total", "counter", "Monitor cache lookups by result");
+        cacheResult(out, "monitor_cache_requests_total", "hit", cacheStats.getHitCount());
+        cacheResult(out, "monitor_cache_requests_total", "shared_hit", cacheStats.getSharedHitCount());
+        cacheResult(out, "monitor_cache_requests_total", "miss", cacheStats.getMissCount());
+        gauge(out, "monitor_cache_hit_ratio", "Monitor cache hit ratio",
+                cacheStats.getHitRate() != null ? cacheStats.getHitRate() : 0);
+        gauge(out, "monitor_cache_entries", "Monitor cache entries", cacheStats.getSize());
+        header(out, "monitor_cache_evictions_total", "counter", "Monitor cache evictions");
+        name(out, "monitor_cache_evictions_total");
+        out.append(' ').append(cacheStats.getEvictionCount()).append('\n');
+
+        header(out, "monitor_cache_sweeps_total", "counter", "Expired monitor cache sweeps by result");
+        cacheResult(out, "monitor_cache_sweeps_total", "run", cacheStats.getSweepCount());
+        cacheResult(out, "monitor_cache_sweeps_total", "skipped", cacheStats.getSweepSkippedCount());
+        header(out, "monitor_cache_swept_rows_total", "counter", "Expired monitor cache rows deleted");
+        name(out, "monitor_cache_swept_rows_total");
+        out.append(' ').append(cacheStats.getSweptRows()).append('\n');
+        gauge(out, "monitor_cache_sweep_interval_seconds", "Current expired monitor cache sweep interval",
+                cacheStats.getSweepIntervalMillis() / 1000.0);
+
+        RecentSampleStats recentStats = recentSampleBuffer.getStats();
+        long hits = recentStats.getHitCount();
+        long total = hits + recentStats.getFallbackCount();
+        header(out, "recent_samples_requests_total", "counter", "Recent history lookups by result");
+        cacheResult(out, "recent_samples_requests_total", "hit", hits);
+        cacheResult(out, "recent_samples_requests_total", "fallback", recentStats.getFallbackCount());
+        gauge(out, "recent_samples_hit_ratio", "Recent history lookups served from memory",
+                total > 0 ? (double) hits / total : 0);
+        gauge(out, "recent_samples_bytes", "Memory allocated by the recent sample buffer", recentStats.getUsedBytes());
+        gauge(out, "recent_samples_budget_bytes", "Memory budget of the recent sample buffer",
+                recentStats.getBudgetBytes());
+    }
+
+    private void cacheResult(StringBuilder out, String metric, String result, long value) {
+        name(out, metric);
+        out.append("{result=\"").append(result).append("\"} ").append(value).append('\n');
+    }
+
+    private void gauge(StringBuilder out, String metric, String help, long value) {
+        header(out, metric, "gauge", help);
+        name(out, metric);
+        out.append(' ').append(value).append('\n');
+    }
+
+    private void gauge(StringBuilder out, String metric, String help, double value) {
+        header(out, metric, "gauge", help);
+        name(out, metric);
+        out.append(' ').append(value).append('\n');
+    }
+
+    private void pluginSample(StringBuilder out, String metric, String pluginId) {
+        name(out, metric);
+        out.append("{plugin_id=\"");
+        escape(out, pluginId);
+        out.append("\"} ");
+    }
+
+    private void header(StringBuilder out, String metric, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(metric).append(' ').append(type).append('\n');
+    }
+
+    private void name(StringBuilder out, String metric) {
+        out.append(PREFIX).append(metric);
+    }
+
+    /**
+     * 转义标签值（反斜杠、双引号、换行），直接写入输出
+     */
+    private void escape(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+}
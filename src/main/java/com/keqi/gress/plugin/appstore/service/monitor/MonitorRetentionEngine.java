@@ -0,0 +1,279 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.api.database.annotation.TableName;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.dao.MonitorRetentionDao;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorMetadata;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorRollup;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginStateChangeLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 监控数据保留清理引擎
+ *
+ * 过期数据按分块删除：每次 DELETE ... LIMIT 最多删除 cleanup-batch-size 行，
+ * 分块之间暂停 cleanup-pause-millis 毫秒，避免长时间持有锁和 undo 日志膨胀。
+ *
+ * 快照表启用按天分区（snapshot-partitioned）并已按 sql/plugin_monitor_snapshot_partitioned.sql 转换后，
+ * 整天过期的数据直接删除分区，剩余的行再按分块删除；同时提前创建未来几天的分区。
+ * 表未分区时自动退化为分块删除。
+ */
+@Slf4j
+@Service
+public class MonitorRetentionEngine {
+
+    @Inject
+    private MonitorRetentionDao retentionDao;
+
+    @Inject
+    private AppStoreConfig config;
+
+    /** 监控快照表名 */
+    private static final String SNAPSHOT_TABLE =
+            PluginMonitorSnapshot.class.getAnnotation(TableName.class).value();
+
+    /** 状态变更日志表名 */
+    private static final String STATE_LOG_TABLE =
+            PluginStateChangeLog.class.getAnnotation(TableName.class).value();
+
+    /** 监控汇总表名 */
+    private static final String ROLLUP_TABLE =
+            PluginMonitorRollup.class.getAnnotation(TableName.class).value();
+
+    /** 快照元数据表名 */
+    private static final String METADATA_TABLE =
+            PluginMonitorMetadata.class.getAnnotation(TableName.class).value();
+
+    /** 元数据未被任何快照引用的条件（快照表 metadata_id 有索引，见 V14） */
+    private static final String METADATA_UNREFERENCED =
+            "NOT EXISTS (SELECT 1 FROM " + SNAPSHOT_TABLE + " s WHERE s.metadata_id = " + METADATA_TABLE + ".id)";
+
+    /** 默认每个分块删除的行数 */
+    private static final int DEFAULT_BATCH_SIZE = 5000;
+
+    /** 默认分块之间的暂停时间（毫秒） */
+    private static final long DEFAULT_PAUSE_MILLIS = 200;
+
+    /** 默认提前创建的分区天数 */
+    private static final int DEFAULT_PRECREATE_DAYS = 3;
+
+    /** 每删除多少个分块输出一次进度日志 */
+    private static final int PROGRESS_LOG_INTERVAL = 20;
+
+    /** 按天分区名前缀，如 p20240101 */
+    private static final String PARTITION_PREFIX = "p";
+
+    private static final DateTimeFormatter PARTITION_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * 清理过期的监控快照
+     *
+     * @param expireTime 过期时间戳（毫秒）
+     * @return 分块删除的行数（随分区删除的行不计入）
+     */
+    public int purgeSnapshots(long expireTime) {
+        if (isSnapshotPartitioned()) {
+            List<MonitorRetentionDao.PartitionInfo> partitions = listPartitionsQuietly(SNAPSHOT_TABLE);
+            if (!partitions.isEmpty()) {
+                dropExpiredPartitions(SNAPSHOT_TABLE, partitions, expireTime);
+                ensurePartitions(SNAPSHOT_TABLE, partitions);
+            } else {
+                log.warn("快照表未分区，退化为分块删除: table={}", SNAPSHOT_TABLE);
+            }
+        }
+        return purgeChunked(SNAPSHOT_TABLE, "timestamp", expireTime, null, null);
+    }
+
+    /**
+     * 清理过期的状态变更日志
+     *
+     * @param expireTime 过期时间戳（毫秒）
+     * @return 删除的行数
+     */
+    public int purgeStateLogs(long expireTime) {
+        return purgeChunked(STATE_LOG_TABLE, "change_time", expireTime, null, null);
+    }
+
+    /**
+     * 清理不再被快照引用的过期元数据
+     *
+     * 应在清理快照之后调用。仍被快照引用的元数据即使早于过期时间也会保留。
+     *
+     * @param expireTime 过期时间戳（毫秒），早于此时间创建的元数据才会被清理
+     * @return 删除的行数
+     */
+    public int purgeMetadata(long expireTime) {
+        return purgeChunked(METADATA_TABLE, "create_time", expireTime, METADATA_UNREFERENCED, null);
+    }
+
+    /**
+     * 清理某一层级的过期汇总数据
+     *
+     * @param tier 汇总层级
+     * @param expireTime 过期时间戳（毫秒）
+     * @return 删除的行数
+     */
+    public int purgeRollups(RollupTier tier, long expireTime) {
+        return purgeChunked(ROLLUP_TABLE, "bucket_start", expireTime,
+                "tier = #{tier}", Collections.singletonMap("tier", tier.getCode()));
+    }
+
+    /**
+     * 分块删除过期数据，直到不足一个分块
+     */
+    private int purgeChunked(String table, String timeColumn, long expireTime,
+                             String extraCondition, Map<String, Object> extraParams) {
+        int batchSize = getBatchSize();
+        long pauseMillis = getPauseMillis();
+        long startTime = System.currentTimeMillis();
+        int total = 0;
+        int batches = 0;
+
+        while (true) {
+            int deleted;
+            try {
+                deleted = retentionDao.deleteExpiredChunk(table, timeColumn, expireTime,
+                        extraCondition, extraParams, batchSize);
+            } catch (Exception e) {
+                log.error("分块删除过期数据失败: table={}, 已删除={}", table, total, e);
+                break;
+            }
+            total += deleted;
+            batches++;
+
+            if (batches % PROGRESS_LOG_INTERVAL == 0) {
+                log.info("分块删除过期数据进行中: table={}, 分块={}, 已删除={}, 耗时={}ms",
+                        table, batches, total, System.currentTimeMillis() - startTime);
+            }
+            if (deleted < batchSize) {
+                break;
+            }
+
+            if (pauseMillis > 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("分块删除过期数据被中断: table={}, 已删除={}", table, total);
+                    break;
+                }
+            }
+        }
+
+        log.info("分块删除过期数据完成: table={}, 分块={}, 删除={}, 耗时={}ms",
+                table, batches, total, System.currentTimeMillis() - startTime);
+        return total;
+    }
+
+    /**
+     * 删除上界不晚于过期时间的分区（分区内所有行均已过期）
+     */
+    private void dropExpiredPartitions(String table, List<MonitorRetentionDao.PartitionInfo> partitions,
+                                       long expireTime) {
+        List<String> expired = new ArrayList<>();
+        for (MonitorRetentionDao.PartitionInfo partition : partitions) {
+            if (partition.getLessThan() != null && partition.getLessThan() <= expireTime) {
+                expired.add(partition.getName());
+            }
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        // 至少保留一个分区，表的最后一个分区不能被删除
+        if (expired.size() == partitions.size()) {
+            expired.remove(expired.size() - 1);
+        }
+
+        try {
+            retentionDao.dropPartitions(table, expired);
+            log.info("删除过期分区: table={}, partitions={}", table, expired);
+        } catch (Exception e) {
+            log.error("删除过期分区失败，将通过分块删除清理: table={}, partitions={}", table, expired, e);
+        }
+    }
+
+    /**
+     * 提前创建从今天起若干天的按天分区
+     */
+    private void ensurePartitions(String table, List<MonitorRetentionDao.PartitionInfo> partitions) {
+        Set<String> existing = new HashSet<>();
+        boolean hasFuturePartition = false;
+        long maxLessThan = Long.MIN_VALUE;
+        for (MonitorRetentionDao.PartitionInfo partition : partitions) {
+            existing.add(partition.getName());
+            if (MonitorRetentionDao.FUTURE_PARTITION.equals(partition.getName())) {
+                hasFuturePartition = true;
+            } else if (partition.getLessThan() != null) {
+                maxLessThan = Math.max(maxLessThan, partition.getLessThan());
+            }
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = LocalDate.now(zone);
+        List<MonitorRetentionDao.PartitionInfo> missing = new ArrayList<>();
+        for (int i = 0; i <= getPrecreateDays(); i++) {
+            LocalDate day = today.plusDays(i);
+            String name = PARTITION_PREFIX + day.format(PARTITION_DATE_FORMAT);
+            long lessThan = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            // 范围分区只能在末尾追加，上界必须递增
+            if (!existing.contains(name) && lessThan > maxLessThan) {
+                missing.add(new MonitorRetentionDao.PartitionInfo(name, lessThan));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try {
+            retentionDao.addPartitions(table, missing, hasFuturePartition);
+            log.info("创建按天分区: table={}, partitions={}", table, missing.size());
+        } catch (Exception e) {
+            log.error("创建按天分区失败: table={}", table, e);
+        }
+    }
+
+    private List<MonitorRetentionDao.PartitionInfo> listPartitionsQuietly(String table) {
+        try {
+            return retentionDao.listPartitions(table);
+        } catch (Exception e) {
+            log.warn("查询表分区失败: table={}", table, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private boolean isSnapshotPartitioned() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        return monitorConfig != null && Boolean.TRUE.equals(monitorConfig.getSnapshotPartitioned());
+    }
+
+    private int getBatchSize() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer batchSize = monitorConfig != null ? monitorConfig.getCleanupBatchSize() : null;
+        return batchSize != null && batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    private long getPauseMillis() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Long pauseMillis = monitorConfig != null ? monitorConfig.getCleanupPauseMillis() : null;
+        return pauseMillis != null && pauseMillis >= 0 ? pauseMillis : DEFAULT_PAUSE_MILLIS;
+    }
+
+    private int getPrecreateDays() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer days = monitorConfig != null ? monitorConfig.getPartitionPrecreateDays() : null;
+        return days != null && days >= 0 ? days : DEFAULT_PRECREATE_DAYS;
+    }
+}
@@ -0,0 +1,369 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
+import com.keqi.gress.plugin.appstore.dao.MonitorRollupDao;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorRollup;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 监控数据汇总器
+ *
+ * 由快照定时任务在每次采样后调用，在内存中维护每个插件各层级当前未结束的时间桶：
+ * - 原始快照累加到 5m 时间桶
+ * - 5m 时间桶结束后写入数据库，并合并到所在的 1h 时间桶
+ * - 1h 时间桶结束后写入数据库，并合并到所在的 1d 时间桶
+ *
+ * 进程重启后的恢复：
+ * - 插件启动后首次出现时，从原始快照重建其当前 5m 时间桶（快照先于汇总写入数据库）
+ * - 首次打开 1h / 1d 时间桶时，从数据库中已写入的下一级汇总恢复；
+ *   正在写入的同一时间桶以内存中的结果为准，不会与数据库中的旧值重复累加
+ *
+ * 汇总按 (plugin_id, tier, bucket_start) 覆盖写入，同一时间桶重复写入结果不变。
+ */
+@Slf4j
+@Service
+public class MonitorRollupAggregator {
+
+    @Inject
+    private MonitorRollupDao rollupDao;
+
+    @Inject
+    private MonitorHistoryDao historyDao;
+
+    @Inject
+    private SnapshotSamplingPolicy samplingPolicy;
+
+    /** 从原始快照重建时间桶时每页的行数 */
+    private static final int RESTORE_PAGE_SIZE = 2000;
+
+    /** 首个样本默认代表的状态持续时长（毫秒），与快照调度周期一致 */
+    private static final long DEFAULT_SAMPLE_INTERVAL = SnapshotSamplingPolicy.TICK_MILLIS;
+
+    /**
+     * 各插件未结束的时间桶
+     * Key: pluginId
+     */
+    private final Map<String, PluginBuckets> openBuckets = new HashMap<>();
+
+    /** 本次进程启动后已出现过的插件，首次出现时从原始快照重建当前 5m 时间桶 */
+    private final Set<String> seenPlugins = new HashSet<>();
+
+    /**
+     * 累加一批快照
+     *
+     * 同一批快照应具有相同的时间戳；已结束的时间桶在本次调用中批量写入数据库
+     *
+     * @param snapshots 快照列表
+     * @param timestamp 快照时间戳（毫秒）
+     */
+    public synchronized void accept(List<PluginMonitorSnapshot> snapshots, long timestamp) {
+        List<PluginMonitorRollup> closed = new ArrayList<>();
+
+        // 先结束所有插件中已过期的时间桶（包括本次没有快照的插件）
+        for (PluginBuckets buckets : openBuckets.values()) {
+            closeExpired(buckets, timestamp, closed);
+        }
+        openBuckets.values().removeIf(PluginBuckets::isEmpty);
+
+        restore(snapshots, timestamp);
+
+        for (PluginMonitorSnapshot snapshot : snapshots) {
+            if (snapshot.getPluginId() != null) {
+                addSample(snapshot, timestamp);
+            }
+        }
+
+        if (!closed.isEmpty()) {
+            int saved = rollupDao.batchUpsert(closed);
+            log.debug("写入监控汇总数据: 时间桶={}, 成功={}", closed.size(), saved);
+        }
+    }
+
+    /**
+     * 获取插件在指定层级上尚未结束的时间桶
+     *
+     * 上一级时间桶只在下一级时间桶结束时合并，这里把同一时间段内更细层级的未结束时间桶一并合并进来，
+     * 返回的结果包含截至最近一次采样的全部数据；不修改内存中的时间桶
+     *
+     * @param pluginId 插件ID
+     * @param tier 汇总层级
+     * @return 未结束时间桶的汇总结果，没有未结束的时间桶时返回 null
+     */
+    public synchronized PluginMonitorRollup getOpenBucket(String pluginId, RollupTier tier) {
+        PluginBuckets buckets = openBuckets.get(pluginId);
+        if (buckets == null || buckets.isEmpty()) {
+            return null;
+        }
+        Bucket current = buckets.tiers.get(tier);
+        Bucket finest = buckets.tiers.get(RollupTier.FIVE_MINUTES);
+        long bucketStart;
+        if (current != null) {
+            bucketStart = current.bucketStart;
+        } else if (finest != null) {
+            bucketStart = tier.bucketStart(finest.bucketStart);
+        } else {
+            return null;
+        }
+
+        // 从粗到细合并，最后一个状态取自最近的样本
+        Bucket result = new Bucket(pluginId, tier, bucketStart);
+        for (RollupTier level = tier; level != null; level = level.child()) {
+            Bucket bucket = buckets.tiers.get(level);
+            if (bucket != null && tier.bucketStart(bucket.bucketStart) == bucketStart) {
+                result.merge(bucket);
+            }
+        }
+        return result.sampleCount > 0 ? result.toEntity() : null;
+    }
+
+    /**
+     * 将一个快照累加到插件当前的 5m 时间桶
+     */
+    private void addSample(PluginMonitorSnapshot snapshot, long timestamp) {
+        PluginBuckets buckets = openBuckets.computeIfAbsent(snapshot.getPluginId(), PluginBuckets::new);
+
+        long duration = buckets.lastSampleTime > 0
+                ? Math.min(timestamp - buckets.lastSampleTime, samplingPolicy.getMaxSampleGapMillis())
+                : DEFAULT_SAMPLE_INTERVAL;
+        buckets.lastSampleTime = timestamp;
+
+        Bucket bucket = buckets.tiers.computeIfAbsent(RollupTier.FIVE_MINUTES,
+                tier -> new Bucket(snapshot.getPluginId(), tier, tier.bucketStart(timestamp)));
+        bucket.addSample(snapshot.getState(), snapshot.getMemoryUsage(), snapshot.getCpuUsage(), Math.max(duration, 0));
+    }
+
+    /**
+     * 插件在本次进程中首次出现时，从原始快照重建其当前 5m 时间桶
+     *
+     * 本批快照已写入数据库，重建范围不包含本批的时间戳
+     */
+    private void restore(List<PluginMonitorSnapshot> snapshots, long timestamp) {
+        Set<String> pluginIds = new HashSet<>();
+        for (PluginMonitorSnapshot snapshot : snapshots) {
+            if (snapshot.getPluginId() != null && seenPlugins.add(snapshot.getPluginId())) {
+                pluginIds.add(snapshot.getPluginId());
+            }
+        }
+        if (pluginIds.isEmpty() || historyDao == null) {
+            return;
+        }
+        long bucketStart = RollupTier.FIVE_MINUTES.bucketStart(timestamp);
+        try {
+            long rows = historyDao.streamSnapshots(pluginIds, bucketStart, timestamp, RESTORE_PAGE_SIZE, false,
+                    snapshot -> addSample(snapshot, snapshot.getTimestamp()));
+            if (rows > 0) {
+                log.debug("从原始快照重建监控汇总时间桶: 插件数={}, 行数={}", pluginIds.size(), rows);
+            }
+        } catch (Exception e) {
+            log.warn("从原始快照重建监控汇总时间桶失败: 插件数={}", pluginIds.size(), e);
+        }
+    }
+
+    /**
+     * 结束已过期的时间桶
+     */
+    private void closeExpired(PluginBuckets buckets, long timestamp, List<PluginMonitorRollup> closed) {
+        for (RollupTier tier : RollupTier.values()) {
+            Bucket bucket = buckets.tiers.get(tier);
+            if (bucket != null && bucket.bucketStart + tier.getBucketMillis() <= timestamp) {
+                close(buckets, bucket, closed);
+            }
+        }
+    }
+
+    /**
+     * 结束时间桶并合并到上一级时间桶
+     *
+     * 上一级已打开的时间桶属于更早的时间段时（采样中断跨越了整个上一级时间桶），先将其结束
+     */
+    private void close(PluginBuckets buckets, Bucket bucket, List<PluginMonitorRollup> closed) {
+        buckets.tiers.remove(bucket.tier);
+        closed.add(bucket.toEntity());
+
+        RollupTier parentTier = bucket.tier.parent();
+        if (parentTier == null) {
+            return;
+        }
+        long parentStart = parentTier.bucketStart(bucket.bucketStart);
+        Bucket parent = buckets.tiers.get(parentTier);
+        if (parent != null && parent.bucketStart != parentStart) {
+            close(buckets, parent, closed);
+            parent = null;
+        }
+        if (parent == null) {
+            parent = openParent(buckets.pluginId, parentTier, parentStart, closed);
+            buckets.tiers.put(parentTier, parent);
+        }
+        parent.merge(bucket);
+    }
+
+    /**
+     * 打开上一级时间桶，并从数据库中已写入的下一级汇总恢复（进程重启的情况）
+     *
+     * 本次调用中正在写入的下一级时间桶会覆盖数据库中的同一行，并由调用方合并，恢复时跳过
+     *
+     * @param closed 本次调用中已结束、尚未写入的时间桶
+     */
+    private Bucket openParent(String pluginId, RollupTier tier, long bucketStart, List<PluginMonitorRollup> closed) {
+        Bucket bucket = new Bucket(pluginId, tier, bucketStart);
+        String childTier = tier.child().getCode();
+        try {
+            List<PluginMonitorRollup> children = rollupDao.queryRollups(pluginId, childTier,
+                    bucketStart, bucketStart + tier.getBucketMillis());
+            for (PluginMonitorRollup child : children) {
+                if (!isPending(closed, pluginId, childTier, child.getBucketStart())) {
+                    bucket.merge(Bucket.fromEntity(child, tier.child()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("恢复监控汇总时间桶失败: pluginId={}, tier={}", pluginId, tier.getCode(), e);
+        }
+        return bucket;
+    }
+
+    private static boolean isPending(List<PluginMonitorRollup> closed, String pluginId, String tier, Long bucketStart) {
+        for (PluginMonitorRollup rollup : closed) {
+            if (rollup.getPluginId().equals(pluginId) && rollup.getTier().equals(tier)
+                    && rollup.getBucketStart().equals(bucketStart)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 单个插件未结束的时间桶
+     */
+    private static final class PluginBuckets {
+        private final String pluginId;
+        private final Map<RollupTier, Bucket> tiers = new EnumMap<>(RollupTier.class);
+        private long lastSampleTime;
+
+        private PluginBuckets(String pluginId) {
+            this.pluginId = pluginId;
+        }
+
+        private boolean isEmpty() {
+            return tiers.isEmpty();
+        }
+    }
+
+    /**
+     * 时间桶
+     */
+    private static final class Bucket {
+        private final String pluginId;
+        private final RollupTier tier;
+        private final long bucketStart;
+        private int sampleCount;
+        private long memoryMin = Long.MAX_VALUE;
+        private long memoryMax = Long.MIN_VALUE;
+        private long memorySum;
+        private int memoryCount;
+        private double cpuMax;
+        private double cpuSum;
+        private int cpuCount;
+        private String lastState;
+        private final Map<String, Long> stateDurations = new HashMap<>();
+
+        private Bucket(String pluginId, RollupTier tier, long bucketStart) {
+            this.pluginId = pluginId;
+            this.tier = tier;
+            this.bucketStart = bucketStart;
+        }
+
+        private void addSample(String state, Long memoryUsage, Double cpuUsage, long duration) {
+            sampleCount++;
+            if (memoryUsage != null) {
+                memoryMin = Math.min(memoryMin, memoryUsage);
+                memoryMax = Math.max(memoryMax, memoryUsage);
+                memorySum += memoryUsage;
+                memoryCount++;
+            }
+            if (cpuUsage != null) {
+                cpuMax = Math.max(cpuMax, cpuUsage);
+                cpuSum += cpuUsage;
+                cpuCount++;
+            }
+            if (state != null) {
+                lastState = state;
+                stateDurations.merge(state, duration, Long::sum);
+            }
+        }
+
+        private void merge(Bucket child) {
+            sampleCount += child.sampleCount;
+            if (child.memoryCount > 0) {
+                memoryMin = Math.min(memoryMin, child.memoryMin);
+                memoryMax = Math.max(memoryMax, child.memoryMax);
+                memorySum += child.memorySum;
+                memoryCount += child.memoryCount;
+            }
+            if (child.cpuCount > 0) {
+                cpuMax = Math.max(cpuMax, child.cpuMax);
+                cpuSum += child.cpuSum;
+                cpuCount += child.cpuCount;
+            }
+            if (child.lastState != null) {
+                lastState = child.lastState;
+            }
+            child.stateDurations.forEach((state, duration) -> stateDurations.merge(state, duration, Long::sum));
+        }
+
+        private PluginMonitorRollup toEntity() {
+            return PluginMonitorRollup.builder()
+                    .pluginId(pluginId)
+                    .tier(tier.getCode())
+                    .bucketStart(bucketStart)
+                    .sampleCount(sampleCount)
+                    .memoryMin(memoryCount > 0 ? memoryMin : null)
+                    .memoryMax(memoryCount > 0 ? memoryMax : null)
+                    .memorySum(memoryCount > 0 ? memorySum : null)
+                    .memoryCount(memoryCount)
+                    .cpuMax(cpuCount > 0 ? cpuMax : null)
+                    .cpuSum(cpuCount > 0 ? cpuSum : null)
+                    .cpuCount(cpuCount)
+                    .lastState(lastState)
+                    .stateDurations(JSON.toJSONString(stateDurations))
+                    .build();
+        }
+
+        private static Bucket fromEntity(PluginMonitorRollup rollup, RollupTier tier) {
+            Bucket bucket = new Bucket(rollup.getPluginId(), tier, rollup.getBucketStart());
+            bucket.sampleCount = rollup.getSampleCount() != null ? rollup.getSampleCount() : 0;
+            bucket.memoryCount = rollup.getMemoryCount() != null ? rollup.getMemoryCount() : 0;
+            if (bucket.memoryCount > 0) {
+                bucket.memoryMin = rollup.getMemoryMin();
+                bucket.memoryMax = rollup.getMemoryMax();
+                bucket.memorySum = rollup.getMemorySum();
+            }
+            bucket.cpuCount = rollup.getCpuCount() != null ? rollup.getCpuCount() : 0;
+            if (bucket.cpuCount > 0) {
+                bucket.cpuMax = rollup.getCpuMax() != null ? rollup.getCpuMax() : 0;
+                bucket.cpuSum = rollup.getCpuSum() != null ? rollup.getCpuSum() : 0;
+            }
+            bucket.lastState = rollup.getLastState();
+            if (rollup.getStateDurations() != null && !rollup.getStateDurations().isEmpty()) {
+                Map<String, Long> durations = JSON.parseObject(rollup.getStateDurations(),
+                        new TypeReference<Map<String, Long>>() {});
+                if (durations != null) {
+                    bucket.stateDurations.putAll(durations);
+                }
+            }
+            return bucket;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.keqi.gress.plugin.appstore.service.monitor;
 import com.keqi.gress.common.plugin.annotion.Inject;
 import com.keqi.gress.common.plugin.annotion.Scheduled;
 import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.dao.BatchSaveResult;
 import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
 import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
@@ -15,17 +17,17 @@ import java.util.Map;
 
 /**
  * 监控快照定时任务
- * 负责定期保存插件监控快照和清理过期数据
+ * 负责定期保存插件监控快照和清理过期数据，并增量维护 5m / 1h / 1d 汇总和评估告警
+ * 
+ * 每 5 秒执行一次：每次都采样 CPU 和检测状态变更，快照只写入 {@link SnapshotSamplingPolicy} 选出的
+ * 到期插件；告警评估保持每分钟一次，告警的防抖周期数仍按分钟计算。
  */
 @Slf4j
 @Service
 public class MonitorSnapshotScheduler {
     
     @Inject
-    private PluginStatusCollector statusCollector;
-    
-    @Inject
-    private PluginMemoryCollector memoryCollector;
+    private PluginStatusRegistry statusRegistry;
     
     @Inject
     private MonitorHistoryDao historyDao;
@@ -33,55 +35,90 @@ public class MonitorSnapshotScheduler {
     @Inject
     private PluginStateChangeListener stateChangeListener;
     
+    @Inject
+    private MonitorRollupAggregator rollupAggregator;
+    
+    @Inject
+    private RecentSampleBuffer recentSampleBuffer;
+    
+    @Inject
+    private MonitorAlertEngine alertEngine;
+    
+    @Inject
+    private SnapshotMetadataStore metadataStore;
+    
+    @Inject
+    private PluginCpuSampler cpuSampler;
+    
+    @Inject
+    private SnapshotSamplingPolicy samplingPolicy;
+    
+    @Inject
+    private AppStoreConfig config;
+    
+    /** 默认批量写入分块大小 */
+    private static final int DEFAULT_SNAPSHOT_BATCH_SIZE = 200;
+    
+    /** 告警评估间隔（毫秒） */
+    private static final long ALERT_EVALUATION_INTERVAL = 60 * 1000L;
+    
+    /** 判断告警评估到期时允许的调度抖动（毫秒） */
+    private static final long SCHEDULE_TOLERANCE = 1000;
+    
+    /** 上次评估告警的时间（毫秒） */
+    private volatile long lastAlertEvaluation = 0;
+    
     /**
      * 定时保存监控快照
-     * 每分钟执行一次
+     * 每 5 秒执行一次，各插件按所在采样层级的间隔写入
      */
-    @Scheduled(cron = "0 * * * * ?")
+    @Scheduled(cron = "*/5 * * * * ?")
     public void saveMonitorSnapshots() {
         try {
             log.debug("开始保存监控快照");
             
-            // 收集所有插件状态
-            List<PluginMonitorStatus> statusList = statusCollector.collectAllStatus();
+            // 从插件状态实时表读取所有插件状态
+            List<PluginMonitorStatus> statusList = statusRegistry.getAllStatus();
             
             if (statusList == null || statusList.isEmpty()) {
                 log.debug("没有插件需要保存快照");
                 return;
             }
             
-            // 创建快照列表
-            List<PluginMonitorSnapshot> snapshots = new ArrayList<>();
+            // 采样 CPU，并填入本次读取的状态副本
+            sampleCpu(statusList);
+            
+            // 记录所有插件的当前状态用于状态变更检测（不受采样层级影响）
             Map<String, String> currentStates = new HashMap<>();
+            for (PluginMonitorStatus status : statusList) {
+                currentStates.put(status.getPluginId(), status.getState());
+            }
+            
+            // 选出本周期到期的插件
             long timestamp = System.currentTimeMillis();
+            List<PluginMonitorStatus> dueList = samplingPolicy.select(statusList, timestamp);
             
-            for (PluginMonitorStatus status : statusList) {
+            // 创建快照列表
+            List<PluginMonitorSnapshot> snapshots = new ArrayList<>(dueList.size());
+            for (PluginMonitorStatus status : dueList) {
                 try {
-                    // 收集内存信息
-                    Long memoryUsage = null;
-                    try {
-                        var memInfo = memoryCollector.collectMemoryInfo(status.getPluginId());
-                        if (memInfo != null) {
-                            memoryUsage = memInfo.getUsedMemory();
-                        }
-                    } catch (Exception e) {
-                        log.warn("收集插件内存信息失败: pluginId={}", status.getPluginId(), e);
-                    }
+                    // 内存估算已随状态一起收集
+                    Long memoryUsage = status.getMemoryInfo() != null 
+                            ? status.getMemoryInfo().getUsedMemory() 
+                            : null;
                     
                     // 创建快照
                     PluginMonitorSnapshot snapshot = PluginMonitorSnapshot.builder()
                             .pluginId(status.getPluginId())
                             .state(status.getState())
                             .memoryUsage(memoryUsage)
+                            .cpuUsage(status.getCpuUsage())
                             .timestamp(timestamp)
-                            .metadata(buildMetadata(status))
+                            .metadataId(metadataStore.resolveId(status))
                             .build();
                     
                     snapshots.add(snapshot);
                     
-                    // 记录当前状态用于状态变更检测
-                    currentStates.put(status.getPluginId(), status.getState());
-                    
                 } catch (Exception e) {
                     log.error("创建插件快照失败: pluginId={}", status.getPluginId(), e);
                 }
@@ -89,8 +126,24 @@ public class MonitorSnapshotScheduler {
             
             // 批量保存快照
             if (!snapshots.isEmpty()) {
-                int savedCount = historyDao.batchSaveSnapshots(snapshots);
-                log.debug("保存监控快照完成: 总数={}, 成功={}", snapshots.size(), savedCount);
+                BatchSaveResult result = historyDao.batchSaveSnapshots(snapshots, getSnapshotBatchSize());
+                if (result.isSuccess()) {
+                    log.debug("保存监控快照完成: 总数={}, 成功={}, 分块={}", 
+                            result.getTotal(), result.getSavedCount(), result.getChunkCount());
+                } else {
+                    log.warn("保存监控快照部分失败: 总数={}, 成功={}, 分块={}, 失败分块={}", 
+                            result.getTotal(), result.getSavedCount(), result.getChunkCount(), result.getFailures());
+                }
+            }
+            
+            // 写入近期样本缓冲区
+            recentSampleBuffer.append(snapshots, timestamp);
+            
+            // 累加到汇总时间桶（汇总失败不影响快照和状态变更记录）
+            try {
+                rollupAggregator.accept(snapshots, timestamp);
+            } catch (Exception e) {
+                log.error("更新监控汇总失败", e);
             }
             
             // 检查并记录状态变更
@@ -98,67 +151,54 @@ public class MonitorSnapshotScheduler {
                 stateChangeListener.checkAndRecordStateChanges(currentStates);
             }
             
+            // 评估告警（状态变更已记录，重启计数是最新的）
+            if (timestamp - lastAlertEvaluation + SCHEDULE_TOLERANCE >= ALERT_EVALUATION_INTERVAL) {
+                lastAlertEvaluation = timestamp;
+                try {
+                    alertEngine.evaluate(statusList, timestamp);
+                } catch (Exception e) {
+                    log.error("评估插件告警失败", e);
+                }
+            }
+            
         } catch (Exception e) {
             log.error("保存监控快照失败", e);
         }
     }
     
     /**
-     * 构建元数据 JSON
+     * 采样已加载插件的 CPU 占用率（采样失败不影响快照）
      * 
-     * @param status 插件状态
-     * @return JSON 格式的元数据
+     * @param statusList 插件状态副本
      */
-    private String buildMetadata(PluginMonitorStatus status) {
+    private void sampleCpu(List<PluginMonitorStatus> statusList) {
         try {
-            // 简单的 JSON 构建（避免引入 JSON 库依赖）
-            StringBuilder json = new StringBuilder("{");
-            
-            if (status.getPluginName() != null) {
-                json.append("\"pluginName\":\"").append(escapeJson(status.getPluginName())).append("\",");
-            }
-            
-            if (status.getPluginVersion() != null) {
-                json.append("\"pluginVersion\":\"").append(escapeJson(status.getPluginVersion())).append("\",");
-            }
-            
-            if (status.getLoaded() != null) {
-                json.append("\"loaded\":").append(status.getLoaded()).append(",");
-            }
-            
-            if (status.getStartTime() != null) {
-                json.append("\"startTime\":").append(status.getStartTime()).append(",");
-            }
-            
-            if (status.getUptime() != null) {
-                json.append("\"uptime\":").append(status.getUptime()).append(",");
+            List<String> loadedPluginIds = new ArrayList<>(statusList.size());
+            for (PluginMonitorStatus status : statusList) {
+                if (Boolean.TRUE.equals(status.getLoaded())) {
+                    loadedPluginIds.add(status.getPluginId());
+                }
             }
-            
-            // 移除最后的逗号
-            if (json.charAt(json.length() - 1) == ',') {
-                json.setLength(json.length() - 1);
+            Map<String, PluginCpuSampler.Usage> usages = cpuSampler.sample(loadedPluginIds);
+            for (PluginMonitorStatus status : statusList) {
+                PluginCpuSampler.Usage usage = usages.get(status.getPluginId());
+                status.setCpuUsage(usage != null ? usage.getCpuPercent() : null);
+                status.setThreadCount(usage != null ? usage.getThreadCount() : null);
             }
-            
-            json.append("}");
-            return json.toString();
-            
         } catch (Exception e) {
-            log.warn("构建元数据失败: pluginId={}", status.getPluginId(), e);
-            return "{}";
+            log.error("采样插件 CPU 失败", e);
         }
     }
     
     /**
-     * 转义 JSON 字符串
+     * 获取快照批量写入的分块大小
      */
-    private String escapeJson(String str) {
-        if (str == null) {
-            return "";
+    private int getSnapshotBatchSize() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        if (monitorConfig != null && monitorConfig.getSnapshotBatchSize() != null 
+                && monitorConfig.getSnapshotBatchSize() > 0) {
+            return monitorConfig.getSnapshotBatchSize();
         }
-        return str.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+        return DEFAULT_SNAPSHOT_BATCH_SIZE;
     }
 }
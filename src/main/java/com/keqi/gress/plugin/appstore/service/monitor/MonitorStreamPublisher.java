@@ -0,0 +1,284 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.event.Event;
+import com.keqi.gress.common.event.EventDispatcher;
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Scheduled;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.common.sse.SseMessage;
+import com.keqi.gress.common.sse.SseMessageEvent;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAlert;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorOverview;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件监控 SSE 推送
+ *
+ * <p>客户端订阅后先收到一次全量快照，之后每个周期只推送有变化的插件：
+ * 状态变化、内存变化超过阈值、告警或错误标记变化、新增和移除的插件。
+ *
+ * <p>每个周期只从插件状态实时表读取一次并计算一次差异，同一份差异推送给所有订阅者，
+ * 因此打开多个监控页面不会增加收集次数。订阅以租约方式维护，客户端需要在租约到期前重新订阅。
+ */
+@Slf4j
+@Service
+public class MonitorStreamPublisher {
+
+    @Inject(source = Inject.BeanSource.SPRING)
+    private EventDispatcher<Event<?>> eventDispatcher;
+
+    @Inject
+    private PluginStatusRegistry statusRegistry;
+
+    @Inject
+    private PluginMonitorService monitorService;
+
+    @Inject
+    private AppStoreConfig config;
+
+    private static final String BUSINESS_TYPE = "PLUGIN_MONITOR";
+
+    private static final String BUSINESS_ID = "all";
+
+    /** 默认内存变化推送阈值（MB） */
+    private static final long DEFAULT_MEMORY_DELTA_MB = 10;
+
+    /** 默认订阅租约（秒） */
+    private static final int DEFAULT_LEASE_SECONDS = 300;
+
+    /**
+     * 订阅者
+     * Key: clientId, Value: 租约到期时间戳（毫秒）
+     */
+    private final Map<String, Long> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * 上一次推送时各插件的状态
+     * Key: pluginId
+     */
+    private final Map<String, PluginMonitorStatus> lastPublished = new HashMap<>();
+
+    /** 是否已建立差异基线 */
+    private boolean hasBaseline = false;
+
+    /**
+     * 订阅监控推送，并立即向该客户端发送全量快照
+     *
+     * 尚未建立差异基线时，以发送给该客户端的快照作为基线，下一个周期即可推送快照之后的变化；
+     * 已有基线时，后续差异相对于基线计算，覆盖了快照之后的所有变化
+     *
+     * @param clientId SSE 客户端ID
+     */
+    public synchronized void subscribe(String clientId) {
+        if (clientId == null || clientId.isEmpty()) {
+            return;
+        }
+        subscribers.put(clientId, System.currentTimeMillis() + getLeaseSeconds() * 1000L);
+
+        List<PluginMonitorStatus> statuses = statusRegistry.getAllStatus();
+        if (!hasBaseline) {
+            lastPublished.clear();
+            for (PluginMonitorStatus status : statuses) {
+                lastPublished.put(status.getPluginId(), status);
+            }
+            hasBaseline = true;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("statuses", statuses);
+        data.put("overview", getOverview());
+        dispatch(clientId, "SNAPSHOT", data);
+
+        log.debug("监控推送订阅: clientId={}, 订阅数={}", clientId, subscribers.size());
+    }
+
+    /**
+     * 取消订阅
+     *
+     * @param clientId SSE 客户端ID
+     */
+    public void unsubscribe(String clientId) {
+        if (clientId != null && subscribers.remove(clientId) != null) {
+            log.debug("监控推送取消订阅: clientId={}, 订阅数={}", clientId, subscribers.size());
+        }
+    }
+
+    /**
+     * 当前订阅数
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 定时推送差异
+     * 每 5 秒执行一次，周期内的多次变化合并为一次推送
+     */
+    @Scheduled(cron = "*/5 * * * * ?")
+    public synchronized void publishChanges() {
+        long currentTime = System.currentTimeMillis();
+        subscribers.values().removeIf(expireTime -> expireTime < currentTime);
+        if (subscribers.isEmpty()) {
+            // 无订阅者时不保留基线，下次订阅会先收到全量快照
+            lastPublished.clear();
+            hasBaseline = false;
+            return;
+        }
+
+        try {
+            List<PluginMonitorStatus> statuses = statusRegistry.getAllStatus();
+
+            List<Map<String, Object>> changes = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (PluginMonitorStatus status : statuses) {
+                seen.add(status.getPluginId());
+                PluginMonitorStatus previous = lastPublished.get(status.getPluginId());
+                List<String> changeTypes = diff(previous, status);
+                if (changeTypes.isEmpty()) {
+                    continue;
+                }
+                lastPublished.put(status.getPluginId(), status);
+                Map<String, Object> change = new HashMap<>();
+                change.put("pluginId", status.getPluginId());
+                change.put("changes", changeTypes);
+                change.put("status", status);
+                changes.add(change);
+            }
+
+            List<String> removed = new ArrayList<>();
+            lastPublished.keySet().removeIf(pluginId -> {
+                if (seen.contains(pluginId)) {
+                    return false;
+                }
+                removed.add(pluginId);
+                return true;
+            });
+
+            if (changes.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("changes", changes);
+            data.put("removed", removed);
+            data.put("overview", getOverview());
+            for (String clientId : subscribers.keySet()) {
+                dispatch(clientId, "DELTA", data);
+            }
+
+            log.debug("监控推送差异: 变化={}, 移除={}, 订阅数={}", changes.size(), removed.size(), subscribers.size());
+        } catch (Exception e) {
+            log.warn("监控推送差异失败", e);
+        }
+    }
+
+    /**
+     * 向所有订阅者推送告警的触发和恢复事件
+     *
+     * @param alerts 告警事件列表
+     */
+    public void publishAlerts(List<MonitorAlert> alerts) {
+        if (alerts == null || alerts.isEmpty() || subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Object> data = new HashMap<>();
+            data.put("alerts", alerts);
+            long currentTime = System.currentTimeMillis();
+            subscribers.forEach((clientId, expireTime) -> {
+                if (expireTime >= currentTime) {
+                    dispatch(clientId, "ALERT", data);
+                }
+            });
+            log.debug("监控推送告警: 事件={}, 订阅数={}", alerts.size(), subscribers.size());
+        } catch (Exception e) {
+            log.warn("监控推送告警失败", e);
+        }
+    }
+
+    /**
+     * 计算插件状态的变化类型
+     *
+     * @return 变化类型列表：ADDED, STATE, MEMORY, WARNING, ERROR；无需推送的变化返回空列表
+     */
+    private List<String> diff(PluginMonitorStatus previous, PluginMonitorStatus current) {
+        List<String> changeTypes = new ArrayList<>(2);
+        if (previous == null) {
+            changeTypes.add("ADDED");
+            return changeTypes;
+        }
+        if (!Objects.equals(previous.getState(), current.getState())
+                || !Objects.equals(previous.getLoaded(), current.getLoaded())) {
+            changeTypes.add("STATE");
+        }
+        if (Math.abs(usedMemory(current) - usedMemory(previous)) >= getMemoryDeltaBytes()) {
+            changeTypes.add("MEMORY");
+        }
+        if (!Objects.equals(previous.getIsMemoryWarning(), current.getIsMemoryWarning())) {
+            changeTypes.add("WARNING");
+        }
+        if (!Objects.equals(previous.getHasError(), current.getHasError())
+                || !Objects.equals(previous.getErrorMessage(), current.getErrorMessage())) {
+            changeTypes.add("ERROR");
+        }
+        return changeTypes;
+    }
+
+    private long usedMemory(PluginMonitorStatus status) {
+        return status.getMemoryInfo() != null && status.getMemoryInfo().getUsedMemory() != null
+                ? status.getMemoryInfo().getUsedMemory()
+                : 0;
+    }
+
+    private MonitorOverview getOverview() {
+        return monitorService.getMonitorOverview().getData();
+    }
+
+    private long getMemoryDeltaBytes() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Long deltaMb = monitorConfig != null ? monitorConfig.getStreamMemoryDeltaMb() : null;
+        return (deltaMb != null && deltaMb > 0 ? deltaMb : DEFAULT_MEMORY_DELTA_MB) * 1024 * 1024;
+    }
+
+    private int getLeaseSeconds() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer leaseSeconds = monitorConfig != null ? monitorConfig.getStreamLeaseSeconds() : null;
+        return leaseSeconds != null && leaseSeconds > 0 ? leaseSeconds : DEFAULT_LEASE_SECONDS;
+    }
+
+    /**
+     * 通过 EventDispatcher 派发 SseMessageEvent
+     */
+    private void dispatch(String clientId, String status, Map<String, Object> data) {
+        if (eventDispatcher == null) {
+            return;
+        }
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("clientId", clientId);
+
+        SseMessage message = SseMessage.builder()
+                .businessType(BUSINESS_TYPE)
+                .businessId(BUSINESS_ID)
+                .metadata(metadata)
+                .type(SseMessage.MessageType.DATA)
+                .status(status)
+                .data(data)
+                .build();
+        eventDispatcher.dispatch(SseMessageEvent.builder()
+                .type("sse.message")
+                .data(message)
+                .metadata(message.getMetadata())
+                .build());
+    }
+}
@@ -0,0 +1,375 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 插件 CPU 采样器
+ *
+ * 在每次快照采集时，通过 ThreadMXBean 读取线程 CPU 时间，按两次采样之间的增量计算各插件的 CPU 占用率
+ * （占全部处理器的百分比）。线程按以下顺序归属到插件：
+ * - 线程上下文类加载器（及其父加载器）的名称与插件ID一致
+ * - 线程名称以插件ID开头（后接 - _ : . # 或空格），或包含 [插件ID]
+ * - 线程组（及其父线程组）的名称与插件ID一致
+ *
+ * 采样开销控制：
+ * - 通过线程组枚举线程，不采集调用栈
+ * - 线程的归属结果按线程ID缓存，只有新线程、线程改名或上下文类加载器变化时才重新归属
+ * - 只读取已归属到插件的线程的 CPU 时间，支持时使用批量接口
+ * - 不持有 Thread 和 ClassLoader 的引用，不影响插件卸载
+ */
+@Slf4j
+@Service
+public class PluginCpuSampler {
+
+    @Inject
+    private AppStoreConfig config;
+
+    @Inject
+    private MonitorMetrics metrics;
+
+    /** 线程在基线之后创建，CPU 时间全部计入下一次采样 */
+    private static final long NEW_THREAD = -1;
+
+    /** 线程尚无基线，下一次采样只记录 CPU 时间 */
+    private static final long NO_BASELINE = Long.MIN_VALUE;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final int processors = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 线程归属缓存
+     * Key: 线程ID
+     */
+    private final Map<Long, ThreadEntry> threadEntries = new HashMap<>();
+
+    /** 归属缓存对应的插件ID集合，插件集合变化时全部重新归属 */
+    private Set<String> attributedPluginIds = Collections.emptySet();
+
+    /** 线程枚举缓冲区，按需扩容 */
+    private Thread[] threadBuffer = new Thread[256];
+
+    /** 上次采样时间（纳秒），0 表示尚未建立基线 */
+    private long lastSampleNanos = 0;
+
+    /** 是否已提示线程 CPU 时间不可用 */
+    private boolean unsupportedLogged = false;
+
+    /**
+     * 最近一次采样结果
+     * Key: pluginId
+     */
+    private volatile Map<String, Usage> usages = Collections.emptyMap();
+
+    /**
+     * 获取插件最近一次的 CPU 采样结果
+     *
+     * @param pluginId 插件ID
+     * @return 采样结果，未启用、尚未建立基线或没有归属线程时返回 null
+     */
+    public Usage getUsage(String pluginId) {
+        return pluginId != null ? usages.get(pluginId) : null;
+    }
+
+    /**
+     * 执行一次 CPU 采样
+     *
+     * 首次调用只建立基线，从第二次调用开始产生结果
+     *
+     * @param pluginIds 需要统计的插件ID
+     * @return 各插件的采样结果（Key: pluginId）
+     */
+    public synchronized Map<String, Usage> sample(Collection<String> pluginIds) {
+        if (!isEnabled() || pluginIds == null || pluginIds.isEmpty()) {
+            this.usages = Collections.emptyMap();
+            return usages;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            Set<String> pluginIdSet = new HashSet<>(pluginIds);
+            if (!pluginIdSet.equals(attributedPluginIds)) {
+                threadEntries.clear();
+                attributedPluginIds = pluginIdSet;
+                lastSampleNanos = 0;
+            }
+
+            int count = enumerateThreads();
+            long[] ids = new long[count];
+            ThreadEntry[] entries = new ThreadEntry[count];
+            int attributed = 0;
+            Set<Long> alive = new HashSet<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Thread thread = threadBuffer[i];
+                threadBuffer[i] = null;
+                long threadId = thread.threadId();
+                alive.add(threadId);
+                ThreadEntry entry = attribute(thread, threadId, pluginIdSet);
+                if (entry.pluginId != null) {
+                    ids[attributed] = threadId;
+                    entries[attributed] = entry;
+                    attributed++;
+                }
+            }
+            threadEntries.keySet().retainAll(alive);
+
+            long[] cpuTimes = readCpuTimes(ids, attributed);
+            long sampleNanos = System.nanoTime();
+            long elapsedNanos = lastSampleNanos > 0 ? sampleNanos - lastSampleNanos : 0;
+
+            Map<String, long[]> totals = new HashMap<>();
+            for (int i = 0; i < attributed; i++) {
+                ThreadEntry entry = entries[i];
+                long cpuTime = cpuTimes[i];
+                if (cpuTime < 0) {
+                    continue;
+                }
+                long delta;
+                if (entry.lastCpuNanos == NO_BASELINE) {
+                    delta = 0;
+                } else if (entry.lastCpuNanos == NEW_THREAD) {
+                    // 上次采样之后创建的线程，CPU 时间全部计入本次
+                    delta = cpuTime;
+                } else {
+                    delta = Math.max(cpuTime - entry.lastCpuNanos, 0);
+                }
+                entry.lastCpuNanos = cpuTime;
+
+                long[] total = totals.computeIfAbsent(entry.pluginId, id -> new long[2]);
+                total[0] += delta;
+                total[1]++;
+            }
+
+            Map<String, Usage> latest = new HashMap<>();
+            if (elapsedNanos > 0) {
+                long currentTime = System.currentTimeMillis();
+                double capacity = (double) elapsedNanos * processors;
+                for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+                    double percent = entry.getValue()[0] * 100.0 / capacity;
+                    latest.put(entry.getKey(), Usage.builder()
+                            .cpuPercent(Math.round(percent * 100) / 100.0)
+                            .cpuNanos(entry.getValue()[0])
+                            .threadCount((int) entry.getValue()[1])
+                            .sampleTime(currentTime)
+                            .build());
+                }
+            }
+            lastSampleNanos = sampleNanos;
+
+            this.usages = Collections.unmodifiableMap(latest);
+            log.debug("插件 CPU 采样完成: 线程={}, 已归属线程={}, 插件={}", count, attributed, latest.size());
+            return usages;
+        } catch (Exception e) {
+            log.warn("插件 CPU 采样失败", e);
+            return usages;
+        } finally {
+            metrics.record(MonitorMetrics.OP_CPU_SAMPLE, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * 是否启用 CPU 采样（需要 JVM 支持线程 CPU 时间）
+     */
+    public boolean isEnabled() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        if (monitorConfig != null && Boolean.FALSE.equals(monitorConfig.getCpuSamplingEnabled())) {
+            return false;
+        }
+        if (!threadMXBean.isThreadCpuTimeSupported()) {
+            if (!unsupportedLogged) {
+                log.info("当前 JVM 不支持线程 CPU 时间，插件 CPU 采样不可用");
+                unsupportedLogged = true;
+            }
+            return false;
+        }
+        if (!threadMXBean.isThreadCpuTimeEnabled()) {
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        return true;
+    }
+
+    /**
+     * 枚举所有存活线程到缓冲区
+     *
+     * @return 线程数
+     */
+    private int enumerateThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        while (true) {
+            int count = root.enumerate(threadBuffer, true);
+            if (count < threadBuffer.length) {
+                return count;
+            }
+            // 缓冲区已满，可能有线程未枚举到，扩容后重试
+            threadBuffer = new Thread[threadBuffer.length * 2];
+        }
+    }
+
+    /**
+     * 获取线程的归属，缓存未命中或线程名称、上下文类加载器变化时重新归属
+     */
+    private ThreadEntry attribute(Thread thread, long threadId, Set<String> pluginIds) {
+        String name = thread.getName();
+        ClassLoader contextLoader = thread.getContextClassLoader();
+        int loaderIdentity = System.identityHashCode(contextLoader);
+
+        ThreadEntry entry = threadEntries.get(threadId);
+        if (entry != null && entry.loaderIdentity == loaderIdentity && name.equals(entry.name)) {
+            return entry;
+        }
+
+        String pluginId = matchPlugin(thread, name, contextLoader, pluginIds);
+        if (entry == null) {
+            entry = new ThreadEntry(name, loaderIdentity, pluginId, lastSampleNanos > 0 ? NEW_THREAD : NO_BASELINE);
+        } else if (!Objects.equals(entry.pluginId, pluginId)) {
+            // 归属变化，之前的 CPU 时间无法拆分，从下一次采样开始计算增量
+            entry = new ThreadEntry(name, loaderIdentity, pluginId, NO_BASELINE);
+        } else {
+            entry = new ThreadEntry(name, loaderIdentity, pluginId, entry.lastCpuNanos);
+        }
+        threadEntries.put(threadId, entry);
+        return entry;
+    }
+
+    /**
+     * 按类加载器、线程名称、线程组的顺序匹配插件
+     *
+     * @return 插件ID，无法归属时返回 null
+     */
+    private String matchPlugin(Thread thread, String name, ClassLoader contextLoader, Set<String> pluginIds) {
+        for (ClassLoader loader = contextLoader; loader != null; loader = loader.getParent()) {
+            String loaderName = loader.getName();
+            if (loaderName != null && pluginIds.contains(loaderName)) {
+                return loaderName;
+            }
+        }
+
+        String byName = matchThreadName(name, pluginIds);
+        if (byName != null) {
+            return byName;
+        }
+
+        for (ThreadGroup group = thread.getThreadGroup(); group != null; group = group.getParent()) {
+            if (pluginIds.contains(group.getName())) {
+                return group.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按线程命名约定匹配插件：pluginId、pluginId-xxx（分隔符 - _ : . # 或空格）、xxx[pluginId]xxx
+     */
+    private String matchThreadName(String name, Set<String> pluginIds) {
+        if (pluginIds.contains(name)) {
+            return name;
+        }
+        // 取最长的匹配前缀，避免 a-b 插件的线程被归属到 a 插件
+        String matched = null;
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '-' || c == '_' || c == ':' || c == '.' || c == '#' || c == ' ') {
+                String prefix = name.substring(0, i);
+                if (pluginIds.contains(prefix)) {
+                    matched = prefix;
+                }
+            }
+        }
+        if (matched != null) {
+            return matched;
+        }
+
+        int open = name.indexOf('[');
+        while (open >= 0) {
+            int close = name.indexOf(']', open + 1);
+            if (close < 0) {
+                break;
+            }
+            String candidate = name.substring(open + 1, close);
+            if (pluginIds.contains(candidate)) {
+                return candidate;
+            }
+            open = name.indexOf('[', close + 1);
+        }
+        return null;
+    }
+
+    /**
+     * 读取线程 CPU 时间（纳秒），线程已结束时为 -1
+     */
+    private long[] readCpuTimes(long[] ids, int count) {
+        long[] threadIds = ids.length == count ? ids : Arrays.copyOf(ids, count);
+        if (count == 0) {
+            return threadIds;
+        }
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadCpuTime(threadIds);
+        }
+        long[] cpuTimes = new long[count];
+        for (int i = 0; i < count; i++) {
+            cpuTimes[i] = threadMXBean.getThreadCpuTime(threadIds[i]);
+        }
+        return cpuTimes;
+    }
+
+    /**
+     * 插件 CPU 采样结果
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Usage {
+
+        /** CPU 占用率（占全部处理器的百分比，0 ~ 100） */
+        private double cpuPercent;
+
+        /** 采样间隔内消耗的 CPU 时间（纳秒） */
+        private long cpuNanos;
+
+        /** 归属到插件的存活线程数 */
+        private int threadCount;
+
+        /** 采样时间戳（毫秒） */
+        private long sampleTime;
+    }
+
+    /**
+     * 线程归属缓存条目
+     */
+    private static final class ThreadEntry {
+        private final String name;
+        private final int loaderIdentity;
+        private final String pluginId;
+        /** 上次读取的 CPU 时间（纳秒），或 NEW_THREAD / NO_BASELINE */
+        private long lastCpuNanos;
+
+        private ThreadEntry(String name, int loaderIdentity, String pluginId, long lastCpuNanos) {
+            this.name = name;
+            this.loaderIdentity = loaderIdentity;
+            this.pluginId = pluginId;
+            this.lastCpuNanos = lastCpuNanos;
+        }
+    }
+}
@@ -5,11 +5,12 @@ import com.keqi.gress.common.plugin.PluginPackageRuntimeInfo;
 import com.keqi.gress.common.plugin.annotion.Inject;
 import com.keqi.gress.common.plugin.annotion.Service;
 import com.keqi.gress.common.model.Result;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMemoryInfo;
 import com.keqi.gress.plugin.appstore.util.MonitorErrorHandler;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
+import java.util.Map;
 
 /**
  * 插件内存收集器
@@ -17,6 +18,8 @@ import java.util.List;
  * 
  * 使用 PluginPackageLifecycle 接口获取插件包的运行时信息，
  * 包括类加载器信息，用于估算内存使用。
+ * 启用 jfr 模式后优先使用 {@link PluginMemorySampler} 的按类加载器统计结果，
+ * 无法归属的插件仍使用估算值。
  */
 @Slf4j
 @Service
@@ -25,11 +28,26 @@ public class PluginMemoryCollector {
     @Inject(source = Inject.BeanSource.SPRING)
     private PluginPackageLifecycle pluginLifecycle;
     
+    @Inject
+    private PluginMemorySampler memorySampler;
+    
+    @Inject
+    private AppStoreConfig config;
+    
     private final Runtime runtime = Runtime.getRuntime();
     
-    /** 内存告警阈值（字节），默认 500MB */
+    /** 默认内存告警阈值（字节），默认 500MB */
     private static final long MEMORY_WARNING_THRESHOLD = 500 * 1024 * 1024L;
     
+    /** 默认元空间告警阈值（字节），默认 128MB，jfr 模式下已用内存只含元空间 */
+    private static final long METASPACE_WARNING_THRESHOLD = 128 * 1024 * 1024L;
+    
+    /** 内存数据来源：估算 */
+    public static final String SOURCE_ESTIMATE = "ESTIMATE";
+    
+    /** 内存数据来源：JFR 采样统计 */
+    public static final String SOURCE_JFR = "JFR";
+    
     /**
      * 收集插件内存信息
      * 
@@ -47,19 +65,7 @@ public class PluginMemoryCollector {
                 return MonitorErrorHandler.handleMemoryUnavailable(pluginId);
             }
             
-            PluginPackageRuntimeInfo runtimeInfo = result.getData();
-            
-            // 估算插件内存使用
-            long estimatedMemory = estimatePluginMemory(runtimeInfo);
-            
-            // 构建内存信息对象
-            PluginMemoryInfo memInfo = PluginMemoryInfo.builder()
-                    .usedMemory(estimatedMemory)
-                    .formattedMemory(formatMemorySize(estimatedMemory))
-                    .totalJvmMemory(runtime.totalMemory())
-                    .freeJvmMemory(runtime.freeMemory())
-                    .maxJvmMemory(runtime.maxMemory())
-                    .build();
+            PluginMemoryInfo memInfo = buildMemoryInfo(result.getData());
             
             log.debug("插件内存信息收集完成: pluginId={}, usedMemory={}", 
                     pluginId, memInfo.getFormattedMemory());
@@ -72,31 +78,71 @@ public class PluginMemoryCollector {
     }
     
     /**
-     * 获取所有插件的总内存使用
+     * 根据已获取的插件包运行时信息构建内存信息
      * 
-     * @return 总内存使用量（字节）
+     * 供批量收集使用，避免每个插件再单独查询一次运行时信息
+     * 
+     * @param runtimeInfo 插件包运行时信息
+     * @return 插件内存信息
      */
-    public long getTotalMemoryUsage() {
-        log.debug("计算所有插件的总内存使用");
+    public PluginMemoryInfo buildMemoryInfo(PluginPackageRuntimeInfo runtimeInfo) {
+        String pluginId = runtimeInfo.getPackageId();
         
-        try {
-            // 获取所有插件包的运行时信息
-            Result<List<PluginPackageRuntimeInfo>> result = pluginLifecycle.getAllPluginPackages();
-            if (!result.isSuccess() || result.getData() == null) {
-                log.warn("无法获取插件包列表");
-                return 0;
-            }
-            
-            long totalMemory = result.getData().stream()
-                    .mapToLong(this::estimatePluginMemory)
-                    .sum();
-            
-            log.debug("所有插件总内存使用: {}", formatMemorySize(totalMemory));
-            return totalMemory;
-        } catch (Exception e) {
-            log.error("计算总内存使用失败", e);
-            return 0;
+        // 优先使用采样统计结果
+        PluginMemoryInfo measured = buildMeasuredMemoryInfo(pluginId);
+        if (measured != null) {
+            return measured;
         }
+        
+        // 估算插件内存使用
+        long estimatedMemory = estimatePluginMemory(runtimeInfo);
+        
+        return PluginMemoryInfo.builder()
+                .usedMemory(estimatedMemory)
+                .formattedMemory(formatMemorySize(estimatedMemory))
+                .totalJvmMemory(runtime.totalMemory())
+                .freeJvmMemory(runtime.freeMemory())
+                .maxJvmMemory(runtime.maxMemory())
+                .source(SOURCE_ESTIMATE)
+                .warningThreshold(getMemoryWarningThreshold(pluginId))
+                .build();
+    }
+    
+    /**
+     * 根据采样统计结果构建内存信息
+     * 
+     * 已用内存只计类加载器实际占用的元空间；分配速率单独展示，
+     * 它反映的是分配快慢而不是持有的堆内存，不参与阈值判断。
+     * 已用内存与元空间告警阈值比较，而不是估算模式的内存告警阈值。
+     * 
+     * @param pluginId 插件ID
+     * @return 内存信息，没有该插件的采样结果时返回 null
+     */
+    public PluginMemoryInfo buildMeasuredMemoryInfo(String pluginId) {
+        PluginMemorySampler.Measurement measurement = memorySampler.getMeasurement(pluginId);
+        if (measurement == null) {
+            return null;
+        }
+        
+        long usedMemory = measurement.getMetaspaceBytes();
+        return PluginMemoryInfo.builder()
+                .usedMemory(usedMemory)
+                .formattedMemory(formatMemorySize(usedMemory))
+                .totalJvmMemory(runtime.totalMemory())
+                .freeJvmMemory(runtime.freeMemory())
+                .maxJvmMemory(runtime.maxMemory())
+                .metaspaceMemory(measurement.getMetaspaceBytes())
+                .allocationRate(measurement.getAllocationRate())
+                .source(SOURCE_JFR)
+                .warningThreshold(getMetaspaceWarningThreshold())
+                .build();
+    }
+    
+    /**
+     * 采样统计结果版本号，版本变化说明有新的采样结果
+     */
+    public long getMeasurementVersion() {
+        return memorySampler.getVersion();
     }
     
     /**
@@ -167,21 +213,73 @@ public class PluginMemoryCollector {
     }
     
     /**
-     * 检查内存使用是否超过告警阈值
+     * 检查内存使用是否超过默认告警阈值
      * 
      * @param memoryBytes 内存使用量（字节）
      * @return 如果超过阈值返回 true，否则返回 false
      */
     public boolean isMemoryWarning(long memoryBytes) {
-        return memoryBytes > MEMORY_WARNING_THRESHOLD;
+        return memoryBytes > getMemoryWarningThreshold();
+    }
+    
+    /**
+     * 检查内存使用是否超过内存信息中记录的告警阈值
+     * 
+     * 阈值随数据来源不同：估算模式使用内存告警阈值，jfr 模式使用元空间告警阈值
+     * 
+     * @param memInfo 插件内存信息
+     * @return 如果超过阈值返回 true，否则返回 false
+     */
+    public boolean isMemoryWarning(PluginMemoryInfo memInfo) {
+        if (memInfo == null || memInfo.getUsedMemory() == null || memInfo.getWarningThreshold() == null) {
+            return false;
+        }
+        return memInfo.getUsedMemory() > memInfo.getWarningThreshold();
     }
     
     /**
-     * 获取内存告警阈值
+     * 获取元空间告警阈值（jfr 模式）
+     * 
+     * @return 元空间告警阈值（字节）
+     */
+    public long getMetaspaceWarningThreshold() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        if (monitorConfig != null && monitorConfig.getMetaspaceWarningThresholdMb() != null
+                && monitorConfig.getMetaspaceWarningThresholdMb() > 0) {
+            return monitorConfig.getMetaspaceWarningThresholdMb() * 1024 * 1024L;
+        }
+        return METASPACE_WARNING_THRESHOLD;
+    }
+    
+    /**
+     * 获取默认内存告警阈值
      * 
      * @return 内存告警阈值（字节）
      */
     public long getMemoryWarningThreshold() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        if (monitorConfig != null && monitorConfig.getMemoryWarningThresholdMb() != null
+                && monitorConfig.getMemoryWarningThresholdMb() > 0) {
+            return monitorConfig.getMemoryWarningThresholdMb() * 1024 * 1024L;
+        }
         return MEMORY_WARNING_THRESHOLD;
     }
+    
+    /**
+     * 获取插件的内存告警阈值（估算模式），未单独配置时使用默认阈值
+     * 
+     * @param pluginId 插件ID
+     * @return 内存告警阈值（字节）
+     */
+    public long getMemoryWarningThreshold(String pluginId) {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        if (pluginId != null && monitorConfig != null && monitorConfig.getPluginMemoryThresholdsMb() != null) {
+            Map<String, Long> thresholds = monitorConfig.getPluginMemoryThresholdsMb();
+            Long thresholdMb = thresholds.get(pluginId);
+            if (thresholdMb != null && thresholdMb > 0) {
+                return thresholdMb * 1024 * 1024L;
+            }
+        }
+        return getMemoryWarningThreshold();
+    }
 }
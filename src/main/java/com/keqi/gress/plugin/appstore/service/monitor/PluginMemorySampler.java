@@ -0,0 +1,372 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.model.Result;
+import com.keqi.gress.common.plugin.PluginPackageLifecycle;
+import com.keqi.gress.common.plugin.PluginPackageRuntimeInfo;
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.PostConstruct;
+import com.keqi.gress.common.plugin.annotion.PreDestroy;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedClassLoader;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 插件内存采样器
+ *
+ * 在 jfr 模式下，通过 JFR 事件流按类加载器统计内存，并按配置的间隔在后台归属到各插件：
+ * - jdk.ClassLoaderStatistics：每个类加载器占用的元空间（chunkSize）和已加载类数量
+ * - jdk.ObjectAllocationSample：按对象所属类的定义加载器累计分配采样权重，
+ *   换算为采样窗口内的分配速率（字节/秒）
+ *
+ * 分配速率反映的是插件产生垃圾的速度，不是插件持有的堆内存，只作为独立指标展示，
+ * 不计入已用内存，也不参与内存阈值判断。
+ *
+ * 类加载器与插件的对应关系按加载器名称（{@link ClassLoader#getName()}）与插件ID匹配；
+ * 重新加载后旧加载器尚未卸载时，取最近出现的加载器。
+ * 未命名的插件类加载器无法可靠归属，这些插件继续使用估算值。
+ * 所有统计都在后台线程完成，请求路径只读取最近一次的结果。
+ */
+@Slf4j
+@Service
+public class PluginMemorySampler {
+
+    @Inject
+    private AppStoreConfig config;
+
+    @Inject(source = Inject.BeanSource.SPRING)
+    private PluginPackageLifecycle pluginLifecycle;
+
+    @Inject
+    private MonitorMetrics metrics;
+
+    /** 采样统计模式 */
+    public static final String MODE_JFR = "jfr";
+
+    /** 默认采样间隔（秒） */
+    private static final int DEFAULT_SAMPLE_INTERVAL_SECONDS = 60;
+
+    /** 分配采样的节流频率 */
+    private static final String ALLOCATION_THROTTLE = "150/s";
+
+    /**
+     * 类加载器统计（最近一次 jdk.ClassLoaderStatistics 事件）
+     * Key: JFR 类加载器ID
+     */
+    private final Map<Long, LoaderStats> loaderStats = new ConcurrentHashMap<>();
+
+    /**
+     * 当前采样窗口内的分配权重
+     * Key: JFR 类加载器ID
+     */
+    private final Map<Long, LongAdder> allocationWeights = new ConcurrentHashMap<>();
+
+    /** 当前采样窗口的开始时间（纳秒） */
+    private volatile long windowStartNanos = System.nanoTime();
+
+    /**
+     * 最近一次归属到插件的统计结果
+     * Key: pluginId
+     */
+    private volatile Map<String, Measurement> measurements = Collections.emptyMap();
+
+    /** 统计结果版本号，每次采样完成后递增 */
+    private volatile long version = 0;
+
+    private RecordingStream recordingStream;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            log.info("插件内存采样未启用，使用估算模式");
+            return;
+        }
+
+        int interval = getSampleIntervalSeconds();
+        try {
+            startRecording(interval);
+        } catch (Throwable e) {
+            // JFR 不可用时（如裁剪过的运行时）退化为估算模式
+            log.warn("启动 JFR 内存采样失败，使用估算模式", e);
+            return;
+        }
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "plugin-memory-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sample, interval, interval, TimeUnit.SECONDS);
+
+        log.info("插件内存采样已启动: interval={}s", interval);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (recordingStream != null) {
+            try {
+                recordingStream.close();
+            } catch (Exception e) {
+                log.warn("关闭 JFR 内存采样失败", e);
+            }
+        }
+    }
+
+    /**
+     * 获取插件最近一次的内存统计结果
+     *
+     * @param pluginId 插件ID
+     * @return 统计结果，未启用采样或无法归属时返回 null
+     */
+    public Measurement getMeasurement(String pluginId) {
+        return pluginId != null ? measurements.get(pluginId) : null;
+    }
+
+    /**
+     * 统计结果版本号，用于判断是否有新的采样结果
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 查找插件当前对应的 JFR 类加载器ID
+     *
+     * @param runtimeInfo 插件包运行时信息
+     * @return JFR 类加载器ID，未启用采样或无法唯一匹配时返回 null
+     */
+    public Long findLoaderId(PluginPackageRuntimeInfo runtimeInfo) {
+        return recordingStream != null && runtimeInfo != null ? matchLoader(runtimeInfo) : null;
+    }
+
+    /**
+     * 类加载器在指定时间之后是否仍出现在类加载器统计事件中（已卸载的类加载器不再出现）
+     *
+     * @param loaderId JFR 类加载器ID
+     * @param since 时间戳（毫秒）
+     */
+    public boolean isLoaderReportedSince(long loaderId, long since) {
+        LoaderStats stats = loaderStats.get(loaderId);
+        return stats != null && stats.sampleTime > since;
+    }
+
+    /**
+     * 是否启用了采样统计模式
+     */
+    public boolean isEnabled() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        return monitorConfig != null && MODE_JFR.equalsIgnoreCase(monitorConfig.getMemoryMode());
+    }
+
+    /**
+     * 启动 JFR 事件流
+     */
+    private void startRecording(int intervalSeconds) {
+        RecordingStream stream = new RecordingStream();
+        stream.enable("jdk.ClassLoaderStatistics").withPeriod(Duration.ofSeconds(intervalSeconds));
+        stream.enable("jdk.ObjectAllocationSample").with("throttle", ALLOCATION_THROTTLE);
+        stream.onEvent("jdk.ClassLoaderStatistics", this::onClassLoaderStatistics);
+        stream.onEvent("jdk.ObjectAllocationSample", this::onAllocationSample);
+        stream.startAsync();
+        this.windowStartNanos = System.nanoTime();
+        this.recordingStream = stream;
+    }
+
+    /**
+     * 处理类加载器统计事件
+     */
+    private void onClassLoaderStatistics(RecordedEvent event) {
+        RecordedClassLoader loader = event.getValue("classLoader");
+        if (loader == null) {
+            return;
+        }
+        long currentTime = System.currentTimeMillis();
+        LoaderStats previous = loaderStats.get(loader.getId());
+        loaderStats.put(loader.getId(), new LoaderStats(
+                loader.getName(),
+                event.getLong("classCount"),
+                event.getLong("chunkSize"),
+                previous != null ? previous.firstSeen : currentTime,
+                currentTime));
+    }
+
+    /**
+     * 处理对象分配采样事件
+     */
+    private void onAllocationSample(RecordedEvent event) {
+        RecordedClass objectClass = event.getClass("objectClass");
+        if (objectClass == null || objectClass.getClassLoader() == null) {
+            return;
+        }
+        allocationWeights.computeIfAbsent(objectClass.getClassLoader().getId(), id -> new LongAdder())
+                .add(event.getLong("weight"));
+    }
+
+    /**
+     * 将类加载器统计归属到插件，并发布新的统计结果
+     */
+    private void sample() {
+        long startNanos = System.nanoTime();
+        try {
+            Result<List<PluginPackageRuntimeInfo>> result = pluginLifecycle.getAllPluginPackages();
+            if (!result.isSuccess() || result.getData() == null) {
+                log.debug("无法获取插件包列表，跳过本次内存采样");
+                return;
+            }
+
+            long currentTime = System.currentTimeMillis();
+            long staleBefore = currentTime - getSampleIntervalSeconds() * 3000L;
+            loaderStats.values().removeIf(stats -> stats.sampleTime < staleBefore);
+
+            // 当前窗口的分配权重（读取后重置，开始新窗口）
+            long nowNanos = System.nanoTime();
+            long windowMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(nowNanos - windowStartNanos), 1);
+            windowStartNanos = nowNanos;
+            Map<Long, Long> weights = new HashMap<>();
+            for (Map.Entry<Long, LongAdder> entry : allocationWeights.entrySet()) {
+                long weight = entry.getValue().sumThenReset();
+                if (weight > 0) {
+                    weights.put(entry.getKey(), weight);
+                }
+            }
+
+            Map<String, Measurement> latest = new HashMap<>();
+            for (PluginPackageRuntimeInfo runtimeInfo : result.getData()) {
+                Long loaderId = matchLoader(runtimeInfo);
+                if (loaderId == null) {
+                    continue;
+                }
+                LoaderStats stats = loaderStats.get(loaderId);
+                if (stats == null) {
+                    continue;
+                }
+                long weight = weights.getOrDefault(loaderId, 0L);
+
+                latest.put(runtimeInfo.getPackageId(), Measurement.builder()
+                        .metaspaceBytes(stats.chunkSize)
+                        .allocatedBytes(weight)
+                        .allocationRate(weight * 1000 / windowMillis)
+                        .classCount(stats.classCount)
+                        .sampleTime(currentTime)
+                        .build());
+            }
+
+            this.measurements = Collections.unmodifiableMap(latest);
+            this.version++;
+            log.debug("插件内存采样完成: 类加载器={}, 已归属插件={}", loaderStats.size(), latest.size());
+        } catch (Exception e) {
+            log.warn("插件内存采样失败", e);
+        } finally {
+            metrics.record(MonitorMetrics.OP_MEMORY_SAMPLE, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * 查找插件对应的类加载器
+     *
+     * 只按加载器名称匹配插件ID，不使用类数量等会随类加载变化的属性做推测。
+     * 同名加载器有多个时（重新加载后旧加载器尚未卸载），取最近出现的一个；
+     * 无法区分先后时视为无法匹配。
+     *
+     * @return JFR 类加载器ID，无法唯一匹配时返回 null
+     */
+    private Long matchLoader(PluginPackageRuntimeInfo runtimeInfo) {
+        String pluginId = runtimeInfo.getPackageId();
+        if (pluginId == null) {
+            return null;
+        }
+
+        Long matched = null;
+        long matchedFirstSeen = Long.MIN_VALUE;
+        boolean ambiguous = false;
+        for (Map.Entry<Long, LoaderStats> entry : loaderStats.entrySet()) {
+            LoaderStats stats = entry.getValue();
+            if (!pluginId.equals(stats.name)) {
+                continue;
+            }
+            if (matched == null || stats.firstSeen > matchedFirstSeen) {
+                matched = entry.getKey();
+                matchedFirstSeen = stats.firstSeen;
+                ambiguous = false;
+            } else if (stats.firstSeen == matchedFirstSeen) {
+                ambiguous = true;
+            }
+        }
+        return ambiguous ? null : matched;
+    }
+
+    private int getSampleIntervalSeconds() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        if (monitorConfig != null && monitorConfig.getMemorySampleIntervalSeconds() != null
+                && monitorConfig.getMemorySampleIntervalSeconds() > 0) {
+            return monitorConfig.getMemorySampleIntervalSeconds();
+        }
+        return DEFAULT_SAMPLE_INTERVAL_SECONDS;
+    }
+
+    /**
+     * 插件内存统计结果
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Measurement {
+
+        /** 类加载器占用的元空间（字节） */
+        private long metaspaceBytes;
+
+        /** 采样窗口内的分配量（字节，按采样权重估计） */
+        private long allocatedBytes;
+
+        /** 采样窗口内的分配速率（字节/秒），不代表持有的堆内存 */
+        private long allocationRate;
+
+        /** 已加载类数量 */
+        private long classCount;
+
+        /** 采样时间戳（毫秒） */
+        private long sampleTime;
+    }
+
+    /**
+     * 类加载器统计
+     */
+    private static final class LoaderStats {
+        private final String name;
+        private final long classCount;
+        private final long chunkSize;
+        private final long firstSeen;
+        private final long sampleTime;
+
+        private LoaderStats(String name, long classCount, long chunkSize, long firstSeen, long sampleTime) {
+            this.name = name;
+            this.classCount = classCount;
+            this.chunkSize = chunkSize;
+            this.firstSeen = firstSeen;
+            this.sampleTime = sampleTime;
+        }
+    }
+}
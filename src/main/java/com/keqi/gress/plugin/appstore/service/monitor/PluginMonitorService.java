@@ -1,15 +1,24 @@
 package com.keqi.gress.plugin.appstore.service.monitor;
 
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.TypeReference;
 import com.keqi.gress.common.model.Result;
 import com.keqi.gress.common.plugin.PluginPackageLifecycle;
 import com.keqi.gress.common.plugin.PluginPackageMetadataResult;
 import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.PostConstruct;
+import com.keqi.gress.common.plugin.annotion.PreDestroy;
 import com.keqi.gress.common.plugin.annotion.Service;
 import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
+import com.keqi.gress.plugin.appstore.dao.MonitorRollupDao;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorRollup;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAggregation;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorCacheStats;
 import com.keqi.gress.plugin.appstore.dto.monitor.MonitorOverview;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMemoryInfo;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorDetail;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import com.keqi.gress.plugin.appstore.dto.monitor.RecentSampleStats;
 import com.keqi.gress.plugin.appstore.util.MonitorErrorHandler;
 import lombok.extern.slf4j.Slf4j;
 
@@ -17,7 +26,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 插件监控服务
@@ -30,6 +43,9 @@ public class PluginMonitorService {
     @Inject
     private PluginStatusCollector statusCollector;
     
+    @Inject
+    private PluginStatusRegistry statusRegistry;
+    
     @Inject
     private PluginMemoryCollector memoryCollector;
     
@@ -39,20 +55,85 @@ public class PluginMonitorService {
     @Inject
     private MonitorHistoryDao historyDao;
     
+    @Inject
+    private MonitorRollupDao rollupDao;
+    
+    @Inject
+    private RecentSampleBuffer recentSampleBuffer;
+    
+    @Inject
+    private MonitorHistoryAggregator historyAggregator;
+    
+    @Inject
+    private MonitorRollupAggregator rollupAggregator;
+    
+    @Inject
+    private MonitorAlertEngine alertEngine;
+    
+    @Inject
+    private SnapshotMetadataStore metadataStore;
+    
+    /** 使用原始快照的最大时间范围（6 小时） */
+    private static final long RAW_MAX_RANGE = 6 * 60 * 60 * 1000L;
+    
+    /** 使用 5 分钟汇总的最大时间范围（3 天） */
+    private static final long ROLLUP_5M_MAX_RANGE = 3 * 24 * 60 * 60 * 1000L;
+    
+    /** 使用 1 小时汇总的最大时间范围（60 天） */
+    private static final long ROLLUP_1H_MAX_RANGE = 60 * 24 * 60 * 60 * 1000L;
+    
+    /** 降采样时最多返回的点数上限 */
+    private static final int MAX_HISTORY_POINTS = 5000;
+    
+    /** 逐页读取历史快照时每页的行数 */
+    private static final int HISTORY_PAGE_SIZE = 2000;
+    
     @Inject(source = Inject.BeanSource.SPRING)
     private PluginPackageLifecycle pluginLifecycle;
     
-    /** 异步收集内存信息的超时时间（毫秒） */
-    private static final long MEMORY_COLLECTION_TIMEOUT = 3000;
+    /** 正在进行的全量状态刷新（同一时间只有一个） */
+    private final AtomicReference<CompletableFuture<List<PluginMonitorStatus>>> inflightRefresh = 
+            new AtomicReference<>();
+    
+    /** 是否已提交后台刷新任务 */
+    private final AtomicBoolean refreshQueued = new AtomicBoolean(false);
+    
+    /** 后台刷新线程 */
+    private ExecutorService refreshExecutor;
+    
+    @PostConstruct
+    public void init() {
+        this.refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "monitor-status-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdown();
+            try {
+                if (!refreshExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    refreshExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                refreshExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
     
     /**
      * 获取所有插件的监控状态
      * 
-     * 实现策略：
-     * 1. 尝试从缓存获取数据
-     * 2. 如果缓存不存在或已过期，收集新数据
-     * 3. 异步收集内存信息以提高响应速度
-     * 4. 更新缓存供下次使用
+     * 实现策略（stale-while-revalidate）：
+     * 1. 缓存新鲜时直接返回
+     * 2. 缓存已超过刷新时间但未过期时，返回旧数据并在后台触发一次刷新
+     * 3. 缓存不存在或已过期时同步刷新；并发请求合并为同一次刷新（single-flight），共享同一结果
+     * 
+     * 刷新结果是从插件状态实时表读取的完整列表（已包含内存信息），整体写入缓存后才对其他请求可见
      * 
      * @return 所有插件的状态列表
      */
@@ -60,67 +141,17 @@ public class PluginMonitorService {
         log.debug("获取所有插件监控状态");
         
         try {
-            // 尝试从缓存获取
-            List<PluginMonitorStatus> cached = monitorCache.getAllStatus();
-            if (cached != null && !cached.isEmpty()) {
-                log.debug("从缓存返回 {} 个插件状态", cached.size());
-                return Result.success(cached);
+            MonitorDataCache.Lookup<List<PluginMonitorStatus>> cached = monitorCache.lookupAllStatus();
+            if (cached != null && cached.getValue() != null && !cached.getValue().isEmpty()) {
+                if (cached.isStale()) {
+                    refreshAllStatusAsync();
+                }
+                log.debug("从缓存返回 {} 个插件状态: stale={}", cached.getValue().size(), cached.isStale());
+                return Result.success(cached.getValue());
             }
             
-            // 收集所有插件状态
-            List<PluginMonitorStatus> statusList = statusCollector.collectAllStatus();
+            List<PluginMonitorStatus> statusList = refreshAllStatus();
             log.debug("收集到 {} 个插件状态", statusList.size());
-            
-            // 异步收集内存信息
-            CompletableFuture.runAsync(() -> {
-                try {
-                    for (PluginMonitorStatus status : statusList) {
-                        try {
-                            if (status.getLoaded() != null && status.getLoaded()) {
-                                PluginMemoryInfo memInfo = memoryCollector.collectMemoryInfo(status.getPluginId());
-                                if (memInfo == null) {
-                                    // 内存信息不可用，使用错误处理器提供默认值
-                                    memInfo = MonitorErrorHandler.handleMemoryUnavailable(status.getPluginId());
-                                }
-                                status.setMemoryInfo(memInfo);
-                                
-                                // 检查内存告警
-                                if (memInfo.getUsedMemory() != null) {
-                                    boolean isWarning = memoryCollector.isMemoryWarning(memInfo.getUsedMemory());
-                                    status.setIsMemoryWarning(isWarning);
-                                    if (isWarning) {
-                                        log.warn("插件内存使用超过阈值: pluginId={}, usedMemory={}, threshold={}", 
-                                                status.getPluginId(), 
-                                                memInfo.getFormattedMemory(),
-                                                memoryCollector.formatMemorySize(memoryCollector.getMemoryWarningThreshold()));
-                                    }
-                                }
-                            }
-                        } catch (Exception e) {
-                            // 单个插件的内存收集失败不影响其他插件
-                            log.warn("收集插件内存信息失败: pluginId={}", status.getPluginId(), e);
-                            status.setMemoryInfo(MonitorErrorHandler.handleMemoryUnavailable(status.getPluginId()));
-                            status.setIsMemoryWarning(false);
-                        }
-                    }
-                    // 更新缓存
-                    monitorCache.updateAllStatus(statusList);
-                    log.debug("异步内存信息收集完成");
-                } catch (Exception e) {
-                    log.error("异步收集内存信息失败", e);
-                }
-            }).orTimeout(MEMORY_COLLECTION_TIMEOUT, TimeUnit.MILLISECONDS)
-              .exceptionally(ex -> {
-                  log.warn("内存信息收集超时或失败", ex);
-                  // 超时时记录所有插件
-                  for (PluginMonitorStatus status : statusList) {
-                      if (status.getPluginId() != null) {
-                          MonitorErrorHandler.handleTimeout(status.getPluginId());
-                      }
-                  }
-                  return null;
-              });
-            
             return Result.success(statusList);
         } catch (Exception e) {
             log.error("获取所有插件状态失败", e);
@@ -128,6 +159,57 @@ public class PluginMonitorService {
         }
     }
     
+    /**
+     * 刷新所有插件状态缓存（single-flight）
+     * 
+     * 已有刷新在进行时等待并复用其结果，不再重复读取
+     * 
+     * @return 所有插件的状态列表
+     */
+    private List<PluginMonitorStatus> refreshAllStatus() {
+        CompletableFuture<List<PluginMonitorStatus>> future = new CompletableFuture<>();
+        CompletableFuture<List<PluginMonitorStatus>> existing = inflightRefresh.compareAndExchange(null, future);
+        if (existing != null) {
+            log.debug("等待进行中的插件状态刷新");
+            return existing.join();
+        }
+        
+        try {
+            // 从插件状态实时表读取所有插件状态，状态与内存信息来自同一份快照
+            List<PluginMonitorStatus> statusList = statusRegistry.getAllStatus();
+            monitorCache.updateAllStatus(statusList);
+            future.complete(statusList);
+            return statusList;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflightRefresh.set(null);
+        }
+    }
+    
+    /**
+     * 在后台触发一次刷新，已有刷新在进行时忽略
+     */
+    private void refreshAllStatusAsync() {
+        if (inflightRefresh.get() != null || refreshExecutor == null || !refreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                refreshQueued.set(false);
+                try {
+                    refreshAllStatus();
+                } catch (Exception e) {
+                    log.warn("后台刷新插件状态失败", e);
+                }
+            });
+        } catch (Exception e) {
+            refreshQueued.set(false);
+            log.warn("提交后台刷新任务失败", e);
+        }
+    }
+    
     /**
      * 获取单个插件的详细监控信息
      * 
@@ -164,19 +246,23 @@ public class PluginMonitorService {
                     .status(status)
                     .build();
             
-            // 收集内存信息（如果插件已加载）
+            // 收集内存信息（如果插件已加载），优先复用状态收集时得到的内存估算
             if (status.getLoaded() != null && status.getLoaded()) {
                 try {
-                    PluginMemoryInfo memInfo = memoryCollector.collectMemoryInfo(pluginId);
+                    PluginMemoryInfo memInfo = status.getMemoryInfo() != null 
+                            ? status.getMemoryInfo() 
+                            : memoryCollector.collectMemoryInfo(pluginId);
                     if (memInfo == null) {
                         memInfo = MonitorErrorHandler.handleMemoryUnavailable(pluginId);
                     }
                     detail.setMemoryInfo(memInfo);
                     
-                    // 检查内存告警
-                    if (memInfo.getUsedMemory() != null) {
-                        boolean isWarning = memoryCollector.isMemoryWarning(memInfo.getUsedMemory());
-                        status.setIsMemoryWarning(isWarning);
+                    // 内存告警以告警引擎的结果为准（带防抖和滞回），尚未评估过时按阈值判断
+                    Boolean alertActive = alertEngine.isActive(pluginId, MonitorAlertEngine.RULE_MEMORY_THRESHOLD);
+                    if (alertActive != null) {
+                        status.setIsMemoryWarning(alertActive);
+                    } else if (memInfo.getUsedMemory() != null) {
+                        status.setIsMemoryWarning(memoryCollector.isMemoryWarning(memInfo));
                     }
                     
                     // 获取类加载器信息
@@ -231,35 +317,18 @@ public class PluginMonitorService {
         log.debug("获取监控概览");
         
         try {
-            // 收集所有插件状态
-            List<PluginMonitorStatus> allStatus = statusCollector.collectAllStatus();
-            
-            // 统计各种状态的插件数量
-            long runningCount = allStatus.stream()
-                    .filter(s -> "STARTED".equals(s.getState()))
-                    .count();
-            
-            long stoppedCount = allStatus.stream()
-                    .filter(s -> "STOPPED".equals(s.getState()) || "NOT_LOADED".equals(s.getState()))
-                    .count();
-            
-            // 统计异常插件数量（包括有错误的和有内存告警的）
-            long errorCount = allStatus.stream()
-                    .filter(s -> (s.getHasError() != null && s.getHasError()) || 
-                                 (s.getIsMemoryWarning() != null && s.getIsMemoryWarning()))
-                    .count();
+            // 各状态的插件数量由插件状态实时表维护，无需重新收集
+            int totalCount = statusRegistry.getTotalCount();
+            long runningCount = statusRegistry.getRunningCount();
+            long stoppedCount = statusRegistry.getStoppedCount();
+            long errorCount = statusRegistry.getErrorCount();
             
-            // 计算总内存使用（捕获异常确保不影响概览显示）
-            long totalMemory = 0;
-            try {
-                totalMemory = memoryCollector.getTotalMemoryUsage();
-            } catch (Exception e) {
-                log.warn("计算总内存使用失败，使用默认值 0", e);
-            }
+            // 总内存使用与状态计数来自同一份快照
+            long totalMemory = statusRegistry.getTotalMemoryUsage();
             
             // 构建概览对象
             MonitorOverview overview = MonitorOverview.builder()
-                    .totalPlugins(allStatus.size())
+                    .totalPlugins(totalCount)
                     .runningPlugins(runningCount)
                     .stoppedPlugins(stoppedCount)
                     .errorPlugins(errorCount)
@@ -278,6 +347,20 @@ public class PluginMonitorService {
         }
     }
     
+    /**
+     * 获取监控缓存统计
+     * 
+     * @return 缓存命中、未命中和淘汰统计
+     */
+    public Result<MonitorCacheStats> getCacheStats() {
+        try {
+            return Result.success(monitorCache.getStats());
+        } catch (Exception e) {
+            log.error("获取监控缓存统计失败", e);
+            return Result.error("获取监控缓存统计失败: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * 将插件元数据结果转换为Map
      * 
@@ -317,11 +400,94 @@ public class PluginMonitorService {
      * @return 历史监控数据列表
      */
     public Result<List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory>> getPluginHistory(String pluginId, String timeRange) {
-        log.debug("获取插件历史数据: pluginId={}, timeRange={}", pluginId, timeRange);
+        return getPluginHistory(pluginId, timeRange, null, true);
+    }
+    
+    /**
+     * 获取插件的历史监控数据，可选降采样和省略元数据
+     * 
+     * 指定 maxPoints 时使用 LTTB 算法降采样，保留内存曲线的形状，返回点数不超过 maxPoints；
+     * 原始快照逐页读取并直接送入降采样器，不会一次性加载全部行
+     * 使用汇总数据时包含当前未结束的时间桶，汇总未覆盖的时间段从原始快照补齐
+     * 
+     * @param pluginId 插件ID
+     * @param timeRange 时间范围（如 "1h", "24h", "7d", "30d"）
+     * @param maxPoints 最多返回的点数，为空时不降采样
+     * @param includeMetadata 是否返回每行的元数据
+     * @return 历史监控数据列表
+     */
+    public Result<List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory>> getPluginHistory(
+            String pluginId, String timeRange, Integer maxPoints, boolean includeMetadata) {
+        log.debug("获取插件历史数据: pluginId={}, timeRange={}, maxPoints={}, includeMetadata={}", 
+                pluginId, timeRange, maxPoints, includeMetadata);
         
         try {
             // 解析时间范围
+            long endTime = System.currentTimeMillis();
             long startTime = parseTimeRange(timeRange);
+            LttbDownsampler downsampler = maxPoints != null 
+                    ? new LttbDownsampler(startTime, endTime, Math.min(maxPoints, MAX_HISTORY_POINTS)) 
+                    : null;
+            
+            // 时间范围较大时从汇总数据查询，汇总数据尚未生成时回退到原始快照
+            RollupTier tier = selectRollupTier(endTime - startTime);
+            if (tier != null) {
+                List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> historyList = 
+                        queryRollupHistory(pluginId, tier, startTime, includeMetadata);
+                if (historyList != null) {
+                    return Result.success(downsample(historyList, downsampler));
+                }
+                log.debug("没有找到汇总数据，回退到原始快照: pluginId={}, tier={}", pluginId, tier.getCode());
+            }
+            
+            // 近期范围优先从内存缓冲区读取，返回的字段与读取数据库快照一致
+            List<RecentSampleBuffer.Sample> samples = recentSampleBuffer.query(pluginId, startTime);
+            if (samples != null) {
+                if (includeMetadata) {
+                    List<Long> metadataIds = new java.util.ArrayList<>();
+                    for (RecentSampleBuffer.Sample sample : samples) {
+                        if (sample.getMetadataId() != null) {
+                            metadataIds.add(sample.getMetadataId());
+                        }
+                    }
+                    metadataStore.preload(metadataIds);
+                }
+                List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> historyList = 
+                        new java.util.ArrayList<>(samples.size());
+                for (RecentSampleBuffer.Sample sample : samples) {
+                    historyList.add(convertSnapshot(
+                            com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot.builder()
+                                    .pluginId(pluginId)
+                                    .state(sample.getState())
+                                    .memoryUsage(sample.getMemoryUsage())
+                                    .cpuUsage(sample.getCpuUsage())
+                                    .timestamp(sample.getTimestamp())
+                                    .metadataId(includeMetadata ? sample.getMetadataId() : null)
+                                    .build()));
+                }
+                log.debug("从近期样本缓冲区查询到 {} 条历史记录", historyList.size());
+                return Result.success(downsample(historyList, downsampler));
+            }
+            
+            // 需要降采样或省略元数据时逐页读取快照，避免加载全部行和元数据列
+            if (downsampler != null || !includeMetadata) {
+                List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> historyList = 
+                        new java.util.ArrayList<>();
+                long rows = historyDao.streamSnapshots(java.util.Collections.singletonList(pluginId), 
+                        startTime, Long.MAX_VALUE, HISTORY_PAGE_SIZE, includeMetadata, snapshot -> {
+                            com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory history = 
+                                    convertSnapshot(snapshot);
+                            if (downsampler != null) {
+                                downsampler.add(history);
+                            } else {
+                                historyList.add(history);
+                            }
+                        });
+                List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> result = 
+                        downsampler != null ? downsampler.finish() : historyList;
+                log.debug("遍历 {} 条历史快照，返回 {} 条记录", rows, result.size());
+                return Result.success(result);
+            }
             
             // 查询历史快照
             List<com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot> snapshots = 
@@ -336,19 +502,16 @@ public class PluginMonitorService {
             List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> historyList = 
                     new java.util.ArrayList<>();
             
+            List<Long> metadataIds = new java.util.ArrayList<>();
+            for (com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot snapshot : snapshots) {
+                if (snapshot.getMetadataId() != null) {
+                    metadataIds.add(snapshot.getMetadataId());
+                }
+            }
+            metadataStore.preload(metadataIds);
+            
             for (com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot snapshot : snapshots) {
-                com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory history = 
-                        com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory.builder()
-                        .pluginId(snapshot.getPluginId())
-                        .state(snapshot.getState())
-                        .memoryUsage(snapshot.getMemoryUsage())
-                        .formattedMemory(snapshot.getMemoryUsage() != null ? 
-                                memoryCollector.formatMemorySize(snapshot.getMemoryUsage()) : "N/A")
-                        .timestamp(snapshot.getTimestamp())
-                        .metadata(snapshot.getMetadata())
-                        .build();
-                
-                historyList.add(history);
+                historyList.add(convertSnapshot(snapshot));
             }
             
             log.debug("查询到 {} 条历史记录", historyList.size());
@@ -360,6 +523,204 @@ public class PluginMonitorService {
         }
     }
     
+    /**
+     * 从汇总数据查询历史，并补齐汇总数据没有覆盖的首尾两段
+     * 
+     * - 已写入数据库的汇总只包含已结束的时间桶，当前未结束的时间桶从汇总器的内存中读取
+     * - 汇总数据晚于起始时间开始时（汇总生成之前的时间段），该段从原始快照读取
+     * - 汇总器中没有未结束的时间桶时，最后一个汇总之后的时间段从原始快照读取
+     * 
+     * @param pluginId 插件ID
+     * @param tier 汇总层级
+     * @param startTime 起始时间戳（毫秒）
+     * @param includeMetadata 原始快照是否返回元数据
+     * @return 历史数据列表，汇总数据和未结束的时间桶都不存在时返回 null
+     */
+    private List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> queryRollupHistory(
+            String pluginId, RollupTier tier, long startTime, boolean includeMetadata) {
+        long firstBucketStart = tier.bucketStart(startTime);
+        List<PluginMonitorRollup> rollups = rollupDao.queryRollups(
+                pluginId, tier.getCode(), firstBucketStart, Long.MAX_VALUE);
+        PluginMonitorRollup openBucket = rollupAggregator.getOpenBucket(pluginId, tier);
+        if (openBucket != null && openBucket.getBucketStart() < firstBucketStart) {
+            openBucket = null;
+        }
+        if ((rollups == null || rollups.isEmpty()) && openBucket == null) {
+            return null;
+        }
+        
+        List<PluginMonitorRollup> buckets = new java.util.ArrayList<>();
+        if (rollups != null) {
+            for (PluginMonitorRollup rollup : rollups) {
+                // 未结束的时间桶以内存中的结果为准
+                if (openBucket == null || rollup.getBucketStart() < openBucket.getBucketStart()) {
+                    buckets.add(rollup);
+                }
+            }
+        }
+        if (openBucket != null) {
+            buckets.add(openBucket);
+        }
+        
+        List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> historyList = 
+                new java.util.ArrayList<>();
+        long coveredStart = buckets.get(0).getBucketStart();
+        if (coveredStart > firstBucketStart) {
+            long rows = historyDao.streamSnapshots(java.util.Collections.singletonList(pluginId), 
+                    startTime, coveredStart, HISTORY_PAGE_SIZE, includeMetadata, 
+                    snapshot -> historyList.add(convertSnapshot(snapshot)));
+            log.debug("汇总数据未覆盖起始时间，从原始快照补齐 {} 条记录: tier={}", rows, tier.getCode());
+        }
+        for (PluginMonitorRollup bucket : buckets) {
+            historyList.add(convertRollup(bucket));
+        }
+        if (openBucket == null) {
+            long coveredEnd = buckets.get(buckets.size() - 1).getBucketStart() + tier.getBucketMillis();
+            long rows = historyDao.streamSnapshots(java.util.Collections.singletonList(pluginId), 
+                    coveredEnd, Long.MAX_VALUE, HISTORY_PAGE_SIZE, includeMetadata, 
+                    snapshot -> historyList.add(convertSnapshot(snapshot)));
+            log.debug("汇总数据之后从原始快照补齐 {} 条记录: tier={}", rows, tier.getCode());
+        }
+        
+        log.debug("查询到 {} 条汇总记录: tier={}, 未结束时间桶={}", 
+                buckets.size(), tier.getCode(), openBucket != null);
+        return historyList;
+    }
+    
+    /**
+     * 对已加载的历史数据降采样，未指定降采样器或点数未超出时原样返回
+     */
+    private List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> downsample(
+            List<com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory> historyList, 
+            LttbDownsampler downsampler) {
+        if (downsampler == null || historyList.size() <= downsampler.getMaxPoints()) {
+            return historyList;
+        }
+        for (com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory history : historyList) {
+            downsampler.add(history);
+        }
+        return downsampler.finish();
+    }
+    
+    /**
+     * 将快照转换为历史数据 DTO
+     */
+    private com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory convertSnapshot(
+            com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot snapshot) {
+        return com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory.builder()
+                .pluginId(snapshot.getPluginId())
+                .state(snapshot.getState())
+                .memoryUsage(snapshot.getMemoryUsage())
+                .formattedMemory(snapshot.getMemoryUsage() != null ? 
+                        memoryCollector.formatMemorySize(snapshot.getMemoryUsage()) : "N/A")
+                .cpuUsage(snapshot.getCpuUsage())
+                .timestamp(snapshot.getTimestamp())
+                .metadata(snapshot.getMetadataId() != null && snapshot.getTimestamp() != null
+                        ? metadataStore.render(snapshot.getMetadataId(), snapshot.getTimestamp())
+                        : snapshot.getMetadata())
+                .resolution("raw")
+                .build();
+    }
+    
+    /**
+     * 按时间桶聚合多个插件的监控历史
+     * 
+     * 每个时间桶返回内存 min / max / avg / P95 和各状态时间占比，
+     * 在服务端一次遍历完成计算，不返回原始快照
+     * 
+     * @param pluginIds 插件ID列表
+     * @param timeRange 时间范围（如 "1h", "24h", "7d", "30d"）
+     * @param bucket 时间桶大小（如 "5m", "1h", "1d"），默认 1h
+     * @return 聚合结果
+     */
+    public Result<MonitorAggregation> aggregateHistory(List<String> pluginIds, String timeRange, String bucket) {
+        log.debug("聚合监控历史: pluginIds={}, timeRange={}, bucket={}", pluginIds, timeRange, bucket);
+        
+        try {
+            long endTime = System.currentTimeMillis();
+            long startTime = parseTimeRange(timeRange);
+            long bucketMillis = parseDuration(bucket, 60 * 60 * 1000L);
+            
+            MonitorAggregation aggregation = historyAggregator.aggregate(pluginIds, startTime, endTime, bucketMillis);
+            return Result.success(aggregation);
+        } catch (IllegalArgumentException e) {
+            log.warn("聚合监控历史参数无效: {}", e.getMessage());
+            return Result.error(e.getMessage());
+        } catch (Exception e) {
+            log.error("聚合监控历史失败: pluginIds={}", pluginIds, e);
+            return Result.error("聚合监控历史失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 获取近期样本缓冲区统计
+     * 
+     * @return 缓冲区容量、内存占用和命中统计
+     */
+    public Result<RecentSampleStats> getRecentSampleStats() {
+        try {
+            return Result.success(recentSampleBuffer.getStats());
+        } catch (Exception e) {
+            log.error("获取近期样本缓冲区统计失败", e);
+            return Result.error("获取近期样本缓冲区统计失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 按时间范围选择汇总层级
+     * 
+     * - 6 小时以内：原始快照（按采样层级 5 秒 ~ 5 分钟粒度）
+     * - 3 天以内：5 分钟汇总
+     * - 60 天以内：1 小时汇总
+     * - 更长：1 天汇总
+     * 
+     * @param range 时间范围（毫秒）
+     * @return 汇总层级，使用原始快照时返回 null
+     */
+    private RollupTier selectRollupTier(long range) {
+        if (range <= RAW_MAX_RANGE) {
+            return null;
+        }
+        if (range <= ROLLUP_5M_MAX_RANGE) {
+            return RollupTier.FIVE_MINUTES;
+        }
+        if (range <= ROLLUP_1H_MAX_RANGE) {
+            return RollupTier.ONE_HOUR;
+        }
+        return RollupTier.ONE_DAY;
+    }
+    
+    /**
+     * 将汇总数据转换为历史数据 DTO（内存使用量和 CPU 占用率取时间桶内平均值）
+     */
+    private com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory convertRollup(PluginMonitorRollup rollup) {
+        Long avgMemory = rollup.getMemoryCount() != null && rollup.getMemoryCount() > 0 && rollup.getMemorySum() != null
+                ? rollup.getMemorySum() / rollup.getMemoryCount()
+                : null;
+        Double avgCpu = rollup.getCpuCount() != null && rollup.getCpuCount() > 0 && rollup.getCpuSum() != null
+                ? Math.round(rollup.getCpuSum() / rollup.getCpuCount() * 100) / 100.0
+                : null;
+        
+        Map<String, Long> stateDurations = null;
+        if (rollup.getStateDurations() != null && !rollup.getStateDurations().isEmpty()) {
+            stateDurations = JSON.parseObject(rollup.getStateDurations(), new TypeReference<Map<String, Long>>() {});
+        }
+        
+        return com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory.builder()
+                .pluginId(rollup.getPluginId())
+                .state(rollup.getLastState())
+                .memoryUsage(avgMemory)
+                .formattedMemory(avgMemory != null ? memoryCollector.formatMemorySize(avgMemory) : "N/A")
+                .cpuUsage(avgCpu)
+                .cpuMax(rollup.getCpuMax())
+                .timestamp(rollup.getBucketStart())
+                .resolution(rollup.getTier())
+                .memoryMin(rollup.getMemoryMin())
+                .memoryMax(rollup.getMemoryMax())
+                .stateDurations(stateDurations)
+                .build();
+    }
+    
     /**
      * 解析时间范围字符串
      * 
@@ -373,44 +734,48 @@ public class PluginMonitorService {
      * @return 起始时间戳（毫秒）
      */
     private long parseTimeRange(String timeRange) {
-        if (timeRange == null || timeRange.trim().isEmpty()) {
-            // 默认返回 1 小时前
-            return System.currentTimeMillis() - (60 * 60 * 1000);
+        return System.currentTimeMillis() - parseDuration(timeRange, 60 * 60 * 1000L);
+    }
+    
+    /**
+     * 解析时长字符串（数字 + 单位 m / h / d）
+     * 
+     * @param duration 时长字符串
+     * @param defaultMillis 为空或无法解析时使用的默认值（毫秒）
+     * @return 时长（毫秒）
+     */
+    private long parseDuration(String duration, long defaultMillis) {
+        if (duration == null || duration.trim().isEmpty()) {
+            return defaultMillis;
         }
         
-        timeRange = timeRange.trim().toLowerCase();
+        duration = duration.trim().toLowerCase();
         
         try {
             // 提取数字和单位
-            int length = timeRange.length();
+            int length = duration.length();
             if (length < 2) {
-                throw new IllegalArgumentException("Invalid time range format: " + timeRange);
+                throw new IllegalArgumentException("Invalid time range format: " + duration);
             }
             
-            char unit = timeRange.charAt(length - 1);
-            String numberStr = timeRange.substring(0, length - 1);
+            char unit = duration.charAt(length - 1);
+            String numberStr = duration.substring(0, length - 1);
             int number = Integer.parseInt(numberStr);
             
-            long duration;
             switch (unit) {
                 case 'h': // 小时
-                    duration = number * 60L * 60 * 1000;
-                    break;
+                    return number * 60L * 60 * 1000;
                 case 'd': // 天
-                    duration = number * 24L * 60 * 60 * 1000;
-                    break;
+                    return number * 24L * 60 * 60 * 1000;
                 case 'm': // 分钟
-                    duration = number * 60L * 1000;
-                    break;
+                    return number * 60L * 1000;
                 default:
                     throw new IllegalArgumentException("Unsupported time unit: " + unit);
             }
             
-            return System.currentTimeMillis() - duration;
-            
         } catch (NumberFormatException e) {
-            log.warn("解析时间范围失败，使用默认值 1h: timeRange={}", timeRange, e);
-            return System.currentTimeMillis() - (60 * 60 * 1000);
+            log.warn("解析时长失败，使用默认值 {}ms: duration={}", defaultMillis, duration, e);
+            return defaultMillis;
         }
     }
 }
@@ -1,17 +1,36 @@
 package com.keqi.gress.plugin.appstore.service.monitor;
 
 import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.PostConstruct;
+import com.keqi.gress.common.plugin.annotion.PreDestroy;
 import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.dao.BatchSaveResult;
 import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
 import com.keqi.gress.plugin.appstore.domain.entity.PluginStateChangeLog;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 插件状态变更监听器
  * 负责监听和记录插件状态的变化
+ * 
+ * 状态变更日志先写入内存缓冲区，由后台线程定期或在积累到一定数量时批量写入数据库。
+ * 写入失败的记录在下次写入时优先重试，最多重试 MAX_RETRY_ATTEMPTS 次，
+ * 状态缓存已经更新，丢弃这些记录会永久缺失对应的状态变更。
+ * 启动时用一条查询从日志表恢复每个插件的最新状态，避免重启后为所有插件记录 null -> STARTED。
  */
 @Slf4j
 @Service
@@ -20,12 +39,71 @@ public class PluginStateChangeListener {
     @Inject
     private MonitorHistoryDao historyDao;
     
+    @Inject
+    private MonitorAlertEngine alertEngine;
+    
+    /** 定期批量写入的间隔（秒） */
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+    
+    /** 缓冲区达到该行数时立即写入 */
+    private static final int FLUSH_THRESHOLD = 100;
+    
+    /** 缓冲区最大行数，超过时丢弃最早的记录（数据库长时间不可用的情况） */
+    private static final int MAX_BUFFERED = 10000;
+    
+    /** 单条记录写入失败后的最多重试次数 */
+    private static final int MAX_RETRY_ATTEMPTS = 5;
+    
     /**
      * 缓存插件的当前状态，用于检测状态变化
      * Key: pluginId, Value: state
      */
     private final Map<String, String> pluginStateCache = new ConcurrentHashMap<>();
     
+    /** 待写入数据库的状态变更日志 */
+    private final Queue<PluginStateChangeLog> buffer = new ConcurrentLinkedQueue<>();
+    
+    /** 缓冲区行数 */
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+    
+    /** 写入失败待重试的记录（按变更时间升序，只在写入线程中访问） */
+    private final Deque<FailedLog> retries = new ArrayDeque<>();
+    
+    /** 是否已提交立即写入任务 */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    
+    private ScheduledExecutorService writerExecutor;
+    
+    @PostConstruct
+    public void init() {
+        preloadStates();
+        
+        this.writerExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "state-change-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writerExecutor.scheduleWithFixedDelay(this::flush, 
+                FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        if (writerExecutor != null) {
+            // 写出剩余的状态变更日志
+            writerExecutor.submit(this::flush);
+            writerExecutor.shutdown();
+            try {
+                if (!writerExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    writerExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writerExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
     /**
      * 记录插件状态变更
      * 
@@ -45,12 +123,13 @@ public class PluginStateChangeListener {
      * @param reason 变更原因
      */
     public void recordStateChange(String pluginId, String newState, String operator, String reason) {
+        if (pluginId == null || newState == null) {
+            return;
+        }
         try {
-            // 获取旧状态
-            String oldState = pluginStateCache.get(pluginId);
-            
-            // 如果状态没有变化，不记录
-            if (oldState != null && oldState.equals(newState)) {
+            // 原子地替换缓存状态，状态没有变化时不记录
+            String oldState = pluginStateCache.put(pluginId, newState);
+            if (newState.equals(oldState)) {
                 return;
             }
             
@@ -64,23 +143,131 @@ public class PluginStateChangeListener {
                     .reason(reason)
                     .build();
             
-            // 保存到数据库
-            int result = historyDao.saveStateChangeLog(changeLog);
-            
-            if (result > 0) {
-                // 更新缓存
-                pluginStateCache.put(pluginId, newState);
-                log.debug("记录插件状态变更: pluginId={}, oldState={}, newState={}", 
-                        pluginId, oldState, newState);
-            } else {
-                log.warn("保存插件状态变更日志失败: pluginId={}", pluginId);
-            }
+            // 写入缓冲区，由后台线程批量保存
+            enqueue(changeLog);
+            alertEngine.onStateChange(pluginId, oldState, newState, changeLog.getChangeTime());
+            log.debug("记录插件状态变更: pluginId={}, oldState={}, newState={}", 
+                    pluginId, oldState, newState);
             
         } catch (Exception e) {
             log.error("记录插件状态变更失败: pluginId={}, newState={}", pluginId, newState, e);
         }
     }
     
+    /**
+     * 记录不改变插件运行状态的事件（如类加载器泄漏），不更新状态缓存，也不参与告警评估
+     * 
+     * @param pluginId 插件ID
+     * @param oldState 事件前状态
+     * @param newState 事件状态
+     * @param operator 操作人
+     * @param reason 事件描述
+     */
+    public void recordEvent(String pluginId, String oldState, String newState, String operator, String reason) {
+        if (pluginId == null || newState == null) {
+            return;
+        }
+        enqueue(PluginStateChangeLog.builder()
+                .pluginId(pluginId)
+                .oldState(oldState)
+                .newState(newState)
+                .changeTime(System.currentTimeMillis())
+                .operator(operator)
+                .reason(reason)
+                .build());
+    }
+    
+    /**
+     * 将缓冲区中的状态变更日志批量写入数据库
+     */
+    public synchronized void flush() {
+        flushScheduled.set(false);
+        
+        // 先重试上次失败的记录，再写入新记录，保持变更时间顺序
+        List<PluginStateChangeLog> batch = new ArrayList<>(Math.max(bufferedCount.get() + retries.size(), 16));
+        List<Integer> attempts = new ArrayList<>(batch.size());
+        for (FailedLog failed : retries) {
+            batch.add(failed.changeLog);
+            attempts.add(failed.attempts);
+        }
+        retries.clear();
+        PluginStateChangeLog changeLog;
+        while ((changeLog = buffer.poll()) != null) {
+            bufferedCount.decrementAndGet();
+            batch.add(changeLog);
+            attempts.add(0);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        List<Integer> failedIndexes;
+        try {
+            BatchSaveResult result = historyDao.batchSaveStateChangeLogs(batch);
+            if (result.isSuccess()) {
+                log.debug("批量保存状态变更日志完成: 总数={}", result.getTotal());
+                return;
+            }
+            log.warn("批量保存状态变更日志部分失败: 总数={}, 成功={}, 失败分块={}", 
+                    result.getTotal(), result.getSavedCount(), result.getFailures());
+            failedIndexes = result.getFailedIndexes();
+        } catch (Exception e) {
+            log.error("批量保存状态变更日志失败: 总数={}", batch.size(), e);
+            failedIndexes = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                failedIndexes.add(i);
+            }
+        }
+        
+        int dropped = 0;
+        for (int index : failedIndexes) {
+            int attempt = attempts.get(index) + 1;
+            if (attempt > MAX_RETRY_ATTEMPTS || retries.size() >= MAX_BUFFERED) {
+                dropped++;
+                continue;
+            }
+            retries.addLast(new FailedLog(batch.get(index), attempt));
+        }
+        if (dropped > 0) {
+            log.warn("状态变更日志多次写入失败，已丢弃: {} 条", dropped);
+        }
+    }
+    
+    /**
+     * 写入缓冲区，超过上限时丢弃最早的记录，达到阈值时提交立即写入
+     */
+    private void enqueue(PluginStateChangeLog changeLog) {
+        buffer.offer(changeLog);
+        int count = bufferedCount.incrementAndGet();
+        
+        while (count > MAX_BUFFERED && buffer.poll() != null) {
+            count = bufferedCount.decrementAndGet();
+            log.warn("状态变更日志缓冲区已满，丢弃最早的记录");
+        }
+        
+        if (count >= FLUSH_THRESHOLD && writerExecutor != null && flushScheduled.compareAndSet(false, true)) {
+            try {
+                writerExecutor.execute(this::flush);
+            } catch (Exception e) {
+                flushScheduled.set(false);
+                log.warn("提交状态变更日志写入任务失败", e);
+            }
+        }
+    }
+    
+    /**
+     * 从状态变更日志恢复每个插件的最新状态
+     */
+    private void preloadStates() {
+        try {
+            Map<String, String> latestStates = historyDao.queryLatestStates(ClassLoaderLeakDetector.EVENT_STATES);
+            latestStates.forEach(pluginStateCache::putIfAbsent);
+            log.info("从状态变更日志恢复插件状态: {} 个插件", latestStates.size());
+        } catch (Exception e) {
+            log.warn("恢复插件状态失败，将从空状态开始记录", e);
+        }
+    }
+    
     /**
      * 批量检查并记录状态变更
      * 
@@ -127,4 +314,17 @@ public class PluginStateChangeListener {
     public String getCachedState(String pluginId) {
         return pluginStateCache.get(pluginId);
     }
+    
+    /**
+     * 写入失败待重试的记录
+     */
+    private static final class FailedLog {
+        private final PluginStateChangeLog changeLog;
+        private final int attempts;
+        
+        private FailedLog(PluginStateChangeLog changeLog, int attempts) {
+            this.changeLog = changeLog;
+            this.attempts = attempts;
+        }
+    }
 }
@@ -8,10 +8,14 @@ import com.keqi.gress.common.plugin.annotion.Service;
 import com.keqi.gress.plugin.appstore.dao.ApplicationDao;
 import com.keqi.gress.plugin.appstore.domain.entity.SysApplication;
 import com.keqi.gress.plugin.appstore.dto.monitor.ClassLoaderInfo;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMemoryInfo;
 import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -32,9 +36,15 @@ public class PluginStatusCollector {
     @Inject
     private ApplicationDao applicationDao;
     
+    @Inject
+    private PluginMemoryCollector memoryCollector;
+    
     /**
      * 收集所有插件的状态
      * 
+     * 只调用一次 getAllPluginPackages()，按 packageId 建立索引后与应用列表做哈希关联，
+     * 状态和内存估算都来自同一份运行时信息快照
+     * 
      * @return 所有插件的状态列表
      */
     public List<PluginMonitorStatus> collectAllStatus() {
@@ -43,10 +53,24 @@ public class PluginStatusCollector {
         List<SysApplication> applications = applicationDao.findAll();
         log.debug("从数据库查询到 {} 个应用", applications.size());
         
-        return applications.stream()
-                .map(this::collectStatusFromApplication)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        Map<String, PluginPackageRuntimeInfo> runtimeInfoIndex = loadRuntimeInfoIndex();
+        if (runtimeInfoIndex == null) {
+            // 批量接口不可用时退化为逐个查询
+            log.warn("批量获取插件包运行时信息失败，退化为逐个查询");
+            return applications.stream()
+                    .map(this::collectStatusFromApplication)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+        
+        List<PluginMonitorStatus> statusList = new ArrayList<>(applications.size());
+        for (SysApplication app : applications) {
+            PluginMonitorStatus status = collectStatusFromApplication(app, runtimeInfoIndex.get(app.getPluginId()));
+            if (status != null) {
+                statusList.add(status);
+            }
+        }
+        return statusList;
     }
     
     /**
@@ -68,24 +92,63 @@ public class PluginStatusCollector {
     }
     
     /**
-     * 从应用实体收集状态信息
+     * 批量获取所有插件包运行时信息，并按 packageId 建立索引
+     * 
+     * @return packageId -> 运行时信息，获取失败时返回 null
+     */
+    private Map<String, PluginPackageRuntimeInfo> loadRuntimeInfoIndex() {
+        try {
+            Result<List<PluginPackageRuntimeInfo>> result = pluginLifecycle.getAllPluginPackages();
+            if (!result.isSuccess() || result.getData() == null) {
+                log.warn("无法获取插件包列表: {}", result.getErrorMessage());
+                return null;
+            }
+            
+            Map<String, PluginPackageRuntimeInfo> index = new HashMap<>(result.getData().size() * 2);
+            for (PluginPackageRuntimeInfo runtimeInfo : result.getData()) {
+                if (runtimeInfo != null && runtimeInfo.getPackageId() != null) {
+                    index.put(runtimeInfo.getPackageId(), runtimeInfo);
+                }
+            }
+            return index;
+        } catch (Exception e) {
+            log.error("批量获取插件包运行时信息失败", e);
+            return null;
+        }
+    }
+    
+    /**
+     * 从应用实体收集状态信息（单独查询运行时信息）
      * 
      * @param app 应用实体
      * @return 插件监控状态
      */
     private PluginMonitorStatus collectStatusFromApplication(SysApplication app) {
+        try {
+            Result<PluginPackageRuntimeInfo> result = pluginLifecycle.getPluginPackageRuntimeInfo(app.getPluginId());
+            PluginPackageRuntimeInfo runtimeInfo = result.isSuccess() ? result.getData() : null;
+            return collectStatusFromApplication(app, runtimeInfo);
+        } catch (Exception e) {
+            return buildErrorStatus(app, e);
+        }
+    }
+    
+    /**
+     * 从应用实体和已获取的运行时信息构建状态信息
+     * 
+     * @param app 应用实体
+     * @param runtimeInfo 插件包运行时信息，为 null 表示插件未加载
+     * @return 插件监控状态
+     */
+    private PluginMonitorStatus collectStatusFromApplication(SysApplication app, PluginPackageRuntimeInfo runtimeInfo) {
         try {
             PluginMonitorStatus status = new PluginMonitorStatus();
             status.setPluginId(app.getPluginId());
             status.setPluginName(app.getApplicationName());
             status.setPluginVersion(app.getPluginVersion());
             
-            // 获取插件包运行时信息
-            Result<PluginPackageRuntimeInfo> result = pluginLifecycle.getPluginPackageRuntimeInfo(app.getPluginId());
-            
-            if (result.isSuccess() && result.getData() != null) {
+            if (runtimeInfo != null) {
                 // 插件已加载
-                PluginPackageRuntimeInfo runtimeInfo = result.getData();
                 status.setLoaded(true);
                 status.setState(runtimeInfo.getState());
                 
@@ -93,37 +156,53 @@ public class PluginStatusCollector {
                 Long startTime = runtimeInfo.getStartTime();
                 status.setStartTime(startTime);
                 
-                // 计算运行时长
-                if (startTime != null) {
+                // 计算运行时长（未运行的插件可能保留上次的启动时间，不计算）
+                if (startTime != null && "STARTED".equals(runtimeInfo.getState())) {
                     status.setUptime(System.currentTimeMillis() - startTime);
                 }
                 
+                // 基于同一份运行时信息估算内存
+                PluginMemoryInfo memInfo = memoryCollector.buildMemoryInfo(runtimeInfo);
+                status.setMemoryInfo(memInfo);
+                status.setIsMemoryWarning(memoryCollector.isMemoryWarning(memInfo));
+                
                 status.setHasError(false);
             } else {
                 // 插件未加载
                 status.setLoaded(false);
                 status.setState("NOT_LOADED");
                 status.setHasError(false);
+                status.setIsMemoryWarning(false);
             }
             
             return status;
         } catch (Exception e) {
-            log.error("收集插件状态失败: pluginId={}", app.getPluginId(), e);
-            
-            // 返回错误状态
-            PluginMonitorStatus errorStatus = new PluginMonitorStatus();
-            errorStatus.setPluginId(app.getPluginId());
-            errorStatus.setPluginName(app.getApplicationName());
-            errorStatus.setPluginVersion(app.getPluginVersion());
-            errorStatus.setLoaded(false);
-            errorStatus.setState("ERROR");
-            errorStatus.setHasError(true);
-            errorStatus.setErrorMessage("收集状态失败: " + e.getMessage());
-            
-            return errorStatus;
+            return buildErrorStatus(app, e);
         }
     }
     
+    /**
+     * 构建收集失败时的错误状态
+     * 
+     * @param app 应用实体
+     * @param e 异常
+     * @return 错误状态
+     */
+    private PluginMonitorStatus buildErrorStatus(SysApplication app, Exception e) {
+        log.error("收集插件状态失败: pluginId={}", app.getPluginId(), e);
+        
+        PluginMonitorStatus errorStatus = new PluginMonitorStatus();
+        errorStatus.setPluginId(app.getPluginId());
+        errorStatus.setPluginName(app.getApplicationName());
+        errorStatus.setPluginVersion(app.getPluginVersion());
+        errorStatus.setLoaded(false);
+        errorStatus.setState("ERROR");
+        errorStatus.setHasError(true);
+        errorStatus.setErrorMessage("收集状态失败: " + e.getMessage());
+        
+        return errorStatus;
+    }
+    
     /**
      * 获取类加载器信息
      * 
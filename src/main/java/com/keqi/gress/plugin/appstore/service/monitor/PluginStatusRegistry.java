@@ -0,0 +1,352 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Scheduled;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMemoryInfo;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件状态实时表
+ *
+ * 首次读取时做一次全量收集，之后由插件包事件和安装/升级/卸载编排器增量更新单个插件，
+ * 并定期做一次全量对账作为兜底。读取时直接返回已发布的快照，不再随插件数量增加而触发收集。
+ */
+@Slf4j
+@Service
+public class PluginStatusRegistry {
+
+    @Inject
+    private PluginStatusCollector statusCollector;
+
+    @Inject
+    private PluginMemoryCollector memoryCollector;
+
+    @Inject
+    private MonitorMetrics metrics;
+
+    @Inject
+    private PluginCpuSampler cpuSampler;
+
+    /**
+     * 插件状态表
+     * Key: pluginId, Value: 最近一次收集到的状态
+     */
+    private final Map<String, PluginMonitorStatus> statusTable = new ConcurrentHashMap<>();
+
+    /** 已发布的只读快照，每次变更后重建 */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /** 是否已完成首次全量收集 */
+    private volatile boolean initialized = false;
+
+    /** 已应用到状态表的内存采样结果版本号 */
+    private volatile long appliedMeasurementVersion = 0;
+
+    /**
+     * 获取所有插件状态
+     *
+     * 返回的是状态副本（运行时长按当前时间重新计算，CPU 取最近一次采样结果），调用方可以自由修改
+     *
+     * @return 所有插件状态列表
+     */
+    public List<PluginMonitorStatus> getAllStatus() {
+        ensureInitialized();
+
+        List<PluginMonitorStatus> statuses = snapshot.statuses;
+        long currentTime = System.currentTimeMillis();
+        List<PluginMonitorStatus> result = new ArrayList<>(statuses.size());
+        for (PluginMonitorStatus status : statuses) {
+            result.add(copyOf(status, currentTime));
+        }
+        return result;
+    }
+
+    /**
+     * 获取单个插件状态
+     *
+     * @param pluginId 插件ID
+     * @return 插件状态副本，如果插件不存在则返回 null
+     */
+    public PluginMonitorStatus getStatus(String pluginId) {
+        ensureInitialized();
+
+        PluginMonitorStatus status = statusTable.get(pluginId);
+        return status != null ? copyOf(status, System.currentTimeMillis()) : null;
+    }
+
+    /**
+     * 获取已发布的状态快照（不复制，只读）
+     *
+     * 供指标输出等只读遍历使用，运行时长需由调用方按 startTime 自行计算
+     *
+     * @return 不可修改的状态列表
+     */
+    public List<PluginMonitorStatus> getPublishedStatuses() {
+        ensureInitialized();
+        return snapshot.statuses;
+    }
+
+    /**
+     * 插件总数
+     */
+    public int getTotalCount() {
+        ensureInitialized();
+        return snapshot.statuses.size();
+    }
+
+    /**
+     * 运行中插件数
+     */
+    public long getRunningCount() {
+        ensureInitialized();
+        return snapshot.runningCount;
+    }
+
+    /**
+     * 已停止插件数（包括未加载）
+     */
+    public long getStoppedCount() {
+        ensureInitialized();
+        return snapshot.stoppedCount;
+    }
+
+    /**
+     * 异常插件数（包括有错误的和有内存告警的）
+     */
+    public long getErrorCount() {
+        ensureInitialized();
+        return snapshot.errorCount;
+    }
+
+    /**
+     * 所有插件的估算内存总和（字节）
+     */
+    public long getTotalMemoryUsage() {
+        ensureInitialized();
+        return snapshot.totalMemory;
+    }
+
+    /**
+     * 重新收集单个插件的状态并更新状态表
+     *
+     * 插件已不存在时从状态表中移除；尚未完成首次全量收集时忽略（全量收集会覆盖）
+     *
+     * @param pluginId 插件ID
+     */
+    public void refresh(String pluginId) {
+        if (pluginId == null || !initialized) {
+            return;
+        }
+
+        try {
+            long startNanos = System.nanoTime();
+            PluginMonitorStatus status = statusCollector.collectStatus(pluginId);
+            metrics.record(MonitorMetrics.OP_COLLECT_SINGLE, System.nanoTime() - startNanos);
+            if (status == null) {
+                remove(pluginId);
+                return;
+            }
+            statusTable.put(pluginId, status);
+            publish();
+            log.debug("插件状态表已更新: pluginId={}, state={}", pluginId, status.getState());
+        } catch (Exception e) {
+            // 增量更新失败不影响调用方，等待下一次对账修正
+            log.warn("更新插件状态表失败: pluginId={}", pluginId, e);
+        }
+    }
+
+    /**
+     * 从状态表中移除插件
+     *
+     * @param pluginId 插件ID
+     */
+    public void remove(String pluginId) {
+        if (pluginId == null) {
+            return;
+        }
+        if (statusTable.remove(pluginId) != null) {
+            publish();
+            log.debug("插件已从状态表移除: pluginId={}", pluginId);
+        }
+    }
+
+    /**
+     * 定时全量对账
+     * 每 10 分钟执行一次，修正遗漏的事件
+     */
+    @Scheduled(cron = "0 */10 * * * ?")
+    public void reconcile() {
+        try {
+            log.debug("开始插件状态表全量对账");
+            reloadAll();
+        } catch (Exception e) {
+            log.error("插件状态表全量对账失败", e);
+        }
+    }
+
+    /**
+     * 定时应用内存采样结果
+     * 每 15 秒检查一次，有新的采样结果时更新已加载插件的内存信息和告警标记
+     */
+    @Scheduled(cron = "*/15 * * * * ?")
+    public void applyMemoryMeasurements() {
+        long version = memoryCollector.getMeasurementVersion();
+        if (!initialized || version == appliedMeasurementVersion) {
+            return;
+        }
+
+        try {
+            int updated = 0;
+            for (PluginMonitorStatus status : statusTable.values()) {
+                if (!Boolean.TRUE.equals(status.getLoaded())) {
+                    continue;
+                }
+                PluginMemoryInfo memInfo = memoryCollector.buildMeasuredMemoryInfo(status.getPluginId());
+                if (memInfo == null) {
+                    continue;
+                }
+                PluginMonitorStatus updatedStatus = copyOf(status, System.currentTimeMillis());
+                updatedStatus.setMemoryInfo(memInfo);
+                updatedStatus.setIsMemoryWarning(memoryCollector.isMemoryWarning(memInfo));
+                statusTable.replace(status.getPluginId(), status, updatedStatus);
+                updated++;
+            }
+            if (updated > 0) {
+                publish();
+            }
+            appliedMeasurementVersion = version;
+            log.debug("内存采样结果已应用到状态表: {} 个插件", updated);
+        } catch (Exception e) {
+            log.warn("应用内存采样结果失败", e);
+        }
+    }
+
+    /**
+     * 首次读取时执行全量收集
+     */
+    private void ensureInitialized() {
+        if (initialized) {
+            return;
+        }
+        synchronized (this) {
+            if (initialized) {
+                return;
+            }
+            try {
+                reloadAll();
+            } catch (Exception e) {
+                log.error("插件状态表初始化失败", e);
+            }
+            // 即使失败也标记为已初始化，避免每次读取都重试全量收集，由对账任务恢复
+            initialized = true;
+        }
+    }
+
+    /**
+     * 全量收集并替换状态表
+     */
+    private synchronized void reloadAll() {
+        long startNanos = System.nanoTime();
+        List<PluginMonitorStatus> statusList = statusCollector.collectAllStatus();
+        metrics.record(MonitorMetrics.OP_COLLECT_ALL, System.nanoTime() - startNanos);
+
+        Map<String, PluginMonitorStatus> latest = new ConcurrentHashMap<>();
+        for (PluginMonitorStatus status : statusList) {
+            if (status.getPluginId() != null) {
+                latest.put(status.getPluginId(), status);
+            }
+        }
+
+        statusTable.keySet().retainAll(latest.keySet());
+        statusTable.putAll(latest);
+        publish();
+        initialized = true;
+
+        log.debug("插件状态表全量收集完成: {} 个插件", statusTable.size());
+    }
+
+    /**
+     * 重建并发布只读快照
+     */
+    private synchronized void publish() {
+        List<PluginMonitorStatus> statuses = new ArrayList<>(statusTable.values());
+        statuses.sort((a, b) -> a.getPluginId().compareTo(b.getPluginId()));
+
+        long running = 0;
+        long stopped = 0;
+        long error = 0;
+        long memory = 0;
+        for (PluginMonitorStatus status : statuses) {
+            if ("STARTED".equals(status.getState())) {
+                running++;
+            }
+            if ("STOPPED".equals(status.getState()) || "NOT_LOADED".equals(status.getState())) {
+                stopped++;
+            }
+            if (Boolean.TRUE.equals(status.getHasError()) || Boolean.TRUE.equals(status.getIsMemoryWarning())) {
+                error++;
+            }
+            if (status.getMemoryInfo() != null && status.getMemoryInfo().getUsedMemory() != null) {
+                memory += status.getMemoryInfo().getUsedMemory();
+            }
+        }
+
+        this.snapshot = new Snapshot(Collections.unmodifiableList(statuses), running, stopped, error, memory);
+    }
+
+    /**
+     * 复制插件状态，并按当前时间重新计算运行时长（仅运行中的插件）、填入最近一次 CPU 采样结果
+     */
+    private PluginMonitorStatus copyOf(PluginMonitorStatus status, long currentTime) {
+        PluginCpuSampler.Usage cpuUsage = Boolean.TRUE.equals(status.getLoaded())
+                ? cpuSampler.getUsage(status.getPluginId())
+                : null;
+        return PluginMonitorStatus.builder()
+                .pluginId(status.getPluginId())
+                .pluginName(status.getPluginName())
+                .pluginVersion(status.getPluginVersion())
+                .state(status.getState())
+                .loaded(status.getLoaded())
+                .startTime(status.getStartTime())
+                .uptime("STARTED".equals(status.getState()) && status.getStartTime() != null
+                        ? currentTime - status.getStartTime()
+                        : null)
+                .memoryInfo(status.getMemoryInfo())
+                .cpuUsage(cpuUsage != null ? cpuUsage.getCpuPercent() : null)
+                .threadCount(cpuUsage != null ? cpuUsage.getThreadCount() : null)
+                .hasError(status.getHasError())
+                .errorMessage(status.getErrorMessage())
+                .isMemoryWarning(status.getIsMemoryWarning())
+                .build();
+    }
+
+    /**
+     * 状态表快照
+     */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), 0, 0, 0, 0);
+
+        private final List<PluginMonitorStatus> statuses;
+        private final long runningCount;
+        private final long stoppedCount;
+        private final long errorCount;
+        private final long totalMemory;
+
+        private Snapshot(List<PluginMonitorStatus> statuses, long runningCount, long stoppedCount,
+                         long errorCount, long totalMemory) {
+            this.statuses = statuses;
+            this.runningCount = runningCount;
+            this.stoppedCount = stoppedCount;
+            this.errorCount = errorCount;
+            this.totalMemory = totalMemory;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import com.keqi.gress.plugin.appstore.dto.monitor.RecentSampleStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 近期监控样本缓冲区
+ *
+ * 在内存中为每个插件保留最近一段时间（默认 6 小时）的样本，
+ * 时间戳、内存、CPU、元数据ID和状态分别存放在 long[] / long[] / double[] / long[] / byte[] 环形数组中，
+ * 状态通过字典编码为 1 个字节。每个样本占用 33 字节。
+ *
+ * 各插件的采样频率随采样层级变化（5 秒到 5 分钟一次），缓冲区不按最快频率预先分配：
+ * 初始容量较小，写满后按两倍扩容，最多扩到按调度周期计算的窗口容量。
+ * 所有插件已分配的容量受内存预算限制，超出预算的插件不再分配缓冲区，其查询回退到数据库；
+ * 无法继续扩容的缓冲区覆盖最早的样本，覆盖不到的查询范围同样回退到数据库。
+ *
+ * 只有在缓冲区能覆盖整个查询范围时才直接返回结果：
+ * 要求从开始接收样本起就覆盖查询起点，且写满后最早保留的样本不晚于查询起点，否则回退到数据库。
+ */
+@Slf4j
+@Service
+public class RecentSampleBuffer {
+
+    @Inject
+    private AppStoreConfig config;
+
+    /** 默认保留时间窗口（小时） */
+    private static final int DEFAULT_WINDOW_HOURS = 6;
+
+    /** 默认内存预算（MB） */
+    private static final int DEFAULT_BUDGET_MB = 8;
+
+    /** 最短采样间隔（毫秒），快速采样层级的插件每个调度周期都会写入，按此计算每个插件的最大样本容量 */
+    private static final long SAMPLE_INTERVAL = SnapshotSamplingPolicy.TICK_MILLIS;
+
+    /** 新分配缓冲区的初始容量（样本数） */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** 每个样本占用的字节数：时间戳 8 + 内存 8 + CPU 8 + 元数据ID 8 + 状态 1 */
+    private static final int BYTES_PER_SAMPLE = 33;
+
+    /** 内存或元数据ID为空时的占位值 */
+    private static final long NO_VALUE = Long.MIN_VALUE;
+
+    /** 状态为空或超出字典容量时的编码 */
+    private static final byte NO_STATE = -1;
+
+    /**
+     * 各插件的环形缓冲区
+     * Key: pluginId
+     */
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    /** 状态字典：状态 -> 编码 */
+    private final Map<String, Byte> stateCodes = new ConcurrentHashMap<>();
+
+    /** 状态字典：编码 -> 状态（查询线程不加锁读取） */
+    private final AtomicReferenceArray<String> stateNames = new AtomicReferenceArray<>(Byte.MAX_VALUE + 1);
+
+    /** 因超出内存预算未分配缓冲区的插件 */
+    private final Set<String> rejectedPlugins = ConcurrentHashMap.newKeySet();
+
+    /** 因超出内存预算无法扩容的插件，只记录一次警告 */
+    private final Set<String> capacityLimitedPlugins = ConcurrentHashMap.newKeySet();
+
+    /** 所有缓冲区已分配的字节数（在 append 的锁内维护） */
+    private long allocatedBytes;
+
+    /** 开始接收样本的时间（毫秒），0 表示尚未接收 */
+    private volatile long acceptingSince = 0;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder fallbackCount = new LongAdder();
+
+    /**
+     * 追加一批快照
+     *
+     * @param snapshots 快照列表
+     * @param timestamp 快照时间戳（毫秒）
+     */
+    public synchronized void append(List<PluginMonitorSnapshot> snapshots, long timestamp) {
+        if (acceptingSince == 0) {
+            acceptingSince = timestamp;
+        }
+
+        int maxCapacity = getCapacityPerPlugin();
+        long budgetBytes = getBudgetBytes();
+        for (PluginMonitorSnapshot snapshot : snapshots) {
+            String pluginId = snapshot.getPluginId();
+            if (pluginId == null) {
+                continue;
+            }
+            Ring ring = rings.get(pluginId);
+            if (ring == null) {
+                int initialCapacity = Math.min(INITIAL_CAPACITY, maxCapacity);
+                if (allocatedBytes + (long) initialCapacity * BYTES_PER_SAMPLE > budgetBytes) {
+                    if (rejectedPlugins.add(pluginId)) {
+                        log.warn("近期样本缓冲区超出内存预算，插件历史查询将回退到数据库: pluginId={}", pluginId);
+                    }
+                    continue;
+                }
+                // 曾因超出预算被拒绝的插件，缓冲区只从本次样本开始覆盖
+                long coversFrom = rejectedPlugins.remove(pluginId) ? timestamp : acceptingSince;
+                ring = new Ring(initialCapacity, coversFrom);
+                rings.put(pluginId, ring);
+                allocatedBytes += (long) initialCapacity * BYTES_PER_SAMPLE;
+            } else if (ring.isFull() && ring.capacity() < maxCapacity) {
+                grow(pluginId, ring, maxCapacity, budgetBytes);
+            }
+            ring.add(timestamp, snapshot.getMemoryUsage(), snapshot.getCpuUsage(), snapshot.getMetadataId(),
+                    encodeState(snapshot.getState()));
+        }
+
+        // 释放超过时间窗口未收到样本的插件（已卸载）缓冲区
+        long expireBefore = timestamp - getWindowMillis();
+        Iterator<Map.Entry<String, Ring>> iterator = rings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Ring> entry = iterator.next();
+            if (entry.getValue().newestTimestamp() < expireBefore) {
+                iterator.remove();
+                allocatedBytes -= (long) entry.getValue().capacity() * BYTES_PER_SAMPLE;
+                capacityLimitedPlugins.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * 写满的缓冲区按两倍扩容，超出内存预算时不扩容，继续覆盖最早的样本
+     */
+    private void grow(String pluginId, Ring ring, int maxCapacity, long budgetBytes) {
+        int newCapacity = (int) Math.min((long) ring.capacity() * 2, maxCapacity);
+        long extraBytes = (long) (newCapacity - ring.capacity()) * BYTES_PER_SAMPLE;
+        if (allocatedBytes + extraBytes > budgetBytes) {
+            if (capacityLimitedPlugins.add(pluginId)) {
+                log.warn("近期样本缓冲区超出内存预算，无法扩容，较早的历史查询将回退到数据库: pluginId={}, 容量={}",
+                        pluginId, ring.capacity());
+            }
+            return;
+        }
+        ring.grow(newCapacity);
+        allocatedBytes += extraBytes;
+    }
+
+    /**
+     * 查询插件在时间范围内的样本
+     *
+     * @param pluginId 插件ID
+     * @param startTime 起始时间戳（毫秒）
+     * @return 样本列表（按时间升序），缓冲区无法覆盖整个范围时返回 null
+     */
+    public List<Sample> query(String pluginId, long startTime) {
+        long since = acceptingSince;
+        long windowStart = System.currentTimeMillis() - getWindowMillis() - SAMPLE_INTERVAL;
+        if (pluginId == null || since == 0 || since > startTime || startTime < windowStart) {
+            fallbackCount.increment();
+            return null;
+        }
+
+        Ring ring = rings.get(pluginId);
+        if (ring == null) {
+            if (rejectedPlugins.contains(pluginId)) {
+                fallbackCount.increment();
+                return null;
+            }
+            // 从开始接收起就没有该插件的样本，说明插件在此期间不存在
+            hitCount.increment();
+            return new ArrayList<>();
+        }
+
+        List<Sample> samples = ring.query(startTime);
+        if (samples == null) {
+            fallbackCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return samples;
+    }
+
+    /**
+     * 获取缓冲区统计
+     */
+    public RecentSampleStats getStats() {
+        int capacity = getCapacityPerPlugin();
+        long sampleCount = 0;
+        long usedBytes = 0;
+        for (Ring ring : rings.values()) {
+            sampleCount += ring.size();
+            usedBytes += (long) ring.capacity() * BYTES_PER_SAMPLE;
+        }
+        return RecentSampleStats.builder()
+                .windowHours(getWindowHours())
+                .pluginCount(rings.size())
+                .capacityPerPlugin(capacity)
+                .sampleCount(sampleCount)
+                .usedBytes(usedBytes)
+                .budgetBytes(getBudgetBytes())
+                .rejectedPluginCount(rejectedPlugins.size())
+                .hitCount(hitCount.sum())
+                .fallbackCount(fallbackCount.sum())
+                .build();
+    }
+
+    /**
+     * 状态编码（字典容量 127，超出后记为空）
+     */
+    private byte encodeState(String state) {
+        if (state == null) {
+            return NO_STATE;
+        }
+        Byte code = stateCodes.get(state);
+        if (code != null) {
+            return code;
+        }
+        synchronized (stateCodes) {
+            code = stateCodes.get(state);
+            if (code != null) {
+                return code;
+            }
+            int next = stateCodes.size();
+            if (next >= stateNames.length()) {
+                return NO_STATE;
+            }
+            // 先写入编码 -> 状态，再发布状态 -> 编码，读取到编码时一定能解码
+            stateNames.set(next, state);
+            stateCodes.put(state, (byte) next);
+            return (byte) next;
+        }
+    }
+
+    private String decodeState(byte code) {
+        return code >= 0 ? stateNames.get(code) : null;
+    }
+
+    private int getWindowHours() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer hours = monitorConfig != null ? monitorConfig.getRecentWindowHours() : null;
+        return hours != null && hours > 0 ? hours : DEFAULT_WINDOW_HOURS;
+    }
+
+    private long getWindowMillis() {
+        return getWindowHours() * 60L * 60 * 1000;
+    }
+
+    private int getCapacityPerPlugin() {
+        // 每个调度周期都写入时的窗口容量，多保留两个样本，保证写满后最早的样本仍早于窗口起点
+        return (int) (getWindowMillis() / SAMPLE_INTERVAL) + 2;
+    }
+
+    private long getBudgetBytes() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer budgetMb = monitorConfig != null ? monitorConfig.getRecentBufferBudgetMb() : null;
+        return (budgetMb != null && budgetMb > 0 ? budgetMb : DEFAULT_BUDGET_MB) * 1024L * 1024L;
+    }
+
+    /**
+     * 近期样本
+     */
+    public static final class Sample {
+        private final long timestamp;
+        private final String state;
+        private final Long memoryUsage;
+        private final Double cpuUsage;
+        private final Long metadataId;
+
+        private Sample(long timestamp, String state, Long memoryUsage, Double cpuUsage, Long metadataId) {
+            this.timestamp = timestamp;
+            this.state = state;
+            this.memoryUsage = memoryUsage;
+            this.cpuUsage = cpuUsage;
+            this.metadataId = metadataId;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public Long getMemoryUsage() {
+            return memoryUsage;
+        }
+
+        public Double getCpuUsage() {
+            return cpuUsage;
+        }
+
+        public Long getMetadataId() {
+            return metadataId;
+        }
+    }
+
+    /**
+     * 单个插件的环形缓冲区
+     */
+    private final class Ring {
+        private long[] timestamps;
+        private long[] memories;
+        private double[] cpus;
+        private long[] metadataIds;
+        private byte[] states;
+        /** 缓冲区从该时间起没有遗漏样本 */
+        private final long coversFrom;
+        /** 下一个写入位置 */
+        private int head;
+        private int size;
+
+        private Ring(int capacity, long coversFrom) {
+            this.coversFrom = coversFrom;
+            this.timestamps = new long[capacity];
+            this.memories = new long[capacity];
+            this.cpus = new double[capacity];
+            this.metadataIds = new long[capacity];
+            this.states = new byte[capacity];
+        }
+
+        /**
+         * 扩容，已有样本按时间顺序复制到新数组的开头
+         */
+        private synchronized void grow(int newCapacity) {
+            int capacity = timestamps.length;
+            int oldest = (head - size + capacity) % capacity;
+            long[] newTimestamps = new long[newCapacity];
+            long[] newMemories = new long[newCapacity];
+            double[] newCpus = new double[newCapacity];
+            long[] newMetadataIds = new long[newCapacity];
+            byte[] newStates = new byte[newCapacity];
+            for (int i = 0; i < size; i++) {
+                int index = (oldest + i) % capacity;
+                newTimestamps[i] = timestamps[index];
+                newMemories[i] = memories[index];
+                newCpus[i] = cpus[index];
+                newMetadataIds[i] = metadataIds[index];
+                newStates[i] = states[index];
+            }
+            timestamps = newTimestamps;
+            memories = newMemories;
+            cpus = newCpus;
+            metadataIds = newMetadataIds;
+            states = newStates;
+            head = size % newCapacity;
+        }
+
+        private synchronized boolean isFull() {
+            return size == timestamps.length;
+        }
+
+        private synchronized void add(long timestamp, Long memoryUsage, Double cpuUsage, Long metadataId, byte state) {
+            timestamps[head] = timestamp;
+            memories[head] = memoryUsage != null ? memoryUsage : NO_VALUE;
+            cpus[head] = cpuUsage != null ? cpuUsage : Double.NaN;
+            metadataIds[head] = metadataId != null ? metadataId : NO_VALUE;
+            states[head] = state;
+            head = (head + 1) % timestamps.length;
+            if (size < timestamps.length) {
+                size++;
+            }
+        }
+
+        /**
+         * 查询起始时间之后的样本，缓冲区无法覆盖起始时间时返回 null
+         */
+        private synchronized List<Sample> query(long startTime) {
+            int capacity = timestamps.length;
+            int oldest = (head - size + capacity) % capacity;
+            if (coversFrom > startTime || (size == capacity && timestamps[oldest] > startTime)) {
+                return null;
+            }
+
+            List<Sample> samples = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int index = (oldest + i) % capacity;
+                if (timestamps[index] < startTime) {
+                    continue;
+                }
+                samples.add(new Sample(timestamps[index], decodeState(states[index]),
+                        memories[index] != NO_VALUE ? memories[index] : null,
+                        !Double.isNaN(cpus[index]) ? cpus[index] : null,
+                        metadataIds[index] != NO_VALUE ? metadataIds[index] : null));
+            }
+            return samples;
+        }
+
+        private synchronized long newestTimestamp() {
+            return size > 0 ? timestamps[(head - 1 + timestamps.length) % timestamps.length] : 0;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized int capacity() {
+            return timestamps.length;
+        }
+    }
+}
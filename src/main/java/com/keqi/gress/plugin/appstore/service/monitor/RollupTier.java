@@ -0,0 +1,74 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+/**
+ * 监控数据汇总层级
+ */
+public enum RollupTier {
+    
+    /** 5 分钟汇总 */
+    FIVE_MINUTES("5m", 5 * 60 * 1000L),
+    
+    /** 1 小时汇总 */
+    ONE_HOUR("1h", 60 * 60 * 1000L),
+    
+    /** 1 天汇总 */
+    ONE_DAY("1d", 24 * 60 * 60 * 1000L);
+    
+    private final String code;
+    private final long bucketMillis;
+    
+    RollupTier(String code, long bucketMillis) {
+        this.code = code;
+        this.bucketMillis = bucketMillis;
+    }
+    
+    public String getCode() {
+        return code;
+    }
+    
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+    
+    /**
+     * 计算时间戳所在时间桶的起始时间
+     * 
+     * @param timestamp 时间戳（毫秒）
+     * @return 时间桶起始时间戳（毫秒）
+     */
+    public long bucketStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, bucketMillis);
+    }
+    
+    /**
+     * 上一级（更粗粒度）层级
+     * 
+     * @return 上一级层级，已是最粗粒度时返回 null
+     */
+    public RollupTier parent() {
+        switch (this) {
+            case FIVE_MINUTES:
+                return ONE_HOUR;
+            case ONE_HOUR:
+                return ONE_DAY;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * 上一级层级由哪一层汇总而来
+     * 
+     * @return 下一级层级，已是最细粒度时返回 null
+     */
+    public RollupTier child() {
+        switch (this) {
+            case ONE_DAY:
+                return ONE_HOUR;
+            case ONE_HOUR:
+                return FIVE_MINUTES;
+            default:
+                return null;
+        }
+    }
+}
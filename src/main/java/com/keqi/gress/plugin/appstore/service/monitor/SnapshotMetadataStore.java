@@ -0,0 +1,214 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.dao.MonitorMetadataDao;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorMetadata;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 快照元数据存储
+ *
+ * 快照元数据（插件名称、版本、加载状态、启动时间）几乎不变，按插件和内容去重保存到元数据表，
+ * 快照只保存元数据ID。写入时与内存中各插件当前的元数据比较，只有内容变化时才访问数据库。
+ *
+ * 运行时长不再存储，读取时由快照时间戳和启动时间计算。
+ */
+@Slf4j
+@Service
+public class SnapshotMetadataStore {
+
+    @Inject
+    private MonitorMetadataDao metadataDao;
+
+    /** 元数据内容缓存的最大条目数 */
+    private static final int MAX_CACHED_CONTENTS = 4096;
+
+    /**
+     * 各插件当前的元数据
+     * Key: pluginId
+     */
+    private final Map<String, CurrentMetadata> currentMetadata = new ConcurrentHashMap<>();
+
+    /**
+     * 已解析的元数据内容（access-order，超出容量时淘汰最久未访问的条目）
+     * Key: 元数据ID
+     */
+    private final LinkedHashMap<Long, JSONObject> contents = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, JSONObject> eldest) {
+            return size() > MAX_CACHED_CONTENTS;
+        }
+    };
+
+    /**
+     * 获取插件当前元数据的ID，内容变化时保存新版本
+     *
+     * @param status 插件状态
+     * @return 元数据ID，保存失败时返回 null
+     */
+    public Long resolveId(PluginMonitorStatus status) {
+        String pluginId = status.getPluginId();
+        String content = buildContent(status);
+
+        CurrentMetadata current = currentMetadata.get(pluginId);
+        if (current != null && current.content.equals(content)) {
+            return current.id;
+        }
+
+        try {
+            String contentHash = sha256(content);
+            metadataDao.insertIfAbsent(PluginMonitorMetadata.builder()
+                    .pluginId(pluginId)
+                    .contentHash(contentHash)
+                    .content(content)
+                    .createTime(System.currentTimeMillis())
+                    .build());
+            PluginMonitorMetadata saved = metadataDao.findByHash(pluginId, contentHash);
+            if (saved == null || saved.getId() == null) {
+                return null;
+            }
+
+            currentMetadata.put(pluginId, new CurrentMetadata(saved.getId(), content));
+            synchronized (contents) {
+                contents.put(saved.getId(), JSON.parseObject(content));
+            }
+            log.debug("插件快照元数据已更新: pluginId={}, metadataId={}", pluginId, saved.getId());
+            return saved.getId();
+        } catch (Exception e) {
+            log.warn("保存插件快照元数据失败: pluginId={}", pluginId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 清空内存中的元数据缓存
+     *
+     * 元数据表清理后调用：被删除的元数据不能再作为插件当前元数据引用，下次写入时重新保存。
+     */
+    public void invalidate() {
+        currentMetadata.clear();
+        synchronized (contents) {
+            contents.clear();
+        }
+    }
+
+    /**
+     * 预加载一批元数据内容，避免逐条查询
+     *
+     * @param metadataIds 元数据ID集合
+     */
+    public void preload(Collection<Long> metadataIds) {
+        List<Long> missing = new ArrayList<>();
+        synchronized (contents) {
+            for (Long metadataId : metadataIds) {
+                if (metadataId != null && !contents.containsKey(metadataId) && !missing.contains(metadataId)) {
+                    missing.add(metadataId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<PluginMonitorMetadata> loaded = metadataDao.queryByIds(missing);
+            synchronized (contents) {
+                for (PluginMonitorMetadata metadata : loaded) {
+                    contents.put(metadata.getId(), JSON.parseObject(metadata.getContent()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("加载插件快照元数据失败: ids={}", missing.size(), e);
+        }
+    }
+
+    /**
+     * 生成快照的元数据 JSON，运行时长按快照时间戳计算
+     *
+     * @param metadataId 元数据ID
+     * @param timestamp 快照时间戳（毫秒）
+     * @return 元数据 JSON，元数据不存在时返回 null
+     */
+    public String render(Long metadataId, long timestamp) {
+        if (metadataId == null) {
+            return null;
+        }
+        JSONObject content;
+        synchronized (contents) {
+            content = contents.get(metadataId);
+        }
+        if (content == null) {
+            preload(Collections.singletonList(metadataId));
+            synchronized (contents) {
+                content = contents.get(metadataId);
+            }
+            if (content == null) {
+                return null;
+            }
+        }
+
+        JSONObject metadata = new JSONObject(content);
+        Long startTime = content.getLong("startTime");
+        if (startTime != null) {
+            metadata.put("uptime", timestamp - startTime);
+        }
+        return metadata.toJSONString();
+    }
+
+    /**
+     * 构建元数据内容（不含运行时长，插件运行期间内容不变）
+     */
+    private String buildContent(PluginMonitorStatus status) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        if (status.getPluginName() != null) {
+            content.put("pluginName", status.getPluginName());
+        }
+        if (status.getPluginVersion() != null) {
+            content.put("pluginVersion", status.getPluginVersion());
+        }
+        if (status.getLoaded() != null) {
+            content.put("loaded", status.getLoaded());
+        }
+        // 只有运行中的插件记录启动时间，渲染时据此计算运行时长
+        if (status.getStartTime() != null && "STARTED".equals(status.getState())) {
+            content.put("startTime", status.getStartTime());
+        }
+        return JSON.toJSONString(content);
+    }
+
+    private static String sha256(String content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 插件当前的元数据
+     */
+    private static final class CurrentMetadata {
+        private final Long id;
+        private final String content;
+
+        private CurrentMetadata(Long id, String content) {
+            this.id = id;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.common.plugin.annotion.Inject;
+import com.keqi.gress.common.plugin.annotion.Service;
+import com.keqi.gress.plugin.appstore.config.AppStoreConfig;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import com.keqi.gress.plugin.appstore.dto.monitor.SnapshotSamplingStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 监控快照自适应采样策略
+ *
+ * 快照定时任务每 5 秒调用一次，按插件当前所在层级决定本周期哪些插件需要写入快照：
+ * - FAST：最近发生状态变更、有错误或内存告警、告警处于触发或累计中、被运维关注的插件
+ * - NORMAL：其他插件
+ * - SLOW：超过 snapshot-stable-after-minutes 没有状态变更（或首次出现后一直没有变更）的插件
+ *
+ * 写入受全局预算限制（令牌桶，每分钟 snapshot-write-budget-per-minute 行，最多累积一分钟）。
+ * 预算不足时按逾期比例（距上次写入时间 / 层级间隔）从高到低选择，未选中的插件保持到期，
+ * 在后续周期优先写入，各层级按比例降频而不会饿死慢速层级。
+ */
+@Slf4j
+@Service
+public class SnapshotSamplingPolicy {
+
+    @Inject
+    private MonitorAlertEngine alertEngine;
+
+    @Inject
+    private AppStoreConfig config;
+
+    /** 快速采样层级 */
+    public static final String TIER_FAST = "FAST";
+
+    /** 常规采样层级 */
+    public static final String TIER_NORMAL = "NORMAL";
+
+    /** 慢速采样层级 */
+    public static final String TIER_SLOW = "SLOW";
+
+    /** 快照定时任务的调度周期（毫秒），即最短的采样间隔 */
+    public static final long TICK_MILLIS = 5000L;
+
+    /** 默认快速采样间隔（秒） */
+    private static final int DEFAULT_FAST_INTERVAL_SECONDS = 5;
+
+    /** 默认常规采样间隔（秒） */
+    private static final int DEFAULT_NORMAL_INTERVAL_SECONDS = 60;
+
+    /** 默认慢速采样间隔（秒） */
+    private static final int DEFAULT_SLOW_INTERVAL_SECONDS = 300;
+
+    /** 默认状态变更后保持快速采样的时间（分钟） */
+    private static final int DEFAULT_HOT_WINDOW_MINUTES = 10;
+
+    /** 默认无状态变更多久后进入慢速采样（分钟） */
+    private static final int DEFAULT_STABLE_AFTER_MINUTES = 30;
+
+    /** 默认每分钟写入预算（行） */
+    private static final int DEFAULT_WRITE_BUDGET_PER_MINUTE = 3000;
+
+    /** 默认运维关注时长（分钟） */
+    public static final int DEFAULT_FOCUS_MINUTES = 15;
+
+    /** 判断到期时允许的调度抖动（毫秒） */
+    private static final long SCHEDULE_TOLERANCE = 1000;
+
+    /**
+     * 各插件的采样状态
+     * Key: pluginId
+     */
+    private final Map<String, PluginSampling> samplings = new HashMap<>();
+
+    /**
+     * 运维关注的插件
+     * Key: pluginId, Value: 关注到期时间戳（毫秒）
+     */
+    private final Map<String, Long> focused = new ConcurrentHashMap<>();
+
+    /** 当前写入预算（行） */
+    private double availableBudget = -1;
+
+    /** 上次补充预算的时间（毫秒） */
+    private long lastRefillTime;
+
+    private int lastTickDueCount;
+    private int lastTickWrittenCount;
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder deferredCount = new LongAdder();
+
+    /**
+     * 选出本周期需要写入快照的插件
+     *
+     * @param statuses 所有插件的状态
+     * @param timestamp 本周期时间戳（毫秒）
+     * @return 需要写入快照的插件状态
+     */
+    public synchronized List<PluginMonitorStatus> select(List<PluginMonitorStatus> statuses, long timestamp) {
+        focused.values().removeIf(until -> until <= timestamp);
+
+        long hotWindow = getHotWindowMinutes() * 60_000L;
+        long stableAfter = getStableAfterMinutes() * 60_000L;
+
+        List<Candidate> due = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (PluginMonitorStatus status : statuses) {
+            String pluginId = status.getPluginId();
+            if (pluginId == null) {
+                continue;
+            }
+            seen.add(pluginId);
+
+            PluginSampling sampling = samplings.computeIfAbsent(pluginId, id -> new PluginSampling(timestamp));
+            if (!Objects.equals(sampling.lastState, status.getState())) {
+                sampling.changed = sampling.lastState != null;
+                sampling.lastState = status.getState();
+                sampling.lastChangeTime = timestamp;
+            }
+            sampling.tier = classify(status, sampling, timestamp, hotWindow, stableAfter);
+
+            long interval = getIntervalMillis(sampling.tier);
+            long elapsed = sampling.lastSampleTime > 0 ? timestamp - sampling.lastSampleTime : Long.MAX_VALUE;
+            if (elapsed + SCHEDULE_TOLERANCE >= interval) {
+                double overdue = elapsed == Long.MAX_VALUE ? Double.MAX_VALUE : (double) elapsed / interval;
+                due.add(new Candidate(status, sampling, overdue));
+            }
+        }
+        samplings.keySet().retainAll(seen);
+
+        refillBudget(timestamp);
+        int allowed = (int) Math.min(due.size(), Math.floor(availableBudget));
+        if (allowed < due.size()) {
+            due.sort((a, b) -> Double.compare(b.overdue, a.overdue));
+            deferredCount.add(due.size() - allowed);
+            log.debug("快照写入预算不足: 到期={}, 写入={}, 剩余预算={}", due.size(), allowed, availableBudget);
+        }
+
+        List<PluginMonitorStatus> selected = new ArrayList<>(allowed);
+        for (int i = 0; i < allowed; i++) {
+            Candidate candidate = due.get(i);
+            candidate.sampling.lastSampleTime = timestamp;
+            selected.add(candidate.status);
+        }
+        availableBudget -= allowed;
+
+        lastTickDueCount = due.size();
+        lastTickWrittenCount = allowed;
+        writtenCount.add(allowed);
+        return selected;
+    }
+
+    /**
+     * 关注插件，关注期间按快速层级采样
+     *
+     * @param pluginId 插件ID
+     * @param minutes 关注时长（分钟）
+     * @return 关注到期时间戳（毫秒）
+     */
+    public long focus(String pluginId, int minutes) {
+        long until = System.currentTimeMillis() + Math.max(minutes, 1) * 60_000L;
+        focused.put(pluginId, until);
+        log.info("关注插件快照采样: pluginId={}, minutes={}", pluginId, minutes);
+        return until;
+    }
+
+    /**
+     * 取消关注插件
+     *
+     * @param pluginId 插件ID
+     */
+    public void unfocus(String pluginId) {
+        if (focused.remove(pluginId) != null) {
+            log.info("取消关注插件快照采样: pluginId={}", pluginId);
+        }
+    }
+
+    /**
+     * 获取采样统计
+     */
+    public synchronized SnapshotSamplingStats getStats() {
+        Map<String, String> pluginTiers = new TreeMap<>();
+        Map<String, Integer> tierCounts = new HashMap<>();
+        samplings.forEach((pluginId, sampling) -> {
+            if (sampling.tier != null) {
+                pluginTiers.put(pluginId, sampling.tier);
+                tierCounts.merge(sampling.tier, 1, Integer::sum);
+            }
+        });
+
+        List<SnapshotSamplingStats.Tier> tiers = new ArrayList<>(3);
+        for (String tier : new String[]{TIER_FAST, TIER_NORMAL, TIER_SLOW}) {
+            tiers.add(SnapshotSamplingStats.Tier.builder()
+                    .name(tier)
+                    .intervalSeconds((int) (getIntervalMillis(tier) / 1000))
+                    .pluginCount(tierCounts.getOrDefault(tier, 0))
+                    .build());
+        }
+
+        return SnapshotSamplingStats.builder()
+                .tiers(tiers)
+                .pluginTiers(pluginTiers)
+                .focusedPlugins(new TreeMap<>(focused))
+                .writeBudgetPerMinute(getWriteBudgetPerMinute())
+                .availableBudget((long) Math.max(availableBudget, 0))
+                .lastTickDueCount(lastTickDueCount)
+                .lastTickWrittenCount(lastTickWrittenCount)
+                .writtenCount(writtenCount.sum())
+                .deferredCount(deferredCount.sum())
+                .build();
+    }
+
+    /**
+     * 判断插件所在层级
+     */
+    private String classify(PluginMonitorStatus status, PluginSampling sampling, long timestamp,
+                            long hotWindow, long stableAfter) {
+        boolean hot = (sampling.changed && timestamp - sampling.lastChangeTime < hotWindow)
+                || Boolean.TRUE.equals(status.getHasError())
+                || Boolean.TRUE.equals(status.getIsMemoryWarning())
+                || focused.containsKey(status.getPluginId())
+                || alertEngine.hasActiveOrPendingAlert(status.getPluginId());
+        if (hot) {
+            return TIER_FAST;
+        }
+        return timestamp - sampling.lastChangeTime >= stableAfter ? TIER_SLOW : TIER_NORMAL;
+    }
+
+    /**
+     * 按经过的时间补充写入预算，最多累积一分钟的预算
+     */
+    private void refillBudget(long timestamp) {
+        int budget = getWriteBudgetPerMinute();
+        if (availableBudget < 0) {
+            availableBudget = budget;
+        } else if (timestamp > lastRefillTime) {
+            availableBudget = Math.min(budget, availableBudget + (timestamp - lastRefillTime) * budget / 60_000.0);
+        }
+        lastRefillTime = timestamp;
+    }
+
+    /**
+     * 单个样本最多代表的状态持续时长（毫秒），相邻样本间隔超过该值视为采样中断
+     *
+     * 取最长层级间隔的两倍，留出预算不足时推迟写入的余量
+     */
+    public long getMaxSampleGapMillis() {
+        long longest = Math.max(getIntervalMillis(TIER_FAST),
+                Math.max(getIntervalMillis(TIER_NORMAL), getIntervalMillis(TIER_SLOW)));
+        return longest * 2;
+    }
+
+    private long getIntervalMillis(String tier) {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer seconds;
+        int defaultSeconds;
+        switch (tier) {
+            case TIER_FAST:
+                seconds = monitorConfig != null ? monitorConfig.getSnapshotFastIntervalSeconds() : null;
+                defaultSeconds = DEFAULT_FAST_INTERVAL_SECONDS;
+                break;
+            case TIER_SLOW:
+                seconds = monitorConfig != null ? monitorConfig.getSnapshotSlowIntervalSeconds() : null;
+                defaultSeconds = DEFAULT_SLOW_INTERVAL_SECONDS;
+                break;
+            default:
+                seconds = monitorConfig != null ? monitorConfig.getSnapshotNormalIntervalSeconds() : null;
+                defaultSeconds = DEFAULT_NORMAL_INTERVAL_SECONDS;
+                break;
+        }
+        return (seconds != null && seconds > 0 ? seconds : defaultSeconds) * 1000L;
+    }
+
+    private int getHotWindowMinutes() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer minutes = monitorConfig != null ? monitorConfig.getSnapshotHotWindowMinutes() : null;
+        return minutes != null && minutes >= 0 ? minutes : DEFAULT_HOT_WINDOW_MINUTES;
+    }
+
+    private int getStableAfterMinutes() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer minutes = monitorConfig != null ? monitorConfig.getSnapshotStableAfterMinutes() : null;
+        return minutes != null && minutes > 0 ? minutes : DEFAULT_STABLE_AFTER_MINUTES;
+    }
+
+    private int getWriteBudgetPerMinute() {
+        AppStoreConfig.MonitorConfig monitorConfig = config != null ? config.getMonitor() : null;
+        Integer budget = monitorConfig != null ? monitorConfig.getSnapshotWriteBudgetPerMinute() : null;
+        return budget != null && budget > 0 ? budget : DEFAULT_WRITE_BUDGET_PER_MINUTE;
+    }
+
+    /**
+     * 单个插件的采样状态
+     */
+    private static final class PluginSampling {
+        private String lastState;
+        /** 最近一次状态变更的时间（首次出现时为出现时间） */
+        private long lastChangeTime;
+        /** 是否观察到过状态变更（首次出现不算，避免重启后所有插件都进入快速层级） */
+        private boolean changed;
+        private long lastSampleTime;
+        private String tier;
+
+        private PluginSampling(long firstSeen) {
+            this.lastChangeTime = firstSeen;
+        }
+    }
+
+    /**
+     * 本周期到期的插件
+     */
+    private static final class Candidate {
+        private final PluginMonitorStatus status;
+        private final PluginSampling sampling;
+        private final double overdue;
+
+        private Candidate(PluginMonitorStatus status, PluginSampling sampling, double overdue) {
+            this.status = status;
+            this.sampling = sampling;
+            this.overdue = overdue;
+        }
+    }
+}
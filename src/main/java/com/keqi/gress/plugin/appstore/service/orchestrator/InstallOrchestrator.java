@@ -11,6 +11,7 @@ import com.keqi.gress.plugin.appstore.service.ApplicationInstallService;
 import com.keqi.gress.plugin.appstore.service.install.DependencyResolutionService;
 import com.keqi.gress.plugin.appstore.service.persistence.ApplicationPersistenceService;
 import com.keqi.gress.plugin.appstore.service.logging.ApplicationOperationLogger;
+import com.keqi.gress.plugin.appstore.service.monitor.PluginStatusRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -50,6 +51,9 @@ public class InstallOrchestrator {
     @Inject
     private ApplicationOperationLogger operationLogger;
     
+    @Inject
+    private PluginStatusRegistry statusRegistry;
+    
     /**
      * 从URL安装应用（含依赖检查与安装）
      * 
@@ -99,7 +103,10 @@ public class InstallOrchestrator {
                         installInfo.getPackageId(), e);
             }
             
-            // 4. 记录成功日志
+            // 4. 更新插件监控状态表
+            statusRegistry.refresh(installInfo.getPackageId());
+            
+            // 5. 记录成功日志
             if (application == null) {
                 application = createTempApp(installInfo.getPackageId(), installInfo.getPackageId());
             }
@@ -147,6 +154,9 @@ public class InstallOrchestrator {
                 return result;
             }
             
+            // 更新插件监控状态表
+            statusRegistry.refresh(pluginId);
+            
             // 记录成功日志
             PluginPackageInstallResult installInfo = result.getData();
             SysApplication application = persistenceService.findByPluginId(pluginId);
@@ -11,6 +11,8 @@ import com.keqi.gress.plugin.appstore.dto.ApplicationUninstallRequest;
 import com.keqi.gress.plugin.appstore.service.ApplicationInstallService;
 import com.keqi.gress.plugin.appstore.service.persistence.ApplicationPersistenceService;
 import com.keqi.gress.plugin.appstore.service.logging.ApplicationOperationLogger;
+import com.keqi.gress.plugin.appstore.service.monitor.ClassLoaderLeakDetector;
+import com.keqi.gress.plugin.appstore.service.monitor.PluginStatusRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -46,6 +48,12 @@ public class UninstallOrchestrator {
     @Inject
     private ApplicationOperationLogger operationLogger;
     
+    @Inject
+    private PluginStatusRegistry statusRegistry;
+    
+    @Inject
+    private ClassLoaderLeakDetector leakDetector;
+    
     /**
      * 卸载应用
      * 
@@ -82,17 +90,23 @@ public class UninstallOrchestrator {
             
             // 4. 调用插件生命周期管理器卸载
             String packageId = application.getPluginId();
+            leakDetector.capture(packageId, application.getPluginVersion());
             Result<PluginPackageUninstallResult> uninstallResult = 
                     applicationInstallService.uninstallApplication(packageId);
             
             if (!uninstallResult.isSuccess()) {
+                leakDetector.discard(packageId);
                 operationLogger.logFailure(application, "UNINSTALL", "卸载应用", 
                         request.getOperatorId(), request.getOperatorName(), 
                         "卸载失败: " + uninstallResult.getErrorMessage(), startTime);
                 return Result.error("卸载插件包失败: " + uninstallResult.getErrorMessage());
             }
             
-            // 5. 从数据库删除应用记录
+            // 5. 从插件监控状态表移除，并跟踪旧类加载器是否被回收
+            statusRegistry.remove(packageId);
+            leakDetector.watch(packageId, ClassLoaderLeakDetector.REASON_UNINSTALL);
+            
+            // 6. 从数据库删除应用记录
             boolean deleteSuccess = persistenceService.deleteById(id);
             
             if (deleteSuccess) {
@@ -114,6 +128,7 @@ public class UninstallOrchestrator {
         } catch (Exception e) {
             log.error("应用卸载失败: id={}", id, e);
             if (application != null) {
+                leakDetector.discard(application.getPluginId());
                 operationLogger.logFailure(application, "UNINSTALL", "卸载应用", 
                         request.getOperatorId(), request.getOperatorName(), 
                         "异常: " + e.getMessage(), startTime);
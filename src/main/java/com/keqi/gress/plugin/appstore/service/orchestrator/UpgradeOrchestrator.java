@@ -14,6 +14,8 @@ import com.keqi.gress.plugin.appstore.service.AppStoreApiService;
 import com.keqi.gress.plugin.appstore.service.install.DependencyResolutionService;
 import com.keqi.gress.plugin.appstore.service.persistence.ApplicationPersistenceService;
 import com.keqi.gress.plugin.appstore.service.logging.ApplicationOperationLogger;
+import com.keqi.gress.plugin.appstore.service.monitor.ClassLoaderLeakDetector;
+import com.keqi.gress.plugin.appstore.service.monitor.PluginStatusRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -57,6 +59,12 @@ public class UpgradeOrchestrator {
     @Inject
     private ApplicationOperationLogger operationLogger;
     
+    @Inject
+    private PluginStatusRegistry statusRegistry;
+    
+    @Inject
+    private ClassLoaderLeakDetector leakDetector;
+    
     /**
      * 升级应用
      * 
@@ -138,11 +146,16 @@ public class UpgradeOrchestrator {
             log.info("开始执行插件包升级: packageId={}, fileUrl={}, hasConfig={}", 
                     pluginId, fileUrl, extensionConfig != null && !extensionConfig.isEmpty());
             
+            leakDetector.capture(pluginId, currentVersion);
             Result<PluginPackageUpgradeResult> upgradeResult = 
                     applicationInstallService.upgradeApplication(
                             pluginId, fileUrl, request.getOperationType(), extensionConfig);
             
+            // 无论升级成功与否，插件运行状态都可能已变化，刷新插件监控状态表
+            statusRegistry.refresh(pluginId);
+            
             if (!upgradeResult.isSuccess()) {
+                leakDetector.discard(pluginId);
                 log.error("插件包升级失败: {}", upgradeResult.getErrorMessage());
                 // 主应用升级失败：回滚本次依赖变更（新安装卸载/已升级降级）
                 try {
@@ -160,6 +173,9 @@ public class UpgradeOrchestrator {
                 return Result.error("插件包升级失败: " + upgradeResult.getErrorMessage());
             }
             
+            // 旧版本已下线，跟踪旧类加载器是否被回收
+            leakDetector.watch(pluginId, ClassLoaderLeakDetector.REASON_UPGRADE);
+            
             PluginPackageUpgradeResult result = upgradeResult.getData();
             log.info("插件包升级成功: oldVersion={}, newVersion={}, affectedPlugins={}", 
                     result.getOldVersion(), result.getNewVersion(), result.getAffectedPluginCount());
@@ -204,6 +220,7 @@ public class UpgradeOrchestrator {
         } catch (Exception e) {
             log.error("应用升级失败: id={}", id, e);
             if (application != null) {
+                leakDetector.discard(application.getPluginId());
                 String currentVersion = application.getPluginVersion();
                 operationLogger.logFailure(application, "UPGRADE", 
                         String.format("升级应用从 %s 到 %s", currentVersion, request.getTargetVersion()), 
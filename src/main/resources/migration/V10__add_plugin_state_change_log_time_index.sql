@@ -0,0 +1,3 @@
+-- App Store 插件：状态变更日志按时间清理的索引
+
+ALTER TABLE ${pluginId}_plugin_state_change_log ADD KEY idx_change_time (change_time);
@@ -0,0 +1,9 @@
+-- App Store 插件：监控缓存按 (cache_type, plugin_id) 唯一，写入改为单条 INSERT ... ON DUPLICATE KEY UPDATE
+
+-- 缓存数据可随时重建，先清空可能存在的重复行
+DELETE FROM ${pluginId}_plugin_monitor_cache;
+
+ALTER TABLE ${pluginId}_plugin_monitor_cache
+  MODIFY plugin_id VARCHAR(128) NOT NULL DEFAULT '' COMMENT '插件ID（单个插件缓存时使用，所有插件缓存为空字符串）',
+  DROP KEY idx_cache_type,
+  ADD UNIQUE KEY uk_cache_type_plugin (cache_type, plugin_id);
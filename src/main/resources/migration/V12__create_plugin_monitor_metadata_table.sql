@@ -0,0 +1,15 @@
+-- App Store 插件：插件监控快照元数据表（元数据变化时才写入，快照按 id 引用）
+
+CREATE TABLE IF NOT EXISTS ${pluginId}_plugin_monitor_metadata (
+  id            BIGINT UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  plugin_id     VARCHAR(128)    NOT NULL COMMENT '插件ID',
+  content_hash  CHAR(64)        NOT NULL COMMENT '元数据内容的 SHA-256',
+  content       TEXT            NOT NULL COMMENT '元数据（JSON格式，不含运行时长）',
+  create_time   BIGINT          NOT NULL COMMENT '首次出现时间戳（毫秒）',
+  PRIMARY KEY (id),
+  UNIQUE KEY uk_plugin_hash (plugin_id, content_hash)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='插件监控快照元数据表';
+
+-- 快照引用元数据版本，新快照不再写入 metadata 文本列（保留用于历史数据）
+ALTER TABLE ${pluginId}_plugin_monitor_snapshot
+  ADD COLUMN metadata_id BIGINT UNSIGNED NULL COMMENT '元数据ID（引用 plugin_monitor_metadata）' AFTER timestamp;
@@ -0,0 +1,9 @@
+-- App Store 插件：监控快照和汇总增加 CPU 占用率
+
+ALTER TABLE ${pluginId}_plugin_monitor_snapshot
+  ADD COLUMN cpu_usage DOUBLE NULL COMMENT 'CPU 占用率（占全部处理器的百分比）' AFTER memory_usage;
+
+ALTER TABLE ${pluginId}_plugin_monitor_rollup
+  ADD COLUMN cpu_max   DOUBLE NULL COMMENT '最大 CPU 占用率（百分比）' AFTER memory_count,
+  ADD COLUMN cpu_sum   DOUBLE NULL COMMENT 'CPU 占用率累计值（百分比，用于计算平均值）' AFTER cpu_max,
+  ADD COLUMN cpu_count INT    NOT NULL DEFAULT 0 COMMENT '有 CPU 数据的样本数' AFTER cpu_sum;
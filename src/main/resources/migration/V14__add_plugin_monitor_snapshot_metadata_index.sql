@@ -0,0 +1,3 @@
+-- App Store 插件：快照按元数据ID引用的索引，清理未被引用的元数据时按索引判断
+
+ALTER TABLE ${pluginId}_plugin_monitor_snapshot ADD KEY idx_metadata_id (metadata_id);
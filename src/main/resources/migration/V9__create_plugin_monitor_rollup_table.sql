@@ -0,0 +1,18 @@
+-- App Store 插件：插件监控汇总表（5m / 1h / 1d 分层汇总）
+
+CREATE TABLE IF NOT EXISTS ${pluginId}_plugin_monitor_rollup (
+  id              BIGINT UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  plugin_id       VARCHAR(128)    NOT NULL COMMENT '插件ID',
+  tier            VARCHAR(8)      NOT NULL COMMENT '汇总层级：5m, 1h, 1d',
+  bucket_start    BIGINT          NOT NULL COMMENT '时间桶起始时间戳（毫秒）',
+  sample_count    INT             NOT NULL COMMENT '原始样本数',
+  memory_min      BIGINT                   COMMENT '最小内存使用量（字节）',
+  memory_max      BIGINT                   COMMENT '最大内存使用量（字节）',
+  memory_sum      BIGINT                   COMMENT '内存使用量累计值（字节，用于计算平均值）',
+  memory_count    INT             NOT NULL DEFAULT 0 COMMENT '有内存数据的样本数',
+  last_state      VARCHAR(32)              COMMENT '时间桶内最后一次观测到的状态',
+  state_durations TEXT                     COMMENT '各状态持续时长（JSON，状态 -> 毫秒）',
+  PRIMARY KEY (id),
+  UNIQUE KEY uk_plugin_tier_bucket (plugin_id, tier, bucket_start),
+  KEY idx_tier_bucket (tier, bucket_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='插件监控汇总表';
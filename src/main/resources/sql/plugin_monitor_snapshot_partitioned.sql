@@ -0,0 +1,19 @@
+-- App Store 插件：插件监控快照表按天分区（可选）
+--
+-- 不在自动迁移中执行。快照数据量较大时手动执行本脚本，将 ${pluginId} 替换为插件ID，
+-- 并将下面的分区替换为从当前日期开始的按天分区（上界为次日 0 点的毫秒时间戳），
+-- 然后在 plugin.yml 中设置 appstore.monitor.snapshot-partitioned: true。
+-- 启用后清理任务会直接删除整天过期的分区，并提前创建未来几天的分区。
+--
+-- 注意：分区键必须包含在主键中，因此主键改为 (id, timestamp)；
+-- 转换会重建整张表，建议在低峰期执行，或先清理过期数据。
+
+ALTER TABLE ${pluginId}_plugin_monitor_snapshot
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (id, timestamp);
+
+ALTER TABLE ${pluginId}_plugin_monitor_snapshot
+  PARTITION BY RANGE (timestamp) (
+    PARTITION p20240101 VALUES LESS THAN (1704124800000),
+    PARTITION p_future  VALUES LESS THAN MAXVALUE
+  );
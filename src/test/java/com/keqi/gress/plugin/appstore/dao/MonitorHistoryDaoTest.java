@@ -0,0 +1,100 @@
+package com.keqi.gress.plugin.appstore.dao;
+
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 快照键集分页测试
+ */
+class MonitorHistoryDaoTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void pagesByTimestampAndIdWithoutSkippingOrRepeatingRows() {
+        List<Map<String, Object>> table = new ArrayList<>();
+        // 同一时间戳的多行跨越分页边界，id 顺序与时间顺序不一致（补写的旧数据 id 更大）
+        long id = 1;
+        for (int second = 0; second < 10; second++) {
+            for (String pluginId : List.of("a", "b", "c")) {
+                table.add(row(id++, pluginId, START + second * 1000L));
+            }
+        }
+        table.add(row(id++, "a", START + 500L));
+        table.add(row(id++, "b", START - 1000L));
+        table.add(row(id, "a", START + 10_000L));
+
+        PagingDao dao = new PagingDao(table);
+        List<PluginMonitorSnapshot> visited = new ArrayList<>();
+        long total = dao.streamSnapshots(List.of("a", "b"), START, START + 10_000L, 4, false, visited::add);
+
+        assertEquals(21, total);
+        assertEquals(21, visited.size());
+        for (int i = 1; i < visited.size(); i++) {
+            PluginMonitorSnapshot previous = visited.get(i - 1);
+            PluginMonitorSnapshot current = visited.get(i);
+            boolean ordered = previous.getTimestamp() < current.getTimestamp()
+                    || (previous.getTimestamp().equals(current.getTimestamp()) && previous.getId() < current.getId());
+            assertEquals(true, ordered, "第 " + i + " 行顺序错误");
+        }
+        assertEquals(6, dao.pages);
+    }
+
+    @Test
+    void emptyPluginListReadsNothing() {
+        PagingDao dao = new PagingDao(List.of(row(1, "a", START)));
+        assertEquals(0, dao.streamSnapshots(Set.of(), START, START + 1000L, 10, false, snapshot -> { }));
+        assertEquals(0, dao.pages);
+    }
+
+    private static Map<String, Object> row(long id, String pluginId, long timestamp) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("pluginId", pluginId);
+        row.put("state", "STARTED");
+        row.put("memoryUsage", 1024L);
+        row.put("timestamp", timestamp);
+        return row;
+    }
+
+    /**
+     * 在内存中按与 SQL 相同的条件和排序返回分页结果
+     */
+    private static final class PagingDao extends MonitorHistoryDao {
+        private final List<Map<String, Object>> table;
+        private int pages;
+
+        private PagingDao(List<Map<String, Object>> table) {
+            this.table = table;
+        }
+
+        @Override
+        List<Map<String, Object>> queryPage(String pageSql, Collection<String> pluginIds, long startTime,
+                                            long endTime, long afterTimestamp, long afterId) {
+            pages++;
+            int limit = Integer.parseInt(pageSql.substring(pageSql.lastIndexOf("LIMIT ") + 6).trim());
+            return table.stream()
+                    .filter(row -> pluginIds.contains((String) row.get("pluginId")))
+                    .filter(row -> {
+                        long timestamp = (Long) row.get("timestamp");
+                        long id = (Long) row.get("id");
+                        return timestamp >= startTime && timestamp < endTime
+                                && (timestamp > afterTimestamp || (timestamp == afterTimestamp && id > afterId));
+                    })
+                    .sorted(Comparator.<Map<String, Object>>comparingLong(row -> (Long) row.get("timestamp"))
+                            .thenComparingLong(row -> (Long) row.get("id")))
+                    .limit(limit)
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.keqi.gress.plugin.appstore.service.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 条件请求响应缓存测试
+ */
+class ConditionalResponseCacheTest {
+
+    private static final String URL = "https://store.example.com/api/plugins/demo";
+
+    @Test
+    void returnsFreshEntryAsHit() {
+        ConditionalResponseCache cache = new ConditionalResponseCache(60, 60, 10);
+        cache.put(URL, "value", "\"v1\"", null);
+
+        ConditionalResponseCache.Entry entry = cache.get(URL);
+
+        assertNotNull(entry);
+        assertTrue(entry.isFresh());
+        assertEquals("value", entry.<String>getValue());
+        assertEquals("\"v1\"", entry.getEtag());
+    }
+
+    @Test
+    void keepsExpiredEntryForRevalidation() {
+        ConditionalResponseCache cache = new ConditionalResponseCache(0, 60, 10);
+        cache.put(URL, "value", null, "Wed, 21 Oct 2026 07:28:00 GMT");
+
+        ConditionalResponseCache.Entry entry = cache.get(URL);
+
+        assertNotNull(entry);
+        assertFalse(entry.isFresh());
+        assertTrue(entry.isRevalidatable());
+        assertEquals("Wed, 21 Oct 2026 07:28:00 GMT", entry.getLastModified());
+    }
+
+    @Test
+    void expiredEntryWithoutValidatorIsNotRevalidatable() {
+        ConditionalResponseCache cache = new ConditionalResponseCache(0, 60, 10);
+        cache.put(URL, "value", null, null);
+
+        assertFalse(cache.get(URL).isRevalidatable());
+    }
+
+    @Test
+    void revalidatedEntryBecomesFreshAgain() {
+        ConditionalResponseCache expired = new ConditionalResponseCache(0, 60, 10);
+        expired.put(URL, "value", "\"v1\"", null);
+        ConditionalResponseCache.Entry entry = expired.get(URL);
+        assertFalse(entry.isFresh());
+
+        ConditionalResponseCache cache = new ConditionalResponseCache(60, 60, 10);
+        cache.revalidated(entry);
+
+        assertTrue(entry.isFresh());
+        assertEquals("value", entry.<String>getValue());
+    }
+
+    @Test
+    void cachesNotFoundWithSeparateExpiry() {
+        ConditionalResponseCache cache = new ConditionalResponseCache(0, 60, 10);
+        cache.putNotFound(URL);
+
+        ConditionalResponseCache.Entry entry = cache.get(URL);
+
+        assertTrue(entry.isNotFound());
+        assertTrue(entry.isFresh());
+        assertFalse(entry.isRevalidatable());
+        assertNull(entry.getValue());
+    }
+
+    @Test
+    void evictsLeastRecentlyAccessedEntry() {
+        ConditionalResponseCache cache = new ConditionalResponseCache(60, 60, 2);
+        cache.put(URL + "/a", "a", null, null);
+        cache.put(URL + "/b", "b", null, null);
+        // 访问 a 后 b 成为最久未访问的条目
+        cache.get(URL + "/a");
+        cache.put(URL + "/c", "c", null, null);
+
+        assertNotNull(cache.get(URL + "/a"));
+        assertNull(cache.get(URL + "/b"));
+        assertNotNull(cache.get(URL + "/c"));
+    }
+}
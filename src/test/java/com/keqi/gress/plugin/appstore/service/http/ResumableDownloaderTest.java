@@ -0,0 +1,155 @@
+package com.keqi.gress.plugin.appstore.service.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 断点续传下载器测试
+ */
+class ResumableDownloaderTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path directory;
+
+    private final byte[] data = new byte[64 * 1024];
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private StoreHttpClient httpClient;
+    private ResumableDownloader downloader;
+
+    /** 服务端返回的验证器，为 null 时不返回 ETag */
+    private volatile String etag = ETAG;
+
+    /** 第一次 GET 只返回一半数据后断开连接 */
+    private volatile boolean truncateFirstGet = true;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(1).nextBytes(data);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/package.jar", this::handle);
+        server.start();
+        httpClient = new StoreHttpClient(1000, 5000, 10_000, 0, 4);
+        downloader = new ResumableDownloader(httpClient, directory.resolve(".partial"), 10_000, 2, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        downloader.close();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void resumesFromDownloadedLengthAfterConnectionDrop() throws Exception {
+        Path target = directory.resolve("package.jar");
+
+        ResumableDownloader.Result result = downloader.download(url(), Map.of(), target);
+
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertEquals(data.length, result.getSize());
+        assertEquals(sha256(data), result.getSha256());
+        assertEquals(2, ranges.size());
+        assertEquals("bytes=0-" + (data.length - 1), ranges.get(0));
+        assertEquals("bytes=" + data.length / 2 + "-" + (data.length - 1), ranges.get(1));
+        // 合并完成后分段文件被删除
+        try (var files = Files.list(directory.resolve(".partial"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void downloadsWithoutRangeWhenServerHasNoValidator() throws Exception {
+        etag = null;
+        truncateFirstGet = false;
+        Path target = directory.resolve("package.jar");
+
+        downloader.download(url(), Map.of(), target);
+
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertEquals(1, ranges.size());
+        assertNull(ranges.get(0));
+    }
+
+    @Test
+    void removesExpiredPartialFilesOnStartup() throws Exception {
+        Path partialDirectory = directory.resolve(".partial");
+        Files.createDirectories(partialDirectory);
+        Path expired = Files.writeString(partialDirectory.resolve("expired.part0"), "old");
+        Files.setLastModifiedTime(expired,
+                FileTime.fromMillis(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L));
+        Path recent = Files.writeString(partialDirectory.resolve("recent.part0"), "new");
+
+        new ResumableDownloader(httpClient, partialDirectory, 10_000, 1, true).close();
+
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(recent));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(data.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        ranges.add(range);
+        int start = 0;
+        if (range != null) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (data.length - 1) + "/" + data.length);
+        }
+        int length = data.length - start;
+        exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (truncateFirstGet && ranges.size() == 1) {
+                // 只发送一半数据，关闭连接模拟网络中断
+                out.write(data, start, length / 2);
+                out.flush();
+                return;
+            }
+            out.write(data, start, length);
+        }
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/package.jar";
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
@@ -0,0 +1,160 @@
+package com.keqi.gress.plugin.appstore.service.install;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地安装包缓存测试
+ */
+class LocalPackageCacheTest {
+
+    private static final String PLUGIN_ID = "demo-plugin";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void acquiresOnlyWithMatchingDigest() throws IOException {
+        LocalPackageCache cache = new LocalPackageCache(directory, 1024);
+        publish(cache, "1.0.0", "aa01", 8).close();
+
+        try (LocalPackageCache.Lease lease = cache.acquire(PLUGIN_ID, "1.0.0", "AA01")) {
+            assertNotNull(lease);
+            assertEquals("aa01", lease.getSha256());
+            assertEquals(8, lease.getSize());
+            assertTrue(Files.exists(lease.getPath()));
+        }
+        assertNull(cache.acquire(PLUGIN_ID, "1.0.0", "bb02"));
+        assertNull(cache.acquire(PLUGIN_ID, "2.0.0", "aa01"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() throws IOException {
+        LocalPackageCache cache = new LocalPackageCache(directory, 20);
+        Path first = pathOf(publish(cache, "1.0.0", "aa01", 8));
+        Path second = pathOf(publish(cache, "2.0.0", "bb02", 8));
+        // 访问 1.0.0 后 2.0.0 成为最久未访问的条目
+        cache.acquire(PLUGIN_ID, "1.0.0", "aa01").close();
+
+        Path third = pathOf(publish(cache, "3.0.0", "cc03", 8));
+
+        assertTrue(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertTrue(Files.exists(third));
+        assertEquals(16, cache.getTotalSize());
+        assertNull(cache.acquire(PLUGIN_ID, "2.0.0", "bb02"));
+    }
+
+    @Test
+    void keepsLeasedEntryDuringEviction() throws IOException {
+        LocalPackageCache cache = new LocalPackageCache(directory, 10);
+        LocalPackageCache.Lease held = publish(cache, "1.0.0", "aa01", 8);
+        Path second = pathOf(publish(cache, "2.0.0", "bb02", 8));
+
+        LocalPackageCache.Lease third = publish(cache, "3.0.0", "cc03", 8);
+
+        // 1.0.0 被持有，只能淘汰未被持有的 2.0.0
+        assertTrue(Files.exists(held.getPath()));
+        assertFalse(Files.exists(second));
+        assertTrue(Files.exists(third.getPath()));
+        held.close();
+        third.close();
+    }
+
+    @Test
+    void deletesReplacedFileAfterLastLeaseIsReleased() throws IOException {
+        LocalPackageCache cache = new LocalPackageCache(directory, 1024);
+        LocalPackageCache.Lease old = publish(cache, "1.0.0", "aa01", 8);
+
+        Path replacement = pathOf(publish(cache, "1.0.0", "bb02", 8));
+
+        assertTrue(Files.exists(old.getPath()));
+        assertNull(cache.acquire(PLUGIN_ID, "1.0.0", "aa01"));
+        old.close();
+        assertFalse(Files.exists(old.getPath()));
+        assertTrue(Files.exists(replacement));
+        assertEquals(8, cache.getTotalSize());
+    }
+
+    @Test
+    void reloadsEntriesAndCleansTempFilesOnStartup() throws IOException {
+        LocalPackageCache cache = new LocalPackageCache(directory, 1024);
+        publish(cache, "1.0.0", "aa01", 8).close();
+        Path leftover = cache.createTempFile();
+
+        LocalPackageCache reloaded = new LocalPackageCache(directory, 1024);
+
+        assertFalse(Files.exists(leftover));
+        assertEquals(8, reloaded.getTotalSize());
+        try (LocalPackageCache.Lease lease = reloaded.acquire(PLUGIN_ID, "1.0.0", "aa01")) {
+            assertNotNull(lease);
+        }
+    }
+
+    @Test
+    void acquiresPinnedVersionByRecordedDigest() throws Exception {
+        LocalPackageCache cache = new LocalPackageCache(directory, 1024);
+        byte[] content = "package".getBytes();
+        publish(cache, "1.0.0", sha256(content), content).close();
+
+        try (LocalPackageCache.Lease lease = cache.acquire(PLUGIN_ID, "1.0.0")) {
+            assertNotNull(lease);
+            assertEquals(sha256(content), lease.getSha256());
+        }
+        assertNull(cache.acquire(PLUGIN_ID, "2.0.0"));
+
+        // 重启后从磁盘加载的文件按记录的摘要重新校验
+        LocalPackageCache reloaded = new LocalPackageCache(directory, 1024);
+        try (LocalPackageCache.Lease lease = reloaded.acquire(PLUGIN_ID, "1.0.0")) {
+            assertNotNull(lease);
+        }
+    }
+
+    @Test
+    void dropsLoadedFileWhoseContentDoesNotMatchRecordedDigest() throws Exception {
+        LocalPackageCache cache = new LocalPackageCache(directory, 1024);
+        byte[] content = "package".getBytes();
+        Path path = pathOf(publish(cache, "1.0.0", sha256(content), content));
+        Files.write(path, "tampered".getBytes());
+
+        LocalPackageCache reloaded = new LocalPackageCache(directory, 1024);
+
+        assertNull(reloaded.acquire(PLUGIN_ID, "1.0.0"));
+        assertFalse(Files.exists(path));
+        assertEquals(0, reloaded.getTotalSize());
+    }
+
+    private static LocalPackageCache.Lease publish(LocalPackageCache cache, String version, String sha256,
+                                                   byte[] content) throws IOException {
+        Path tempFile = cache.createTempFile();
+        Files.write(tempFile, content);
+        return cache.publish(PLUGIN_ID, version, sha256, tempFile);
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static LocalPackageCache.Lease publish(LocalPackageCache cache, String version, String sha256,
+                                                   int size) throws IOException {
+        return publish(cache, version, sha256, new byte[size]);
+    }
+
+    private static Path pathOf(LocalPackageCache.Lease lease) {
+        Path path = lease.getPath();
+        lease.close();
+        return path;
+    }
+}
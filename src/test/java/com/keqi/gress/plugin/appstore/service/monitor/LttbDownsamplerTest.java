@@ -0,0 +1,104 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorHistory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LTTB 降采样测试
+ */
+class LttbDownsamplerTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void returnsInputUnchangedWhenThresholdIsAtLeastSize() {
+        List<PluginMonitorHistory> points = series(10);
+
+        assertEquals(points, downsample(points, 10));
+        assertEquals(points, downsample(points, 50));
+    }
+
+    @Test
+    void preservesFirstAndLastPoints() {
+        List<PluginMonitorHistory> points = series(1000);
+
+        List<PluginMonitorHistory> result = downsample(points, 20);
+
+        assertEquals(20, result.size());
+        assertSame(points.get(0), result.get(0));
+        assertSame(points.get(points.size() - 1), result.get(result.size() - 1));
+    }
+
+    @Test
+    void thresholdBelowThreeKeepsEdgesAndOneMiddlePoint() {
+        List<PluginMonitorHistory> points = series(100);
+
+        for (int maxPoints : new int[]{0, 1, 2}) {
+            List<PluginMonitorHistory> result = downsample(points, maxPoints);
+            assertEquals(LttbDownsampler.MIN_POINTS, result.size());
+            assertSame(points.get(0), result.get(0));
+            assertSame(points.get(99), result.get(2));
+        }
+    }
+
+    @Test
+    void keepsPeaks() {
+        List<PluginMonitorHistory> points = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            points.add(point(i, i == 437 ? 900L : 100L));
+        }
+
+        List<PluginMonitorHistory> result = downsample(points, 30);
+
+        assertTrue(result.contains(points.get(437)), "峰值点应被保留");
+    }
+
+    @Test
+    void outputIsInTimeOrder() {
+        List<PluginMonitorHistory> result = downsample(series(500), 25);
+
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getTimestamp() < result.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void handlesEmptyAndSinglePointInput() {
+        assertTrue(downsample(new ArrayList<>(), 10).isEmpty());
+
+        List<PluginMonitorHistory> single = series(1);
+        assertEquals(single, downsample(single, 3));
+    }
+
+    private static List<PluginMonitorHistory> downsample(List<PluginMonitorHistory> points, int maxPoints) {
+        long end = points.isEmpty() ? START : points.get(points.size() - 1).getTimestamp();
+        LttbDownsampler downsampler = new LttbDownsampler(START, end, maxPoints);
+        for (PluginMonitorHistory point : points) {
+            downsampler.add(point);
+        }
+        return downsampler.finish();
+    }
+
+    private static List<PluginMonitorHistory> series(int size) {
+        List<PluginMonitorHistory> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(point(i, (long) (1000 + 500 * Math.sin(i / 10.0))));
+        }
+        return points;
+    }
+
+    private static PluginMonitorHistory point(int second, long memoryUsage) {
+        return PluginMonitorHistory.builder()
+                .pluginId("demo-plugin")
+                .timestamp(START + second * 1000L)
+                .memoryUsage(memoryUsage)
+                .build();
+    }
+}
@@ -0,0 +1,160 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAlert;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMemoryInfo;
+import com.keqi.gress.plugin.appstore.dto.monitor.PluginMonitorStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 告警规则测试（使用默认配置：防抖 2 个周期、恢复 3 个周期、滞回 10%、
+ * 内存阈值 500MB、10 分钟内重启 3 次）
+ */
+class MonitorAlertEngineTest {
+
+    private static final String PLUGIN_ID = "demo-plugin";
+    private static final long MB = 1024 * 1024L;
+    private static final long WINDOW = 10 * 60 * 1000L;
+    private static final long T0 = 1_700_000_000_000L - Math.floorMod(1_700_000_000_000L, WINDOW);
+
+    private MonitorAlertEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        engine = new MonitorAlertEngine();
+        inject("memoryCollector", new PluginMemoryCollector());
+        inject("streamPublisher", new MonitorStreamPublisher());
+    }
+
+    @Test
+    void memoryThresholdOpensAfterDebounceTicks() {
+        assertTrue(engine.evaluate(List.of(status(600 * MB)), T0).isEmpty());
+
+        List<MonitorAlert> events = engine.evaluate(List.of(status(600 * MB)), T0 + 5000);
+
+        assertEquals(1, events.size());
+        assertEquals(MonitorAlertEngine.RULE_MEMORY_THRESHOLD, events.get(0).getRule());
+        assertEquals(MonitorAlertEngine.STATUS_OPEN, events.get(0).getStatus());
+    }
+
+    @Test
+    void memoryThresholdResolvesOnlyBelowHysteresisLine() {
+        engine.evaluate(List.of(status(600 * MB)), T0);
+        engine.evaluate(List.of(status(600 * MB)), T0 + 5000);
+
+        // 460MB 位于恢复线（450MB）与阈值之间，保持告警
+        for (int i = 2; i < 10; i++) {
+            assertTrue(engine.evaluate(List.of(status(460 * MB)), T0 + i * 5000L).isEmpty());
+        }
+        assertEquals(true, engine.isActive(PLUGIN_ID, MonitorAlertEngine.RULE_MEMORY_THRESHOLD));
+
+        assertTrue(engine.evaluate(List.of(status(400 * MB)), T0 + 50_000).isEmpty());
+        assertTrue(engine.evaluate(List.of(status(400 * MB)), T0 + 55_000).isEmpty());
+        List<MonitorAlert> events = engine.evaluate(List.of(status(400 * MB)), T0 + 60_000);
+
+        assertEquals(1, events.size());
+        assertEquals(MonitorAlertEngine.STATUS_RESOLVED, events.get(0).getStatus());
+    }
+
+    @Test
+    void measuredMemoryUsesThresholdCarriedByMemoryInfo() {
+        // jfr 模式已用内存只含元空间，按元空间告警阈值判断
+        PluginMemoryInfo metaspace = PluginMemoryInfo.builder()
+                .usedMemory(200 * MB)
+                .source(PluginMemoryCollector.SOURCE_JFR)
+                .warningThreshold(128 * MB)
+                .build();
+        engine.evaluate(List.of(status(metaspace)), T0);
+        List<MonitorAlert> events = engine.evaluate(List.of(status(metaspace)), T0 + 5000);
+
+        assertEquals(1, events.size());
+        assertEquals(MonitorAlertEngine.RULE_MEMORY_THRESHOLD, events.get(0).getRule());
+    }
+
+    @Test
+    void restartLoopOpensWhenRestartsReachThreshold() {
+        for (int i = 1; i <= 3; i++) {
+            engine.onStateChange(PLUGIN_ID, "STOPPED", "STARTED", T0 + i * 1000L);
+        }
+
+        engine.evaluate(List.of(status(10 * MB)), T0 + 10_000);
+        List<MonitorAlert> events = engine.evaluate(List.of(status(10 * MB)), T0 + 15_000);
+
+        assertEquals(1, events.size());
+        assertEquals(MonitorAlertEngine.RULE_RESTART_LOOP, events.get(0).getRule());
+    }
+
+    @Test
+    void restartsAreKeptWhilePluginIsMissingFromEvaluation() {
+        engine.onStateChange(PLUGIN_ID, "STOPPED", "STARTED", T0 + 1000);
+        engine.onStateChange(PLUGIN_ID, "STOPPED", "STARTED", T0 + 2000);
+        // 重新加载期间插件不在状态列表中
+        engine.evaluate(List.of(), T0 + 5000);
+        engine.onStateChange(PLUGIN_ID, "STOPPED", "STARTED", T0 + 6000);
+
+        engine.evaluate(List.of(status(10 * MB)), T0 + 10_000);
+        List<MonitorAlert> events = engine.evaluate(List.of(status(10 * MB)), T0 + 15_000);
+
+        assertEquals(1, events.size());
+        assertEquals(MonitorAlertEngine.RULE_RESTART_LOOP, events.get(0).getRule());
+    }
+
+    @Test
+    void restartsExpireAfterWindow() {
+        engine.onStateChange(PLUGIN_ID, "STOPPED", "STARTED", T0 + 1000);
+        engine.onStateChange(PLUGIN_ID, "STOPPED", "STARTED", T0 + 2000);
+        engine.evaluate(List.of(), T0 + 5000);
+
+        // 两个窗口之后计数过期，状态被清除
+        engine.evaluate(List.of(), T0 + 3 * WINDOW);
+        assertNull(engine.isActive(PLUGIN_ID, MonitorAlertEngine.RULE_RESTART_LOOP));
+    }
+
+    @Test
+    void removedPluginResolvesActiveAlerts() {
+        engine.evaluate(List.of(status(600 * MB)), T0);
+        engine.evaluate(List.of(status(600 * MB)), T0 + 5000);
+
+        List<MonitorAlert> events = engine.evaluate(List.of(), T0 + 10_000);
+
+        assertEquals(1, events.size());
+        assertEquals(MonitorAlertEngine.STATUS_RESOLVED, events.get(0).getStatus());
+        assertTrue(engine.getActiveAlerts().isEmpty());
+    }
+
+    @Test
+    void restartFromStartedStateIsNotCounted() {
+        for (int i = 1; i <= 3; i++) {
+            engine.onStateChange(PLUGIN_ID, "STARTED", "STARTED", T0 + i * 1000L);
+        }
+
+        engine.evaluate(List.of(status(10 * MB)), T0 + 10_000);
+        assertTrue(engine.evaluate(List.of(status(10 * MB)), T0 + 15_000).isEmpty());
+    }
+
+    private static PluginMonitorStatus status(long memory) {
+        return status(PluginMemoryInfo.builder().usedMemory(memory).build());
+    }
+
+    private static PluginMonitorStatus status(PluginMemoryInfo memoryInfo) {
+        return PluginMonitorStatus.builder()
+                .pluginId(PLUGIN_ID)
+                .state("STARTED")
+                .hasError(false)
+                .memoryInfo(memoryInfo)
+                .build();
+    }
+
+    private void inject(String name, Object value) throws Exception {
+        Field field = MonitorAlertEngine.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(engine, value);
+    }
+}
@@ -0,0 +1,140 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import com.keqi.gress.plugin.appstore.dto.monitor.MonitorAggregation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 监控历史聚合测试：时间桶统计和 P95 近似
+ */
+class MonitorHistoryAggregatorTest {
+
+    private static final long MB = 1024 * 1024L;
+    private static final long BUCKET = 60 * 60 * 1000L;
+
+    private final List<PluginMonitorSnapshot> snapshots = new ArrayList<>();
+    private MonitorHistoryAggregator aggregator;
+    private long start;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        aggregator = new MonitorHistoryAggregator();
+        Field field = MonitorHistoryAggregator.class.getDeclaredField("historyDao");
+        field.setAccessible(true);
+        field.set(aggregator, new InMemoryHistoryDao());
+        field = MonitorHistoryAggregator.class.getDeclaredField("samplingPolicy");
+        field.setAccessible(true);
+        field.set(aggregator, new SnapshotSamplingPolicy());
+        // 在原始快照保留期内，使用原始快照聚合
+        long now = System.currentTimeMillis();
+        start = now - Math.floorMod(now, BUCKET) - BUCKET;
+    }
+
+    @Test
+    void computesBucketStatisticsAndApproximateP95() {
+        for (int i = 1; i <= 100; i++) {
+            snapshots.add(snapshot("a", start + i * 1000L, i * MB, "STARTED"));
+        }
+
+        MonitorAggregation result = aggregator.aggregate(List.of("a"), start, start + BUCKET, BUCKET);
+
+        assertEquals(MonitorHistoryAggregator.SOURCE_RAW, result.getSource());
+        MonitorAggregation.Bucket bucket = result.getSeries().get(0).getBuckets().get(0);
+        assertEquals(100, bucket.getSampleCount());
+        assertEquals(MB, bucket.getMemoryMin());
+        assertEquals(100 * MB, bucket.getMemoryMax());
+        assertEquals(5050 * MB / 100, bucket.getMemoryAvg());
+        // 对数直方图每档相对宽度 25%，取档位中点，误差不超过 12.5%
+        double error = Math.abs(bucket.getMemoryP95() - 95.0 * MB) / (95.0 * MB);
+        assertTrue(error <= 0.125, "P95 误差过大: " + bucket.getMemoryP95());
+    }
+
+    @Test
+    void percentileOfConstantSeriesIsExact() {
+        for (int i = 0; i < 10; i++) {
+            snapshots.add(snapshot("a", start + i * 1000L, 300 * MB, "STARTED"));
+        }
+
+        MonitorAggregation.Bucket bucket = aggregator.aggregate(List.of("a"), start, start + BUCKET, BUCKET)
+                .getSeries().get(0).getBuckets().get(0);
+
+        assertEquals(300 * MB, bucket.getMemoryP95());
+    }
+
+    @Test
+    void splitsSamplesIntoBucketsAndComputesStatePercentages() {
+        long half = BUCKET / 2;
+        // 首个样本没有状态，状态占比只由后续样本间隔决定
+        snapshots.add(snapshot("a", start, 10 * MB, null));
+        snapshots.add(snapshot("a", start + 60_000L, 10 * MB, "STARTED"));
+        snapshots.add(snapshot("a", start + 120_000L, null, "STOPPED"));
+        snapshots.add(snapshot("a", start + half + 1000L, 20 * MB, "STARTED"));
+
+        MonitorAggregation result = aggregator.aggregate(List.of("a"), start, start + BUCKET, half);
+
+        List<MonitorAggregation.Bucket> buckets = result.getSeries().get(0).getBuckets();
+        assertEquals(2, buckets.size());
+        assertEquals(start, buckets.get(0).getBucketStart());
+        assertEquals(3, buckets.get(0).getSampleCount());
+        assertEquals(10 * MB, buckets.get(0).getMemoryMax());
+        assertEquals(50.0, buckets.get(0).getStatePercentages().get("STARTED"), 0.01);
+        assertEquals(50.0, buckets.get(0).getStatePercentages().get("STOPPED"), 0.01);
+        assertEquals(start + half, buckets.get(1).getBucketStart());
+        assertEquals(20 * MB, buckets.get(1).getMemoryMin());
+    }
+
+    @Test
+    void bucketWithoutMemoryHasNoMemoryStatistics() {
+        snapshots.add(snapshot("a", start, null, "STOPPED"));
+
+        MonitorAggregation.Bucket bucket = aggregator.aggregate(List.of("a"), start, start + BUCKET, BUCKET)
+                .getSeries().get(0).getBuckets().get(0);
+
+        assertNull(bucket.getMemoryP95());
+        assertNull(bucket.getMemoryAvg());
+    }
+
+    @Test
+    void rejectsTooManyBuckets() {
+        assertThrows(IllegalArgumentException.class,
+                () -> aggregator.aggregate(List.of("a"), start, start + BUCKET, 1000L));
+    }
+
+    private static PluginMonitorSnapshot snapshot(String pluginId, long timestamp, Long memoryUsage, String state) {
+        return PluginMonitorSnapshot.builder()
+                .pluginId(pluginId)
+                .timestamp(timestamp)
+                .memoryUsage(memoryUsage)
+                .state(state)
+                .build();
+    }
+
+    private class InMemoryHistoryDao extends MonitorHistoryDao {
+        @Override
+        public long streamSnapshots(Collection<String> pluginIds, long startTime, long endTime,
+                                    int pageSize, boolean includeMetadata, Consumer<PluginMonitorSnapshot> consumer) {
+            long count = 0;
+            for (PluginMonitorSnapshot snapshot : snapshots) {
+                if (pluginIds.contains(snapshot.getPluginId())
+                        && snapshot.getTimestamp() >= startTime && snapshot.getTimestamp() < endTime) {
+                    consumer.accept(snapshot);
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.plugin.appstore.dao.MonitorHistoryDao;
+import com.keqi.gress.plugin.appstore.dao.MonitorRollupDao;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorRollup;
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 监控数据汇总器测试：进程重启后的时间桶恢复、未结束时间桶的读取
+ */
+class MonitorRollupAggregatorTest {
+
+    private static final String PLUGIN_ID = "demo-plugin";
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = RollupTier.ONE_HOUR.bucketStart(1_700_000_000_000L);
+
+    private final List<PluginMonitorSnapshot> rawSnapshots = new ArrayList<>();
+    private final Map<String, PluginMonitorRollup> rollups = new TreeMap<>();
+    private MonitorRollupAggregator aggregator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        aggregator = new MonitorRollupAggregator();
+        inject(aggregator, "historyDao", new InMemoryHistoryDao());
+        inject(aggregator, "rollupDao", new InMemoryRollupDao());
+        inject(aggregator, "samplingPolicy", new SnapshotSamplingPolicy());
+    }
+
+    @Test
+    void rebuildsOpenBucketFromRawSnapshotsAfterRestart() {
+        // 重启前已写入数据库的原始快照
+        rawSnapshots.add(snapshot(HOUR, 100L));
+        rawSnapshots.add(snapshot(HOUR + MINUTE, 200L));
+        rawSnapshots.add(snapshot(HOUR + 2 * MINUTE, 300L));
+
+        accept(HOUR + 3 * MINUTE, 400L);
+        accept(HOUR + 5 * MINUTE, 500L);
+
+        PluginMonitorRollup bucket = rollups.get(key(RollupTier.FIVE_MINUTES, HOUR));
+        assertNotNull(bucket);
+        assertEquals(4, bucket.getSampleCount());
+        assertEquals(100L, bucket.getMemoryMin());
+        assertEquals(400L, bucket.getMemoryMax());
+        assertEquals(1000L, bucket.getMemorySum());
+    }
+
+    @Test
+    void doesNotCountRewrittenChildBucketTwice() {
+        long restartedBucket = HOUR + 50 * MINUTE;
+        // 重启前写入的 5m 汇总，其中 restartedBucket 将在重启后被重新写入
+        putRollup(RollupTier.FIVE_MINUTES, HOUR, 5);
+        putRollup(RollupTier.FIVE_MINUTES, restartedBucket, 10);
+
+        accept(restartedBucket + MINUTE, 100L);
+        accept(restartedBucket + 5 * MINUTE, 100L);
+        accept(HOUR + 60 * MINUTE, 100L);
+
+        assertEquals(1, rollups.get(key(RollupTier.FIVE_MINUTES, restartedBucket)).getSampleCount());
+        PluginMonitorRollup hour = rollups.get(key(RollupTier.ONE_HOUR, HOUR));
+        assertNotNull(hour);
+        assertEquals(5 + 1 + 1, hour.getSampleCount());
+    }
+
+    @Test
+    void openBucketIncludesUnclosedChildBuckets() {
+        accept(HOUR + MINUTE, 100L);
+        // 第一个 5m 时间桶结束并合并到 1h 时间桶，第二个 5m 时间桶仍未结束
+        accept(HOUR + 6 * MINUTE, 300L);
+
+        PluginMonitorRollup hour = aggregator.getOpenBucket(PLUGIN_ID, RollupTier.ONE_HOUR);
+        assertNotNull(hour);
+        assertEquals(HOUR, hour.getBucketStart());
+        assertEquals(2, hour.getSampleCount());
+        assertEquals(100L, hour.getMemoryMin());
+        assertEquals(300L, hour.getMemoryMax());
+
+        // 1d 时间桶尚未打开时按最细层级的时间桶计算所在时间段
+        PluginMonitorRollup day = aggregator.getOpenBucket(PLUGIN_ID, RollupTier.ONE_DAY);
+        assertEquals(RollupTier.ONE_DAY.bucketStart(HOUR), day.getBucketStart());
+        assertEquals(2, day.getSampleCount());
+        assertNull(rollups.get(key(RollupTier.ONE_HOUR, HOUR)));
+    }
+
+    private void accept(long timestamp, Long memoryUsage) {
+        PluginMonitorSnapshot snapshot = snapshot(timestamp, memoryUsage);
+        // 与快照定时任务一致：先写入原始快照，再累加汇总
+        rawSnapshots.add(snapshot);
+        aggregator.accept(List.of(snapshot), timestamp);
+    }
+
+    private void putRollup(RollupTier tier, long bucketStart, int sampleCount) {
+        rollups.put(key(tier, bucketStart), PluginMonitorRollup.builder()
+                .pluginId(PLUGIN_ID)
+                .tier(tier.getCode())
+                .bucketStart(bucketStart)
+                .sampleCount(sampleCount)
+                .memoryCount(0)
+                .cpuCount(0)
+                .stateDurations("{}")
+                .build());
+    }
+
+    private static PluginMonitorSnapshot snapshot(long timestamp, Long memoryUsage) {
+        return PluginMonitorSnapshot.builder()
+                .pluginId(PLUGIN_ID)
+                .state("STARTED")
+                .memoryUsage(memoryUsage)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static String key(RollupTier tier, long bucketStart) {
+        return PLUGIN_ID + "|" + tier.getCode() + "|" + bucketStart;
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private class InMemoryHistoryDao extends MonitorHistoryDao {
+        @Override
+        public long streamSnapshots(Collection<String> pluginIds, long startTime, long endTime,
+                                    int pageSize, boolean includeMetadata, Consumer<PluginMonitorSnapshot> consumer) {
+            long count = 0;
+            for (PluginMonitorSnapshot snapshot : rawSnapshots) {
+                if (pluginIds.contains(snapshot.getPluginId())
+                        && snapshot.getTimestamp() >= startTime && snapshot.getTimestamp() < endTime) {
+                    consumer.accept(snapshot);
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private class InMemoryRollupDao extends MonitorRollupDao {
+        @Override
+        public int batchUpsert(List<PluginMonitorRollup> batch) {
+            for (PluginMonitorRollup rollup : batch) {
+                rollups.put(rollup.getPluginId() + "|" + rollup.getTier() + "|" + rollup.getBucketStart(), rollup);
+            }
+            return batch.size();
+        }
+
+        @Override
+        public List<PluginMonitorRollup> queryRollups(String pluginId, String tier, long startTime, long endTime) {
+            List<PluginMonitorRollup> result = new ArrayList<>();
+            for (PluginMonitorRollup rollup : rollups.values()) {
+                if (rollup.getPluginId().equals(pluginId) && rollup.getTier().equals(tier)
+                        && rollup.getBucketStart() >= startTime && rollup.getBucketStart() < endTime) {
+                    result.add(rollup);
+                }
+            }
+            result.sort(Comparator.comparing(PluginMonitorRollup::getBucketStart));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.keqi.gress.plugin.appstore.service.monitor;
+
+import com.keqi.gress.plugin.appstore.domain.entity.PluginMonitorSnapshot;
+import com.keqi.gress.plugin.appstore.dto.monitor.RecentSampleStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 近期监控样本缓冲区测试
+ */
+class RecentSampleBufferTest {
+
+    private static final long TICK = SnapshotSamplingPolicy.TICK_MILLIS;
+
+    @Test
+    void growsRingOnDemandAndKeepsSamplesInOrder() {
+        RecentSampleBuffer buffer = new RecentSampleBuffer();
+        long start = System.currentTimeMillis() - 300 * TICK;
+        for (int i = 0; i < 300; i++) {
+            buffer.append(List.of(snapshot("fast", (long) i)), start + i * TICK);
+        }
+
+        List<RecentSampleBuffer.Sample> samples = buffer.query("fast", start);
+
+        assertEquals(300, samples.size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(start + i * TICK, samples.get(i).getTimestamp());
+            assertEquals(i, samples.get(i).getMemoryUsage());
+            assertEquals("STARTED", samples.get(i).getState());
+        }
+    }
+
+    @Test
+    void allocatesOnlyWhatSlowPluginsUse() {
+        RecentSampleBuffer buffer = new RecentSampleBuffer();
+        long start = System.currentTimeMillis() - 300 * TICK;
+        for (int i = 0; i < 300; i++) {
+            long timestamp = start + i * TICK;
+            // 慢速插件每 60 个周期写入一次
+            List<PluginMonitorSnapshot> snapshots = i % 60 == 0
+                    ? List.of(snapshot("fast", 1L), snapshot("slow", 1L))
+                    : List.of(snapshot("fast", 1L));
+            buffer.append(snapshots, timestamp);
+        }
+
+        RecentSampleStats stats = buffer.getStats();
+
+        assertEquals(2, stats.getPluginCount());
+        assertEquals(305, stats.getSampleCount());
+        // fast 扩容到 512，slow 保持初始容量 64
+        assertEquals((512 + 64) * 33L, stats.getUsedBytes());
+        assertEquals(5, buffer.query("slow", start).size());
+    }
+
+    private static PluginMonitorSnapshot snapshot(String pluginId, Long memoryUsage) {
+        return PluginMonitorSnapshot.builder()
+                .pluginId(pluginId)
+                .state("STARTED")
+                .memoryUsage(memoryUsage)
+                .build();
+    }
+}